@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks config lookups through parent chains and prefixed views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+  private ConfigImpl config;
+  private Config prefixedConfig;
+
+  @Setup
+  public void setUp() {
+    ConfigImpl grandParent = new ConfigImpl();
+    grandParent.set("foo.bar.grandParentKey", "42");
+    ConfigImpl parent = new ConfigImpl();
+    parent.setParent(grandParent);
+    parent.set("foo.bar.parentKey", "true");
+    config = new ConfigImpl();
+    config.setParent(parent);
+    config.set("foo.bar.ownKey", "baz");
+    config.set("foo.bar.duration", "5m");
+
+    prefixedConfig = ConfigUtils.subconfig(ConfigUtils.subconfig(config, "foo"), "bar");
+  }
+
+  @Benchmark
+  public String getOwn() {
+    return config.get("foo.bar.ownKey");
+  }
+
+  @Benchmark
+  public int getIntFromGrandParent() {
+    return config.getInt("foo.bar.grandParentKey");
+  }
+
+  @Benchmark
+  public String getMissing() {
+    return config.get("foo.bar.missing", "default");
+  }
+
+  @Benchmark
+  public long getDurationMillis() {
+    return config.getDurationMillis("foo.bar.duration");
+  }
+
+  @Benchmark
+  public String getPrefixed() {
+    return prefixedConfig.get("ownKey");
+  }
+
+  @Benchmark
+  public boolean getBooleanPrefixedFromParent() {
+    return prefixedConfig.getBoolean("parentKey");
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.http.server;
+
+import com.seleritycorp.common.base.http.common.ContentType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Content-Type negotiation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTypeNegotiatorBenchmark {
+  private static final String BROWSER_ACCEPT =
+      "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8";
+
+  private ContentTypeNegotiator negotiator;
+
+  @Setup
+  public void setUp() {
+    negotiator = new ContentTypeNegotiator();
+  }
+
+  @Benchmark
+  public ContentType negotiateBrowser() {
+    return negotiator.negotiate(BROWSER_ACCEPT, ContentType.TEXT_PLAIN,
+        ContentType.APPLICATION_JSON, ContentType.TEXT_HTML);
+  }
+
+  @Benchmark
+  public ContentType negotiateJson() {
+    return negotiator.negotiate("application/json", ContentType.TEXT_PLAIN,
+        ContentType.APPLICATION_JSON, ContentType.TEXT_HTML);
+  }
+
+  @Benchmark
+  public ContentType negotiateFallback() {
+    return negotiator.negotiate(null, ContentType.TEXT_PLAIN,
+        ContentType.APPLICATION_JSON, ContentType.TEXT_HTML);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import org.apache.commons.logging.impl.Log4JLogger;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks logging through {@link CommonsLog} down to a Log4j appender.
+ *
+ * <p>The appender formats each event, but discards the result. So the benchmark covers the
+ * logging pipeline without any I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommonsLogBenchmark {
+  private CommonsLog log;
+  private CommonsLog prefixedLog;
+  private Logger logger;
+
+  @Setup
+  public void setUp() {
+    logger = Logger.getLogger(CommonsLogBenchmark.class);
+    logger.removeAllAppenders();
+    logger.setAdditivity(false);
+    logger.setLevel(org.apache.log4j.Level.INFO);
+    logger.addAppender(new DiscardingAppender());
+
+    Formatter formatter = new Formatter(new SlashStructuredEncoder());
+    log = new CommonsLog(new Log4JLogger(logger), formatter);
+    prefixedLog = new PrefixedLogger("foo", log, formatter);
+  }
+
+  @Benchmark
+  public void info() {
+    log.info("foo");
+  }
+
+  @Benchmark
+  public void debugDisabled() {
+    log.debug("foo");
+  }
+
+  @Benchmark
+  public void structuredInfo() {
+    log.structuredInfo("foo", 1, "bar", 4711, "baz", "quux");
+  }
+
+  @Benchmark
+  public void structuredInfoPrefixed() {
+    prefixedLog.structuredInfo("foo", 1, "bar", 4711, "baz", "quux");
+  }
+
+  /**
+   * Appender that formats events and discards the result.
+   */
+  private static class DiscardingAppender extends AppenderSkeleton {
+    private volatile int formattedLength;
+
+    DiscardingAppender() {
+      setLayout(new PatternLayout("%d %-5p [%t] %c - %m%n"));
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
+      formattedLength = getLayout().format(event).length();
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
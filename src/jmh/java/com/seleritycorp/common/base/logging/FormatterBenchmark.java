@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks formatting of structured lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+  private Formatter slashFormatter;
+  private Formatter jsonLinesFormatter;
+
+  @Setup
+  public void setUp() {
+    slashFormatter = new Formatter(new SlashStructuredEncoder());
+    jsonLinesFormatter = new Formatter(new JsonLinesStructuredEncoder());
+  }
+
+  @Benchmark
+  public String formatSlash() {
+    return slashFormatter.formatStructuredLine("http-server-incident", 2, "incidentId", 4711L,
+        "method", "GET", "uri", "/foo/bar?baz=quux", "status", 500);
+  }
+
+  @Benchmark
+  public String formatJsonLines() {
+    return jsonLinesFormatter.formatStructuredLine("http-server-incident", 2, "incidentId",
+        4711L, "method", "GET", "uri", "/foo/bar?baz=quux", "status", 500);
+  }
+}
@@ -16,65 +16,209 @@
 
 package com.seleritycorp.common.base.config;
 
+import com.seleritycorp.common.base.jmx.MBeanUtils;
+
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 
 /**
  * Provider for an application's main Config.
+ *
+ * <p>The layers of the Config (defaults, user supplied files, and enforced defaults) get
+ * flattened into a single {@link ConfigSnapshot}, so lookups do not walk the layers.
+ *
+ * <p>The flattened Config gets cached next to the config files, so restarts with unchanged
+ * config files skip parsing (see {@link ConfigCache}).
+ *
+ * <p>If the config key {@value #ENVIRONMENT_ENABLED_KEY} is true, environment variables get
+ * layered between the user supplied files and the enforced defaults. Keys get mapped to
+ * variables by their normalized form, prefixed by the value of
+ * {@value #ENVIRONMENT_PREFIX_KEY} (see {@link EnvironmentConfigBase}). So for example
+ * {@code CoreServices.url} gets overridden by {@code CORESERVICES_URL}. Only keys that are set
+ * in defaults or user supplied files can get overridden. The environment gets captured once.
+ *
+ * <p>On top of that, keys can get overridden at runtime through JMX (see
+ * {@link ConfigOverrides}). Only enforced defaults take precedence over such overrides.
+ *
+ * <p>If the config key {@value ConfigWatcher#ENABLED_KEY} is true, the config files get
+ * watched, and the Config gets reloaded upon changes (see {@link ConfigWatcher}). Values set
+ * at runtime through {@link SnapshotConfig#set(String, String)} survive such reloads. Closing
+ * the provided Config stops watching.
  */
 public class ApplicationConfigProvider implements Provider<Config> {
   private static final String JSON_NAME = "application.json";
   private static final String PROPERTIES_NAME = "application.properties";
 
+  /**
+   * Config key to turn layering environment variables over the config on.
+   */
+  static final String ENVIRONMENT_ENABLED_KEY = "config.environment.enabled";
+
+  /**
+   * Config key for the prefix of environment variables to layer over the config.
+   */
+  static final String ENVIRONMENT_PREFIX_KEY = "config.environment.prefix";
+
   private final Path applicationPath;
+  private final EnvironmentConfigBase environment;
+  private final ConfigOverrides overrides;
 
   @Inject
   ApplicationConfigProvider(@ApplicationPath Path applicationPath) {
+    this(applicationPath, new EnvironmentConfigBase());
+  }
+
+  ApplicationConfigProvider(Path applicationPath, EnvironmentConfigBase environment) {
     this.applicationPath = applicationPath;
+    this.environment = environment;
+    this.overrides = new ConfigOverrides(applicationPath,
+        new EnforcedDefaultConfig().getOwnValues().keySet());
+  }
+
+  /**
+   * Gets the runtime overrides of the application's Config.
+   *
+   * @return the runtime overrides.
+   */
+  ConfigOverrides getOverrides() {
+    return overrides;
   }
 
   @Override
   public Config get() {
-    // First, we create the temporary defaults, from defaults and enforced
-    // defaults. These will get used to bootstrap paths.
-    ConfigImpl defaultConfig = new DefaultConfig();
-    ConfigImpl enforcedConfig = new EnforcedDefaultConfig();
-    enforcedConfig.setParent(defaultConfig);
+    final SnapshotConfig ret = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(ret, loadBase(false));
+    MBeanUtils.register(ConfigOverrides.MBEAN_NAME, overrides);
+    // Reloads get published through the overrides, so they cannot race with edits.
+    ConfigWatcher.startIfEnabled(ret, new Supplier<ConfigSnapshot>() {
+      @Override
+      public ConfigSnapshot get() {
+        // Broken files fail the reload, so the watcher keeps the previous config.
+        return loadBase(true);
+      }
+    }, new Consumer<ConfigSnapshot>() {
+      @Override
+      public void accept(ConfigSnapshot base) {
+        overrides.publish(ret, base);
+      }
+    }, getSources(new EnforcedDefaultConfig()));
+    return ret;
+  }
 
-    String pathStr = enforcedConfig.get("paths.confAnsiblized");
-    Path confAnsiblizedPath = applicationPath.resolve(pathStr);
+  /**
+   * Gets the user supplied config files.
+   *
+   * @param enforcedConfig The config holding the config paths.
+   * @return the config files, from the lowest priority to the highest one.
+   */
+  private List<Path> getSources(Config enforcedConfig) {
+    Path confAnsiblizedPath = applicationPath.resolve(enforcedConfig.get("paths.confAnsiblized"));
+    Path confPath = applicationPath.resolve(enforcedConfig.get("paths.conf"));
 
-    // Now with the constructed paths, we load the user supplied configs.
     // First, from the ansiblized directory, then from the manual config
     // directory. In each direcotry, first the json file, then the
-    // property file. Using the overridable defaults as fallback.
-
-    ConfigImpl parent = defaultConfig;
-    ConfigImpl config = ConfigUtils.load(confAnsiblizedPath.resolve(JSON_NAME));
-    config.setParent(defaultConfig);
-
-    parent = config;
-    config = ConfigUtils.load(confAnsiblizedPath.resolve(PROPERTIES_NAME));
-    config.setParent(parent);
-
-    pathStr = enforcedConfig.get("paths.conf");
-    Path confPath = applicationPath.resolve(pathStr);
+    // property file.
+    return Arrays.asList(
+        confAnsiblizedPath.resolve(JSON_NAME),
+        confAnsiblizedPath.resolve(PROPERTIES_NAME),
+        confPath.resolve(JSON_NAME),
+        confPath.resolve(PROPERTIES_NAME));
+  }
 
-    parent = config;
-    config = ConfigUtils.load(confPath.resolve(JSON_NAME));
-    config.setParent(parent);
+  /**
+   * Gets the cache for the flattened config.
+   *
+   * <p>The cache lives in the first existing directory of the sources.
+   *
+   * @param sources The user supplied config files.
+   * @param defaultConfig The overridable defaults.
+   * @param enforcedConfig The enforced defaults.
+   * @return the cache, or null if caching is turned off, or no source directory exists.
+   */
+  private ConfigCache getCache(List<Path> sources, ConfigImpl defaultConfig,
+      ConfigImpl enforcedConfig) {
+    ConfigCache ret = null;
+    if (ConfigCache.isEnabled()) {
+      for (Path source : sources) {
+        Path dir = source.getParent();
+        if (ret == null && dir != null && Files.isDirectory(dir)) {
+          List<Map<String, String>> defaults = Arrays.asList(defaultConfig.getOwnValues(),
+              enforcedConfig.getOwnValues());
+          ret = new ConfigCache(dir.resolve(ConfigCache.FILE_NAME), sources, defaults);
+        }
+      }
+    }
+    return ret;
+  }
 
-    parent = config;
-    config = ConfigUtils.load(confPath.resolve(PROPERTIES_NAME));
-    config.setParent(parent);
+  /**
+   * Loads the layers of the application's Config and flattens them, along with the runtime
+   * overrides.
+   *
+   * @return the flattened Config.
+   */
+  ConfigSnapshot loadSnapshot() {
+    return overrides.apply(loadBase(false));
+  }
 
-    // Finally enforce the enforced defaults;
-    parent = config;
-    config = enforcedConfig;
-    config.setParent(parent);
+  /**
+   * Loads the layers of the application's Config and flattens them, without the runtime
+   * overrides.
+   *
+   * <p>If the sources did not change since the last load, the flattened Config gets read from
+   * the cache (see {@link ConfigCache}) instead of parsing the sources. Strict loads always parse
+   * the sources.
+   *
+   * @param strict If true, sources that exist but cannot get read or parsed fail the load.
+   *     Otherwise, they get logged and taken as empty.
+   * @return the flattened Config without runtime overrides.
+   * @throws IllegalStateException in strict mode, if a source cannot get read or parsed.
+   */
+  ConfigSnapshot loadBase(boolean strict) {
+    // First, we create the temporary defaults, from defaults and enforced
+    // defaults. These will get used to bootstrap paths.
+    ConfigImpl defaultConfig = new DefaultConfig();
+    ConfigImpl enforcedConfig = new EnforcedDefaultConfig();
+    enforcedConfig.setParent(defaultConfig);
 
-    return config;
+    List<Path> sources = getSources(enforcedConfig);
+    ConfigCache cache = getCache(sources, defaultConfig, enforcedConfig);
+    // Strict loads parse the sources, as the cache might hold a lenient load of broken sources.
+    ConfigSnapshot ret = (cache == null || strict) ? null : cache.read();
+
+    if (ret == null) {
+      // Now with the constructed paths, we load the user supplied configs.
+      // Using the overridable defaults as fallback. The files are
+      // independent of each other, so they get loaded in parallel.
+      ConfigImpl config = defaultConfig;
+      for (ConfigImpl layer : ConfigUtils.loadAll(sources, strict)) {
+        layer.setParent(config);
+        config = layer;
+      }
+
+      // Finally enforce the enforced defaults;
+      enforcedConfig.setParent(config);
+
+      ret = ConfigSnapshot.flatten(enforcedConfig);
+      if (cache != null) {
+        cache.write(ret);
+      }
+    }
+
+    // The environment is not part of the cache, as it may differ between starts.
+    Config config = new SnapshotConfig(ret);
+    if (config.getBoolean(ENVIRONMENT_ENABLED_KEY, false)) {
+      ret = environment.overlay(ret, config.get(ENVIRONMENT_PREFIX_KEY, ""),
+          enforcedConfig.getOwnValues().keySet());
+    }
+    return ret;
   }
 }
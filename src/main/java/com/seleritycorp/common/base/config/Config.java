@@ -232,4 +232,53 @@ public interface Config extends ConfigBase {
    * @return the duration converted to seconds
    */
   long getDurationSeconds(String key, long defaultDuration, TimeUnit defaultUnit);
+
+  /**
+   * Gets a live handle on a typed value.
+   *
+   * <p>The handle's value gets updated whenever the config changes, so hot code can read
+   * current values through {@link ConfigHandle#get()} without parsing. Configs that do not track
+   * changes return handles that keep the value they got created with.
+   *
+   * @param key key to get the handle for
+   * @param type The type of the value. Supported types are {@link String}, {@link Integer},
+   *     {@link Long}, {@link Float}, {@link Double}, {@link Boolean}, and enums.
+   * @param defaultValue value to use if there is no value at key, or if it cannot be parsed.
+   *     May be null for strings and enums only.
+   * @param <T> The type of the value.
+   * @return the handle for the value.
+   * @throws IllegalArgumentException if the type is not supported, or if the default value is
+   *     null for a type that requires a default value.
+   */
+  default <T> ConfigHandle<T> handle(String key, Class<T> type, T defaultValue) {
+    return new ConfigHandle<>(this, ConfigHandle.typedReader(key, type, defaultValue));
+  }
+
+  /**
+   * Gets a live handle on a duration as milliseconds.
+   *
+   * <p>The duration gets interpreted as for {@link #getDurationMillis(String, long)}. The
+   * handle follows changes as for {@link #handle(String, Class, Object)}.
+   *
+   * @param key key to get the handle for
+   * @param defaultDuration default value to use if there is no value at key.
+   * @return the handle for the duration converted to milliseconds
+   */
+  default ConfigHandle<Long> durationMillisHandle(String key, long defaultDuration) {
+    return new ConfigHandle<>(this, ConfigHandle.durationMillisReader(key, defaultDuration));
+  }
+
+  /**
+   * Gets a live handle on a duration as seconds.
+   *
+   * <p>The duration gets interpreted as for {@link #getDurationSeconds(String, long)}. The
+   * handle follows changes as for {@link #handle(String, Class, Object)}.
+   *
+   * @param key key to get the handle for
+   * @param defaultDuration default value to use if there is no value at key.
+   * @return the handle for the duration converted to seconds
+   */
+  default ConfigHandle<Long> durationSecondsHandle(String key, long defaultDuration) {
+    return new ConfigHandle<>(this, ConfigHandle.durationSecondsReader(key, defaultDuration));
+  }
 }
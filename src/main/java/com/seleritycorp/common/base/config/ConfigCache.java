@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.seleritycorp.common.base.logging.Log;
+import com.seleritycorp.common.base.logging.LogFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary cache of a flattened config, kept next to the config's sources.
+ *
+ * <p>The cache records the state of each source (its size, modification time, and a hash of its
+ * content), along with a fingerprint of the built-in defaults the config got merged with. The
+ * cache is only used if all of them still match, so changing, adding, or removing a source
+ * invalidates it. Reading the cache memory-maps it and copies the keys and values into a
+ * {@link ConfigSnapshot}, so no JSON or properties parsing happens.
+ *
+ * <p>The sources' state gets captured upon creating the cache object, before the sources get
+ * parsed. So if a source changes while getting parsed, the written cache records the older
+ * state, and does not match on the next start.
+ *
+ * <p>Failures to read or write the cache get logged, and never fail loading the config.
+ */
+final class ConfigCache {
+  private static final Log log = LogFactory.getLog(ConfigCache.class);
+
+  /**
+   * File name of the cache within the config directory.
+   */
+  static final String FILE_NAME = "application.cache";
+
+  /**
+   * System property to turn the cache off, by setting it to false.
+   */
+  static final String ENABLED_PROPERTY = "com.seleritycorp.common.base.config.cache.enabled";
+
+  private static final int MAGIC = 0x53434643; // "SCFC"
+  private static final int FORMAT_VERSION = 1;
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final int HASH_BLOCK_SIZE = 64 * 1024;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Path cacheFile;
+  private final long defaultsFingerprint;
+  private final List<SourceState> sourceStates;
+
+  /**
+   * Creates a cache and captures the current state of the sources.
+   *
+   * @param cacheFile The file holding the cache.
+   * @param sources The config's source files. Sources need not exist.
+   * @param defaults The layers of built-in defaults the sources get merged with.
+   */
+  ConfigCache(Path cacheFile, List<Path> sources, List<Map<String, String>> defaults) {
+    this.cacheFile = cacheFile;
+    this.defaultsFingerprint = fingerprint(defaults);
+    this.sourceStates = new ArrayList<>(sources.size());
+    for (Path source : sources) {
+      sourceStates.add(new SourceState(source));
+    }
+  }
+
+  /**
+   * Checks whether caching is turned on through system properties.
+   *
+   * @return true, if caching is turned on.
+   */
+  static boolean isEnabled() {
+    return !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+  }
+
+  /**
+   * Gets the cache file.
+   *
+   * @return the cache file.
+   */
+  Path getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * Reads the cached config.
+   *
+   * @return the cached config, or null if there is no cache, or if it does not match the
+   *     sources any longer.
+   */
+  ConfigSnapshot read() {
+    ConfigSnapshot ret = null;
+    if (Files.isRegularFile(cacheFile)) {
+      try {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ret = read(buffer);
+        if (ret == null) {
+          log.info("Config cache " + cacheFile + " is out of date");
+        }
+      } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+        log.info("Failed to read config cache " + cacheFile + ". Ignoring it", e);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the cached config from a buffer.
+   *
+   * @param buffer The buffer holding the cache.
+   * @return the cached config, or null if it does not match the sources any longer.
+   * @throws IOException if the cache is malformed.
+   */
+  private ConfigSnapshot read(ByteBuffer buffer) throws IOException {
+    ConfigSnapshot ret = null;
+    if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+      throw new IOException("Unsupported config cache format");
+    }
+    boolean upToDate = buffer.getLong() == defaultsFingerprint
+        && buffer.getInt() == sourceStates.size();
+    for (int i = 0; upToDate && i < sourceStates.size(); i++) {
+      upToDate = sourceStates.get(i).matches(buffer);
+    }
+    if (upToDate) {
+      int entryCount = buffer.getInt();
+      if (entryCount < 0) {
+        throw new IOException("Malformed config cache");
+      }
+      Map<String, String> entries = new HashMap<>(2 * entryCount);
+      for (int i = 0; i < entryCount; i++) {
+        String key = readString(buffer);
+        entries.put(key, readString(buffer));
+      }
+      ret = ConfigSnapshot.of(entries);
+    }
+    return ret;
+  }
+
+  /**
+   * Writes a config to the cache.
+   *
+   * <p>The cache gets written to a temporary file first, and then gets moved in place, so
+   * concurrent readers never see partial caches.
+   *
+   * @param snapshot The config to cache. It has to be the result of merging the sources in the
+   *     state captured upon creating this cache object.
+   */
+  void write(ConfigSnapshot snapshot) {
+    Path temporary = cacheFile.resolveSibling(cacheFile.getFileName() + TEMPORARY_SUFFIX);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          Files.newOutputStream(temporary)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(defaultsFingerprint);
+        out.writeInt(sourceStates.size());
+        for (SourceState sourceState : sourceStates) {
+          sourceState.write(out);
+        }
+        Map<String, String> entries = snapshot.toMap();
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+          writeString(out, entry.getKey());
+          writeString(out, entry.getValue());
+        }
+      }
+      try {
+        Files.move(temporary, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      log.info("Failed to write config cache " + cacheFile, e);
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException e2) {
+        log.info("Failed to clean up " + temporary, e2);
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    byte[] bytes = str.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) throws IOException {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IOException("Malformed config cache");
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Computes a fingerprint of config layers.
+   *
+   * @param layers The layers to compute the fingerprint for.
+   * @return the fingerprint.
+   */
+  private static long fingerprint(List<Map<String, String>> layers) {
+    long ret = FNV_OFFSET_BASIS;
+    for (Map<String, String> layer : layers) {
+      for (Map.Entry<String, String> entry : new TreeMap<>(layer).entrySet()) {
+        byte[] key = entry.getKey().getBytes(UTF_8);
+        byte[] value = entry.getValue().getBytes(UTF_8);
+        ret = hash(ret, key, key.length);
+        ret = hash(ret, value, value.length);
+      }
+      ret = hash(ret, new byte[] {'|'}, 1);
+    }
+    return ret;
+  }
+
+  /**
+   * Folds bytes into a hash using FNV-1a, followed by the number of folded bytes.
+   *
+   * @param hash The hash to fold into.
+   * @param bytes The bytes to fold.
+   * @param length The number of bytes to fold.
+   * @return The updated hash.
+   */
+  private static long hash(long hash, byte[] bytes, int length) {
+    long ret = hash;
+    for (int i = 0; i < length; i++) {
+      ret = (ret ^ (bytes[i] & 0xff)) * FNV_PRIME;
+    }
+    return (ret ^ length) * FNV_PRIME;
+  }
+
+  /**
+   * State of a source file.
+   */
+  private static final class SourceState {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final long contentHash;
+
+    /**
+     * Captures the state of a source file.
+     *
+     * <p>Sources that do not exist, or cannot be read, have a size of -1.
+     *
+     * @param source The source file to capture the state of.
+     */
+    SourceState(Path source) {
+      this.path = source.toAbsolutePath().normalize().toString();
+      long size = -1;
+      long lastModified = 0;
+      long contentHash = 0;
+      if (Files.isRegularFile(source)) {
+        try {
+          lastModified = Files.getLastModifiedTime(source).toMillis();
+          contentHash = hashContent(source);
+          size = Files.size(source);
+        } catch (IOException e) {
+          // Unreadable sources count as missing.
+          size = -1;
+        }
+      }
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentHash = contentHash;
+    }
+
+    /**
+     * Hashes a file's content.
+     *
+     * @param source The file to hash.
+     * @return the hash of the file's content.
+     * @throws IOException if reading the file fails.
+     */
+    private static long hashContent(Path source) throws IOException {
+      long ret = FNV_OFFSET_BASIS;
+      byte[] block = new byte[HASH_BLOCK_SIZE];
+      try (InputStream in = Files.newInputStream(source)) {
+        int read = in.read(block);
+        while (read >= 0) {
+          ret = hash(ret, block, read);
+          read = in.read(block);
+        }
+      }
+      return ret;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      writeString(out, path);
+      out.writeLong(size);
+      out.writeLong(lastModified);
+      out.writeLong(contentHash);
+    }
+
+    /**
+     * Checks whether the next recorded source state in a buffer matches this state.
+     *
+     * @param buffer The buffer to read the recorded state from. The state gets consumed.
+     * @return true, if the recorded state matches this state.
+     * @throws IOException if the recorded state is malformed.
+     */
+    boolean matches(ByteBuffer buffer) throws IOException {
+      boolean ret = path.equals(readString(buffer));
+      ret &= (buffer.getLong() == size);
+      ret &= (buffer.getLong() == lastModified);
+      ret &= (buffer.getLong() == contentHash);
+      return ret;
+    }
+  }
+}
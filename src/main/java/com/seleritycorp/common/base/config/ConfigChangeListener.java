@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import java.util.Set;
+
+/**
+ * Listener for changes of a {@link SnapshotConfig}.
+ */
+public interface ConfigChangeListener {
+  /**
+   * Gets called after the config changed.
+   *
+   * <p>By the time of the call, the config already resolves to the new values.
+   *
+   * @param changedKeys The keys that got added, removed, or changed their value. Never empty.
+   */
+  void onConfigChange(Set<String> changedKeys);
+}
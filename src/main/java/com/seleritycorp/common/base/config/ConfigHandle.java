@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+/**
+ * Live view on a single config value.
+ *
+ * <p>The value gets parsed upfront and whenever the underlying config changes, so {@link #get()}
+ * is a single volatile read. This allows hot code to follow config changes (e.g.: reloads
+ * through {@link ConfigWatcher}) at the cost of a field access.
+ *
+ * <p>Handles get created through {@link Config#handle(String, Class, Object)} and related
+ * methods. Create handles once (e.g.: in a constructor) and keep them in fields, instead of
+ * creating them upon each read.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <T> The type of the value.
+ */
+public final class ConfigHandle<T> {
+  /**
+   * Reads a handle's value from a config.
+   *
+   * @param <T> The type of the value.
+   */
+  interface Reader<T> {
+    /**
+     * Reads the value.
+     *
+     * @param config The config to read the value from.
+     * @return the read value.
+     */
+    T read(Config config);
+  }
+
+  private final Config config;
+  private final Reader<T> reader;
+  private volatile T value;
+
+  /**
+   * Creates a handle and reads its initial value.
+   *
+   * @param config The config to read the value from.
+   * @param reader Reads the value from the config.
+   */
+  ConfigHandle(Config config, Reader<T> reader) {
+    this.config = config;
+    this.reader = reader;
+    refresh();
+  }
+
+  /**
+   * Gets the current value.
+   *
+   * @return the current value.
+   */
+  public T get() {
+    return value;
+  }
+
+  /**
+   * Re-reads the value from the config.
+   *
+   * <p>Refreshing is synchronized, so concurrent refreshes cannot leave an older value behind.
+   */
+  synchronized void refresh() {
+    value = reader.read(config);
+  }
+
+  /**
+   * Creates a reader for a typed value.
+   *
+   * @param key The key to read.
+   * @param type The type to parse the value as. Supported types are {@link String},
+   *     {@link Integer}, {@link Long}, {@link Float}, {@link Double}, {@link Boolean}, and
+   *     enums.
+   * @param defaultValue The value to use if the key is not set, or cannot be parsed. May be null
+   *     for strings and enums only.
+   * @param <T> The type of the value.
+   * @return the reader for the value.
+   * @throws IllegalArgumentException if the type is not supported, or if the default value is
+   *     null for a type that requires a default value.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static <T> Reader<T> typedReader(final String key, final Class<T> type,
+      final T defaultValue) {
+    final Reader<?> ret;
+    if (type == String.class) {
+      ret = new Reader<String>() {
+        @Override
+        public String read(Config config) {
+          return config.get(key, (String) defaultValue);
+        }
+      };
+    } else if (type.isEnum()) {
+      ret = new Reader<Enum>() {
+        @Override
+        public Enum read(Config config) {
+          return config.getEnum((Class<Enum>) type, key, (Enum) defaultValue);
+        }
+      };
+    } else if (defaultValue == null) {
+      throw new IllegalArgumentException("Handles of type " + type.getName()
+          + " need a default value");
+    } else if (type == Integer.class) {
+      ret = new Reader<Integer>() {
+        @Override
+        public Integer read(Config config) {
+          return config.getInt(key, (Integer) defaultValue);
+        }
+      };
+    } else if (type == Long.class) {
+      ret = new Reader<Long>() {
+        @Override
+        public Long read(Config config) {
+          return config.getLong(key, (Long) defaultValue);
+        }
+      };
+    } else if (type == Float.class) {
+      ret = new Reader<Float>() {
+        @Override
+        public Float read(Config config) {
+          return config.getFloat(key, (Float) defaultValue);
+        }
+      };
+    } else if (type == Double.class) {
+      ret = new Reader<Double>() {
+        @Override
+        public Double read(Config config) {
+          return config.getDouble(key, (Double) defaultValue);
+        }
+      };
+    } else if (type == Boolean.class) {
+      ret = new Reader<Boolean>() {
+        @Override
+        public Boolean read(Config config) {
+          return config.getBoolean(key, (Boolean) defaultValue);
+        }
+      };
+    } else {
+      throw new IllegalArgumentException("Handles of type " + type.getName()
+          + " are not supported");
+    }
+    return (Reader<T>) ret;
+  }
+
+  /**
+   * Creates a reader for a duration in milliseconds.
+   *
+   * @param key The key to read. The unit is read from the key with "Unit" appended.
+   * @param defaultDuration The duration in milliseconds to use if the key is not set.
+   * @return the reader for the duration.
+   */
+  static Reader<Long> durationMillisReader(final String key, final long defaultDuration) {
+    return new Reader<Long>() {
+      @Override
+      public Long read(Config config) {
+        return config.getDurationMillis(key, defaultDuration);
+      }
+    };
+  }
+
+  /**
+   * Creates a reader for a duration in seconds.
+   *
+   * @param key The key to read. The unit is read from the key with "Unit" appended.
+   * @param defaultDuration The duration in seconds to use if the key is not set.
+   * @return the reader for the duration.
+   */
+  static Reader<Long> durationSecondsReader(final String key, final long defaultDuration) {
+    return new Reader<Long>() {
+      @Override
+      public Long read(Config config) {
+        return config.getDurationSeconds(key, defaultDuration);
+      }
+    };
+  }
+}
@@ -19,21 +19,63 @@ package com.seleritycorp.common.base.config;
 import com.seleritycorp.common.base.logging.Log;
 import com.seleritycorp.common.base.logging.LogFactory;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
 /**
  * Basic config implementation that allows setting of variables.
+ *
+ * <p>Typed getters memoize parsed values per key and type. Memoized values are only used while
+ * the key's raw value is still the one they got parsed from, so changes to this instance or to
+ * its parents never yield stale values. Repeated typed reads of an unchanged key do not
+ * allocate.
+ *
+ * <p>Handles (see {@link #handle(String, Class, Object)}) get refreshed whenever keys they read
+ * get set on this instance, or its parent gets replaced. Changes made directly on parents are not
+ * tracked.
  */
 public class ConfigImpl implements Config {
   private static final Log log = LogFactory.getLog(ConfigImpl.class);
 
+  /**
+   * Marker for raw values that typed getters resolve to the default value.
+   */
+  private static final Object USE_DEFAULT = new Object();
+
   ConcurrentMap<String, String> values;
   ConfigBase parent;
 
+  private final ConcurrentMap<String, TypedValue> intValues = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TypedValue> longValues = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TypedValue> floatValues = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TypedValue> doubleValues = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TypedValue> booleanValues = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TypedValue> enumValues = new ConcurrentHashMap<>();
+
+  /**
+   * Keys holding the units of duration keys, so durations do not concatenate keys upon reads.
+   */
+  private final ConcurrentMap<String, String> unitKeys = new ConcurrentHashMap<>();
+
+  /**
+   * Handles on this instance, keyed by what they read, so equal handles get shared.
+   */
+  private final ConcurrentMap<List<Object>, ConfigHandle<?>> handles = new ConcurrentHashMap<>();
+
+  /**
+   * Handles on this instance, keyed by the keys they read, so setting a key only refreshes
+   * affected handles.
+   */
+  private final ConcurrentMap<String, List<ConfigHandle<?>>> handlesByKey =
+      new ConcurrentHashMap<>();
+
   public ConfigImpl() {
     values = new ConcurrentHashMap<>();
     parent = null;
@@ -57,6 +99,15 @@ public class ConfigImpl implements Config {
     return ret;
   }
 
+  /**
+   * Gets the values set on this instance, without values of parents.
+   *
+   * @return the values set on this instance.
+   */
+  Map<String, String> getOwnValues() {
+    return values;
+  }
+
   /**
    * Sets the parent for this instance.
    *
@@ -67,6 +118,75 @@ public class ConfigImpl implements Config {
    */
   public void setParent(ConfigBase parent) {
     this.parent = parent;
+    refreshHandles();
+  }
+
+  /**
+   * Gets the memoized parsed value for a raw value.
+   *
+   * @param cache The cache of the requested type.
+   * @param key The key to get the parsed value for.
+   * @param raw The key's current raw value.
+   * @return the parsed value, or null if there is no parsed value for the current raw value.
+   */
+  private Object getTypedValue(ConcurrentMap<String, TypedValue> cache, String key, String raw) {
+    TypedValue cached = cache.get(key);
+    return (cached != null && cached.raw.equals(raw)) ? cached.value : null;
+  }
+
+  /**
+   * Memoizes a parsed value.
+   *
+   * @param cache The cache of the value's type.
+   * @param key The key to memoize the parsed value for.
+   * @param raw The raw value that got parsed.
+   * @param value The parsed value.
+   */
+  private void putTypedValue(ConcurrentMap<String, TypedValue> cache, String key, String raw,
+      Object value) {
+    cache.put(key, new TypedValue(raw, value));
+  }
+
+  /**
+   * Forgets the memoized parsed values of a key.
+   *
+   * @param key The key to forget the parsed values of.
+   */
+  void invalidateTypedValues(String key) {
+    intValues.remove(key);
+    longValues.remove(key);
+    floatValues.remove(key);
+    doubleValues.remove(key);
+    booleanValues.remove(key);
+    enumValues.remove(key);
+  }
+
+  /**
+   * Forgets all memoized parsed values.
+   */
+  void invalidateTypedValues() {
+    intValues.clear();
+    longValues.clear();
+    floatValues.clear();
+    doubleValues.clear();
+    booleanValues.clear();
+    enumValues.clear();
+  }
+
+  /**
+   * Parses a value that is not a proper integral number as double.
+   *
+   * @param value The value to parse.
+   * @return the parsed double, or NaN if the value does not parse to a double.
+   */
+  private double parseDoubleQuietly(String value) {
+    double ret = Double.NaN;
+    try {
+      ret = Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      // Not parsable. So we stick with NaN.
+    }
+    return ret;
   }
 
   @Override
@@ -79,21 +199,21 @@ public class ConfigImpl implements Config {
     String value = get(key);
     int ret = defaultValue;
     if (value != null) {
-      try {
-        ret = Integer.parseInt(value);
-      } catch (NumberFormatException e) {
-        // Not parsable as integer.
-        // We retry parsing as double and coercing to integer. That
-        // will help making parsing more robust.
+      Object parsed = getTypedValue(intValues, key, value);
+      if (parsed == null) {
         try {
-          double retDouble = getDouble(key, Double.NaN, false);
-          if (!Double.isNaN(retDouble)) {
-            ret = (int) retDouble;
-          }
-        } catch (NumberFormatException e2) {
-          log.error("Value at \"" + key + "\" is not null, but " + " does not parse to an integer",
-              e);
+          parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+          // Not parsable as integer.
+          // We retry parsing as double and coercing to integer. That
+          // will help making parsing more robust.
+          double retDouble = parseDoubleQuietly(value);
+          parsed = Double.isNaN(retDouble) ? USE_DEFAULT : (Object) (int) retDouble;
         }
+        putTypedValue(intValues, key, value, parsed);
+      }
+      if (parsed != USE_DEFAULT) {
+        ret = (Integer) parsed;
       }
     }
     return ret;
@@ -110,20 +230,21 @@ public class ConfigImpl implements Config {
     String value = get(key);
     long ret = defaultValue;
     if (value != null) {
-      try {
-        ret = Long.parseLong(value);
-      } catch (NumberFormatException e) {
-        // Not parsable as integer.
-        // We retry parsing as double and coercing to integer. That
-        // will help making parsing more robust.
+      Object parsed = getTypedValue(longValues, key, value);
+      if (parsed == null) {
         try {
-          double retDouble = getDouble(key, Double.NaN, false);
-          if (!Double.isNaN(retDouble)) {
-            ret = (long) retDouble;
-          }
-        } catch (NumberFormatException e2) {
-          log.error("Value at \"" + key + "\" is not null, but " + " does not parse to a long", e);
+          parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+          // Not parsable as integer.
+          // We retry parsing as double and coercing to integer. That
+          // will help making parsing more robust.
+          double retDouble = parseDoubleQuietly(value);
+          parsed = Double.isNaN(retDouble) ? USE_DEFAULT : (Object) (long) retDouble;
         }
+        putTypedValue(longValues, key, value, parsed);
+      }
+      if (parsed != USE_DEFAULT) {
+        ret = (Long) parsed;
       }
     }
     return ret;
@@ -139,10 +260,17 @@ public class ConfigImpl implements Config {
     String value = get(key);
     float ret = defaultValue;
     if (value != null) {
-      try {
-        ret = Float.parseFloat(value);
-      } catch (NumberFormatException e) {
-        log.error("Value at \"" + key + "\" is not null, but " + " does not parse to a float", e);
+      Object parsed = getTypedValue(floatValues, key, value);
+      if (parsed == null) {
+        try {
+          ret = Float.parseFloat(value);
+          putTypedValue(floatValues, key, value, ret);
+        } catch (NumberFormatException e) {
+          log.error("Value at \"" + key + "\" is not null, but " + " does not parse to a float",
+              e);
+        }
+      } else {
+        ret = (Float) parsed;
       }
     }
     return ret;
@@ -171,13 +299,19 @@ public class ConfigImpl implements Config {
     String value = get(key);
     double ret = defaultValue;
     if (value != null) {
-      try {
-        ret = Double.parseDouble(value);
-      } catch (NumberFormatException e) {
-        if (doLog) {
-          log.error("Value at \"" + key + "\" is not null, but " + " does not parse to a double",
-              e);
+      Object parsed = getTypedValue(doubleValues, key, value);
+      if (parsed == null) {
+        try {
+          ret = Double.parseDouble(value);
+          putTypedValue(doubleValues, key, value, ret);
+        } catch (NumberFormatException e) {
+          if (doLog) {
+            log.error("Value at \"" + key + "\" is not null, but " + " does not parse to a double",
+                e);
+          }
         }
+      } else {
+        ret = (Double) parsed;
       }
     }
     return ret;
@@ -193,12 +327,18 @@ public class ConfigImpl implements Config {
     String value = get(key);
     boolean ret = defaultValue;
     if (value != null) {
-      ret = ("true".compareToIgnoreCase(value.trim()) == 0);
-      if (!ret) {
-        double doubleValue = getDouble(key, Double.NaN, false);
-        if (!Double.isNaN(doubleValue)) {
-          ret = (doubleValue != 0);
+      Object parsed = getTypedValue(booleanValues, key, value);
+      if (parsed == null) {
+        ret = ("true".compareToIgnoreCase(value.trim()) == 0);
+        if (!ret) {
+          double doubleValue = parseDoubleQuietly(value);
+          if (!Double.isNaN(doubleValue)) {
+            ret = (doubleValue != 0);
+          }
         }
+        putTypedValue(booleanValues, key, value, ret);
+      } else {
+        ret = (Boolean) parsed;
       }
     }
     return ret;
@@ -216,16 +356,37 @@ public class ConfigImpl implements Config {
     if (value == null) {
       ret = defaultValue;
     } else {
-      try {
-        ret = Enum.valueOf(clazz, value);
-      } catch (IllegalArgumentException e) {
-        log.error("Value at \"" + key + "\" does not parse to a " + clazz + ".", e);
-        ret = defaultValue;
+      Object parsed = getTypedValue(enumValues, key, value);
+      if (clazz.isInstance(parsed)) {
+        ret = clazz.cast(parsed);
+      } else {
+        try {
+          ret = Enum.valueOf(clazz, value);
+          putTypedValue(enumValues, key, value, ret);
+        } catch (IllegalArgumentException e) {
+          log.error("Value at \"" + key + "\" does not parse to a " + clazz + ".", e);
+          ret = defaultValue;
+        }
       }
     }
     return ret;
   }
 
+  /**
+   * Gets the key holding the unit of a duration.
+   *
+   * @param key The key of the duration.
+   * @return the key holding the duration's unit.
+   */
+  private String getUnitKey(String key) {
+    String ret = unitKeys.get(key);
+    if (ret == null) {
+      ret = key + "Unit";
+      unitKeys.put(key, ret);
+    }
+    return ret;
+  }
+
   @Override
   public long getDurationMillis(String key) {
     return getDurationMillis(key, 0L);
@@ -240,7 +401,7 @@ public class ConfigImpl implements Config {
   public long getDurationMillis(String key, long defaultDuration, TimeUnit defaultUnit) {
     long ret = 0;
     long duration = getLong(key, defaultDuration);
-    TimeUnit unit = getEnum(TimeUnit.class, key + "Unit", defaultUnit);
+    TimeUnit unit = getEnum(TimeUnit.class, getUnitKey(key), defaultUnit);
     if (unit == null) {
       ret = 0;
     } else {
@@ -263,7 +424,7 @@ public class ConfigImpl implements Config {
   public long getDurationSeconds(String key, long defaultDuration, TimeUnit defaultUnit) {
     long ret = 0;
     long duration = getLong(key, defaultDuration);
-    TimeUnit unit = getEnum(TimeUnit.class, key + "Unit", defaultUnit);
+    TimeUnit unit = getEnum(TimeUnit.class, getUnitKey(key), defaultUnit);
     if (unit == null) {
       ret = 0;
     } else {
@@ -284,5 +445,107 @@ public class ConfigImpl implements Config {
     } else {
       values.put(key, value);
     }
+    invalidateTypedValues(key);
+    refreshHandles(key);
+  }
+
+  @Override
+  public <T> ConfigHandle<T> handle(String key, Class<T> type, T defaultValue) {
+    return registerHandle(Arrays.<Object>asList("typed", key, type, defaultValue),
+        ConfigHandle.typedReader(key, type, defaultValue), key);
+  }
+
+  @Override
+  public ConfigHandle<Long> durationMillisHandle(String key, long defaultDuration) {
+    return registerHandle(Arrays.<Object>asList("millis", key, defaultDuration),
+        ConfigHandle.durationMillisReader(key, defaultDuration), key, getUnitKey(key));
+  }
+
+  @Override
+  public ConfigHandle<Long> durationSecondsHandle(String key, long defaultDuration) {
+    return registerHandle(Arrays.<Object>asList("seconds", key, defaultDuration),
+        ConfigHandle.durationSecondsReader(key, defaultDuration), key, getUnitKey(key));
+  }
+
+  /**
+   * Gets the handle for a value, creating it if needed.
+   *
+   * @param spec Describes what the handle reads. Handles for equal specs get shared.
+   * @param reader Reads the handle's value.
+   * @param keys The keys the reader reads.
+   * @param <T> The type of the value.
+   * @return the handle.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> ConfigHandle<T> registerHandle(List<Object> spec, ConfigHandle.Reader<T> reader,
+      String... keys) {
+    ConfigHandle<T> ret = (ConfigHandle<T>) handles.get(spec);
+    if (ret == null) {
+      ConfigHandle<T> created = new ConfigHandle<>(this, reader);
+      ret = (ConfigHandle<T>) handles.putIfAbsent(spec, created);
+      if (ret == null) {
+        ret = created;
+        for (String key : keys) {
+          getHandlesForKey(key).add(ret);
+        }
+        // The config might have changed before the handle got registered.
+        ret.refresh();
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Re-reads the values of all handles on this instance.
+   */
+  void refreshHandles() {
+    for (ConfigHandle<?> handle : handles.values()) {
+      handle.refresh();
+    }
+  }
+
+  /**
+   * Re-reads the values of the handles on this instance that read a key.
+   *
+   * @param key The key whose handles to refresh.
+   */
+  void refreshHandles(String key) {
+    List<ConfigHandle<?>> keyHandles = handlesByKey.get(key);
+    if (keyHandles != null) {
+      for (ConfigHandle<?> handle : keyHandles) {
+        handle.refresh();
+      }
+    }
+  }
+
+  /**
+   * Gets the handles that read a key, creating the list if needed.
+   *
+   * @param key The key to get the handles for.
+   * @return the handles reading the key.
+   */
+  private List<ConfigHandle<?>> getHandlesForKey(String key) {
+    List<ConfigHandle<?>> ret = handlesByKey.get(key);
+    if (ret == null) {
+      List<ConfigHandle<?>> created = new CopyOnWriteArrayList<>();
+      ret = handlesByKey.putIfAbsent(key, created);
+      if (ret == null) {
+        ret = created;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * A parsed value along with the raw value it got parsed from.
+   */
+  private static final class TypedValue {
+    private final String raw;
+    private final Object value;
+
+    TypedValue(String raw, Object value) {
+      this.raw = raw;
+      this.value = value;
+    }
   }
 }
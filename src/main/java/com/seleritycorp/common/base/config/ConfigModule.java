@@ -40,6 +40,9 @@ public class ConfigModule extends AbstractModule {
    * {@link ConfigFile} path, before using any {@link ApplicationConfig}, otherwise the
    * configuration is read from the enforced default dirs.
    *
+   * <p>If config profiling is turned on, reads of the config are recorded (see
+   * {@link ProfilingConfig}).
+   *
    * @return a {@link Config} for the application
    */
   @Provides
@@ -52,10 +55,12 @@ public class ConfigModule extends AbstractModule {
     //when the user wants to pass the configuration file location on the command
     //line instead of using the enforced conf dirs), and at the same time is backward compatible,
     //and does not requires any change for existing installations.
+    Config config;
     if (injector.getExistingBinding(Key.get(Path.class, ConfigFile.class)) == null) {
-      return injector.getInstance(ApplicationConfigProvider.class).get();
+      config = injector.getInstance(ApplicationConfigProvider.class).get();
     } else {
-      return injector.getInstance(SingleFileConfig.class);
+      config = injector.getInstance(SingleFileConfig.class);
     }
+    return ProfilingConfig.wrapIfEnabled(config);
   }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.seleritycorp.common.base.logging.Log;
+import com.seleritycorp.common.base.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory overrides for the application's Config, editable at runtime through JMX.
+ *
+ * <p>Overrides take precedence over defaults, user supplied files, and the environment. Only
+ * enforced defaults cannot get overridden. Each edit builds a new flattened Config and
+ * publishes it through a single {@link SnapshotConfig#setSnapshot} call, so readers never see
+ * half-applied edits, and {@link ConfigHandle}s and change listeners get updated once per edit.
+ *
+ * <p>Reloaded Configs get published through {@link #publish(SnapshotConfig, ConfigSnapshot)}.
+ * Edits and reloads get layered and published while holding this instance's monitor, so an
+ * edit cannot get overwritten by a reload that got layered before it.
+ *
+ * <p>If the config key {@value #PERSIST_KEY} is true, overrides get stored in
+ * {@value #FILE_NAME} in the application's data state directory, and get re-applied upon the
+ * next start. Failures to read or write this file get logged, and never fail loading the
+ * config.
+ *
+ * <p>This class is thread-safe.
+ */
+public class ConfigOverrides implements ConfigOverridesMBean {
+  private static final Log log = LogFactory.getLog(ConfigOverrides.class);
+
+  /**
+   * Config key to turn persisting overrides on.
+   */
+  static final String PERSIST_KEY = "config.overrides.persist";
+
+  /**
+   * File name of the persisted overrides within the data state directory.
+   */
+  static final String FILE_NAME = "config-overrides.properties";
+
+  static final String MBEAN_NAME = "com.seleritycorp.common.base.config:type=ConfigOverrides";
+
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private final Path applicationPath;
+  private final Set<String> enforcedKeys;
+  private Map<String, String> overrides = Collections.emptyMap();
+  private boolean loaded = false;
+
+  /**
+   * The config that edits get published to. null, if nothing got published yet.
+   */
+  private SnapshotConfig target = null;
+
+  /**
+   * The flattened Config without overrides that got published last.
+   */
+  private ConfigSnapshot base = ConfigSnapshot.EMPTY;
+
+  /**
+   * Creates empty overrides.
+   *
+   * @param applicationPath The application's base path. Used to find the data state directory.
+   * @param enforcedKeys The keys that must not get overridden.
+   */
+  ConfigOverrides(Path applicationPath, Collection<String> enforcedKeys) {
+    this.applicationPath = applicationPath;
+    this.enforcedKeys = new HashSet<>(enforcedKeys);
+  }
+
+  /**
+   * Layers the overrides over a flattened Config.
+   *
+   * <p>Upon the first call, persisted overrides get loaded.
+   *
+   * @param base The flattened Config without overrides.
+   * @return the flattened Config with the overrides applied. If no override applies, base
+   *     itself.
+   */
+  synchronized ConfigSnapshot apply(ConfigSnapshot base) {
+    if (!loaded) {
+      loaded = true;
+      Path file = getFile(base);
+      if (file != null && Files.isRegularFile(file)) {
+        try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+          overrides = Collections.unmodifiableMap(parse(reader));
+          log.info("Applying " + overrides.size() + " persisted config overrides from " + file);
+        } catch (IOException e) {
+          log.warn("Failed to load config overrides from " + file + ". Ignoring them", e);
+        }
+      }
+    }
+    return layer(base);
+  }
+
+  /**
+   * Layers the overrides over a flattened Config and publishes the result.
+   *
+   * <p>Later edits get layered over the same flattened Config and get published to the same
+   * target, until the next call.
+   *
+   * @param target The config to publish to.
+   * @param base The flattened Config without overrides.
+   */
+  synchronized void publish(SnapshotConfig target, ConfigSnapshot base) {
+    ConfigSnapshot layered = apply(base);
+    this.target = target;
+    this.base = base;
+    target.setSnapshot(layered);
+  }
+
+  /**
+   * Layers the current overrides over a flattened Config.
+   *
+   * @param base The flattened Config without overrides.
+   * @return the flattened Config with the overrides applied.
+   */
+  private ConfigSnapshot layer(ConfigSnapshot base) {
+    ConfigSnapshot ret = base;
+    Map<String, String> entries = null;
+    for (Map.Entry<String, String> entry : overrides.entrySet()) {
+      String key = entry.getKey();
+      if (!enforcedKeys.contains(key) && !entry.getValue().equals(base.get(key))) {
+        if (entries == null) {
+          entries = base.toMap();
+        }
+        entries.put(key, entry.getValue());
+      }
+    }
+    if (entries != null) {
+      ret = ConfigSnapshot.of(entries);
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the file to persist overrides in.
+   *
+   * @param base The flattened Config without overrides.
+   * @return the file to persist overrides in, or null if persisting is turned off.
+   */
+  private Path getFile(ConfigSnapshot base) {
+    Path ret = null;
+    Config config = new SnapshotConfig(base);
+    if (config.getBoolean(PERSIST_KEY, false)) {
+      // ApplicationPaths is built upon the application config, so the data state path
+      // gets resolved the same way here.
+      ret = applicationPath.resolve(config.get("paths.data"))
+          .resolve(config.get("paths.dataState")).resolve(FILE_NAME);
+    }
+    return ret;
+  }
+
+  /**
+   * Parses overrides.
+   *
+   * @param reader The reader to parse the overrides from, in properties format.
+   * @return the parsed overrides.
+   * @throws IOException if reading fails.
+   */
+  private static Map<String, String> parse(Reader reader) throws IOException {
+    Map<String, String> ret = new HashMap<>();
+    Properties properties = new Properties();
+    properties.load(reader);
+    for (String key : properties.stringPropertyNames()) {
+      ret.put(key, properties.getProperty(key));
+    }
+    return ret;
+  }
+
+  /**
+   * Persists the current overrides, if persisting is turned on.
+   *
+   * <p>The overrides get written to a temporary file first, and then get moved in place, so
+   * readers never see partially written overrides.
+   */
+  private void persist() {
+    Path file = getFile(base);
+    if (file != null) {
+      Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+      try {
+        Files.createDirectories(file.getParent());
+        Properties properties = new Properties();
+        properties.putAll(overrides);
+        try (Writer writer = Files.newBufferedWriter(temporary, UTF_8)) {
+          properties.store(writer, "Runtime config overrides");
+        }
+        try {
+          Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } catch (IOException e) {
+        log.warn("Failed to persist config overrides to " + file, e);
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException e2) {
+          log.info("Failed to clean up " + temporary, e2);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the overrides, persists them, and publishes the resulting Config.
+   *
+   * @param overrides The new overrides.
+   */
+  private synchronized void edit(Map<String, String> overrides) {
+    this.overrides = Collections.unmodifiableMap(overrides);
+    persist();
+    if (target != null) {
+      target.setSnapshot(layer(base));
+    }
+  }
+
+  /**
+   * Checks that a key may get overridden.
+   *
+   * @param key The key to check.
+   * @throws IllegalArgumentException if the key is null, or an enforced default.
+   */
+  private void checkOverridable(String key) {
+    if (key == null) {
+      throw new IllegalArgumentException("Key must not be null");
+    }
+    if (enforcedKeys.contains(key)) {
+      throw new IllegalArgumentException("Key '" + key + "' is enforced and cannot get "
+          + "overridden");
+    }
+  }
+
+  @Override
+  public synchronized String[] getOverrides() {
+    Map<String, String> sorted = new TreeMap<>(overrides);
+    String[] ret = new String[sorted.size()];
+    int i = 0;
+    for (Map.Entry<String, String> entry : sorted.entrySet()) {
+      ret[i++] = entry.getKey() + "=" + entry.getValue();
+    }
+    return ret;
+  }
+
+  @Override
+  public synchronized void setOverride(String key, String value) {
+    checkOverridable(key);
+    if (value == null) {
+      throw new IllegalArgumentException("Value for key '" + key + "' must not be null");
+    }
+    Map<String, String> edited = new HashMap<>(overrides);
+    edited.put(key, value);
+    edit(edited);
+  }
+
+  @Override
+  public synchronized void setOverrides(String properties) {
+    Map<String, String> parsed;
+    try {
+      parsed = parse(new StringReader(properties));
+    } catch (IOException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Failed to parse overrides: " + e.getMessage(), e);
+    }
+    for (String key : parsed.keySet()) {
+      checkOverridable(key);
+    }
+    Map<String, String> edited = new HashMap<>(overrides);
+    edited.putAll(parsed);
+    edit(edited);
+  }
+
+  @Override
+  public synchronized void removeOverride(String key) {
+    Map<String, String> edited = new HashMap<>(overrides);
+    if (edited.remove(key) != null) {
+      edit(edited);
+    }
+  }
+
+  @Override
+  public synchronized void clearOverrides() {
+    if (!overrides.isEmpty()) {
+      edit(new HashMap<String, String>());
+    }
+  }
+}
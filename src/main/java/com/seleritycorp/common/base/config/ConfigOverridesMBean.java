@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+public interface ConfigOverridesMBean {
+  /**
+   * Gets the current overrides.
+   *
+   * @return the current overrides, formatted as "key=value", sorted by key.
+   */
+  public String[] getOverrides();
+
+  /**
+   * Overrides a single key.
+   *
+   * @param key The key to override.
+   * @param value The value to override the key with.
+   */
+  public void setOverride(String key, String value);
+
+  /**
+   * Overrides several keys at once.
+   *
+   * <p>All keys get applied in a single step, so readers either see all or none of them.
+   *
+   * @param properties The keys and values to override, in properties format.
+   */
+  public void setOverrides(String properties);
+
+  /**
+   * Removes the override of a key.
+   *
+   * @param key The key to no longer override.
+   */
+  public void removeOverride(String key);
+
+  /**
+   * Removes all overrides.
+   */
+  public void clearOverrides();
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, flat map from config keys to values.
+ *
+ * <p>Keys and values are stored in open-addressed arrays with linear probing, so a lookup is
+ * a single hash probe (plus a few neighbouring slots upon collisions), regardless of how many
+ * layers the snapshot got flattened from.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class ConfigSnapshot implements ConfigBase {
+  /**
+   * The snapshot without any keys.
+   */
+  public static final ConfigSnapshot EMPTY = new ConfigSnapshot(
+      Collections.<String, String>emptyMap());
+
+  private final String[] keys;
+  private final String[] values;
+  private final int mask;
+  private final int size;
+
+  /**
+   * Creates a snapshot.
+   *
+   * @param entries The keys and values to hold. Entries with null values are skipped.
+   */
+  private ConfigSnapshot(Map<String, String> entries) {
+    // Keep the load factor at or below 0.5 to keep probe sequences short.
+    int capacity = 2;
+    while (capacity < 2 * entries.size()) {
+      capacity <<= 1;
+    }
+    keys = new String[capacity];
+    values = new String[capacity];
+    mask = capacity - 1;
+    int count = 0;
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      String key = entry.getKey();
+      String value = entry.getValue();
+      if (key != null && value != null) {
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        count++;
+      }
+    }
+    size = count;
+  }
+
+  /**
+   * Creates a snapshot of keys and values.
+   *
+   * @param entries The keys and values to hold. Entries with null values are skipped.
+   * @return the created snapshot.
+   */
+  public static ConfigSnapshot of(Map<String, String> entries) {
+    return new ConfigSnapshot(entries);
+  }
+
+  /**
+   * Flattens a config and its parents into a snapshot.
+   *
+   * <p>Values of a config override the values of its parents, just like for lookups on the
+   * config itself.
+   *
+   * @param config The config to flatten.
+   * @return the snapshot holding the values the config would resolve to.
+   * @throws IllegalArgumentException if the config or one of its parents is neither a
+   *     {@link ConfigImpl}, nor a {@link ConfigSnapshot}, as their keys cannot be enumerated.
+   */
+  public static ConfigSnapshot flatten(ConfigBase config) {
+    List<Map<String, String>> layers = new ArrayList<>();
+    ConfigBase current = config;
+    while (current != null) {
+      if (current instanceof ConfigImpl) {
+        ConfigImpl configImpl = (ConfigImpl) current;
+        layers.add(configImpl.getOwnValues());
+        current = configImpl.parent;
+      } else if (current instanceof ConfigSnapshot) {
+        layers.add(((ConfigSnapshot) current).toMap());
+        current = null;
+      } else {
+        throw new IllegalArgumentException("Cannot flatten config of "
+            + current.getClass().getName());
+      }
+    }
+
+    // Apply layers from the outermost parent, so children override parents.
+    Map<String, String> entries = new HashMap<>();
+    for (int i = layers.size() - 1; i >= 0; i--) {
+      entries.putAll(layers.get(i));
+    }
+    return new ConfigSnapshot(entries);
+  }
+
+  /**
+   * Spreads higher bits of a hash code to lower ones.
+   *
+   * @param hash The hash code to spread.
+   * @return the spread hash code.
+   */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  @Override
+  public String get(String key) {
+    String ret = null;
+    int slot = spread(key.hashCode()) & mask;
+    String candidate = keys[slot];
+    while (candidate != null && ret == null) {
+      if (candidate.equals(key)) {
+        ret = values[slot];
+      } else {
+        slot = (slot + 1) & mask;
+        candidate = keys[slot];
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the number of keys.
+   *
+   * @return the number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the keys and values.
+   *
+   * @return a fresh, modifiable map of the keys and values.
+   */
+  public Map<String, String> toMap() {
+    Map<String, String> ret = new HashMap<>();
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != null) {
+        ret.put(keys[slot], values[slot]);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Creates a snapshot with a single key changed.
+   *
+   * <p>This copies all entries, so it is meant for rare updates only.
+   *
+   * @param key The key to change.
+   * @param value The value to set for the key. null removes the key.
+   * @return the snapshot with the key changed.
+   */
+  public ConfigSnapshot with(String key, String value) {
+    Map<String, String> entries = toMap();
+    if (value == null) {
+      entries.remove(key);
+    } else {
+      entries.put(key, value);
+    }
+    return new ConfigSnapshot(entries);
+  }
+
+  /**
+   * Computes the keys whose values differ from another snapshot.
+   *
+   * @param other The snapshot to compare to.
+   * @return the keys that are set in only one of the snapshots, or that are set to different
+   *     values.
+   */
+  public Set<String> changedKeys(ConfigSnapshot other) {
+    Set<String> ret = new HashSet<>();
+    for (int slot = 0; slot < keys.length; slot++) {
+      String key = keys[slot];
+      if (key != null && !values[slot].equals(other.get(key))) {
+        ret.add(key);
+      }
+    }
+    for (int slot = 0; slot < other.keys.length; slot++) {
+      String key = other.keys[slot];
+      if (key != null && get(key) == null) {
+        ret.add(key);
+      }
+    }
+    return ret;
+  }
+}
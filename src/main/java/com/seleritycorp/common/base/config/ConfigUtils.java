@@ -18,25 +18,32 @@ package com.seleritycorp.common.base.config;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonPrimitive;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 
 import com.seleritycorp.common.base.logging.Log;
 import com.seleritycorp.common.base.logging.LogFactory;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Utility methods for Configs.
@@ -44,6 +51,13 @@ import java.util.Properties;
 public class ConfigUtils {
   private static final Log log = LogFactory.getLog(ConfigUtils.class);
 
+  /**
+   * Maximum number of leading characters to look at when sniffing a file's format.
+   */
+  private static final int SNIFF_LIMIT = 8192;
+
+  private static final int BYTE_ORDER_MARK = 0xFEFF;
+
   /**
    * Add a value to a property key.
    * 
@@ -67,23 +81,6 @@ public class ConfigUtils {
     return ret;
   }
 
-  /**
-   * Loads a properties file into a Config instance.
-   * 
-   * @param path The file to load the content from
-   * @return The config instance.with key/values from the properties file.
-   * @throws IOException for IO errors
-   */
-  private static ConfigImpl loadProperties(Path path) throws IOException {
-    final ConfigImpl ret;
-    try (FileInputStream stream = new FileInputStream(path.toFile())) {
-      try (InputStreamReader reader = new InputStreamReader(stream, UTF_8)) {
-        ret = loadProperties(reader);
-      }
-    }
-    return ret;
-  }
-
   /**
    * Loads a properties file reader into a Config instance.
    * 
@@ -104,133 +101,160 @@ public class ConfigUtils {
   }
 
   /**
-   * Loads a JSON file reader into a Config instance.
-   * 
-   * @param reader The reader to load the content from
-   * @return The config instance with key/values from the reader.
-   * @throws FileNotFoundException if path cannot be opened for reading
+   * Checks whether a reader's content looks like JSON.
+   *
+   * <p>Only the first character after whitespace and byte order marks gets looked at. Objects
+   * and arrays count as JSON. Everything else counts as properties.
+   *
+   * @param reader The reader to check. It has to support marks. Its position is left unchanged.
+   * @return true, if the content looks like JSON. false otherwise.
    * @throws IOException for IO errors
    */
-  private static ConfigImpl loadJson(Path path) throws IOException {
-    final ConfigImpl ret;
-    try (FileInputStream stream = new FileInputStream(path.toFile())) {
-      try (InputStreamReader reader = new InputStreamReader(stream, UTF_8)) {
-        ret = loadJson(reader);
-      }
+  static boolean isJson(Reader reader) throws IOException {
+    reader.mark(SNIFF_LIMIT);
+    int read = 1;
+    int chr = reader.read();
+    while (read < SNIFF_LIMIT && (Character.isWhitespace(chr) || chr == BYTE_ORDER_MARK)) {
+      chr = reader.read();
+      read++;
     }
-    return ret;
+    reader.reset();
+    return chr == '{' || chr == '[';
   }
 
   /**
    * Loads a JSON file reader into a Config instance.
+   *
+   * <p>The JSON gets flattened while streaming through it, so no tree of the whole document
+   * gets built.
    * 
    * @param reader The reader to load the content from
    * @return The config instance with key/values from the reader.
-   * @throws JsonParseException if reader contains invalid Json.
+   * @throws IOException for IO errors, and if the reader contains invalid JSON.
    */
-  private static ConfigImpl loadJson(Reader reader) {
+  private static ConfigImpl loadJson(Reader reader) throws IOException {
     ConfigImpl ret = new ConfigImpl();
-    JsonParser parser = new JsonParser();
-    JsonElement element = parser.parse(reader);
-    loadJson(element, ret, "");
-    return ret;
-  }
-
-  /**
-   * Adds a JSON element to a Config.
-   * 
-   * @param element The element to add
-   * @param config The config instance to add the element to
-   * @param key The key in the config space
-   */
-  private static void loadJson(JsonElement element, ConfigImpl config, String key) {
-    if (element.isJsonObject()) {
-      loadJson(element.getAsJsonObject(), config, key);
-    } else if (element.isJsonArray()) {
-      loadJson(element.getAsJsonArray(), config, key);
-    } else if (element.isJsonPrimitive()) {
-      loadJson(element.getAsJsonPrimitive(), config, key);
-    } else if (element.isJsonNull()) {
-      // null does not need a dedicated representation, so we
-      // skip this case.
-    } else {
-      throw new UnsupportedOperationException("Unimplemented " + "JsonElement state");
-    }
-  }
-
-  /**
-   * Adds a JSON object to a Config.
-   * 
-   * @param object The object to add
-   * @param config The config instance to add the object to
-   * @param key The key in the config space
-   */
-  private static void loadJson(JsonObject object, ConfigImpl config, String key) {
-    for (Entry<String, JsonElement> entry : object.entrySet()) {
-      String newKey = addToKey(key, entry.getKey());
-      loadJson(entry.getValue(), config, newKey);
+    JsonReader jsonReader = new JsonReader(reader);
+    jsonReader.setLenient(true);
+    try {
+      loadJson(jsonReader, ret, "");
+      if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+        throw new MalformedJsonException("Expected end of document at "
+            + jsonReader.getPath());
+      }
+    } catch (IllegalStateException | NumberFormatException | EOFException e) {
+      // JsonReader signals unexpected tokens by IllegalStateException, and truncated documents
+      // (like half-saved files) by EOFException.
+      throw new MalformedJsonException(e);
     }
+    return ret;
   }
 
   /**
-   * Adds a JSON array to a Config.
+   * Adds the next JSON value of a reader to a Config.
    * 
-   * @param array The array to add
-   * @param config The config instance to add the array to
+   * <p>Objects and arrays get flattened into dot-separated keys. Array elements are keyed by
+   * their index. Numbers get normalized to their double representation. Nulls get skipped.
+   *
+   * @param reader The reader to read the value from
+   * @param config The config instance to add the value to
    * @param key The key in the config space
+   * @throws IOException for IO errors, and if the reader contains invalid JSON.
    */
-  private static void loadJson(JsonArray array, ConfigImpl config, String key) {
-    int index = 0;
-    for (JsonElement element : array) {
-      String newKey = addToKey(key, Integer.toString(index));
-      loadJson(element, config, newKey);
-      index++;
+  private static void loadJson(JsonReader reader, ConfigImpl config, String key)
+      throws IOException {
+    JsonToken token = reader.peek();
+    switch (token) {
+      case BEGIN_OBJECT:
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String newKey = addToKey(key, reader.nextName());
+          loadJson(reader, config, newKey);
+        }
+        reader.endObject();
+        break;
+      case BEGIN_ARRAY:
+        reader.beginArray();
+        int index = 0;
+        while (reader.hasNext()) {
+          String newKey = addToKey(key, Integer.toString(index));
+          loadJson(reader, config, newKey);
+          index++;
+        }
+        reader.endArray();
+        break;
+      case BOOLEAN:
+        config.set(key, reader.nextBoolean() ? "true" : "false");
+        break;
+      case NUMBER:
+        config.set(key, Double.toString(Double.parseDouble(reader.nextString())));
+        break;
+      case STRING:
+        config.set(key, reader.nextString());
+        break;
+      case NULL:
+        // null does not need a dedicated representation, so we
+        // skip this case.
+        reader.nextNull();
+        break;
+      default:
+        throw new MalformedJsonException("Unexpected " + token + " at " + reader.getPath());
     }
   }
 
   /**
-   * Adds a JSON primitive to a Config.
+   * Loads a properties file into a Config instance.
+   *
+   * <p>Files starting in '{' or '[' get loaded as JSON, all others as properties.
+   *
+   * <p>If the properties file does not exist, an empty config is silently assumed, and the fact
+   * gets logged. If a JSON file is malformed, an empty config is assumed as well, and the
+   * failure gets logged as error.
    * 
-   * @param primitive The primitive to add
-   * @param config The config instance to add the primitive to
-   * @param key The key in the config space
+   * @param source The properties file to load
+   * @return The config instance.with key/values from the properties file.
    */
-  private static void loadJson(JsonPrimitive primitive, ConfigImpl config, String key) {
-    String value = null;
-    if (primitive.isBoolean()) {
-      boolean bool = primitive.getAsBoolean();
-      value = bool ? "true" : "false";
-    } else if (primitive.isString()) {
-      value = primitive.getAsString();
-    } else if (primitive.isNumber()) {
-      value = Double.toString(primitive.getAsDouble());
-    }
-    config.set(key, value);
+  static ConfigImpl load(Path source) {
+    return load(source, false);
   }
 
   /**
-   * Loads a properties file into a Config instance.
+   * Loads a properties file into a Config instance, optionally failing on broken files.
+   *
+   * <p>This method matches {@link #load(Path)}, except that in strict mode, existing files that
+   * cannot get read or parsed fail the load instead of being taken as empty config. This allows
+   * reloads to keep the previous config, instead of dropping all keys of a half-saved file.
    *
-   * <p>If the properties file does not exist, an empty config is silently assumed, and the fact
-   * gets logged.
-   * 
    * @param source The properties file to load
+   * @param strict If true, failures to read or parse an existing file get thrown. Otherwise,
+   *     they get logged, and an empty config is assumed.
    * @return The config instance.with key/values from the properties file.
+   * @throws IllegalStateException in strict mode, if an existing file cannot get read or parsed.
    */
-  static ConfigImpl load(Path source) {
+  static ConfigImpl load(Path source, boolean strict) {
     log.info("Loading config from " + source);
 
     ConfigImpl ret = null;
 
     if (Files.exists(source)) {
-      try {
-        try {
-          ret = loadJson(source);
-        } catch (JsonParseException e) {
-          // It's invalid Json ... maybe it is a properties file instead?
-          ret = loadProperties(source);
+      try (FileInputStream stream = new FileInputStream(source.toFile())) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(stream, UTF_8))) {
+          if (isJson(reader)) {
+            ret = loadJson(reader);
+          } else {
+            ret = loadProperties(reader);
+          }
+        }
+      } catch (MalformedJsonException e) {
+        if (strict) {
+          throw new IllegalStateException("Config file " + source + " is not valid JSON", e);
         }
+        // A typo would otherwise silently drop all keys of the file.
+        log.error("Config file " + source + " is not valid JSON. Assuming empty config", e);
       } catch (IOException e) {
+        if (strict) {
+          throw new IllegalStateException("Failed to load config file " + source, e);
+        }
         log.info("Failed to load config file " + source + ". Assuming empty config", e);
       }
     } else {
@@ -244,6 +268,86 @@ public class ConfigUtils {
     return ret;
   }
 
+  /**
+   * Loads several config files in parallel.
+   *
+   * <p>Each file gets loaded as for {@link #load(Path)}, on a thread of its own, so large files
+   * do not hold up the others. If the calling thread gets interrupted while waiting, the
+   * remaining files get loaded on the calling thread, and the interrupt flag gets restored.
+   *
+   * @param sources The files to load.
+   * @return the loaded configs, in the order of the sources.
+   */
+  static List<ConfigImpl> loadAll(List<Path> sources) {
+    return loadAll(sources, false);
+  }
+
+  /**
+   * Loads several config files in parallel, optionally failing on broken files.
+   *
+   * <p>Each file gets loaded as for {@link #load(Path, boolean)}, otherwise this method matches
+   * {@link #loadAll(List)}.
+   *
+   * @param sources The files to load.
+   * @param strict If true, failures to read or parse an existing file get thrown.
+   * @return the loaded configs, in the order of the sources.
+   * @throws IllegalStateException in strict mode, if an existing file cannot get read or parsed.
+   */
+  static List<ConfigImpl> loadAll(List<Path> sources, final boolean strict) {
+    List<ConfigImpl> ret = new ArrayList<>(sources.size());
+    if (sources.size() <= 1) {
+      for (Path source : sources) {
+        ret.add(load(source, strict));
+      }
+    } else {
+      ThreadFactory threadFactory = new ThreadFactoryBuilder()
+          .setNameFormat("config-loader-%d")
+          .setDaemon(true)
+          .build();
+      ExecutorService executor = Executors.newFixedThreadPool(sources.size(), threadFactory);
+      try {
+        List<Future<ConfigImpl>> futures = new ArrayList<>(sources.size());
+        for (final Path source : sources) {
+          futures.add(executor.submit(new Callable<ConfigImpl>() {
+            @Override
+            public ConfigImpl call() {
+              return load(source, strict);
+            }
+          }));
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < sources.size(); i++) {
+          ConfigImpl config = null;
+          if (!interrupted) {
+            try {
+              config = futures.get(i).get();
+            } catch (InterruptedException e) {
+              interrupted = true;
+            } catch (ExecutionException e) {
+              Throwable cause = e.getCause();
+              if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+              } else if (cause instanceof Error) {
+                throw (Error) cause;
+              }
+              throw new IllegalStateException("Failed to load " + sources.get(i), cause);
+            }
+          }
+          if (config == null) {
+            config = load(sources.get(i), strict);
+          }
+          ret.add(config);
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    return ret;
+  }
+
   /**
    * Collects keys starting in a common prefix.
    * 
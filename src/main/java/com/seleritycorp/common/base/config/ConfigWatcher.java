@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.seleritycorp.common.base.logging.Log;
+import com.seleritycorp.common.base.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reloads a {@link SnapshotConfig} whenever its sources change on disk.
+ *
+ * <p>Watched paths may be directories (any change within the directory triggers a reload), or
+ * files (only changes of that very file trigger a reload). As {@link WatchService} watches
+ * directories only, files are watched through their parent directory, so files that get
+ * created later on are picked up as well. Paths whose directory does not exist when the watcher
+ * starts get skipped.
+ *
+ * <p>Changes get debounced: Once a change is seen, the watcher waits until no further change
+ * has been seen for the debounce interval, so editors writing files in several steps cause a
+ * single reload only. Reloading happens on the watcher's own daemon thread, and the new
+ * snapshot gets handed to a publisher. By default, it gets swapped in atomically through
+ * {@link SnapshotConfig#setSnapshot(ConfigSnapshot)}, which notifies the config's listeners
+ * about the changed keys. If reloading fails, the failure gets logged and the previous snapshot
+ * stays in place.
+ *
+ * <p>This class is thread-safe.
+ */
+public class ConfigWatcher implements Closeable {
+  private static final Log log = LogFactory.getLog(ConfigWatcher.class);
+
+  /**
+   * Config key to turn watching on.
+   */
+  static final String ENABLED_KEY = "config.watch.enabled";
+
+  /**
+   * Config key for the debounce interval in milliseconds.
+   */
+  static final String DEBOUNCE_KEY = "config.watch.debounceMillis";
+
+  private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+  /**
+   * Sequence number to tell watcher threads apart.
+   */
+  private static int watcherCount = 0;
+
+  private final Supplier<ConfigSnapshot> loader;
+  private final Consumer<ConfigSnapshot> publisher;
+  private final long debounceMillis;
+  private final WatchService watchService;
+
+  /**
+   * Maps watched directories to the names of the files to react to in them. A null set means
+   * that any change in the directory counts.
+   */
+  private final Map<Path, Set<Path>> watched = new HashMap<>();
+  private final Thread thread;
+  private volatile boolean closed = false;
+
+  /**
+   * Creates a watcher and starts watching.
+   *
+   * @param config The config to swap reloaded snapshots into.
+   * @param loader Loads a fresh snapshot from the watched paths.
+   * @param paths The directories and files to watch.
+   * @param debounceMillis The number of milliseconds without changes to wait for, before
+   *     reloading.
+   * @throws IOException if setting up the watches fails.
+   */
+  public ConfigWatcher(SnapshotConfig config, Supplier<ConfigSnapshot> loader,
+      Collection<Path> paths, long debounceMillis) throws IOException {
+    this(loader, createPublisher(config), paths, debounceMillis);
+  }
+
+  /**
+   * Creates a watcher that hands reloaded snapshots to a publisher, and starts watching.
+   *
+   * @param loader Loads a fresh snapshot from the watched paths.
+   * @param publisher Publishes reloaded snapshots.
+   * @param paths The directories and files to watch.
+   * @param debounceMillis The number of milliseconds without changes to wait for, before
+   *     reloading.
+   * @throws IOException if setting up the watches fails.
+   */
+  public ConfigWatcher(Supplier<ConfigSnapshot> loader, Consumer<ConfigSnapshot> publisher,
+      Collection<Path> paths, long debounceMillis) throws IOException {
+    this.loader = loader;
+    this.publisher = publisher;
+    this.debounceMillis = Math.max(0, debounceMillis);
+    this.watchService = FileSystems.getDefault().newWatchService();
+    try {
+      for (Path path : paths) {
+        watch(path.toAbsolutePath().normalize());
+      }
+    } catch (IOException e) {
+      watchService.close();
+      throw e;
+    }
+
+    int watcherNumber;
+    synchronized (ConfigWatcher.class) {
+      watcherNumber = ++watcherCount;
+    }
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        watchLoop();
+      }
+    }, "config-watcher-" + watcherNumber);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Creates a watcher, if the config asks for it.
+   *
+   * <p>Watching is turned on through the config key {@value #ENABLED_KEY}, and the debounce
+   * interval is taken from {@value #DEBOUNCE_KEY}. Failures to set up watching get logged, and
+   * leave the config without watcher. A started watcher gets attached to the config, so closing
+   * the config (see {@link SnapshotConfig#close()}) stops watching.
+   *
+   * @param config The config to swap reloaded snapshots into. Its current values decide whether
+   *     to watch.
+   * @param loader Loads a fresh snapshot from the watched paths.
+   * @param paths The directories and files to watch.
+   * @return the started watcher, or null if watching is turned off or failed to start.
+   */
+  static ConfigWatcher startIfEnabled(SnapshotConfig config, Supplier<ConfigSnapshot> loader,
+      Collection<Path> paths) {
+    return startIfEnabled(config, loader, createPublisher(config), paths);
+  }
+
+  /**
+   * Creates a watcher that hands reloaded snapshots to a publisher, if the config asks for it.
+   *
+   * <p>This matches {@link #startIfEnabled(SnapshotConfig, Supplier, Collection)}, except that
+   * reloaded snapshots get handed to the publisher instead of getting set on the config.
+   *
+   * @param config The config that gets reloaded. Its current values decide whether to watch.
+   * @param loader Loads a fresh snapshot from the watched paths.
+   * @param publisher Publishes reloaded snapshots to the config.
+   * @param paths The directories and files to watch.
+   * @return the started watcher, or null if watching is turned off or failed to start.
+   */
+  static ConfigWatcher startIfEnabled(SnapshotConfig config, Supplier<ConfigSnapshot> loader,
+      Consumer<ConfigSnapshot> publisher, Collection<Path> paths) {
+    ConfigWatcher ret = null;
+    if (config.getBoolean(ENABLED_KEY, false)) {
+      long debounceMillis = config.getLong(DEBOUNCE_KEY, DEFAULT_DEBOUNCE_MILLIS);
+      try {
+        ret = new ConfigWatcher(loader, publisher, paths, debounceMillis);
+        config.setWatcher(ret);
+      } catch (IOException e) {
+        log.error("Failed to watch config. Config changes require a restart", e);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Creates a publisher that sets reloaded snapshots on a config.
+   *
+   * @param config The config to set reloaded snapshots on.
+   * @return the publisher.
+   */
+  private static Consumer<ConfigSnapshot> createPublisher(final SnapshotConfig config) {
+    return new Consumer<ConfigSnapshot>() {
+      @Override
+      public void accept(ConfigSnapshot snapshot) {
+        config.setSnapshot(snapshot);
+      }
+    };
+  }
+
+  /**
+   * Registers the watch for a single path.
+   *
+   * @param path The absolute directory or file to watch.
+   * @throws IOException if registering the watch fails.
+   */
+  private void watch(Path path) throws IOException {
+    Path dir = null;
+    Path fileName = null;
+    if (Files.isDirectory(path)) {
+      dir = path;
+    } else if (path.getParent() != null && Files.isDirectory(path.getParent())) {
+      dir = path.getParent();
+      fileName = path.getFileName();
+    } else {
+      log.info("Not watching " + path + " for config changes, as it does not exist");
+    }
+
+    if (dir != null) {
+      if (!watched.containsKey(dir)) {
+        dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        watched.put(dir, (fileName == null) ? null : new HashSet<Path>());
+      }
+      Set<Path> fileNames = watched.get(dir);
+      if (fileName == null) {
+        watched.put(dir, null);
+      } else if (fileNames != null) {
+        fileNames.add(fileName);
+      }
+      log.info("Watching " + path + " for config changes");
+    }
+  }
+
+  /**
+   * Checks whether the events of a watch key are relevant for the config.
+   *
+   * @param key The key to check the events of. Its events get consumed.
+   * @return true, if at least one event affects a watched path.
+   */
+  private boolean isRelevant(WatchKey key) {
+    boolean ret = false;
+    Set<Path> fileNames = watched.get(key.watchable());
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (fileNames == null || event.kind() == OVERFLOW
+          || fileNames.contains(event.context())) {
+        ret = true;
+      }
+    }
+    key.reset();
+    return ret;
+  }
+
+  /**
+   * Waits for changes and reloads the config until the watcher gets closed.
+   */
+  private void watchLoop() {
+    try {
+      while (!closed) {
+        WatchKey key = watchService.take();
+        if (isRelevant(key)) {
+          // Debounce: Wait until things settled.
+          boolean settled = false;
+          while (!settled) {
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+            if (key == null) {
+              settled = true;
+            } else {
+              isRelevant(key);
+            }
+          }
+          reload();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // We're getting closed.
+    }
+  }
+
+  /**
+   * Reloads the config and publishes the new snapshot.
+   */
+  void reload() {
+    if (!closed) {
+      try {
+        ConfigSnapshot snapshot = loader.get();
+        publisher.accept(snapshot);
+        log.info("Reloaded config");
+      } catch (RuntimeException e) {
+        log.error("Failed to reload config. Keeping previous config", e);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    watchService.close();
+    thread.interrupt();
+  }
+}
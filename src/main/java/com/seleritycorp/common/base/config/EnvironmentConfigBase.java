@@ -16,12 +16,133 @@
 
 package com.seleritycorp.common.base.config;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * Exposes environment variables as ConfigBase.
+ *
+ * <p>The environment gets captured once upon creation into immutable snapshots, so lookups do
+ * not go to the OS' environment.
+ *
+ * <p>Besides lookups by the variables' exact names, config keys can be mapped to variables
+ * through their normalized form (see {@link #normalize(String)}). For example, the key
+ * {@code CoreServices.url} maps to the variable {@code CORESERVICES_URL}. This allows layering
+ * environment variables over configs (see {@link #overlay(ConfigSnapshot, String, Collection)}).
  */
 public class EnvironmentConfigBase implements ConfigBase {
+  private final ConfigSnapshot variables;
+  private final ConfigSnapshot normalizedVariables;
+
+  /**
+   * Creates a ConfigBase for the current process' environment.
+   */
+  public EnvironmentConfigBase() {
+    this(System.getenv());
+  }
+
+  /**
+   * Creates a ConfigBase for an environment.
+   *
+   * @param environment The environment variables to expose.
+   */
+  EnvironmentConfigBase(Map<String, String> environment) {
+    variables = ConfigSnapshot.of(environment);
+
+    // Variables whose names are normalized already win over variables that only normalize to
+    // the same name.
+    Map<String, String> normalized = new HashMap<>();
+    for (Map.Entry<String, String> entry : environment.entrySet()) {
+      String name = entry.getKey();
+      String normalizedName = normalize(name);
+      if (name.equals(normalizedName) || !environment.containsKey(normalizedName)) {
+        normalized.put(normalizedName, entry.getValue());
+      }
+    }
+    normalizedVariables = ConfigSnapshot.of(normalized);
+  }
+
   @Override
   public String get(String key) {
-    return System.getenv().get(key);
+    return variables.get(key);
+  }
+
+  /**
+   * Gets the captured environment variables.
+   *
+   * @return the environment variables, keyed by their exact names.
+   */
+  public ConfigSnapshot getSnapshot() {
+    return variables;
+  }
+
+  /**
+   * Gets the environment variable that a config key maps to.
+   *
+   * @param key The config key to get the variable for. E.g.: {@code CoreServices.url}
+   * @return the value of the variable with the normalized name of the key (e.g.:
+   *     {@code CORESERVICES_URL}), or null if there is no such variable.
+   */
+  public String getMapped(String key) {
+    return normalizedVariables.get(normalize(key));
+  }
+
+  /**
+   * Normalizes a config key or variable name.
+   *
+   * <p>Letters get upper-cased, and all characters other than ASCII letters and digits get
+   * replaced by underscores. So {@code CoreServices.url} normalizes to
+   * {@code CORESERVICES_URL}.
+   *
+   * @param name The key or name to normalize.
+   * @return the normalized name.
+   */
+  static String normalize(String name) {
+    char[] chars = name.toUpperCase(Locale.ROOT).toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      char chr = chars[i];
+      if (!((chr >= 'A' && chr <= 'Z') || (chr >= '0' && chr <= '9'))) {
+        chars[i] = '_';
+      }
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Overrides the keys of a config by the environment variables they map to.
+   *
+   * <p>Only keys that are set in the config get overridden, as variable names do not tell the
+   * casing of the keys they would map to. The variables get looked up by the prefix followed by
+   * the key's normalized form.
+   *
+   * @param config The config to override keys of.
+   * @param prefix The prefix of the relevant variables. E.g.: {@code MYAPP_}. May be empty.
+   * @param excludedKeys Keys that must not get overridden. E.g.: enforced defaults.
+   * @return the config with keys overridden, or the passed config if no key got overridden.
+   */
+  public ConfigSnapshot overlay(ConfigSnapshot config, String prefix,
+      Collection<String> excludedKeys) {
+    ConfigSnapshot ret = config;
+    if (normalizedVariables.size() > 0) {
+      String normalizedPrefix = normalize(prefix);
+      Map<String, String> entries = config.toMap();
+      boolean changed = false;
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        String key = entry.getKey();
+        if (!excludedKeys.contains(key)) {
+          String value = normalizedVariables.get(normalizedPrefix + normalize(key));
+          if (value != null && !value.equals(entry.getValue())) {
+            entry.setValue(value);
+            changed = true;
+          }
+        }
+      }
+      if (changed) {
+        ret = ConfigSnapshot.of(entries);
+      }
+    }
+    return ret;
   }
 }
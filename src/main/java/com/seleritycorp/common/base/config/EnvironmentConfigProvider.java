@@ -20,13 +20,13 @@ import javax.inject.Provider;
 
 /**
  * Provider for a Config instance that wraps the OS' environment variables.
+ *
+ * <p>The environment gets captured once into a {@link ConfigSnapshot}, so lookups neither go
+ * through parent chains, nor to the OS' environment.
  */
 public class EnvironmentConfigProvider implements Provider<Config> {
   @Override
   public Config get() {
-    ConfigBase base = new EnvironmentConfigBase();
-    ConfigImpl config = new ConfigImpl();
-    config.setParent(base);
-    return config;
+    return new SnapshotConfig(new EnvironmentConfigBase().getSnapshot());
   }
 }
@@ -16,14 +16,28 @@
 
 package com.seleritycorp.common.base.config;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * View on a Config at a given prefix.
+ *
+ * <p>Prefixed keys are computed once per key and re-used afterwards, so repeated reads do not
+ * build strings. Views on views collapse into a single view on the underlying Config.
  */
 public class PrefixedConfig implements Config {
+  /**
+   * Maximum number of prefixed keys to remember.
+   *
+   * <p>This guards against unbounded growth, if keys get computed on the fly. Further keys get
+   * prefixed upon each read.
+   */
+  private static final int MAX_PREFIXED_KEYS = 1024;
+
   private final String prefix;
   private final Config config;
+  private final ConcurrentMap<String, String> prefixedKeys = new ConcurrentHashMap<>();
 
   /**
    * Creates a view on the given config at the given prefix.
@@ -32,108 +46,151 @@ public class PrefixedConfig implements Config {
    * @param prefix The key prefix to get the view at
    */
   PrefixedConfig(Config config, String prefix) {
-    this.config = config;
-    this.prefix = prefix + ".";
+    if (config instanceof PrefixedConfig) {
+      PrefixedConfig prefixedConfig = (PrefixedConfig) config;
+      this.config = prefixedConfig.config;
+      this.prefix = prefixedConfig.prefix + prefix + ".";
+    } else {
+      this.config = config;
+      this.prefix = prefix + ".";
+    }
+  }
+
+  /**
+   * Prefixes a key.
+   *
+   * @param key The key to prefix. May be null.
+   * @return the key with the prefix prepended.
+   */
+  private String prefixed(String key) {
+    String ret;
+    if (key == null) {
+      // ConcurrentHashMap does not take null keys, so null skips the memo.
+      ret = prefix + key;
+    } else {
+      ret = prefixedKeys.get(key);
+      if (ret == null) {
+        ret = prefix + key;
+        if (prefixedKeys.size() < MAX_PREFIXED_KEYS) {
+          prefixedKeys.put(key, ret);
+        }
+      }
+    }
+    return ret;
   }
 
   @Override
   public String get(String key) {
-    return config.get(prefix + key);
+    return config.get(prefixed(key));
   }
 
   @Override
   public String get(String key, String defaultValue) {
-    return config.get(prefix + key, defaultValue);
+    return config.get(prefixed(key), defaultValue);
   }
 
   @Override
   public int getInt(String key) {
-    return config.getInt(prefix + key);
+    return config.getInt(prefixed(key));
   }
 
   @Override
   public int getInt(String key, int defaultValue) {
-    return config.getInt(prefix + key, defaultValue);
+    return config.getInt(prefixed(key), defaultValue);
   }
 
   @Override
   public long getLong(String key) {
-    return config.getLong(prefix + key);
+    return config.getLong(prefixed(key));
   }
 
   @Override
   public long getLong(String key, long defaultValue) {
-    return config.getLong(prefix + key, defaultValue);
+    return config.getLong(prefixed(key), defaultValue);
   }
 
   @Override
   public float getFloat(String key) {
-    return config.getFloat(prefix + key);
+    return config.getFloat(prefixed(key));
   }
 
   @Override
   public float getFloat(String key, float defaultValue) {
-    return config.getFloat(prefix + key, defaultValue);
+    return config.getFloat(prefixed(key), defaultValue);
   }
 
   @Override
   public double getDouble(String key) {
-    return config.getDouble(prefix + key);
+    return config.getDouble(prefixed(key));
   }
 
   @Override
   public double getDouble(String key, double defaultValue) {
-    return config.getDouble(prefix + key, defaultValue);
+    return config.getDouble(prefixed(key), defaultValue);
   }
 
   @Override
   public boolean getBoolean(String key) {
-    return config.getBoolean(prefix + key);
+    return config.getBoolean(prefixed(key));
   }
 
   @Override
   public boolean getBoolean(String key, boolean defaultValue) {
-    return config.getBoolean(prefix + key, defaultValue);
+    return config.getBoolean(prefixed(key), defaultValue);
   }
 
   @Override
   public <T extends Enum<T>> T getEnum(Class<T> clazz, String key) {
-    return config.getEnum(clazz, prefix + key);
+    return config.getEnum(clazz, prefixed(key));
   }
 
   @Override
   public <T extends Enum<T>> T getEnum(Class<T> clazz, String key, T defaultValue) {
-    return config.getEnum(clazz, prefix + key, defaultValue);
+    return config.getEnum(clazz, prefixed(key), defaultValue);
   }
 
   @Override
   public long getDurationMillis(String key) {
-    return config.getDurationMillis(prefix + key);
+    return config.getDurationMillis(prefixed(key));
   }
 
   @Override
   public long getDurationMillis(String key, long defaultDuration) {
-    return config.getDurationMillis(prefix + key, defaultDuration);
+    return config.getDurationMillis(prefixed(key), defaultDuration);
   }
 
   @Override
   public long getDurationMillis(String key, long defaultDuration, TimeUnit defaultUnit) {
-    return config.getDurationMillis(prefix + key, defaultDuration, defaultUnit);
+    return config.getDurationMillis(prefixed(key), defaultDuration, defaultUnit);
   }
 
   @Override
   public long getDurationSeconds(String key) {
-    return config.getDurationSeconds(prefix + key);
+    return config.getDurationSeconds(prefixed(key));
   }
 
   @Override
   public long getDurationSeconds(String key, long defaultDuration) {
-    return config.getDurationSeconds(prefix + key, defaultDuration);
+    return config.getDurationSeconds(prefixed(key), defaultDuration);
   }
 
   @Override
   public long getDurationSeconds(String key, long defaultDuration, TimeUnit defaultUnit) {
-    return config.getDurationSeconds(prefix + key, defaultDuration, defaultUnit);
+    return config.getDurationSeconds(prefixed(key), defaultDuration, defaultUnit);
   }
 
+  @Override
+  public <T> ConfigHandle<T> handle(String key, Class<T> type, T defaultValue) {
+    return config.handle(prefixed(key), type, defaultValue);
+  }
+
+  @Override
+  public ConfigHandle<Long> durationMillisHandle(String key, long defaultDuration) {
+    return config.durationMillisHandle(prefixed(key), defaultDuration);
+  }
+
+  @Override
+  public ConfigHandle<Long> durationSecondsHandle(String key, long defaultDuration) {
+    return config.durationSecondsHandle(prefixed(key), defaultDuration);
+  }
 }
@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import com.seleritycorp.common.base.jmx.MBeanUtils;
+import com.seleritycorp.common.base.logging.Log;
+import com.seleritycorp.common.base.logging.LogFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Config that records how its keys get read.
+ *
+ * <p>Reads get counted per key, and the first site reading a key gets remembered. Counters are
+ * striped, so concurrent readers of hot keys do not contend. This allows to find keys that are
+ * read in loops (and should rather get read once into a field or a {@link ConfigHandle}), keys
+ * that are read but not set, and keys that are set but never read.
+ *
+ * <p>Profiling is turned off by default, as it adds a map lookup to each read, and a stack walk
+ * to the first read of each key. It can be turned on through the system property
+ * {@value #ENABLED_PROPERTY}. The recorded data is exposed through JMX.
+ *
+ * <p>This class is thread-safe.
+ */
+public class ProfilingConfig implements Config, ProfilingConfigMBean {
+  private static final Log log = LogFactory.getLog(ProfilingConfig.class);
+
+  /**
+   * System property to turn profiling on, by setting it to true.
+   */
+  static final String ENABLED_PROPERTY = "com.seleritycorp.common.base.config.profiling.enabled";
+
+  private static final String MBEAN_NAME =
+      "com.seleritycorp.common.base.config:type=ProfilingConfig";
+
+  /**
+   * Number of keys to show in the list of hot keys.
+   */
+  private static final int HOT_KEY_LIMIT = 20;
+
+  /**
+   * Classes whose stack frames do not count as reading site.
+   */
+  private static final Set<String> SKIPPED_CLASSES = new HashSet<>(Arrays.asList(
+      ProfilingConfig.class.getName(), PrefixedConfig.class.getName(),
+      Config.class.getName()));
+
+  /**
+   * Recorded reads of a single key.
+   */
+  private static class KeyStats {
+    private final LongAdder reads = new LongAdder();
+    private final String site;
+
+    private KeyStats(String site) {
+      this.site = site;
+    }
+  }
+
+  private final Config config;
+  private final Supplier<ConfigSnapshot> presentKeys;
+  private final ConcurrentMap<String, KeyStats> stats = new ConcurrentHashMap<>();
+
+  /**
+   * Keys holding the units of duration keys, so recording durations does not concatenate keys.
+   */
+  private final ConcurrentMap<String, String> unitKeys = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a profiling view on a config.
+   *
+   * @param config The config to profile.
+   * @param presentKeys Supplies the keys that are set in the config.
+   */
+  ProfilingConfig(Config config, Supplier<ConfigSnapshot> presentKeys) {
+    this.config = config;
+    this.presentKeys = presentKeys;
+  }
+
+  /**
+   * Wraps a config in a profiling view, if profiling is turned on.
+   *
+   * <p>If profiling is turned on, the profiling view gets registered as MBean.
+   *
+   * @param config The config to wrap.
+   * @return the profiling view on the config, if profiling is turned on. Otherwise, the config
+   *     itself.
+   */
+  static Config wrapIfEnabled(final Config config) {
+    Config ret = config;
+    if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+      ProfilingConfig profilingConfig = new ProfilingConfig(config,
+          new Supplier<ConfigSnapshot>() {
+            @Override
+            public ConfigSnapshot get() {
+              ConfigSnapshot ret = ConfigSnapshot.EMPTY;
+              if (config instanceof SnapshotConfig) {
+                ret = ((SnapshotConfig) config).getSnapshot();
+              }
+              return ret;
+            }
+          });
+      MBeanUtils.register(MBEAN_NAME, profilingConfig);
+      ret = profilingConfig;
+    }
+    return ret;
+  }
+
+  /**
+   * Records a read of a key.
+   *
+   * @param key The key that got read.
+   */
+  private void record(String key) {
+    KeyStats keyStats = stats.get(key);
+    if (keyStats == null) {
+      KeyStats created = new KeyStats(findSite());
+      keyStats = stats.putIfAbsent(key, created);
+      if (keyStats == null) {
+        keyStats = created;
+      }
+    }
+    keyStats.reads.increment();
+  }
+
+  /**
+   * Records a read of a duration.
+   *
+   * <p>Durations read both the key and the key holding the unit, so both get recorded.
+   *
+   * @param key The key of the duration that got read.
+   */
+  private void recordDuration(String key) {
+    record(key);
+    String unitKey = unitKeys.get(key);
+    if (unitKey == null) {
+      unitKey = key + "Unit";
+      unitKeys.put(key, unitKey);
+    }
+    record(unitKey);
+  }
+
+  /**
+   * Finds the site that is reading from the config.
+   *
+   * @return the first stack frame outside of config views, or null if none could get found.
+   */
+  private String findSite() {
+    String ret = null;
+    StackTraceElement[] frames = new Throwable().getStackTrace();
+    for (int i = 0; ret == null && i < frames.length; i++) {
+      if (!SKIPPED_CLASSES.contains(frames[i].getClassName())) {
+        ret = frames[i].toString();
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the read counts of the recorded keys.
+   *
+   * @return the recorded keys along with their read counts, most frequently read first.
+   */
+  private List<Map.Entry<String, Long>> getSortedReadCounts() {
+    List<Map.Entry<String, Long>> ret = new ArrayList<>();
+    for (Map.Entry<String, KeyStats> entry : stats.entrySet()) {
+      ret.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(),
+          entry.getValue().reads.sum()));
+    }
+    Collections.sort(ret, new Comparator<Map.Entry<String, Long>>() {
+      @Override
+      public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+        int ret = Long.compare(o2.getValue(), o1.getValue());
+        if (ret == 0) {
+          ret = o1.getKey().compareTo(o2.getKey());
+        }
+        return ret;
+      }
+    });
+    return ret;
+  }
+
+  /**
+   * Gets the site that first read a key.
+   *
+   * @param key The key to get the site for.
+   * @return the site that first read the key, or null if the key has not been read.
+   */
+  String getSite(String key) {
+    KeyStats keyStats = stats.get(key);
+    return keyStats == null ? null : keyStats.site;
+  }
+
+  /**
+   * Gets the number of reads of a key.
+   *
+   * @param key The key to get the number of reads for.
+   * @return the number of reads of the key.
+   */
+  long getReadCount(String key) {
+    KeyStats keyStats = stats.get(key);
+    return keyStats == null ? 0 : keyStats.reads.sum();
+  }
+
+  @Override
+  public long getReadCount() {
+    long ret = 0;
+    for (KeyStats keyStats : stats.values()) {
+      ret += keyStats.reads.sum();
+    }
+    return ret;
+  }
+
+  @Override
+  public long getReadKeyCount() {
+    return stats.size();
+  }
+
+  @Override
+  public String[] getHotKeys() {
+    List<Map.Entry<String, Long>> readCounts = getSortedReadCounts();
+    int size = Math.min(readCounts.size(), HOT_KEY_LIMIT);
+    String[] ret = new String[size];
+    for (int i = 0; i < size; i++) {
+      ret[i] = readCounts.get(i).getKey() + "=" + readCounts.get(i).getValue();
+    }
+    return ret;
+  }
+
+  @Override
+  public String[] getAbsentKeys() {
+    Set<String> ret = new TreeSet<>();
+    for (String key : stats.keySet()) {
+      if (config.get(key) == null) {
+        ret.add(key);
+      }
+    }
+    return ret.toArray(new String[ret.size()]);
+  }
+
+  @Override
+  public String[] getUnusedKeys() {
+    Set<String> ret = new TreeSet<>(presentKeys.get().toMap().keySet());
+    ret.removeAll(stats.keySet());
+    return ret.toArray(new String[ret.size()]);
+  }
+
+  /**
+   * Renders the access report.
+   *
+   * @return the rendered access report.
+   */
+  String getReport() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Config access report: ").append(getReadCount()).append(" reads of ")
+        .append(getReadKeyCount()).append(" keys\n");
+    sb.append("Reads per key:\n");
+    for (Map.Entry<String, Long> entry : getSortedReadCounts()) {
+      sb.append("  ").append(entry.getValue()).append(' ').append(entry.getKey())
+          .append(" (first read at ").append(getSite(entry.getKey())).append(")\n");
+    }
+    sb.append("Absent keys (read, but not set):\n");
+    for (String key : getAbsentKeys()) {
+      sb.append("  ").append(key).append(" (first read at ").append(getSite(key))
+          .append(")\n");
+    }
+    sb.append("Unused keys (set, but never read):\n");
+    for (String key : getUnusedKeys()) {
+      sb.append("  ").append(key).append('\n');
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String dumpReport() {
+    String ret = getReport();
+    log.info(ret);
+    return ret;
+  }
+
+  @Override
+  public void reset() {
+    stats.clear();
+  }
+
+  @Override
+  public String get(String key) {
+    record(key);
+    return config.get(key);
+  }
+
+  @Override
+  public String get(String key, String defaultValue) {
+    record(key);
+    return config.get(key, defaultValue);
+  }
+
+  @Override
+  public int getInt(String key) {
+    record(key);
+    return config.getInt(key);
+  }
+
+  @Override
+  public int getInt(String key, int defaultValue) {
+    record(key);
+    return config.getInt(key, defaultValue);
+  }
+
+  @Override
+  public long getLong(String key) {
+    record(key);
+    return config.getLong(key);
+  }
+
+  @Override
+  public long getLong(String key, long defaultValue) {
+    record(key);
+    return config.getLong(key, defaultValue);
+  }
+
+  @Override
+  public float getFloat(String key) {
+    record(key);
+    return config.getFloat(key);
+  }
+
+  @Override
+  public float getFloat(String key, float defaultValue) {
+    record(key);
+    return config.getFloat(key, defaultValue);
+  }
+
+  @Override
+  public double getDouble(String key) {
+    record(key);
+    return config.getDouble(key);
+  }
+
+  @Override
+  public double getDouble(String key, double defaultValue) {
+    record(key);
+    return config.getDouble(key, defaultValue);
+  }
+
+  @Override
+  public boolean getBoolean(String key) {
+    record(key);
+    return config.getBoolean(key);
+  }
+
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue) {
+    record(key);
+    return config.getBoolean(key, defaultValue);
+  }
+
+  @Override
+  public <T extends Enum<T>> T getEnum(Class<T> clazz, String key) {
+    record(key);
+    return config.getEnum(clazz, key);
+  }
+
+  @Override
+  public <T extends Enum<T>> T getEnum(Class<T> clazz, String key, T defaultValue) {
+    record(key);
+    return config.getEnum(clazz, key, defaultValue);
+  }
+
+  @Override
+  public long getDurationMillis(String key) {
+    recordDuration(key);
+    return config.getDurationMillis(key);
+  }
+
+  @Override
+  public long getDurationMillis(String key, long defaultDuration) {
+    recordDuration(key);
+    return config.getDurationMillis(key, defaultDuration);
+  }
+
+  @Override
+  public long getDurationMillis(String key, long defaultDuration, TimeUnit defaultUnit) {
+    recordDuration(key);
+    return config.getDurationMillis(key, defaultDuration, defaultUnit);
+  }
+
+  @Override
+  public long getDurationSeconds(String key) {
+    recordDuration(key);
+    return config.getDurationSeconds(key);
+  }
+
+  @Override
+  public long getDurationSeconds(String key, long defaultDuration) {
+    recordDuration(key);
+    return config.getDurationSeconds(key, defaultDuration);
+  }
+
+  @Override
+  public long getDurationSeconds(String key, long defaultDuration, TimeUnit defaultUnit) {
+    recordDuration(key);
+    return config.getDurationSeconds(key, defaultDuration, defaultUnit);
+  }
+
+  // Reads through handles do not go through this config. So handles count as a single read
+  // upon creation.
+
+  @Override
+  public <T> ConfigHandle<T> handle(String key, Class<T> type, T defaultValue) {
+    record(key);
+    return config.handle(key, type, defaultValue);
+  }
+
+  @Override
+  public ConfigHandle<Long> durationMillisHandle(String key, long defaultDuration) {
+    recordDuration(key);
+    return config.durationMillisHandle(key, defaultDuration);
+  }
+
+  @Override
+  public ConfigHandle<Long> durationSecondsHandle(String key, long defaultDuration) {
+    recordDuration(key);
+    return config.durationSecondsHandle(key, defaultDuration);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+public interface ProfilingConfigMBean {
+  /**
+   * Gets the total number of reads of config keys.
+   *
+   * @return the total number of reads of config keys.
+   */
+  public long getReadCount();
+
+  /**
+   * Gets the number of distinct keys that got read.
+   *
+   * @return the number of distinct keys that got read.
+   */
+  public long getReadKeyCount();
+
+  /**
+   * Gets the most frequently read keys along with their read counts.
+   *
+   * @return the most frequently read keys, formatted as "key=count", most frequently read first.
+   */
+  public String[] getHotKeys();
+
+  /**
+   * Gets the keys that got read, but are not set.
+   *
+   * @return the keys that got read, but are not set.
+   */
+  public String[] getAbsentKeys();
+
+  /**
+   * Gets the keys that are set, but never got read.
+   *
+   * @return the keys that are set, but never got read.
+   */
+  public String[] getUnusedKeys();
+
+  /**
+   * Renders the access report and writes it to the log.
+   *
+   * @return the rendered access report.
+   */
+  public String dumpReport();
+
+  /**
+   * Forgets all recorded reads.
+   */
+  public void reset();
+}
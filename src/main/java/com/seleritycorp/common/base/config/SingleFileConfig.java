@@ -17,29 +17,72 @@
 package com.seleritycorp.common.base.config;
 
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.function.Supplier;
 import javax.inject.Inject;
 
 
 /**
  * Provider for an application's main Config.
+ *
+ * <p>The values of the config file get held in a {@link ConfigSnapshot}. Keys that are not in
+ * the config file get looked up in the application defaults.
+ *
+ * <p>If the config key {@value ConfigWatcher#ENABLED_KEY} is true, the config file gets
+ * watched, and its values get reloaded upon changes (see {@link ConfigWatcher}). Values set
+ * at runtime through {@link #set(String, String)} survive such reloads. Closing the config
+ * stops watching.
  */
-public class SingleFileConfig extends ConfigImpl {
+public class SingleFileConfig extends SnapshotConfig {
+  private final Config appDefaults;
 
   @Inject
-  SingleFileConfig(@ConfigFile Path configFile, @ApplicationDefaults Config appDefaults) {
-    ConfigImpl configProps = ConfigUtils.load(configFile);
+  SingleFileConfig(@ConfigFile final Path configFile, @ApplicationDefaults Config appDefaults) {
+    super(loadSnapshot(configFile, false));
+    this.appDefaults = appDefaults;
+
+    ConfigWatcher.startIfEnabled(this, new Supplier<ConfigSnapshot>() {
+      @Override
+      public ConfigSnapshot get() {
+        // A broken file fails the reload, so the watcher keeps the previous config.
+        return loadSnapshot(configFile, true);
+      }
+    }, Collections.singleton(configFile));
+  }
 
+  /**
+   * Loads the config file, along with the paths derived from it.
+   *
+   * @param configFile The config file to load.
+   * @param strict If true, an existing file that cannot get read or parsed fails the load.
+   *     Otherwise, it gets logged and taken as empty.
+   * @return the snapshot of the config file's values.
+   * @throws IllegalStateException in strict mode, if the file cannot get read or parsed.
+   */
+  static ConfigSnapshot loadSnapshot(Path configFile, boolean strict) {
+    ConfigImpl configProps = ConfigUtils.load(configFile, strict);
+
+    ConfigImpl config = new ConfigImpl();
     Path configDir = configFile.getParent();
 
     if (configDir != null) {
       Path absConfigDir = configDir.toAbsolutePath();
 
-      set("paths.conf", absConfigDir.toString());
-      set("paths.confAnsiblized", absConfigDir.toString());
+      config.set("paths.conf", absConfigDir.toString());
+      config.set("paths.confAnsiblized", absConfigDir.toString());
     }
 
-    configProps.setParent(appDefaults);
+    config.setParent(configProps);
+
+    return ConfigSnapshot.flatten(config);
+  }
 
-    setParent(configProps);
+  @Override
+  public String get(String key) {
+    String ret = super.get(key);
+    if (ret == null) {
+      ret = appDefaults.get(key);
+    }
+    return ret;
   }
 }
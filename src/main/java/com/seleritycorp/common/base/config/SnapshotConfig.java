@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import com.seleritycorp.common.base.logging.Log;
+import com.seleritycorp.common.base.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nullable;
+
+/**
+ * Config backed by a {@link ConfigSnapshot}.
+ *
+ * <p>Lookups go to the current snapshot, so they do not walk parent chains. The whole
+ * snapshot can get replaced atomically (see {@link #setSnapshot(ConfigSnapshot)}), so readers
+ * either see all values of the old snapshot, or all values of the new one.
+ *
+ * <p>Values set through {@link #set(String, String)} take precedence over the snapshot, and
+ * stay in place when the snapshot gets replaced later on (e.g.: when a {@link ConfigWatcher}
+ * reloads the config).
+ *
+ * <p>After the config changed, registered {@link ConfigChangeListener}s get notified with the
+ * keys that changed.
+ *
+ * <p>Like for {@link ConfigImpl}, a parent can get set through {@link #setParent(ConfigBase)}.
+ * Only keys missing in the snapshot get looked up on the parent. Changes of the parent's values
+ * do not notify listeners.
+ *
+ * <p>If the config gets watched for changes, closing it stops watching. The config's values stay
+ * available after closing.
+ */
+public class SnapshotConfig extends ConfigImpl implements Closeable {
+  private static final Log log = LogFactory.getLog(SnapshotConfig.class);
+
+  /**
+   * The current snapshot, with the values set through {@link #set(String, String)} applied.
+   * Only written while holding this instance's monitor.
+   */
+  private volatile ConfigSnapshot snapshot;
+
+  /**
+   * Values set through {@link #set(String, String)}. A null value marks a removed key. Guarded
+   * by this instance's monitor.
+   */
+  private final Map<String, String> setValues = new HashMap<>();
+
+  private final List<ConfigChangeListener> listeners = new CopyOnWriteArrayList<>();
+  private ConfigWatcher watcher = null;
+
+  /**
+   * Creates a config backed by a snapshot.
+   *
+   * @param snapshot The snapshot to back the config.
+   */
+  public SnapshotConfig(ConfigSnapshot snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Gets the current snapshot.
+   *
+   * @return the current snapshot, including values set through {@link #set(String, String)}.
+   */
+  public ConfigSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Replaces the current snapshot.
+   *
+   * <p>Values set through {@link #set(String, String)} get re-applied on top of the new
+   * snapshot. If keys changed, listeners get notified about them.
+   *
+   * @param snapshot The snapshot to use from now on.
+   */
+  public void setSnapshot(ConfigSnapshot snapshot) {
+    Set<String> changedKeys;
+    synchronized (this) {
+      ConfigSnapshot next = snapshot;
+      if (!setValues.isEmpty()) {
+        Map<String, String> entries = snapshot.toMap();
+        for (Map.Entry<String, String> entry : setValues.entrySet()) {
+          if (entry.getValue() == null) {
+            entries.remove(entry.getKey());
+          } else {
+            entries.put(entry.getKey(), entry.getValue());
+          }
+        }
+        next = ConfigSnapshot.of(entries);
+      }
+      changedKeys = publish(next);
+    }
+    notifyListeners(changedKeys);
+  }
+
+  /**
+   * Makes a snapshot the current one.
+   *
+   * <p>Must only be called while holding this instance's monitor.
+   *
+   * @param next The snapshot to make the current one.
+   * @return the keys that changed.
+   */
+  private Set<String> publish(ConfigSnapshot next) {
+    ConfigSnapshot previous = snapshot;
+    snapshot = next;
+    Set<String> ret = previous.changedKeys(next);
+    for (String key : ret) {
+      invalidateTypedValues(key);
+    }
+    return ret;
+  }
+
+  /**
+   * Registers a listener for config changes.
+   *
+   * @param listener The listener to notify after the config changed.
+   */
+  public void addChangeListener(ConfigChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Unregisters a listener for config changes.
+   *
+   * @param listener The listener to no longer notify.
+   */
+  public void removeChangeListener(ConfigChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Refreshes handles and notifies the listeners about changed keys.
+   *
+   * <p>Failing listeners get logged and do not keep other listeners from getting notified.
+   *
+   * @param changedKeys The changed keys. If empty, nothing gets refreshed or notified.
+   */
+  private void notifyListeners(Set<String> changedKeys) {
+    if (!changedKeys.isEmpty()) {
+      for (String key : changedKeys) {
+        refreshHandles(key);
+      }
+      Set<String> unmodifiableKeys = Collections.unmodifiableSet(changedKeys);
+      for (ConfigChangeListener listener : listeners) {
+        try {
+          listener.onConfigChange(unmodifiableKeys);
+        } catch (RuntimeException e) {
+          log.warn("Config change listener " + listener + " failed", e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String get(String key) {
+    String ret = snapshot.get(key);
+    if (ret == null && parent != null) {
+      ret = parent.get(key);
+    }
+    return ret;
+  }
+
+  /**
+   * Sets a key to a value.
+   *
+   * <p>This replaces the current snapshot by a copy holding the updated key. The value sticks
+   * when the snapshot gets replaced later on. If the value changed, listeners get notified.
+   *
+   * @param key The key to set the value for
+   * @param value The value to set for the given key. null removes the key.
+   */
+  @Override
+  public void set(String key, @Nullable String value) {
+    Set<String> changedKeys;
+    synchronized (this) {
+      setValues.put(key, value);
+      changedKeys = publish(snapshot.with(key, value));
+    }
+    notifyListeners(changedKeys);
+  }
+
+  @Override
+  Map<String, String> getOwnValues() {
+    return snapshot.toMap();
+  }
+
+  /**
+   * Sets the watcher that reloads this config.
+   *
+   * <p>A previously set watcher gets closed.
+   *
+   * @param watcher The watcher that reloads this config.
+   */
+  void setWatcher(ConfigWatcher watcher) {
+    ConfigWatcher previous;
+    synchronized (this) {
+      previous = this.watcher;
+      this.watcher = watcher;
+    }
+    closeWatcher(previous);
+  }
+
+  /**
+   * Closes a watcher and logs failures.
+   *
+   * @param watcher The watcher to close. May be null.
+   */
+  private void closeWatcher(ConfigWatcher watcher) {
+    if (watcher != null) {
+      try {
+        watcher.close();
+      } catch (IOException e) {
+        log.warn("Failed to close config watcher", e);
+      }
+    }
+  }
+
+  /**
+   * Stops watching for config changes, if the config is watched.
+   */
+  @Override
+  public void close() {
+    setWatcher(null);
+  }
+}
@@ -21,6 +21,7 @@ import com.google.gson.stream.JsonWriter;
 
 import com.seleritycorp.common.base.config.ApplicationConfig;
 import com.seleritycorp.common.base.config.Config;
+import com.seleritycorp.common.base.config.ConfigHandle;
 import com.seleritycorp.common.base.config.ConfigUtils;
 import com.seleritycorp.common.base.http.client.HttpException;
 import com.seleritycorp.common.base.time.Clock;
@@ -36,7 +37,7 @@ public class RawAuthenticatedCoreServiceClient {
   private final RawCoreServiceClient client;
   private final AuthenticationClient authenticationClient;
   private final Clock clock;
-  private final long tokenTimeoutPeriodSeconds;
+  private final ConfigHandle<Long> tokenTimeoutPeriodSeconds;
   private String token;
   private long tokenTimeoutTimestamp;
 
@@ -56,7 +57,7 @@ public class RawAuthenticatedCoreServiceClient {
     this.clock = clock;
 
     Config config = ConfigUtils.subconfig(appConfig, "CoreServices");
-    this.tokenTimeoutPeriodSeconds = config.getDurationSeconds("tokenTimeout", 180);
+    this.tokenTimeoutPeriodSeconds = config.durationSecondsHandle("tokenTimeout", 180);
 
     this.token = null;
     this.tokenTimeoutTimestamp = 0;
@@ -95,7 +96,7 @@ public class RawAuthenticatedCoreServiceClient {
       token = null;
 
       token = authenticationClient.getAuthThoken();
-      tokenTimeoutTimestamp = clock.getSecondsEpoch() + tokenTimeoutPeriodSeconds;
+      tokenTimeoutTimestamp = clock.getSecondsEpoch() + tokenTimeoutPeriodSeconds.get();
     }
 
     final JsonElement ret;
@@ -133,7 +134,7 @@ public class RawAuthenticatedCoreServiceClient {
       token = null;
 
       token = authenticationClient.getAuthThoken();
-      tokenTimeoutTimestamp = clock.getSecondsEpoch() + tokenTimeoutPeriodSeconds;
+      tokenTimeoutTimestamp = clock.getSecondsEpoch() + tokenTimeoutPeriodSeconds.get();
     }
 
     try {
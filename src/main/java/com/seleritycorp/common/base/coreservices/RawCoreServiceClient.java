@@ -111,14 +111,18 @@ public class RawCoreServiceClient {
 
     final int effectiveTimeoutMillis = (timeoutMillis > 0) ? timeoutMillis : this.timeoutMillis;
 
-    log.debug("Calling method " + method + " (user: " + user + ")");
+    if (log.isDebugEnabled()) {
+      log.debug("Calling method %s (user: %s)", method, user);
+    }
 
     JsonObject responseObj = requestFactory.createPostJson(apiUrl, request)
           .setReadTimeoutMillis(effectiveTimeoutMillis)
           .execute()
           .getBodyAsJsonObject();
 
-    log.debug("Method " + method + " done (user: " + user + ")");
+    if (log.isDebugEnabled()) {
+      log.debug("Method %s done (user: %s)", method, user);
+    }
 
     final JsonElement error = responseObj.get("error");
     if (error != null && !error.isJsonNull()) {
@@ -156,13 +160,17 @@ public class RawCoreServiceClient {
 
     final int effectiveTimeoutMillis = (timeoutMillis > 0) ? timeoutMillis : this.timeoutMillis;
 
-    log.debug("Calling method " + method + " (user: " + user + ")");
+    if (log.isDebugEnabled()) {
+      log.debug("Calling method %s (user: %s)", method, user);
+    }
 
     InputStream responseStream = requestFactory.createPostJson(apiUrl, request)
              .setReadTimeoutMillis(effectiveTimeoutMillis)
              .executeAndStream()
              .getBodyAsStream();
-    log.debug("Method " + method + " done (user: " + user + ")");
+    if (log.isDebugEnabled()) {
+      log.debug("Method %s done (user: %s)", method, user);
+    }
 
     if (responseStream == null) {
       log.info("Empty response while executing request to " + apiUrl);
@@ -67,13 +67,16 @@ public class RefDataClient {
     JsonArray params = new JsonArray();
     params.add(enumType);
 
-    log.debug("Getting identifiers for enum type " + enumType + " (timeout: "
-        + timeoutMillis + "ms)");
+    if (log.isDebugEnabled()) {
+      log.debug("Getting identifiers for enum type %s (timeout: %dms)", enumType, timeoutMillis);
+    }
 
     JsonElement ret = client.authenticatedCall("RefDataHandler.getIdentifiersForEnumType", params,
         timeoutMillis);
 
-    log.debug("Getting identifiers for enum type " + enumType + " done");
+    if (log.isDebugEnabled()) {
+      log.debug("Getting identifiers for enum type %s done", enumType);
+    }
     
     return ret;
   }
@@ -91,12 +94,15 @@ public class RefDataClient {
     JsonArray params = new JsonArray();
     params.add(enumType);
 
-    log.debug("Getting identifiers for enum type " + enumType + " (timeout: "
-            + timeoutMillis + "ms)");
+    if (log.isDebugEnabled()) {
+      log.debug("Getting identifiers for enum type %s (timeout: %dms)", enumType, timeoutMillis);
+    }
 
     client.authenticatedCall("RefDataHandler.getIdentifiersForEnumType", params,
             timeoutMillis, writer);
 
-    log.debug("Getting identifiers for enum type " + enumType + " done");
+    if (log.isDebugEnabled()) {
+      log.debug("Getting identifiers for enum type %s done", enumType);
+    }
   }
 }
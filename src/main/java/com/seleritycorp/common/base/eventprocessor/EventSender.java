@@ -36,7 +36,7 @@ import javax.inject.Inject;
  * Helper to send Events to Event Processor.
  */
 public class EventSender {
-  private static final Log log = LogFactory.getLog(EventSender.class);
+  private static final Log log = LogFactory.getRateLimitedLog(EventSender.class);
 
   private final UuidGenerator uuidGenerator;
   private final String targetUrl;
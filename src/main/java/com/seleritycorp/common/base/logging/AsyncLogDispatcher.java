@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.seleritycorp.common.base.jmx.MBeanUtils;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log events to Log4j appenders on a dedicated daemon thread.
+ *
+ * <p>Logging threads capture the event (level, message, throwable, thread, timestamp, caller
+ * location) and publish it into a bounded lock-free ring buffer. A single daemon thread drains
+ * the buffer and feeds the events to the logger's appenders. That way, logging threads do not
+ * block on appender I/O.
+ *
+ * <p>Asynchronous logging is opt-in. It is turned on by setting the system property
+ * {@value #ENABLED_PROPERTY} to {@code true}. The buffer size, the overflow policy, and whether
+ * or not to capture caller locations can be tuned through the system properties
+ * {@value #CAPACITY_PROPERTY}, {@value #OVERFLOW_POLICY_PROPERTY}, and
+ * {@value #LOCATION_INFO_PROPERTY}.
+ *
+ * <p>Buffered events get flushed upon JVM shutdown.
+ *
+ * <p>This class is thread-safe.
+ */
+public class AsyncLogDispatcher implements AsyncLogDispatcherMBean {
+  static final String ENABLED_PROPERTY = "com.seleritycorp.common.base.logging.async.enabled";
+  static final String CAPACITY_PROPERTY = "com.seleritycorp.common.base.logging.async.capacity";
+  static final String OVERFLOW_POLICY_PROPERTY =
+      "com.seleritycorp.common.base.logging.async.overflowPolicy";
+  static final String LOCATION_INFO_PROPERTY =
+      "com.seleritycorp.common.base.logging.async.locationInfo";
+
+  private static final int DEFAULT_CAPACITY = 8192;
+  private static final String MBEAN_NAME =
+      "com.seleritycorp.common.base.logging:type=AsyncLogDispatcher";
+
+  /**
+   * Upper bound for how long the dispatcher thread sleeps, if there are no events.
+   */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /**
+   * How long a blocked logging thread waits before re-trying to publish an event.
+   */
+  private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /**
+   * How long to wait for the dispatcher thread to finish upon shutdown.
+   */
+  private static final long SHUTDOWN_JOIN_MILLIS = 5000;
+
+  private final AsyncLogRingBuffer<LoggingEvent> buffer;
+  private final AsyncOverflowPolicy overflowPolicy;
+  private final boolean locationInfo;
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong dispatchedCount = new AtomicLong();
+  private final Thread thread;
+  private volatile boolean running;
+  private volatile boolean shutDown;
+  private volatile boolean parked;
+
+  /**
+   * Creates a dispatcher.
+   *
+   * <p>The dispatcher thread is not started by the constructor. Use {@link #start()} for that.
+   * Until then, events get buffered but not appended.
+   *
+   * @param capacity The minimum number of events to buffer.
+   * @param overflowPolicy What to do with events if the buffer is full.
+   * @param locationInfo If true, the caller location is captured on the logging thread.
+   */
+  AsyncLogDispatcher(int capacity, AsyncOverflowPolicy overflowPolicy, boolean locationInfo) {
+    this.buffer = new AsyncLogRingBuffer<>(capacity);
+    this.overflowPolicy = overflowPolicy;
+    this.locationInfo = locationInfo;
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        dispatchLoop();
+      }
+    }, "async-log-dispatcher");
+    this.thread.setDaemon(true);
+    this.running = false;
+    this.shutDown = false;
+    this.parked = false;
+  }
+
+  /**
+   * Creates and starts a dispatcher configured through system properties.
+   *
+   * @return The started dispatcher, if asynchronous logging is enabled. null otherwise.
+   */
+  static AsyncLogDispatcher createIfEnabled() {
+    AsyncLogDispatcher ret = null;
+    if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+      int capacity = Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+      AsyncOverflowPolicy policy = AsyncOverflowPolicy.BLOCK;
+      String policyStr = System.getProperty(OVERFLOW_POLICY_PROPERTY);
+      if (policyStr != null) {
+        try {
+          policy = AsyncOverflowPolicy.valueOf(policyStr.trim());
+        } catch (IllegalArgumentException e) {
+          LogLog.warn("Unknown asynchronous log overflow policy '" + policyStr
+              + "'. Falling back to " + policy);
+        }
+      }
+      String locationInfoStr = System.getProperty(LOCATION_INFO_PROPERTY, "true");
+      boolean locationInfo = Boolean.parseBoolean(locationInfoStr.trim());
+
+      ret = new AsyncLogDispatcher(capacity, policy, locationInfo);
+      ret.start();
+      MBeanUtils.register(MBEAN_NAME, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Starts the dispatcher thread and registers the shutdown flush.
+   */
+  synchronized void start() {
+    if (!running && !shutDown) {
+      running = true;
+      thread.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          shutdown();
+        }
+      }, "async-log-dispatcher-shutdown"));
+    }
+  }
+
+  /**
+   * Stops the dispatcher thread and appends all still buffered events.
+   */
+  void shutdown() {
+    shutDown = true;
+    running = false;
+    LockSupport.unpark(thread);
+    if (thread.isAlive() && Thread.currentThread() != thread) {
+      try {
+        thread.join(SHUTDOWN_JOIN_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Appends all currently buffered events on the calling thread.
+   */
+  void flush() {
+    LoggingEvent event;
+    while ((event = buffer.poll()) != null) {
+      append(event);
+    }
+  }
+
+  /**
+   * Captures a log event and queues it for appending.
+   *
+   * <p>Events below the logger's effective level are discarded right away without allocating
+   * anything.
+   *
+   * @param logger The logger to log the event for.
+   * @param fqcn The fully qualified class name of the logging wrapper. This is used to determine
+   *     the caller location.
+   * @param level The level to log at.
+   * @param message The message to log.
+   * @param throwable The throwable to log. May be null.
+   */
+  void dispatch(Logger logger, String fqcn, org.apache.log4j.Level level, Object message,
+      Throwable throwable) {
+    if (logger.isEnabledFor(level)) {
+      LoggingEvent event = new LoggingEvent(fqcn, logger, level, message, throwable);
+
+      // The following fields are lazily initialized by Log4j from the current thread. So we
+      // have to pin them down while still on the logging thread.
+      event.getThreadName();
+      event.getNDC();
+      event.getMDCCopy();
+      if (locationInfo) {
+        event.getLocationInformation();
+      }
+
+      enqueue(event);
+    }
+  }
+
+  /**
+   * Publishes a captured event to the buffer, obeying the overflow policy.
+   *
+   * @param event The event to publish.
+   */
+  private void enqueue(LoggingEvent event) {
+    if (shutDown || Thread.currentThread() == thread) {
+      // Either we're shut down, or an appender logs itself. In both cases, waiting for the
+      // dispatcher thread would not help, so we append directly.
+      append(event);
+    } else if (buffer.offer(event)) {
+      signalDispatcher();
+    } else {
+      handleOverflow(event);
+    }
+  }
+
+  /**
+   * Publishes an event to a full buffer, obeying the overflow policy.
+   *
+   * @param event The event to publish.
+   */
+  private void handleOverflow(LoggingEvent event) {
+    if (overflowPolicy == AsyncOverflowPolicy.DROP_OLDEST) {
+      while (!buffer.offer(event)) {
+        if (buffer.poll() != null) {
+          droppedCount.incrementAndGet();
+        }
+      }
+      signalDispatcher();
+    } else if (overflowPolicy == AsyncOverflowPolicy.DROP_BELOW_WARN
+        && !event.getLevel().isGreaterOrEqual(org.apache.log4j.Level.WARN)) {
+      droppedCount.incrementAndGet();
+    } else {
+      boolean published = false;
+      while (!published && !shutDown) {
+        signalDispatcher();
+        LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        published = buffer.offer(event);
+      }
+      if (published) {
+        signalDispatcher();
+      } else {
+        append(event);
+      }
+    }
+  }
+
+  /**
+   * Wakes the dispatcher thread, if it is sleeping.
+   */
+  private void signalDispatcher() {
+    if (parked) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Main loop of the dispatcher thread.
+   */
+  private void dispatchLoop() {
+    while (running) {
+      LoggingEvent event = buffer.poll();
+      if (event != null) {
+        append(event);
+      } else {
+        parked = true;
+        // Re-checking after announcing that we park, so we cannot miss a concurrent publish.
+        if (running && buffer.size() == 0) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        parked = false;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Hands an event to the appenders of its logger.
+   *
+   * @param event The event to append.
+   */
+  private void append(LoggingEvent event) {
+    try {
+      event.getLogger().callAppenders(event);
+      dispatchedCount.incrementAndGet();
+    } catch (RuntimeException e) {
+      LogLog.error("Failed to append asynchronous log event", e);
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return buffer.size();
+  }
+
+  @Override
+  public int getCapacity() {
+    return buffer.getCapacity();
+  }
+
+  @Override
+  public String getOverflowPolicy() {
+    return overflowPolicy.name();
+  }
+
+  @Override
+  public long getDispatchedCount() {
+    return dispatchedCount.get();
+  }
+
+  @Override
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+}
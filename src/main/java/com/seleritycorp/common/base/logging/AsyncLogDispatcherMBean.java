@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+public interface AsyncLogDispatcherMBean {
+  /**
+   * Gets the approximate number of events waiting to get appended.
+   *
+   * @return the approximate number of events waiting to get appended.
+   */
+  public int getQueueDepth();
+
+  /**
+   * Gets the number of events the buffer can hold.
+   *
+   * @return the number of events the buffer can hold.
+   */
+  public int getCapacity();
+
+  /**
+   * Gets the name of the policy used when the buffer is full.
+   *
+   * @return the name of the policy used when the buffer is full.
+   */
+  public String getOverflowPolicy();
+
+  /**
+   * Gets the number of events that have been handed to the appenders.
+   *
+   * @return the number of events that have been handed to the appenders.
+   */
+  public long getDispatchedCount();
+
+  /**
+   * Gets the number of events dropped due to a full buffer.
+   *
+   * @return the number of events dropped due to a full buffer.
+   */
+  public long getDroppedCount();
+}
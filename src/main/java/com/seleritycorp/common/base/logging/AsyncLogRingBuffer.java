@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer multi-consumer ring buffer.
+ *
+ * <p>Each slot carries a sequence number that tells producers and consumers whether the slot is
+ * ready for them. Claiming a slot is a single CAS on the respective cursor, so neither offering
+ * nor polling ever takes a lock.
+ *
+ * <p>Multiple consumers are supported, so producers may poll to evict the oldest element if the
+ * buffer is full.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <E> Type of the buffered elements.
+ */
+class AsyncLogRingBuffer<E> {
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * Creates a ring buffer.
+   *
+   * @param requestedCapacity The minimum number of elements the buffer can hold. The effective
+   *     capacity is rounded up to the next power of two.
+   */
+  AsyncLogRingBuffer(int requestedCapacity) {
+    if (requestedCapacity < 1) {
+      throw new IllegalArgumentException("Capacity has to be positive, but is "
+          + requestedCapacity);
+    }
+    int cap = Integer.highestOneBit(requestedCapacity);
+    if (cap < requestedCapacity) {
+      cap <<= 1;
+    }
+    this.capacity = cap;
+    this.mask = cap - 1;
+    this.elements = new AtomicReferenceArray<>(cap);
+    this.sequences = new AtomicLongArray(cap);
+    for (int i = 0; i < cap; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element to the buffer, if there is room for it.
+   *
+   * @param element The element to add. Must not be null.
+   * @return true, if the element got added. false, if the buffer is full.
+   */
+  boolean offer(E element) {
+    long pos = tail.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long seq = sequences.get(index);
+      long diff = seq - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          elements.lazySet(index, element);
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        // The slot still holds an element from the previous lap, so we're full.
+        return false;
+      } else {
+        pos = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest element from the buffer.
+   *
+   * @return The oldest element, or null if the buffer is empty.
+   */
+  E poll() {
+    long pos = head.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long seq = sequences.get(index);
+      long diff = seq - (pos + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          E element = elements.get(index);
+          elements.lazySet(index, null);
+          sequences.set(index, pos + capacity);
+          return element;
+        }
+        pos = head.get();
+      } else if (diff < 0) {
+        return null;
+      } else {
+        pos = head.get();
+      }
+    }
+  }
+
+  /**
+   * Gets the approximate number of buffered elements.
+   *
+   * @return the approximate number of buffered elements.
+   */
+  int size() {
+    long size = tail.get() - head.get();
+    if (size < 0) {
+      size = 0;
+    } else if (size > capacity) {
+      size = capacity;
+    }
+    return (int) size;
+  }
+
+  /**
+   * Gets the number of elements the buffer can hold.
+   *
+   * @return the number of elements the buffer can hold.
+   */
+  int getCapacity() {
+    return capacity;
+  }
+}
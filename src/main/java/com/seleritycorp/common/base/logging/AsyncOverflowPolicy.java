@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+/**
+ * Policies for handling log events, if the asynchronous logging buffer is full.
+ */
+public enum AsyncOverflowPolicy {
+  /**
+   * Block the logging thread until there is room in the buffer again.
+   */
+  BLOCK,
+
+  /**
+   * Drop events below WARN, and block the logging thread for WARN, ERROR, and FATAL events.
+   */
+  DROP_BELOW_WARN,
+
+  /**
+   * Evict the oldest buffered event to make room for the new event.
+   */
+  DROP_OLDEST;
+}
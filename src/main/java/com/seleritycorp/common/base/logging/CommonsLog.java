@@ -19,6 +19,11 @@ package com.seleritycorp.common.base.logging;
 import org.apache.commons.logging.impl.Log4JLogger;
 import org.apache.log4j.Logger;
 
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
 /**
  * Wrapper for Apache Common Loggging logs to become Selerity Log.
  */
@@ -47,14 +52,66 @@ public class CommonsLog implements Log {
    * The Formatter for log entries.
    */
   private final Formatter formatter;
+
+  /**
+   * Dispatcher for asynchronous logging to Log4j.
+   *
+   * <p>If null, events are handed to Log4j synchronously.
+   */
+  private final AsyncLogDispatcher asyncDispatcher;
+
+  /**
+   * Recorder for suppressed DEBUG and TRACE events.
+   *
+   * <p>If null, suppressed events are dropped.
+   */
+  private final DebugFlightRecorder flightRecorder;
+
+  /**
+   * Metrics to record logged events to.
+   *
+   * <p>If null, no metrics are recorded.
+   */
+  private final LoggingMetrics metrics;
+
+  /**
+   * The counter for this log's logger name prefix in {@link #metrics}.
+   *
+   * <p>null, if this log does not record metrics itself. This is the case if {@link #metrics}
+   * is null, or if events get handed to a wrapped CommonsLog, which records them instead.
+   */
+  private final LongAdder metricsLoggerCounter;
   
   /**
    * Wraps a Commons Logging log to becomen a Selerity Log
+   *
+   * <p>If the wrapped log is a CommonsLog, its asynchronous dispatcher, flight recorder, and
+   * metrics (if any) get used for this log as well.
    * 
    * @param wrappedLog The Commons Logging Log instance to wrap.
    * @param formatter Instance of Formating helper 
    */
   CommonsLog(org.apache.commons.logging.Log wrappedLog, Formatter formatter) {
+    this(wrappedLog, formatter,
+        (wrappedLog instanceof CommonsLog) ? ((CommonsLog) wrappedLog).asyncDispatcher : null,
+        (wrappedLog instanceof CommonsLog) ? ((CommonsLog) wrappedLog).flightRecorder : null,
+        (wrappedLog instanceof CommonsLog) ? ((CommonsLog) wrappedLog).metrics : null);
+  }
+
+  /**
+   * Wraps a Commons Logging log to becomen a Selerity Log
+   * 
+   * @param wrappedLog The Commons Logging Log instance to wrap.
+   * @param formatter Instance of Formating helper 
+   * @param asyncDispatcher The dispatcher to hand Log4j events to. If null, events get
+   *     logged synchronously.
+   * @param flightRecorder The recorder for suppressed DEBUG and TRACE events. If null,
+   *     suppressed events get dropped.
+   * @param metrics The metrics to record logged events to. If null, no metrics get recorded.
+   */
+  CommonsLog(org.apache.commons.logging.Log wrappedLog, Formatter formatter,
+      AsyncLogDispatcher asyncDispatcher, DebugFlightRecorder flightRecorder,
+      LoggingMetrics metrics) {
     this.wrappedLog = wrappedLog;
     this.formatter = formatter;
     if (wrappedLog instanceof Log4JLogger) {
@@ -64,6 +121,56 @@ public class CommonsLog implements Log {
     } else {
       this.wrappedLog4j = null;
     }
+    this.asyncDispatcher = (this.wrappedLog4j == null) ? null : asyncDispatcher;
+    this.flightRecorder = flightRecorder;
+    this.metrics = metrics;
+    if (metrics != null && (wrappedLog4j != null || !(wrappedLog instanceof CommonsLog))) {
+      String loggerName = (wrappedLog4j == null) ? null : wrappedLog4j.getName();
+      this.metricsLoggerCounter = metrics.getLoggerCounter(loggerName);
+    } else {
+      this.metricsLoggerCounter = null;
+    }
+  }
+
+  /**
+   * Hands a message to the wrapped Log4j logger.
+   *
+   * <p>This method must only be called if {@link #wrappedLog4j} is not null.
+   *
+   * @param level The level to log at.
+   * @param message The message to log.
+   * @param throwable The throwable to log. May be null.
+   */
+  private void logToLog4j(org.apache.log4j.Level level, String message, Throwable throwable) {
+    if (asyncDispatcher != null) {
+      asyncDispatcher.dispatch(wrappedLog4j, fqcn, level, message, throwable);
+    } else {
+      wrappedLog4j.log(fqcn, level, message, throwable);
+    }
+  }
+
+  /**
+   * Formats a message template.
+   *
+   * <p>Broken templates do not make the logging call fail. Instead, the raw template is used,
+   * followed by the arguments.
+   *
+   * @param format The template to format.
+   * @param args The arguments to fill into the template.
+   * @return The formatted message.
+   */
+  static String formatMessage(String format, Object[] args) {
+    String ret;
+    if (format == null || args == null || args.length == 0) {
+      ret = format;
+    } else {
+      try {
+        ret = String.format(format, args);
+      } catch (IllegalFormatException e) {
+        ret = format + " " + Arrays.toString(args);
+      }
+    }
+    return ret;
   }
 
   /**
@@ -105,13 +212,8 @@ public class CommonsLog implements Log {
    * 
    * <p>Child classes can use this method to modify the logged event in a single place.
    * 
-   * <p>The following replacements are expected by the returned string:
-   * <ol>
-   * <li>Backslashes get replaced by backslash, followed by the less-than sign.</li>
-   * <li>Carriage-Returns get replaced by backslash, followed by r.</li>
-   * <li>Linebreaks get replaced by backslash, followed by n.</li>
-   * <li>Slashes get replaced by backslash, followed by a pipe.</li>
-   * </ol>
+   * <p>The returned string is a single line encoded by the formatter's
+   * {@link StructuredEncoder}. See {@link SlashStructuredEncoder} for the default encoding.
    * 
    * @param tag The tag to store the line at
    * @param version The version of the tag
@@ -122,7 +224,53 @@ public class CommonsLog implements Log {
    * @return string representation of the parameters.
    */
   protected String processStructuredData(String tag, int version, Object... objs) {
-    return formatter.formatStructuredLine(tag, version, objs); 
+    return formatter.formatStructuredLine(tag, version, objs);
+  }
+
+  /**
+   * Gets the formatter for structured data.
+   *
+   * @return the formatter.
+   */
+  protected Formatter getFormatter() {
+    return formatter;
+  }
+
+  /**
+   * Hands a suppressed DEBUG or TRACE message to the flight recorder, if there is one.
+   *
+   * @param level The level of the message.
+   * @param message The message, or the template if {@code args} is not null.
+   * @param args The template arguments. null, if {@code message} is not a template.
+   * @param throwable The throwable of the message. May be null.
+   * @return true, if the message got recorded and must not get logged. false otherwise.
+   */
+  private boolean record(Level level, Object message, Object[] args, Throwable throwable) {
+    boolean ret = false;
+    if (flightRecorder != null) {
+      if ((level == Level.DEBUG && !isDebugEnabled())
+          || (level == Level.TRACE && !isTraceEnabled())) {
+        flightRecorder.record(this, level, message, args, throwable);
+        ret = true;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Decides whether a message may get logged at all.
+   *
+   * <p>Child classes can use this method to drop messages before any processing happens.
+   *
+   * <p>Structured data does not pass through this method.
+   *
+   * @param level The level the message is about to get logged at.
+   * @param key The key identifying the kind of message. For plain messages, this is the
+   *     message itself. For templated messages, this is the template.
+   * @return true, if the message should get logged. false, if it should get dropped.
+   */
+  protected boolean isPermitted(Level level, Object key) {
+    return true;
   }
 
   @Override
@@ -157,350 +305,450 @@ public class CommonsLog implements Log {
 
   @Override
   public void trace(Object message) {
-    Event event = new Event(message);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.TRACE, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.trace(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.trace(event.getMessage());
-      }
+    if (!record(Level.TRACE, message, null, null) && isPermitted(Level.TRACE, message)) {
+      logEvent(Level.TRACE, new Event(message));
     }
   }
 
   @Override
   public void trace(Object message, Throwable throwable) {
-    Event event = new Event(message, throwable);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.TRACE, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.trace(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.trace(event.getMessage());
-      }
+    if (!record(Level.TRACE, message, null, throwable) && isPermitted(Level.TRACE, message)) {
+      logEvent(Level.TRACE, new Event(message, throwable));
+    }
+  }
+
+  @Override
+  public void trace(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      trace((Object) null);
+    } else if (!record(Level.TRACE, messageSupplier, null, null) && isTraceEnabled()) {
+      trace(messageSupplier.get());
+    }
+  }
+
+  @Override
+  public void trace(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      trace((Object) null, throwable);
+    } else if (!record(Level.TRACE, messageSupplier, null, throwable) && isTraceEnabled()) {
+      trace(messageSupplier.get(), throwable);
+    }
+  }
+
+  @Override
+  public void trace(String format, Object... args) {
+    if (!record(Level.TRACE, format, args, null) && isTraceEnabled()
+        && isPermitted(Level.TRACE, format)) {
+      logEvent(Level.TRACE, new Event(formatMessage(format, args)));
     }
   }
 
   @Override
   public void debug(Object message) {
-    Event event = new Event(message);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.DEBUG, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.debug(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.debug(event.getMessage());
-      }
+    if (!record(Level.DEBUG, message, null, null) && isPermitted(Level.DEBUG, message)) {
+      logEvent(Level.DEBUG, new Event(message));
     }
   }
 
   @Override
   public void debug(Object message, Throwable throwable) {
-    Event event = new Event(message, throwable);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.DEBUG, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.debug(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.debug(event.getMessage());
-      }
+    if (!record(Level.DEBUG, message, null, throwable) && isPermitted(Level.DEBUG, message)) {
+      logEvent(Level.DEBUG, new Event(message, throwable));
+    }
+  }
+
+  @Override
+  public void debug(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      debug((Object) null);
+    } else if (!record(Level.DEBUG, messageSupplier, null, null) && isDebugEnabled()) {
+      debug(messageSupplier.get());
+    }
+  }
+
+  @Override
+  public void debug(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      debug((Object) null, throwable);
+    } else if (!record(Level.DEBUG, messageSupplier, null, throwable) && isDebugEnabled()) {
+      debug(messageSupplier.get(), throwable);
+    }
+  }
+
+  @Override
+  public void debug(String format, Object... args) {
+    if (!record(Level.DEBUG, format, args, null) && isDebugEnabled()
+        && isPermitted(Level.DEBUG, format)) {
+      logEvent(Level.DEBUG, new Event(formatMessage(format, args)));
     }
   }
 
   @Override
   public void info(Object message) {
-    Event event = new Event(message);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.INFO, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.info(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.info(event.getMessage());
-      }
+    if (isPermitted(Level.INFO, message)) {
+      logEvent(Level.INFO, new Event(message));
     }
   }
 
   @Override
   public void info(Object message, Throwable throwable) {
-    Event event = new Event(message, throwable);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.INFO, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.info(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.info(event.getMessage());
-      }
+    if (isPermitted(Level.INFO, message)) {
+      logEvent(Level.INFO, new Event(message, throwable));
+    }
+  }
+
+  @Override
+  public void info(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      info((Object) null);
+    } else if (isInfoEnabled()) {
+      info(messageSupplier.get());
+    }
+  }
+
+  @Override
+  public void info(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      info((Object) null, throwable);
+    } else if (isInfoEnabled()) {
+      info(messageSupplier.get(), throwable);
+    }
+  }
+
+  @Override
+  public void info(String format, Object... args) {
+    if (isInfoEnabled() && isPermitted(Level.INFO, format)) {
+      logEvent(Level.INFO, new Event(formatMessage(format, args)));
     }
   }
 
   @Override
   public void warn(Object message) {
-    Event event = new Event(message);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.WARN, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.warn(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.warn(event.getMessage());
-      }
+    if (isPermitted(Level.WARN, message)) {
+      logEvent(Level.WARN, new Event(message));
     }
   }
 
   @Override
   public void warn(Object message, Throwable throwable) {
-    Event event = new Event(message, throwable);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.WARN, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.warn(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.warn(event.getMessage());
-      }
+    if (isPermitted(Level.WARN, message)) {
+      logEvent(Level.WARN, new Event(message, throwable));
+    }
+  }
+
+  @Override
+  public void warn(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      warn((Object) null);
+    } else if (isWarnEnabled()) {
+      warn(messageSupplier.get());
+    }
+  }
+
+  @Override
+  public void warn(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      warn((Object) null, throwable);
+    } else if (isWarnEnabled()) {
+      warn(messageSupplier.get(), throwable);
+    }
+  }
+
+  @Override
+  public void warn(String format, Object... args) {
+    if (isWarnEnabled() && isPermitted(Level.WARN, format)) {
+      logEvent(Level.WARN, new Event(formatMessage(format, args)));
     }
   }
 
   @Override
   public void error(Object message) {
-    Event event = new Event(message);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.ERROR, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.error(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.error(event.getMessage());
-      }
+    if (isPermitted(Level.ERROR, message)) {
+      logEvent(Level.ERROR, new Event(message));
     }
   }
 
   @Override
   public void error(Object message, Throwable throwable) {
-    Event event = new Event(message, throwable);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.ERROR, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.error(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.error(event.getMessage());
-      }
+    if (isPermitted(Level.ERROR, message)) {
+      logEvent(Level.ERROR, new Event(message, throwable));
+    }
+  }
+
+  @Override
+  public void error(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      error((Object) null);
+    } else if (isErrorEnabled()) {
+      error(messageSupplier.get());
+    }
+  }
+
+  @Override
+  public void error(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      error((Object) null, throwable);
+    } else if (isErrorEnabled()) {
+      error(messageSupplier.get(), throwable);
+    }
+  }
+
+  @Override
+  public void error(String format, Object... args) {
+    if (isErrorEnabled() && isPermitted(Level.ERROR, format)) {
+      logEvent(Level.ERROR, new Event(formatMessage(format, args)));
     }
   }
 
   @Override
   public void fatal(Object message) {
-    Event event = new Event(message);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.FATAL, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.fatal(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.fatal(event.getMessage());
-      }
+    if (isPermitted(Level.FATAL, message)) {
+      logEvent(Level.FATAL, new Event(message));
     }
   }
 
   @Override
   public void fatal(Object message, Throwable throwable) {
-    Event event = new Event(message, throwable);
-    event = processEvent(event);
-    if (wrappedLog4j != null) {
-      // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.FATAL, event.getMessage(),
-          event.getThrowable());
-    } else {
-      if (event.hasThrowable()) {
-        wrappedLog.fatal(event.getMessage(), event.getThrowable());
-      } else {
-        wrappedLog.fatal(event.getMessage());
-      }
+    if (isPermitted(Level.FATAL, message)) {
+      logEvent(Level.FATAL, new Event(message, throwable));
+    }
+  }
+
+  @Override
+  public void fatal(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      fatal((Object) null);
+    } else if (isFatalEnabled()) {
+      fatal(messageSupplier.get());
+    }
+  }
+
+  @Override
+  public void fatal(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      fatal((Object) null, throwable);
+    } else if (isFatalEnabled()) {
+      fatal(messageSupplier.get(), throwable);
+    }
+  }
+
+  @Override
+  public void fatal(String format, Object... args) {
+    if (isFatalEnabled() && isPermitted(Level.FATAL, format)) {
+      logEvent(Level.FATAL, new Event(formatMessage(format, args)));
     }
   }
 
   @Override
   public void log(Level level, Object message) {
-    if (level != null) {
-      Event event = new Event(message);
-      event = processEvent(event);
-      if (wrappedLog4j != null) {
-        // More specific wrappers get the line numbers wrong, so we resort to the most generic
-        // one :-/
-        wrappedLog4j.log(fqcn, level.toLog4jLevel(), event.getMessage(), event.getThrowable());
-      } else {
-        switch (level) {
-          case FATAL:
-            if (event.hasThrowable()) {
-              wrappedLog.fatal(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.fatal(event.getMessage());
-            }
-            break;
-          case ERROR:
-            if (event.hasThrowable()) {
-              wrappedLog.error(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.error(event.getMessage());
-            }
-            break;
-          case WARN:
-            if (event.hasThrowable()) {
-              wrappedLog.warn(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.warn(event.getMessage());
-            }
-            break;
-          case INFO:
-            if (event.hasThrowable()) {
-              wrappedLog.info(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.info(event.getMessage());
-            }
-            break;
-          case DEBUG:
-            if (event.hasThrowable()) {
-              wrappedLog.debug(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.debug(event.getMessage());
-            }
-            break;
-          case TRACE:
-            if (event.hasThrowable()) {
-              wrappedLog.trace(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.trace(event.getMessage());
-            }
-            break;
-          case OFF:
-          default:
-            break;
-        }
-      }
+    if (level != null && !record(level, message, null, null) && isPermitted(level, message)) {
+      logEvent(level, new Event(message));
     }
   }
 
   @Override
   public void log(Level level, Object message, Throwable throwable) {
-    if (level != null) {
-      Event event = new Event(message, throwable);
-      event = processEvent(event);
-      if (wrappedLog4j != null) {
-        // More specific wrappers get the line numbers wrong, so we resort to the most generic
-        // one :-/
-        wrappedLog4j.log(fqcn, level.toLog4jLevel(), event.getMessage(), event.getThrowable());
-      } else {
-        switch (level) {
-          case FATAL:
-            if (event.hasThrowable()) {
-              wrappedLog.fatal(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.fatal(event.getMessage());
-            }
-            break;
-          case ERROR:
-            if (event.hasThrowable()) {
-              wrappedLog.error(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.error(event.getMessage());
-            }
-            break;
-          case WARN:
-            if (event.hasThrowable()) {
-              wrappedLog.warn(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.warn(event.getMessage());
-            }
-            break;
-          case INFO:
-            if (event.hasThrowable()) {
-              wrappedLog.info(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.info(event.getMessage());
-            }
-            break;
-          case DEBUG:
-            if (event.hasThrowable()) {
-              wrappedLog.debug(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.debug(event.getMessage());
-            }
-            break;
-          case TRACE:
-            if (event.hasThrowable()) {
-              wrappedLog.trace(event.getMessage(), event.getThrowable());
-            } else {
-              wrappedLog.trace(event.getMessage());
-            }
-            break;
-          case OFF:
-          default:
-            break;
-        }
+    if (level != null && !record(level, message, null, throwable)
+        && isPermitted(level, message)) {
+      logEvent(level, new Event(message, throwable));
+    }
+  }
+
+  /**
+   * Processes an event and hands it to the wrapped log.
+   *
+   * <p>ERROR and FATAL events are preceded by the current thread's flight recording, if there
+   * is a flight recorder.
+   *
+   * @param level The level to log the event at. Must not be null.
+   * @param event The event to log.
+   */
+  private void logEvent(Level level, Event event) {
+    if (flightRecorder != null && (level == Level.ERROR || level == Level.FATAL)) {
+      flightRecorder.dumpCurrentThread(this, level);
+    }
+    event = processEvent(event);
+    if (metricsLoggerCounter != null && isEnabled(level)) {
+      long start = System.nanoTime();
+      appendEvent(level, event);
+      metrics.recordEvent(level, metricsLoggerCounter, event.getMessage(),
+          System.nanoTime() - start);
+    } else {
+      appendEvent(level, event);
+    }
+  }
+
+  /**
+   * Checks whether events at a level actually get written.
+   *
+   * @param level The level to check. Must not be null.
+   * @return true, if events at the level get written. false otherwise.
+   */
+  private boolean isEnabled(Level level) {
+    boolean ret;
+    if (wrappedLog4j != null) {
+      ret = wrappedLog4j.isEnabledFor(level.toLog4jLevel());
+    } else {
+      switch (level) {
+        case FATAL:
+          ret = isFatalEnabled();
+          break;
+        case ERROR:
+          ret = isErrorEnabled();
+          break;
+        case WARN:
+          ret = isWarnEnabled();
+          break;
+        case INFO:
+          ret = isInfoEnabled();
+          break;
+        case DEBUG:
+          ret = isDebugEnabled();
+          break;
+        case TRACE:
+          ret = isTraceEnabled();
+          break;
+        case OFF:
+        default:
+          ret = false;
+          break;
       }
     }
+    return ret;
   }
 
-  @Override
-  public void structuredInfo(String tag, int version, Object... objs) {
-    String message = processStructuredData(tag, version, objs);
+  /**
+   * Hands a processed event to the wrapped log.
+   *
+   * @param level The level to log the event at. Must not be null.
+   * @param event The processed event to log.
+   */
+  private void appendEvent(Level level, Event event) {
     if (wrappedLog4j != null) {
       // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.INFO, message, null);
+      logToLog4j(level.toLog4jLevel(), event.getMessage(), event.getThrowable());
     } else {
-      wrappedLog.info(message);
+      switch (level) {
+        case FATAL:
+          if (event.hasThrowable()) {
+            wrappedLog.fatal(event.getMessage(), event.getThrowable());
+          } else {
+            wrappedLog.fatal(event.getMessage());
+          }
+          break;
+        case ERROR:
+          if (event.hasThrowable()) {
+            wrappedLog.error(event.getMessage(), event.getThrowable());
+          } else {
+            wrappedLog.error(event.getMessage());
+          }
+          break;
+        case WARN:
+          if (event.hasThrowable()) {
+            wrappedLog.warn(event.getMessage(), event.getThrowable());
+          } else {
+            wrappedLog.warn(event.getMessage());
+          }
+          break;
+        case INFO:
+          if (event.hasThrowable()) {
+            wrappedLog.info(event.getMessage(), event.getThrowable());
+          } else {
+            wrappedLog.info(event.getMessage());
+          }
+          break;
+        case DEBUG:
+          if (event.hasThrowable()) {
+            wrappedLog.debug(event.getMessage(), event.getThrowable());
+          } else {
+            wrappedLog.debug(event.getMessage());
+          }
+          break;
+        case TRACE:
+          if (event.hasThrowable()) {
+            wrappedLog.trace(event.getMessage(), event.getThrowable());
+          } else {
+            wrappedLog.trace(event.getMessage());
+          }
+          break;
+        case OFF:
+        default:
+          break;
+      }
     }
   }
 
+  @Override
+  public void structuredInfo(String tag, int version, Object... objs) {
+    logStructured(Level.INFO, tag, version, objs);
+  }
+
   @Override
   public void structuredDebug(String tag, int version, Object... objs) {
+    if (isDebugEnabled()) {
+      logStructuredDebug(tag, version, objs);
+    }
+  }
+
+  @Override
+  public void structuredDebug(String tag, int version, Object name1, Object value1) {
+    if (isDebugEnabled()) {
+      logStructuredDebug(tag, version, new Object[] {name1, value1});
+    }
+  }
+
+  @Override
+  public void structuredDebug(String tag, int version, Object name1, Object value1,
+      Object name2, Object value2) {
+    if (isDebugEnabled()) {
+      logStructuredDebug(tag, version, new Object[] {name1, value1, name2, value2});
+    }
+  }
+
+  @Override
+  public void structuredDebug(String tag, int version, Object name1, Object value1,
+      Object name2, Object value2, Object name3, Object value3) {
+    if (isDebugEnabled()) {
+      logStructuredDebug(tag, version,
+          new Object[] {name1, value1, name2, value2, name3, value3});
+    }
+  }
+
+  /**
+   * Logs structured data at DEBUG level without checking whether DEBUG is enabled.
+   *
+   * @param tag The tag to store the line at
+   * @param version The version of the tag
+   * @param objs The name and objects to log.
+   */
+  private void logStructuredDebug(String tag, int version, Object[] objs) {
+    logStructured(Level.DEBUG, tag, version, objs);
+  }
+
+  /**
+   * Logs structured data without checking whether the level is enabled.
+   *
+   * @param level The level to log at. Either INFO or DEBUG.
+   * @param tag The tag to store the line at
+   * @param version The version of the tag
+   * @param objs The name and objects to log.
+   */
+  private void logStructured(Level level, String tag, int version, Object[] objs) {
     String message = processStructuredData(tag, version, objs);
+    boolean measure = metricsLoggerCounter != null && isEnabled(level);
+    long start = measure ? System.nanoTime() : 0;
     if (wrappedLog4j != null) {
       // More specific wrappers get the line numbers wrong, so we resort to the most generic one :-/
-      wrappedLog4j.log(fqcn, org.apache.log4j.Level.DEBUG, message, null);
+      logToLog4j(level.toLog4jLevel(), message, null);
+    } else if (level == Level.INFO) {
+      wrappedLog.info(message);
     } else {
       wrappedLog.debug(message);
     }
+    if (measure) {
+      metrics.recordStructuredEvent(level, metricsLoggerCounter, tag, message,
+          System.nanoTime() - start);
+    }
   }
 
   @Override
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.MapMaker;
+
+import com.seleritycorp.common.base.config.ApplicationPaths;
+import com.seleritycorp.common.base.inject.InjectorFactory;
+import com.seleritycorp.common.base.jmx.MBeanUtils;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the most recent suppressed DEBUG and TRACE events of each thread in memory.
+ *
+ * <p>Production systems typically do not run with DEBUG enabled, yet the debug messages leading
+ * up to an error are the most helpful ones to understand it. So instead of dropping DEBUG and
+ * TRACE events that are below the logger's level, the recorder keeps the last few of them in a
+ * fixed-size ring per thread. The ring's slots are allocated once, and recording only stores
+ * references. Messages and templates are not rendered at recording time.
+ *
+ * <p>When an ERROR or FATAL gets logged, the recording of the logging thread is dumped right
+ * before the error. Recordings of all threads can be dumped on demand through JMX. Dumps go to
+ * the log, or to files in the {@value #DUMP_DIRECTORY} directory below the application's data
+ * directory.
+ *
+ * <p>Recording is opt-in. It is turned on by setting the system property
+ * {@value #ENABLED_PROPERTY} to {@code true}. The number of events kept per thread and whether
+ * to dump to files can be tuned through the system properties {@value #CAPACITY_PROPERTY} and
+ * {@value #DUMP_TO_FILE_PROPERTY}.
+ *
+ * <p>As only references are recorded, mutable messages or template arguments get rendered
+ * with their state at dump time.
+ *
+ * <p>This class is thread-safe.
+ */
+public class DebugFlightRecorder implements DebugFlightRecorderMBean {
+  static final String ENABLED_PROPERTY =
+      "com.seleritycorp.common.base.logging.flightRecorder.enabled";
+  static final String CAPACITY_PROPERTY =
+      "com.seleritycorp.common.base.logging.flightRecorder.capacity";
+  static final String DUMP_TO_FILE_PROPERTY =
+      "com.seleritycorp.common.base.logging.flightRecorder.dumpToFile";
+  static final String DUMP_DIRECTORY = "flight-recorder";
+
+  private static final int DEFAULT_CAPACITY = 256;
+  private static final String MBEAN_NAME =
+      "com.seleritycorp.common.base.logging:type=DebugFlightRecorder";
+
+  private final int capacity;
+  private final boolean dumpToFile;
+  private final ThreadLocal<Recording> recordings;
+  private final Set<Recording> allRecordings;
+  private final AtomicLong dumpFileCount = new AtomicLong();
+
+  /**
+   * Creates a flight recorder.
+   *
+   * @param capacity The number of events to keep per thread.
+   * @param dumpToFile If true, recordings get dumped to files. Otherwise, they get dumped to
+   *     the log.
+   */
+  DebugFlightRecorder(int capacity, boolean dumpToFile) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity has to be positive, but is " + capacity);
+    }
+    this.capacity = capacity;
+    this.dumpToFile = dumpToFile;
+    this.allRecordings = Collections.newSetFromMap(
+        new MapMaker().weakKeys().<Recording, Boolean>makeMap());
+    this.recordings = new ThreadLocal<>();
+  }
+
+  /**
+   * Creates a flight recorder configured through system properties.
+   *
+   * @return The flight recorder, if recording is enabled. null otherwise.
+   */
+  static DebugFlightRecorder createIfEnabled() {
+    DebugFlightRecorder ret = null;
+    if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+      int capacity = Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+      boolean dumpToFile = Boolean.getBoolean(DUMP_TO_FILE_PROPERTY);
+
+      ret = new DebugFlightRecorder(capacity, dumpToFile);
+      MBeanUtils.register(MBEAN_NAME, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Records an event for the current thread.
+   *
+   * @param log The log the event got logged to.
+   * @param level The level of the event.
+   * @param message The message, or the template if {@code args} is not null. If this is a
+   *     {@link Supplier}, the message is obtained from it at dump time.
+   * @param args The template arguments. null, if {@code message} is not a template.
+   * @param throwable The throwable of the event. May be null.
+   */
+  void record(Log log, Level level, Object message, Object[] args, Throwable throwable) {
+    Recording recording = recordings.get();
+    if (recording == null) {
+      recording = new Recording(Thread.currentThread().getName(), capacity);
+      recordings.set(recording);
+      allRecordings.add(recording);
+    }
+    recording.record(System.currentTimeMillis(), log, level, message, args, throwable);
+  }
+
+  /**
+   * Dumps and clears the recording of the current thread.
+   *
+   * <p>If the current thread has not recorded events, nothing gets dumped.
+   *
+   * @param log The log to dump to.
+   * @param level The level to dump at.
+   */
+  void dumpCurrentThread(Log log, Level level) {
+    Recording recording = recordings.get();
+    if (recording != null) {
+      dump(recording, log, level);
+    }
+  }
+
+  /**
+   * Dumps and clears a recording.
+   *
+   * @param recording The recording to dump.
+   * @param log The log to dump to.
+   * @param level The level to dump at.
+   * @return The number of dumped events.
+   */
+  private int dump(Recording recording, Log log, Level level) {
+    Slot[] events = recording.drain();
+    if (events.length > 0) {
+      String header = "Debug flight recording of thread '" + recording.threadName + "' ("
+          + events.length + " events)";
+      String text = render(header, events);
+      boolean dumped = false;
+      if (dumpToFile) {
+        try {
+          Path file = writeDumpFile(recording.threadName, text);
+          log.log(level, header + " dumped to " + file);
+          dumped = true;
+        } catch (IOException | RuntimeException e) {
+          log.log(level, "Could not dump debug flight recording to file. Dumping to log instead",
+              e);
+        }
+      }
+      if (!dumped) {
+        log.log(level, text);
+      }
+    }
+    return events.length;
+  }
+
+  /**
+   * Renders recorded events.
+   *
+   * @param header The line to start the rendering with.
+   * @param events The events to render.
+   * @return The rendered events.
+   */
+  private String render(String header, Slot[] events) {
+    StringBuilder sb = new StringBuilder(header).append(':');
+    for (Slot event : events) {
+      sb.append('\n');
+      sb.append(Instant.ofEpochMilli(event.timeMillis));
+      sb.append(' ').append(event.level);
+      Logger logger = event.log.getLog4jLogger();
+      sb.append(' ').append((logger != null) ? logger.getName() : "-");
+      sb.append(" - ");
+      try {
+        if (event.args != null) {
+          sb.append(CommonsLog.formatMessage(String.valueOf(event.message), event.args));
+        } else if (event.message instanceof Supplier) {
+          sb.append(((Supplier<?>) event.message).get());
+        } else {
+          sb.append(event.message);
+        }
+        if (event.throwable != null) {
+          sb.append(" (").append(event.throwable).append(')');
+        }
+      } catch (RuntimeException e) {
+        sb.append("<rendering failed: ").append(e).append('>');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes a rendered recording to a new file in the dump directory.
+   *
+   * @param threadName The name of the recorded thread.
+   * @param text The rendered recording.
+   * @return The written file.
+   * @throws IOException if writing fails.
+   */
+  private Path writeDumpFile(String threadName, String text) throws IOException {
+    Path directory = getDumpDirectory();
+    Files.createDirectories(directory);
+    String fileName = "flight-recording-" + System.currentTimeMillis() + "-"
+        + dumpFileCount.incrementAndGet() + "-" + threadName.replaceAll("[^A-Za-z0-9._-]", "_")
+        + ".log";
+    Path file = directory.resolve(fileName);
+    Files.write(file, text.getBytes(UTF_8));
+    return file;
+  }
+
+  /**
+   * Gets the directory to dump recordings to.
+   *
+   * <p>The directory is looked up lazily, as logging is set up before the application's paths
+   * are available.
+   *
+   * @return The directory to dump recordings to.
+   */
+  Path getDumpDirectory() {
+    ApplicationPaths paths = InjectorFactory.getInjector().getInstance(ApplicationPaths.class);
+    return paths.getDataPath().resolve(DUMP_DIRECTORY);
+  }
+
+  @Override
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @Override
+  public int getThreadCount() {
+    return allRecordings.size();
+  }
+
+  @Override
+  public boolean isDumpingToFile() {
+    return dumpToFile;
+  }
+
+  @Override
+  public int dumpAll() {
+    Log log = LogFactory.getLog(DebugFlightRecorder.class);
+    int ret = 0;
+    for (Recording recording : allRecordings) {
+      ret += dump(recording, log, Level.INFO);
+    }
+    return ret;
+  }
+
+  /**
+   * A single recorded event.
+   */
+  private static final class Slot {
+    private long timeMillis;
+    private Level level;
+    private Log log;
+    private Object message;
+    private Object[] args;
+    private Throwable throwable;
+
+    /**
+     * Drops all references held by this slot.
+     */
+    private void clear() {
+      log = null;
+      message = null;
+      args = null;
+      throwable = null;
+    }
+  }
+
+  /**
+   * Ring of recorded events of a single thread.
+   *
+   * <p>Only the owning thread records, but any thread may drain. Hence, access is synchronized.
+   * As the lock is virtually always taken by the same thread, this is cheap.
+   */
+  private static final class Recording {
+    private final String threadName;
+    private final Slot[] slots;
+    private int next;
+    private int size;
+
+    Recording(String threadName, int capacity) {
+      this.threadName = threadName;
+      this.slots = new Slot[capacity];
+      for (int i = 0; i < capacity; i++) {
+        slots[i] = new Slot();
+      }
+      this.next = 0;
+      this.size = 0;
+    }
+
+    synchronized void record(long timeMillis, Log log, Level level, Object message,
+        Object[] args, Throwable throwable) {
+      Slot slot = slots[next];
+      slot.timeMillis = timeMillis;
+      slot.level = level;
+      slot.log = log;
+      slot.message = message;
+      slot.args = args;
+      slot.throwable = throwable;
+      next++;
+      if (next == slots.length) {
+        next = 0;
+      }
+      if (size < slots.length) {
+        size++;
+      }
+    }
+
+    /**
+     * Removes all recorded events.
+     *
+     * <p>The events are copied out, so rendering them can happen outside of the lock and may
+     * even record new events.
+     *
+     * @return The removed events, oldest first.
+     */
+    synchronized Slot[] drain() {
+      Slot[] ret = new Slot[size];
+      int index = next - size;
+      if (index < 0) {
+        index += slots.length;
+      }
+      for (int i = 0; i < size; i++) {
+        Slot slot = slots[index];
+        Slot copy = new Slot();
+        copy.timeMillis = slot.timeMillis;
+        copy.level = slot.level;
+        copy.log = slot.log;
+        copy.message = slot.message;
+        copy.args = slot.args;
+        copy.throwable = slot.throwable;
+        ret[i] = copy;
+        slot.clear();
+        index++;
+        if (index == slots.length) {
+          index = 0;
+        }
+      }
+      size = 0;
+      return ret;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+public interface DebugFlightRecorderMBean {
+  /**
+   * Gets the number of events recorded per thread.
+   *
+   * @return the number of events recorded per thread.
+   */
+  public int getCapacity();
+
+  /**
+   * Gets the number of threads that have recorded events.
+   *
+   * @return the number of threads that have recorded events.
+   */
+  public int getThreadCount();
+
+  /**
+   * Checks whether recordings get dumped to files instead of the log.
+   *
+   * @return true, if recordings get dumped to files. false, if they get dumped to the log.
+   */
+  public boolean isDumpingToFile();
+
+  /**
+   * Dumps and clears the recorded events of all threads.
+   *
+   * @return the number of dumped events.
+   */
+  public int dumpAll();
+}
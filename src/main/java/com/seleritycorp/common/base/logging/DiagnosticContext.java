@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Per-thread diagnostic context for structured log lines.
+ *
+ * <p>The context holds name/value pairs (e.g.: a request id, the HA state, or a tenant) that
+ * {@link Formatter} appends to each structured line of the thread. This allows to attach context
+ * without wrapping loggers, and without copying the logged objects on each call.
+ *
+ * <p>Each thread's context is stored as a single immutable array of alternating names and
+ * values. Modifications copy the array, while formatting and capturing the context only read
+ * the current array. So capturing the context to hand it to a different thread (see
+ * {@link #wrap(Runnable)}) is cheap. Values are rendered only when a line gets formatted, so
+ * they should be immutable.
+ *
+ * <p>Typical use is:
+ * <pre>
+ * try (DiagnosticContext.Scope scope = DiagnosticContext.with("requestId", requestId)) {
+ *   ...
+ * }
+ * </pre>
+ */
+public final class DiagnosticContext {
+  private static final Object[] EMPTY = new Object[0];
+
+  /**
+   * The current thread's names and values at even and odd indices respectively.
+   */
+  private static final ThreadLocal<Object[]> entries = new ThreadLocal<Object[]>() {
+    @Override
+    protected Object[] initialValue() {
+      return EMPTY;
+    }
+  };
+
+  private DiagnosticContext() {
+  }
+
+  /**
+   * Gets the current thread's names and values.
+   *
+   * @return the names and values at even and odd indices respectively. The array must not be
+   *     modified.
+   */
+  static Object[] getEntries() {
+    return entries.get();
+  }
+
+  /**
+   * Gets a value of the current thread's context.
+   *
+   * @param name The name to get the value for.
+   * @return the value for the name, or null if the name is not set.
+   */
+  public static Object get(String name) {
+    Object ret = null;
+    Object[] current = entries.get();
+    int index = indexOf(current, name);
+    if (index >= 0) {
+      ret = current[index + 1];
+    }
+    return ret;
+  }
+
+  /**
+   * Sets a value in the current thread's context.
+   *
+   * <p>Names keep their position when getting updated, so lines keep a stable column order.
+   *
+   * @param name The name to set the value for.
+   * @param value The value to set. null removes the name.
+   */
+  public static void put(String name, Object value) {
+    if (value == null) {
+      remove(name);
+    } else {
+      Object[] current = entries.get();
+      int index = indexOf(current, name);
+      Object[] updated;
+      if (index >= 0) {
+        updated = current.clone();
+      } else {
+        index = current.length;
+        updated = new Object[index + 2];
+        System.arraycopy(current, 0, updated, 0, index);
+        updated[index] = name;
+      }
+      updated[index + 1] = value;
+      entries.set(updated);
+    }
+  }
+
+  /**
+   * Removes a name from the current thread's context.
+   *
+   * @param name The name to remove.
+   */
+  public static void remove(String name) {
+    Object[] current = entries.get();
+    int index = indexOf(current, name);
+    if (index >= 0) {
+      Object[] updated = (current.length == 2) ? EMPTY : new Object[current.length - 2];
+      System.arraycopy(current, 0, updated, 0, index);
+      System.arraycopy(current, index + 2, updated, index, current.length - index - 2);
+      entries.set(updated);
+    }
+  }
+
+  /**
+   * Removes all names from the current thread's context.
+   */
+  public static void clear() {
+    entries.set(EMPTY);
+  }
+
+  /**
+   * Checks whether the current thread's context is empty.
+   *
+   * @return true, if no name is set. false otherwise.
+   */
+  public static boolean isEmpty() {
+    return entries.get().length == 0;
+  }
+
+  /**
+   * Sets a value in the current thread's context until the returned scope gets closed.
+   *
+   * @param name The name to set the value for.
+   * @param value The value to set. null removes the name.
+   * @return the scope that restores the previous context when closed.
+   */
+  public static Scope with(String name, Object value) {
+    Scope ret = new Scope(entries.get());
+    put(name, value);
+    return ret;
+  }
+
+  /**
+   * Captures the current thread's context.
+   *
+   * @return the captured context.
+   */
+  public static Snapshot capture() {
+    return new Snapshot(entries.get());
+  }
+
+  /**
+   * Makes a captured context the current thread's context until the returned scope gets
+   * closed.
+   *
+   * @param snapshot The context to use.
+   * @return the scope that restores the previous context when closed.
+   */
+  public static Scope attach(Snapshot snapshot) {
+    Scope ret = new Scope(entries.get());
+    entries.set(snapshot.entries);
+    return ret;
+  }
+
+  /**
+   * Wraps a task to run with the current thread's context.
+   *
+   * <p>The context gets captured right away, and the running thread's own context gets
+   * restored once the task is done.
+   *
+   * @param task The task to wrap.
+   * @return the wrapped task, or null if task is null.
+   */
+  public static Runnable wrap(final Runnable task) {
+    Runnable ret = null;
+    if (task != null) {
+      final Snapshot snapshot = capture();
+      ret = new Runnable() {
+        @Override
+        public void run() {
+          Scope scope = attach(snapshot);
+          try {
+            task.run();
+          } finally {
+            scope.close();
+          }
+        }
+      };
+    }
+    return ret;
+  }
+
+  /**
+   * Wraps a task to run with the current thread's context.
+   *
+   * <p>The context gets captured right away, and the running thread's own context gets
+   * restored once the task is done.
+   *
+   * @param <T> The result type of the task.
+   * @param task The task to wrap.
+   * @return the wrapped task, or null if task is null.
+   */
+  public static <T> Callable<T> wrap(final Callable<T> task) {
+    Callable<T> ret = null;
+    if (task != null) {
+      final Snapshot snapshot = capture();
+      ret = new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          Scope scope = attach(snapshot);
+          try {
+            return task.call();
+          } finally {
+            scope.close();
+          }
+        }
+      };
+    }
+    return ret;
+  }
+
+  /**
+   * Finds the index of a name.
+   *
+   * @param current The names and values to search.
+   * @param name The name to search.
+   * @return the index of the name, or -1 if the name is not set.
+   */
+  private static int indexOf(Object[] current, String name) {
+    int ret = -1;
+    for (int i = 0; ret < 0 && i < current.length; i += 2) {
+      if (Objects.equals(current[i], name)) {
+        ret = i;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * An immutable capture of a thread's context.
+   */
+  public static final class Snapshot {
+    private final Object[] entries;
+
+    private Snapshot(Object[] entries) {
+      this.entries = entries;
+    }
+  }
+
+  /**
+   * Restores a thread's previous context when closed.
+   *
+   * <p>Scopes have to be closed on the thread that opened them, in reverse order of opening.
+   */
+  public static final class Scope implements AutoCloseable {
+    private final Object[] previous;
+
+    private Scope(Object[] previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      entries.set(previous);
+    }
+  }
+}
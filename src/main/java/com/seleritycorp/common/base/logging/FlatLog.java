@@ -21,8 +21,18 @@ import java.io.StringWriter;
 
 /**
  * Log wrapper that turns multi-line messages into single-line messages.
+ *
+ * <p>If a {@link StackTraceDeduplicator} is given, each distinct stack trace gets rendered in
+ * full only once along with its fingerprint id. Afterwards, only the throwable itself, the
+ * fingerprint id, and the number of occurrences get rendered. Deduplication is opt-in (see
+ * {@link StackTraceDeduplicator}).
  */
 public class FlatLog extends CommonsLog {
+  /**
+   * Deduplicator for stack traces. If null, stack traces are always rendered in full.
+   */
+  private final StackTraceDeduplicator deduplicator;
+
   /**
    * Wraps a Log to force single-line messages.
    *
@@ -33,7 +43,23 @@ public class FlatLog extends CommonsLog {
    * @param formatter Instance of Formating helper 
    */
   public FlatLog(Log wrappedLog, Formatter formatter) {
+    this(wrappedLog, formatter, null);
+  }
+
+  /**
+   * Wraps a Log to force single-line messages and deduplicate stack traces.
+   *
+   * <p>Line breaks contained in user-provided log messages will get converted
+   * to \n.
+   *
+   * @param wrappedLog The log to log single-line messages to
+   * @param formatter Instance of Formating helper
+   * @param deduplicator The deduplicator for stack traces. If null, stack traces are always
+   *     rendered in full.
+   */
+  public FlatLog(Log wrappedLog, Formatter formatter, StackTraceDeduplicator deduplicator) {
     super(wrappedLog, formatter);
+    this.deduplicator = deduplicator;
   }
 
   @Override
@@ -44,16 +70,23 @@ public class FlatLog extends CommonsLog {
   }
 
   /**
-   * Converts a possibly multi-lined message to a single-line.
+   * Appends a possibly multi-lined string as single-line.
    *
    * <p>Eventual line breaks get converted to \n.
-   * 
-   * @param message The possibly multi-lined message to convert
+   *
+   * @param sb The builder to append to.
+   * @param str The possibly multi-lined string to append
    */
-  private String toSingleLine(Object message) {
-    String ret = message.toString();
-    ret = ret.replaceAll("\n", "\\\\n");
-    return ret;
+  private void appendSingleLine(StringBuilder sb, String str) {
+    int length = str.length();
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c == '\n') {
+        sb.append("\\n");
+      } else {
+        sb.append(c);
+      }
+    }
   }
 
   /**
@@ -62,16 +95,36 @@ public class FlatLog extends CommonsLog {
    * <p>Eventual line breaks get converted to \n.
    * 
    * @param message The possibly multi-lined message to convert
-   * @param t The Throwable for the message.
+   * @param throwable The Throwable for the message.
    */
   private String toSingleLine(Object message, Throwable throwable) {
-    String multiLineMessage = message.toString();
+    StringBuilder sb = new StringBuilder();
+    appendSingleLine(sb, String.valueOf(message));
     if (throwable != null) {
-      StringWriter stringWriter = new StringWriter();
-      PrintWriter printWriter = new PrintWriter(stringWriter);
-      throwable.printStackTrace(printWriter);
-      multiLineMessage += "\\n" + throwable.toString() + "\\n" + stringWriter.toString();
+      sb.append("\\n");
+      appendSingleLine(sb, throwable.toString());
+
+      boolean renderStackTrace = true;
+      if (deduplicator != null) {
+        long fingerprint = StackTraceDeduplicator.fingerprint(throwable);
+        long occurrence = deduplicator.countOccurrence(fingerprint);
+        sb.append(" [stack-trace-id: ").append(Long.toHexString(fingerprint));
+        if (occurrence > 1) {
+          sb.append(", occurrence ").append(occurrence);
+          renderStackTrace = false;
+        }
+        sb.append(']');
+      }
+
+      if (renderStackTrace) {
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(stringWriter);
+        throwable.printStackTrace(printWriter);
+        printWriter.flush();
+        sb.append("\\n");
+        appendSingleLine(sb, stringWriter.toString());
+      }
     }
-    return toSingleLine(multiLineMessage);
+    return sb.toString();
   }
 }
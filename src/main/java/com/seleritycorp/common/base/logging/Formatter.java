@@ -16,44 +16,162 @@
 
 package com.seleritycorp.common.base.logging;
 
+import org.apache.log4j.helpers.LogLog;
+
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 /**
  * Helper class to format log lines.
  *
+ * <p>Structured lines get encoded by a {@link StructuredEncoder}. By default, the
+ * {@link SlashStructuredEncoder} is used. A different encoder can be selected through the system
+ * property {@value #ENCODER_PROPERTY}. Its value is either {@code slash}, {@code json-lines}
+ * (for the {@link JsonLinesStructuredEncoder}), or the fully qualified name of a
+ * {@link StructuredEncoder} implementation with a public no-argument constructor.
+ *
+ * <p>The current thread's {@link DiagnosticContext} gets appended to each structured line,
+ * after the line's own names and objects.
+ *
  * <p>This class is thread-safe.
  */
 @Singleton
 public class Formatter {
+  static final String ENCODER_PROPERTY =
+      "com.seleritycorp.common.base.logging.structuredEncoder";
+
   /**
-   * The separator used between two fields in the sliceable format.
+   * Builders beyond this capacity are not kept around for re-use.
+   *
+   * <p>This avoids pinning large buffers after a single huge log line.
    */
-  private static final char SEPARATOR = '/';
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
 
   /**
-   * Encodes a structured column to allow easy grepping, and cut-ing.
-   * 
-   * @param name the name of the value
-   * @param value the value to encode
-   * @return the encoded string
+   * Per-thread builder to format lines without garbage.
+   *
+   * <p>While a builder is in use, the thread's slot is null. So nested formatting (e.g.: from
+   * within a value's toString) allocates a fresh builder instead of clobbering the outer one.
+   */
+  private static final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
+
+  /**
+   * The encoder for structured lines.
+   */
+  private final StructuredEncoder encoder;
+
+  /**
+   * Creates a Formatter using the encoder configured through system properties.
+   */
+  @Inject
+  public Formatter() {
+    this(createConfiguredEncoder());
+  }
+
+  /**
+   * Creates a Formatter using a given encoder.
+   *
+   * @param encoder The encoder for structured lines.
    */
-  private String formatStructuredColumn(String name, Object value) {
-    String ret = (name == null) ? "<null>" : name;
-    ret += ":";
-    ret += (value == null) ? "<null>" : value;
+  public Formatter(StructuredEncoder encoder) {
+    this.encoder = encoder;
+  }
 
-    ret = ret.replaceAll("\\\\", "\\\\<");
-    ret = ret.replaceAll("\r", "\\\\r");
-    ret = ret.replaceAll("\n", "\\\\n");
-    ret = ret.replaceAll("/", "\\\\|");
+  /**
+   * Creates the encoder configured through system properties.
+   *
+   * <p>As this happens while logging gets bootstrapped, misconfigurations are reported through
+   * Log4j's internal logging and the default encoder is used instead.
+   *
+   * @return the configured encoder.
+   */
+  static StructuredEncoder createConfiguredEncoder() {
+    StructuredEncoder ret = null;
+    String encoderStr = System.getProperty(ENCODER_PROPERTY);
+    if (encoderStr != null) {
+      encoderStr = encoderStr.trim();
+      if ("json-lines".equals(encoderStr)) {
+        ret = new JsonLinesStructuredEncoder();
+      } else if (!"slash".equals(encoderStr)) {
+        try {
+          ret = Class.forName(encoderStr).asSubclass(StructuredEncoder.class)
+              .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+          LogLog.warn("Cannot use structured encoder '" + encoderStr
+              + "'. Falling back to slash encoding", e);
+        }
+      }
+    }
+    if (ret == null) {
+      ret = new SlashStructuredEncoder();
+    }
     return ret;
   }
 
   /**
-   * Formats a log line in a format that to eases use grep and cut.
+   * Takes the current thread's builder for exclusive use.
+   *
+   * @return an empty builder.
+   */
+  private StringBuilder acquireBuilder() {
+    StringBuilder ret = builders.get();
+    if (ret == null) {
+      ret = new StringBuilder(256);
+    } else {
+      builders.set(null);
+      ret.setLength(0);
+    }
+    return ret;
+  }
+
+  /**
+   * Hands a builder back for re-use by the current thread.
+   *
+   * @param sb The builder to hand back.
+   */
+  private void releaseBuilder(StringBuilder sb) {
+    if (sb.capacity() <= MAX_RETAINED_CAPACITY) {
+      builders.set(sb);
+    } else {
+      builders.set(new StringBuilder(256));
+    }
+  }
+
+  /**
+   * Appends a structured log line using the configured encoder.
+   *
+   * <p>The appended text is the same as the one returned by
+   * {@link #formatStructuredLine(String, int, Object...)}.
+   * 
+   * @param sb The builder to append the line to
+   * @param tag The tag to store the objects at
+   * @param version The version of the tag
+   * @param objs The name and objects to embed. objs is expected to hold an
+   *        even number of elements, with objs[2*n] holding the name for the
+   *        object at objs[2*n+1].
+   */
+  public void appendStructuredLine(StringBuilder sb, String tag, int version, Object... objs) {
+    Object[] context = DiagnosticContext.getEntries();
+    if (context.length == 0) {
+      encoder.appendStructuredLine(sb, tag, version, objs);
+    } else {
+      encoder.appendStructuredLineWithContext(sb, tag, version, objs, context);
+    }
+  }
+
+  /**
+   * Formats a structured log line using the configured encoder.
    *
    * <p>The format meets the requirements of
    * {@link Log#structuredInfo(String, int, Object...)}
+   *
+   * <p>Formatting happens in a single pass on a re-used per-thread buffer. So apart from
+   * the returned String (and the values' toString results), no garbage is produced.
    * 
    * @param tag The tag to store the objects at
    * @param version The version of the tag
@@ -63,37 +181,53 @@ public class Formatter {
    * @return the encoded string
    */
   public String formatStructuredLine(String tag, int version, Object... objs) {
-    StringBuilder sb = new StringBuilder();
-    sb.append(SEPARATOR);
-    sb.append(formatStructuredColumn("log-tag", tag));
-    sb.append(SEPARATOR);
-    sb.append(formatStructuredColumn("log-tag-version", version));
+    StringBuilder sb = acquireBuilder();
+    try {
+      appendStructuredLine(sb, tag, version, objs);
+      return sb.toString();
+    } finally {
+      releaseBuilder(sb);
+    }
+  }
 
-    if (objs != null) {
-      Object prev = null;
-      boolean hasPrev = false;
-      for (Object o : objs) {
-        if (hasPrev) {
-          sb.append(SEPARATOR);
-          String prevStr = null;
-          if (prev != null) {
-            prevStr = prev.toString();
-          }
-          sb.append(formatStructuredColumn(prevStr, o));
-          hasPrev = false;
-        } else {
-          prev = o;
-          hasPrev = true;
+  /**
+   * Formats a structured log line with leading name/value pairs using the configured encoder.
+   *
+   * <p>The returned text is the same as the one returned by
+   * {@link #formatStructuredLine(String, int, Object...)} for the concatenation of leading and
+   * objs. Unless the {@link DiagnosticContext} is set, both arrays get encoded in place instead
+   * of getting concatenated.
+   *
+   * @param tag The tag to store the objects at
+   * @param version The version of the tag
+   * @param leading The names and objects to embed before objs. leading has to hold an even
+   *        number of elements, with leading[2*n] holding the name for the object at
+   *        leading[2*n+1].
+   * @param objs The name and objects to embed. objs is expected to hold an
+   *        even number of elements, with objs[2*n] holding the name for the
+   *        object at objs[2*n+1]. May be null.
+   * @return the encoded string
+   */
+  public String formatPrefixedStructuredLine(String tag, int version, Object[] leading,
+      Object[] objs) {
+    StringBuilder sb = acquireBuilder();
+    try {
+      Object[] context = DiagnosticContext.getEntries();
+      if (context.length == 0) {
+        encoder.appendStructuredLineWithContext(sb, tag, version, leading,
+            (objs == null) ? context : objs);
+      } else {
+        int objsLength = (objs == null) ? 0 : objs.length;
+        Object[] concatenated = new Object[leading.length + objsLength];
+        System.arraycopy(leading, 0, concatenated, 0, leading.length);
+        if (objs != null) {
+          System.arraycopy(objs, 0, concatenated, leading.length, objsLength);
         }
+        encoder.appendStructuredLineWithContext(sb, tag, version, concatenated, context);
       }
-      if (hasPrev) {
-        // objs was not even, so there is an element present that has
-        // not been logged yet :-(
-        sb.append(SEPARATOR);
-        sb.append(formatStructuredColumn(null, prev));
-      }
+      return sb.toString();
+    } finally {
+      releaseBuilder(sb);
     }
-    sb.append(SEPARATOR);
-    return sb.toString();
   }
 }
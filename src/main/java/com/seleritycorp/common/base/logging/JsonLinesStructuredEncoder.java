@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.UUID;
+
+/**
+ * Encodes structured log data as a single JSON object per line.
+ *
+ * <p>Lines look like {@code {"log-tag":"foo","log-tag-version":42,"bar":"baz"}}, so log
+ * shippers can parse them with a plain JSON parser instead of regular expressions.
+ *
+ * <p>Values are written with their JSON type. Numbers and booleans are written as JSON numbers
+ * and booleans, null as JSON null, and all other values as JSON strings. Numbers, booleans,
+ * UUIDs, enums, and CharSequences are written directly to the line without allocating an
+ * intermediate String. Non-finite floating point numbers are written as strings, as JSON does
+ * not have a representation for them.
+ *
+ * <p>This class is thread-safe.
+ */
+public class JsonLinesStructuredEncoder implements StructuredEncoder {
+  /**
+   * Representation of null names.
+   */
+  private static final String NULL_NAME_REPRESENTATION = "<null>";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * Appends a JSON string literal.
+   *
+   * @param sb The builder to append to
+   * @param str The string to quote, escape, and append
+   */
+  private void appendString(StringBuilder sb, CharSequence str) {
+    sb.append('"');
+    final int length = str.length();
+    for (int i = 0; i < length; i++) {
+      final char c = str.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        case '\b':
+          sb.append("\\b");
+          break;
+        case '\f':
+          sb.append("\\f");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append("\\u00");
+            sb.append(HEX_DIGITS[c >> 4]);
+            sb.append(HEX_DIGITS[c & 0xf]);
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    sb.append('"');
+  }
+
+  /**
+   * Appends the hex digits of the lower bits of a long.
+   *
+   * @param sb The builder to append to
+   * @param value The value to take the bits from
+   * @param digits The number of hex digits to append
+   */
+  private void appendHex(StringBuilder sb, long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      sb.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+    }
+  }
+
+  /**
+   * Appends a UUID as JSON string in its canonical form.
+   *
+   * @param sb The builder to append to
+   * @param uuid The UUID to append
+   */
+  private void appendUuid(StringBuilder sb, UUID uuid) {
+    final long msb = uuid.getMostSignificantBits();
+    final long lsb = uuid.getLeastSignificantBits();
+    sb.append('"');
+    appendHex(sb, msb >>> 32, 8);
+    sb.append('-');
+    appendHex(sb, msb >>> 16, 4);
+    sb.append('-');
+    appendHex(sb, msb, 4);
+    sb.append('-');
+    appendHex(sb, lsb >>> 48, 4);
+    sb.append('-');
+    appendHex(sb, lsb, 12);
+    sb.append('"');
+  }
+
+  /**
+   * Appends a value as JSON value of matching type.
+   *
+   * @param sb The builder to append to
+   * @param value The value to append
+   */
+  private void appendValue(StringBuilder sb, Object value) {
+    if (value == null) {
+      sb.append("null");
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+        || value instanceof Byte) {
+      sb.append(((Number) value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      final double doubleValue = ((Number) value).doubleValue();
+      if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+        sb.append('"');
+        sb.append(doubleValue);
+        sb.append('"');
+      } else if (value instanceof Float) {
+        sb.append(((Float) value).floatValue());
+      } else {
+        sb.append(doubleValue);
+      }
+    } else if (value instanceof BigInteger || value instanceof BigDecimal) {
+      sb.append(value.toString());
+    } else if (value instanceof Boolean) {
+      sb.append(((Boolean) value).booleanValue());
+    } else if (value instanceof UUID) {
+      appendUuid(sb, (UUID) value);
+    } else if (value instanceof CharSequence) {
+      appendString(sb, (CharSequence) value);
+    } else if (value instanceof Enum) {
+      appendString(sb, ((Enum<?>) value).name());
+    } else {
+      String str = value.toString();
+      if (str == null) {
+        sb.append("null");
+      } else {
+        appendString(sb, str);
+      }
+    }
+  }
+
+  /**
+   * Appends a name as JSON string.
+   *
+   * @param sb The builder to append to
+   * @param name The name to append
+   */
+  private void appendName(StringBuilder sb, Object name) {
+    if (name instanceof CharSequence) {
+      appendString(sb, (CharSequence) name);
+    } else {
+      // Names that are null or stringify to null are considered missing.
+      String nameStr = (name == null) ? null : name.toString();
+      appendString(sb, (nameStr == null) ? NULL_NAME_REPRESENTATION : nameStr);
+    }
+  }
+
+  /**
+   * Appends a JSON member.
+   *
+   * @param sb The builder to append to
+   * @param name The member's name
+   * @param value The member's value
+   */
+  private void appendMember(StringBuilder sb, Object name, Object value) {
+    sb.append(',');
+    appendName(sb, name);
+    sb.append(':');
+    appendValue(sb, value);
+  }
+
+  /**
+   * Appends name/value pairs as members.
+   *
+   * @param sb The builder to append to
+   * @param objs The names and objects to append. An odd last element is appended without name.
+   */
+  private void appendMembers(StringBuilder sb, Object[] objs) {
+    if (objs != null) {
+      final int pairedLength = objs.length & ~1;
+      for (int i = 0; i < pairedLength; i += 2) {
+        appendMember(sb, objs[i], objs[i + 1]);
+      }
+      if (pairedLength != objs.length) {
+        // objs was not even, so the last element lacks a name.
+        appendMember(sb, null, objs[pairedLength]);
+      }
+    }
+  }
+
+  /**
+   * Opens the object and appends the log-tag and log-tag-version members.
+   *
+   * @param sb The builder to append to
+   * @param tag The tag to append
+   * @param version The version to append
+   */
+  private void appendTagMembers(StringBuilder sb, String tag, int version) {
+    sb.append("{\"log-tag\":");
+    if (tag == null) {
+      sb.append("null");
+    } else {
+      appendString(sb, tag);
+    }
+    sb.append(",\"log-tag-version\":");
+    sb.append(version);
+  }
+
+  @Override
+  public void appendStructuredLine(StringBuilder sb, String tag, int version, Object... objs) {
+    appendTagMembers(sb, tag, version);
+    appendMembers(sb, objs);
+    sb.append('}');
+  }
+
+  @Override
+  public void appendStructuredLineWithContext(StringBuilder sb, String tag, int version,
+      Object[] objs, Object[] context) {
+    appendTagMembers(sb, tag, version);
+    appendMembers(sb, objs);
+    appendMembers(sb, context);
+    sb.append('}');
+  }
+}
@@ -20,6 +20,8 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import org.apache.log4j.Logger;
 
+import java.util.function.Supplier;
+
 /**
  * Selerity specific Log extension.
  */
@@ -43,6 +45,294 @@ public interface Log extends org.apache.commons.logging.Log {
    */
   void log(Level level, Object message, Throwable throwable);
 
+  /**
+   * Logs a lazily computed message at TRACE level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code trace((Object) null)}. Otherwise, the supplier is only evaluated if TRACE is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   */
+  default void trace(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      trace((Object) null);
+    } else if (isTraceEnabled()) {
+      trace(messageSupplier.get());
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at TRACE level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code trace((Object) null)}. Otherwise, the supplier is only evaluated if TRACE is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   * @param throwable cause for the log.
+   */
+  default void trace(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      trace((Object) null, throwable);
+    } else if (isTraceEnabled()) {
+      trace(messageSupplier.get(), throwable);
+    }
+  }
+
+  /**
+   * Logs a message template at TRACE level.
+   *
+   * <p>The template is only formatted (using {@link String#format(String, Object...)}) if TRACE
+   * is enabled.
+   *
+   * @param format the template of the message to log.
+   * @param args the arguments to fill into the template.
+   */
+  default void trace(String format, Object... args) {
+    if (isTraceEnabled()) {
+      trace((Object) CommonsLog.formatMessage(format, args));
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at DEBUG level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code debug((Object) null)}. Otherwise, the supplier is only evaluated if DEBUG is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   */
+  default void debug(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      debug((Object) null);
+    } else if (isDebugEnabled()) {
+      debug(messageSupplier.get());
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at DEBUG level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code debug((Object) null)}. Otherwise, the supplier is only evaluated if DEBUG is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   * @param throwable cause for the log.
+   */
+  default void debug(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      debug((Object) null, throwable);
+    } else if (isDebugEnabled()) {
+      debug(messageSupplier.get(), throwable);
+    }
+  }
+
+  /**
+   * Logs a message template at DEBUG level.
+   *
+   * <p>The template is only formatted (using {@link String#format(String, Object...)}) if DEBUG
+   * is enabled.
+   *
+   * @param format the template of the message to log.
+   * @param args the arguments to fill into the template.
+   */
+  default void debug(String format, Object... args) {
+    if (isDebugEnabled()) {
+      debug((Object) CommonsLog.formatMessage(format, args));
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at INFO level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code info((Object) null)}. Otherwise, the supplier is only evaluated if INFO is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   */
+  default void info(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      info((Object) null);
+    } else if (isInfoEnabled()) {
+      info(messageSupplier.get());
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at INFO level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code info((Object) null)}. Otherwise, the supplier is only evaluated if INFO is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   * @param throwable cause for the log.
+   */
+  default void info(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      info((Object) null, throwable);
+    } else if (isInfoEnabled()) {
+      info(messageSupplier.get(), throwable);
+    }
+  }
+
+  /**
+   * Logs a message template at INFO level.
+   *
+   * <p>The template is only formatted (using {@link String#format(String, Object...)}) if INFO
+   * is enabled.
+   *
+   * @param format the template of the message to log.
+   * @param args the arguments to fill into the template.
+   */
+  default void info(String format, Object... args) {
+    if (isInfoEnabled()) {
+      info((Object) CommonsLog.formatMessage(format, args));
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at WARN level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code warn((Object) null)}. Otherwise, the supplier is only evaluated if WARN is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   */
+  default void warn(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      warn((Object) null);
+    } else if (isWarnEnabled()) {
+      warn(messageSupplier.get());
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at WARN level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code warn((Object) null)}. Otherwise, the supplier is only evaluated if WARN is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   * @param throwable cause for the log.
+   */
+  default void warn(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      warn((Object) null, throwable);
+    } else if (isWarnEnabled()) {
+      warn(messageSupplier.get(), throwable);
+    }
+  }
+
+  /**
+   * Logs a message template at WARN level.
+   *
+   * <p>The template is only formatted (using {@link String#format(String, Object...)}) if WARN
+   * is enabled.
+   *
+   * @param format the template of the message to log.
+   * @param args the arguments to fill into the template.
+   */
+  default void warn(String format, Object... args) {
+    if (isWarnEnabled()) {
+      warn((Object) CommonsLog.formatMessage(format, args));
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at ERROR level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code error((Object) null)}. Otherwise, the supplier is only evaluated if ERROR is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   */
+  default void error(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      error((Object) null);
+    } else if (isErrorEnabled()) {
+      error(messageSupplier.get());
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at ERROR level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code error((Object) null)}. Otherwise, the supplier is only evaluated if ERROR is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   * @param throwable cause for the log.
+   */
+  default void error(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      error((Object) null, throwable);
+    } else if (isErrorEnabled()) {
+      error(messageSupplier.get(), throwable);
+    }
+  }
+
+  /**
+   * Logs a message template at ERROR level.
+   *
+   * <p>The template is only formatted (using {@link String#format(String, Object...)}) if ERROR
+   * is enabled.
+   *
+   * @param format the template of the message to log.
+   * @param args the arguments to fill into the template.
+   */
+  default void error(String format, Object... args) {
+    if (isErrorEnabled()) {
+      error((Object) CommonsLog.formatMessage(format, args));
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at FATAL level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code fatal((Object) null)}. Otherwise, the supplier is only evaluated if FATAL is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   */
+  default void fatal(Supplier<?> messageSupplier) {
+    if (messageSupplier == null) {
+      fatal((Object) null);
+    } else if (isFatalEnabled()) {
+      fatal(messageSupplier.get());
+    }
+  }
+
+  /**
+   * Logs a lazily computed message at FATAL level.
+   *
+   * <p>A null supplier logs a null message regardless of the level, just like
+   * {@code fatal((Object) null)}. Otherwise, the supplier is only evaluated if FATAL is enabled.
+   *
+   * @param messageSupplier supplier of the message to log.
+   * @param throwable cause for the log.
+   */
+  default void fatal(Supplier<?> messageSupplier, Throwable throwable) {
+    if (messageSupplier == null) {
+      fatal((Object) null, throwable);
+    } else if (isFatalEnabled()) {
+      fatal(messageSupplier.get(), throwable);
+    }
+  }
+
+  /**
+   * Logs a message template at FATAL level.
+   *
+   * <p>The template is only formatted (using {@link String#format(String, Object...)}) if FATAL
+   * is enabled.
+   *
+   * @param format the template of the message to log.
+   * @param args the arguments to fill into the template.
+   */
+  default void fatal(String format, Object... args) {
+    if (isFatalEnabled()) {
+      fatal((Object) CommonsLog.formatMessage(format, args));
+    }
+  }
+
   /**
    * Gets the raw Log4j logger behind this Log, if there is any
    *
@@ -58,15 +348,16 @@ public interface Log extends org.apache.commons.logging.Log {
    * Logs objects in structured format in a single INFO line
    *
    * <p>This method is mostly useful for logs that are meant to be parsed by
-   * machines. The format is friendly to `cut` and `grep`.
-   *
-   * <p>The following replacements take place:
+   * machines. By default, the format is friendly to `cut` and `grep`, and the following
+   * replacements take place:
    * <ol>
    * <li>Backslashes get replaced by backslash, followed by the less-than sign.</li>
    * <li>Carriage-Returns get replaced by backslash, followed by r.</li>
    * <li>Linebreaks get replaced by backslash, followed by n.</li>
    * <li>Slashes get replaced by backslash, followed by a pipe.</li>
    * </ol>
+   *
+   * <p>See {@link Formatter} on how to switch to a different encoding, like JSON lines.
    * 
    * @param tag The tag to store the line at
    * @param version The version of the tag
@@ -81,7 +372,7 @@ public interface Log extends org.apache.commons.logging.Log {
    * Logs objects in structured format in a single DEBUG line
    *
    * <p>This method matches {@link #structuredInfo(String, int, Object...)} except that the log is
-   * at DEBUG level.
+   * at DEBUG level. Nothing gets formatted if DEBUG is disabled.
    * 
    * @param tag The tag to store the line at
    * @param version The version of the tag
@@ -91,4 +382,64 @@ public interface Log extends org.apache.commons.logging.Log {
    *        {@code structuredInfo("foo", 42, "bar", bar, "bar-size", bar.size());}
    */
   public void structuredDebug(String tag, int version, Object... objs);
+
+  /**
+   * Logs one name/value pair in structured format in a single DEBUG line
+   *
+   * <p>This method matches {@link #structuredDebug(String, int, Object...)}, but avoids
+   * materializing a varargs array if DEBUG is disabled.
+   * 
+   * @param tag The tag to store the line at
+   * @param version The version of the tag
+   * @param name1 The name of the first object
+   * @param value1 The first object
+   */
+  default void structuredDebug(String tag, int version, Object name1, Object value1) {
+    if (isDebugEnabled()) {
+      structuredDebug(tag, version, new Object[] {name1, value1});
+    }
+  }
+
+  /**
+   * Logs two name/value pairs in structured format in a single DEBUG line
+   *
+   * <p>This method matches {@link #structuredDebug(String, int, Object...)}, but avoids
+   * materializing a varargs array if DEBUG is disabled.
+   * 
+   * @param tag The tag to store the line at
+   * @param version The version of the tag
+   * @param name1 The name of the first object
+   * @param value1 The first object
+   * @param name2 The name of the second object
+   * @param value2 The second object
+   */
+  default void structuredDebug(String tag, int version, Object name1, Object value1,
+      Object name2, Object value2) {
+    if (isDebugEnabled()) {
+      structuredDebug(tag, version, new Object[] {name1, value1, name2, value2});
+    }
+  }
+
+  /**
+   * Logs three name/value pairs in structured format in a single DEBUG line
+   *
+   * <p>This method matches {@link #structuredDebug(String, int, Object...)}, but avoids
+   * materializing a varargs array if DEBUG is disabled.
+   * 
+   * @param tag The tag to store the line at
+   * @param version The version of the tag
+   * @param name1 The name of the first object
+   * @param value1 The first object
+   * @param name2 The name of the second object
+   * @param value2 The second object
+   * @param name3 The name of the third object
+   * @param value3 The third object
+   */
+  default void structuredDebug(String tag, int version, Object name1, Object value1,
+      Object name2, Object value2, Object name3, Object value3) {
+    if (isDebugEnabled()) {
+      structuredDebug(tag, version,
+          new Object[] {name1, value1, name2, value2, name3, value3});
+    }
+  }
 }
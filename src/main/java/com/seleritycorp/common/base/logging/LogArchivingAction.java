@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.seleritycorp.common.base.time.Clock;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.rolling.helper.ActionBase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Action to compress or index rotated log files and prune old ones.
+ *
+ * <p>This action is meant to run asynchronously after a roll-over. It lowers the priority of the
+ * thread it runs on, and archiving actions are run one after the other, so a burst of roll-overs
+ * does not lead to concurrent compressions.
+ *
+ * <p>Pruning considers the rotated files (compressed or not) in the rotation directory. Files
+ * are pruned oldest first, once they are older than the maximum age, or once the newer files
+ * already use up the maximum total size. Pruned files lose their {@link StructuredLogIndex} as
+ * well.
+ *
+ * <p>Indexing only considers uncompressed rotated files that lack an up-to-date index, so each
+ * rotated file typically gets indexed only once, right after it got rotated.
+ */
+class LogArchivingAction extends ActionBase {
+  /**
+   * Suffix of gzip compressed files.
+   */
+  static final String GZIP_SUFFIX = ".gz";
+
+  /**
+   * Suffix of files that are still getting compressed.
+   */
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Lock to run only a single archiving action at a time.
+   */
+  private static final Object archivingLock = new Object();
+
+  private final Path directory;
+  private final Pattern rotatedFilePattern;
+  private final Path activeFile;
+  private final boolean compress;
+  private final Collection<String> indexedFields;
+  private final long maxTotalSize;
+  private final long maxAgeMillis;
+  private final Clock clock;
+
+  /**
+   * Creates an archiving action.
+   *
+   * @param directory The directory holding the rotated files.
+   * @param rotatedFilePattern The pattern that file names of uncompressed rotated files match.
+   * @param activeFile The file that is currently getting logged to. It does not get touched.
+   * @param compress Whether to gzip uncompressed rotated files.
+   * @param indexedFields The fields to index for uncompressed rotated files. null for no
+   *     indexing.
+   * @param maxTotalSize The maximum number of bytes to keep for rotated files. 0 for unbounded.
+   * @param maxAgeMillis The maximum age of rotated files in milliseconds. 0 for unbounded.
+   * @param clock The clock to determine the age of files with.
+   */
+  LogArchivingAction(Path directory, Pattern rotatedFilePattern, Path activeFile,
+      boolean compress, Collection<String> indexedFields, long maxTotalSize, long maxAgeMillis,
+      Clock clock) {
+    this.directory = directory;
+    this.rotatedFilePattern = rotatedFilePattern;
+    this.activeFile = activeFile.toAbsolutePath().normalize();
+    this.compress = compress;
+    this.indexedFields = indexedFields;
+    this.maxTotalSize = maxTotalSize;
+    this.maxAgeMillis = maxAgeMillis;
+    this.clock = clock;
+  }
+
+  @Override
+  public boolean execute() throws IOException {
+    Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+    synchronized (archivingLock) {
+      if (compress) {
+        for (Path file : listRotatedFiles()) {
+          if (!file.getFileName().toString().endsWith(GZIP_SUFFIX)) {
+            try {
+              gzip(file);
+              Files.deleteIfExists(StructuredLogIndex.getIndexFile(file));
+            } catch (IOException e) {
+              LogLog.warn("Failed to compress rotated log file " + file, e);
+            }
+          }
+        }
+      }
+      if (indexedFields != null) {
+        for (Path file : listRotatedFiles()) {
+          if (!file.getFileName().toString().endsWith(GZIP_SUFFIX)
+              && !StructuredLogIndex.isUpToDate(file)) {
+            try {
+              StructuredLogIndex.build(file, indexedFields);
+            } catch (IOException e) {
+              LogLog.warn("Failed to index rotated log file " + file, e);
+            }
+          }
+        }
+      }
+      if (maxTotalSize > 0 || maxAgeMillis > 0) {
+        prune();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Lists the rotated files, compressed or not.
+   *
+   * @return the rotated files.
+   * @throws IOException if listing fails.
+   */
+  private List<Path> listRotatedFiles() throws IOException {
+    List<Path> ret = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        boolean sideFile = name.endsWith(StructuredLogIndex.INDEX_SUFFIX)
+            || name.endsWith(TEMPORARY_SUFFIX);
+        if (name.endsWith(GZIP_SUFFIX)) {
+          name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+        }
+        if (!sideFile && rotatedFilePattern.matcher(name).matches() && Files.isRegularFile(file)
+            && !activeFile.equals(file.toAbsolutePath().normalize())) {
+          ret.add(file);
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Compresses a file with gzip and removes the uncompressed file.
+   *
+   * <p>The compressed file only shows up once it got fully written, and keeps the
+   * uncompressed file's modification time.
+   *
+   * @param file The file to compress.
+   * @throws IOException if compression fails.
+   */
+  private void gzip(Path file) throws IOException {
+    Path target = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+    Path temporary = file.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+    FileTime lastModified = Files.getLastModifiedTime(file);
+    try (InputStream in = Files.newInputStream(file);
+        OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+    Files.setLastModifiedTime(temporary, lastModified);
+    try {
+      Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.delete(file);
+  }
+
+  /**
+   * Deletes rotated files that exceed the maximum age or total size.
+   *
+   * @throws IOException if listing the rotated files fails.
+   */
+  private void prune() throws IOException {
+    List<RotatedFile> files = new ArrayList<>();
+    for (Path file : listRotatedFiles()) {
+      files.add(new RotatedFile(file));
+    }
+
+    // Newest files first
+    Collections.sort(files, new Comparator<RotatedFile>() {
+      @Override
+      public int compare(RotatedFile o1, RotatedFile o2) {
+        return Long.compare(o2.lastModified, o1.lastModified);
+      }
+    });
+
+    long now = clock.getMillisEpoch();
+    long totalSize = 0;
+    for (RotatedFile file : files) {
+      totalSize += file.size;
+      boolean tooOld = maxAgeMillis > 0 && now - file.lastModified > maxAgeMillis;
+      boolean tooBig = maxTotalSize > 0 && totalSize > maxTotalSize;
+      if (tooOld || tooBig) {
+        try {
+          Files.delete(file.path);
+          Files.deleteIfExists(StructuredLogIndex.getIndexFile(file.path));
+        } catch (IOException e) {
+          LogLog.warn("Failed to prune rotated log file " + file.path, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * A rotated file along with the attributes relevant for pruning.
+   */
+  private static class RotatedFile {
+    private final Path path;
+    private final long lastModified;
+    private final long size;
+
+    RotatedFile(Path path) throws IOException {
+      this.path = path;
+      this.lastModified = Files.getLastModifiedTime(path).toMillis();
+      this.size = Files.size(path);
+    }
+  }
+}
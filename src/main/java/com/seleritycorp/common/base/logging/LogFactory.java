@@ -16,16 +16,132 @@
 
 package com.seleritycorp.common.base.logging;
 
+import com.google.common.collect.MapMaker;
+
 import com.seleritycorp.common.base.inject.InjectorFactory;
 
 import org.apache.commons.logging.LogConfigurationException;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.spi.LoggerRepository;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Factory for creating Log instances.
+ *
+ * <p>Created Logs are kept in a registry with weakly referenced values. So repeated lookups of
+ * the same Log are a single map read, while Logs that are no longer used elsewhere can still
+ * get garbage collected.
  */
 public class LogFactory {
+  // The registries have to get initialized first, as setting up the formatter or the async
+  // dispatcher may already request Logs.
+  private static final ConcurrentMap<String, Log> plainLogs = createRegistry();
+  private static final ConcurrentMap<String, Log> permanentLogs = createRegistry();
+  private static final ConcurrentMap<PrefixedLogKey, Log> prefixedLogs = createRegistry();
+  private static final ConcurrentMap<String, Log> rateLimitedLogs = createRegistry();
+
   private static Formatter formatter = InjectorFactory.getInjector().getInstance(Formatter.class);
 
+  /**
+   * Dispatcher for asynchronous logging, if enabled. null otherwise.
+   *
+   * <p>See {@link AsyncLogDispatcher} on how to enable asynchronous logging.
+   */
+  private static AsyncLogDispatcher asyncDispatcher = AsyncLogDispatcher.createIfEnabled();
+
+  /**
+   * Recorder for suppressed DEBUG and TRACE events, if enabled. null otherwise.
+   *
+   * <p>See {@link DebugFlightRecorder} on how to enable flight recording.
+   */
+  private static DebugFlightRecorder flightRecorder = DebugFlightRecorder.createIfEnabled();
+
+  /**
+   * Metrics for logged events, if enabled. null otherwise.
+   *
+   * <p>See {@link LoggingMetrics} on how to enable metrics.
+   */
+  private static LoggingMetrics metrics = LoggingMetrics.createIfEnabled();
+
+  /**
+   * Deduplicator for stack traces in permanent logs, if enabled. null otherwise.
+   *
+   * <p>See {@link StackTraceDeduplicator} on how to enable and tune deduplication.
+   */
+  private static StackTraceDeduplicator stackTraceDeduplicator =
+      StackTraceDeduplicator.createIfEnabled();
+
+  /**
+   * The Log4j repository the cached Logs have been created for.
+   *
+   * <p>If Log4j switches to a different repository, the cached Logs would point to stale
+   * loggers, so the registry gets flushed.
+   */
+  private static volatile LoggerRepository cachedRepository = null;
+
+  /**
+   * Creates a concurrent map with weakly referenced values.
+   *
+   * @param <K> Type of the map's keys.
+   * @return the created map.
+   */
+  private static <K> ConcurrentMap<K, Log> createRegistry() {
+    return new MapMaker().weakValues().makeMap();
+  }
+
+  /**
+   * Flushes the registry, if Log4j's repository has been swapped since the last call.
+   */
+  private static void validateRegistry() {
+    LoggerRepository repository = LogManager.getLoggerRepository();
+    if (repository != cachedRepository) {
+      synchronized (LogFactory.class) {
+        if (repository != cachedRepository) {
+          releaseAll();
+          cachedRepository = repository;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a Log to a registry, unless another thread has been faster.
+   *
+   * @param <K> Type of the registry's keys.
+   * @param registry The registry to add the Log to.
+   * @param key The key to add the Log at.
+   * @param log The Log to add.
+   * @return The Log that is registered for the key.
+   */
+  private static <K> Log register(ConcurrentMap<K, Log> registry, K key, Log log) {
+    Log ret = log;
+    // Logs requested while bootstrapping the formatter lack a formatter, so they must not
+    // get shared.
+    if (formatter != null) {
+      Log existing = registry.putIfAbsent(key, log);
+      if (existing != null) {
+        ret = existing;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Drops all cached Logs.
+   *
+   * <p>Subsequent lookups create fresh Logs. Logs handed out before keep working, but are no
+   * longer shared with new lookups. Call this after re-configuring logging in a way that
+   * replaces the underlying loggers (e.g.: after releasing Commons Logging's factories).
+   */
+  public static void releaseAll() {
+    plainLogs.clear();
+    permanentLogs.clear();
+    prefixedLogs.clear();
+    rateLimitedLogs.clear();
+  }
+
   /**
    * Gets the non-permanent Log for a given Class
    *
@@ -49,13 +165,26 @@ public class LogFactory {
    * <p>Non-permanent logs will get deleted after some time, and not retained
    * forever.
    *
+   * <p>If asynchronous logging is enabled, the returned Log hands events to Log4j's appenders
+   * on a background thread.
+   *
+   * <p>If flight recording is enabled, the returned Log records DEBUG and TRACE messages below
+   * the logger's level and dumps them before ERROR and FATAL messages.
+   *
    * @param name The name to get the permanent {@code Log} instance for.
    * @return The non-permanent log for {@code name}
    * @exception LogConfigurationException if no suitable {@code Log} instance
    *            can be returned.
    */
   public static Log getLog(String name) throws LogConfigurationException {
-    return new CommonsLog(org.apache.commons.logging.LogFactory.getLog(name), formatter);
+    validateRegistry();
+    Log ret = plainLogs.get(name);
+    if (ret == null) {
+      ret = new CommonsLog(org.apache.commons.logging.LogFactory.getLog(name), formatter,
+          asyncDispatcher, flightRecorder, metrics);
+      ret = register(plainLogs, name, ret);
+    }
+    return ret;
   }
 
   /**
@@ -82,7 +211,8 @@ public class LogFactory {
    * <p>Permanent logs are meant to be kept around forever. Use them only for
    * messages that are worth to keep around forever.
    *
-   * <p>Messages sent to the returned Log are converted to a single line.
+   * <p>Messages sent to the returned Log are converted to a single line. Each distinct stack
+   * trace is rendered in full only once. Repetitions refer to it by its fingerprint id.
    * 
    * @param name The name to get the permanent {@code Log} instance for.
    * @return The non-permanent log for {@code clazz}
@@ -90,6 +220,97 @@ public class LogFactory {
    *            can be returned.
    */
   public static Log getPermanentLog(String name) throws LogConfigurationException {
-    return new FlatLog(getLog("permanent." + name), formatter);
+    validateRegistry();
+    Log ret = permanentLogs.get(name);
+    if (ret == null) {
+      ret = new FlatLog(getLog("permanent." + name), formatter, stackTraceDeduplicator);
+      ret = register(permanentLogs, name, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the non-permanent Log for a given name that prefixes each message
+   *
+   * <p>See {@link PrefixedLogger} for details on the prefixing.
+   *
+   * @param name The name to get the {@code Log} instance for.
+   * @param prefix The prefix to add to each message.
+   * @return The prefixing non-permanent log for {@code name}
+   * @exception LogConfigurationException if no suitable {@code Log} instance
+   *            can be returned.
+   */
+  public static Log getPrefixedLog(String name, String prefix) throws LogConfigurationException {
+    validateRegistry();
+    PrefixedLogKey key = new PrefixedLogKey(name, prefix);
+    Log ret = prefixedLogs.get(key);
+    if (ret == null) {
+      ret = new PrefixedLogger(prefix, getLog(name), formatter);
+      ret = register(prefixedLogs, key, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the non-permanent Log for a given Class that limits the rate of similar messages
+   *
+   * <p>See {@link RateLimitedLog} for details on the rate limiting.
+   *
+   * @param clazz The clazz to get the {@code Log} instance for.
+   * @return The rate-limiting non-permanent log for {@code clazz}
+   * @exception LogConfigurationException if no suitable {@code Log} instance
+   *            can be returned.
+   */
+  public static Log getRateLimitedLog(@SuppressWarnings("rawtypes") Class clazz)
+      throws LogConfigurationException {
+    return getRateLimitedLog(clazz.getName());
+  }
+
+  /**
+   * Gets the non-permanent Log for a given name that limits the rate of similar messages
+   *
+   * <p>See {@link RateLimitedLog} for details on the rate limiting.
+   *
+   * @param name The name to get the {@code Log} instance for.
+   * @return The rate-limiting non-permanent log for {@code name}
+   * @exception LogConfigurationException if no suitable {@code Log} instance
+   *            can be returned.
+   */
+  public static Log getRateLimitedLog(String name) throws LogConfigurationException {
+    validateRegistry();
+    Log ret = rateLimitedLogs.get(name);
+    if (ret == null) {
+      ret = RateLimitedLog.create(getLog(name), formatter);
+      ret = register(rateLimitedLogs, name, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Registry key for prefixed Logs.
+   */
+  private static final class PrefixedLogKey {
+    private final String name;
+    private final String prefix;
+
+    PrefixedLogKey(String name, String prefix) {
+      this.name = name;
+      this.prefix = prefix;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * String.valueOf(name).hashCode() + String.valueOf(prefix).hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      boolean ret = false;
+      if (obj instanceof PrefixedLogKey) {
+        PrefixedLogKey other = (PrefixedLogKey) obj;
+        ret = Objects.equals(name, other.name) && Objects.equals(prefix, other.prefix);
+      }
+      return ret;
+    }
   }
 }
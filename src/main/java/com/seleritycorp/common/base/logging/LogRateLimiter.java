@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.seleritycorp.common.base.time.Clock;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Token buckets for rate-limiting log messages by key.
+ *
+ * <p>Each key gets its own bucket that holds up to {@code burst} tokens and refills at a rate of
+ * {@code burst} tokens per period. The buckets are implemented as generic cell rate algorithm,
+ * so a bucket's state is a single number that gets updated by a CAS. Neither acquiring a token
+ * nor counting suppressed messages takes a lock.
+ *
+ * <p>To bound the memory footprint, at most {@code maxKeys} keys are tracked individually.
+ * Further keys share a single overflow bucket, until {@link #expire(ObjLongConsumer)} drops
+ * buckets that are full again.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <K> Type of the keys.
+ */
+class LogRateLimiter<K> {
+  private final Clock clock;
+  private final long periodNanos;
+  private final long emissionIntervalNanos;
+  private final int maxKeys;
+  private final ConcurrentMap<K, Bucket<K>> buckets;
+  private final Bucket<K> overflowBucket;
+
+  /**
+   * Creates a rate limiter.
+   *
+   * @param clock The clock to measure time with.
+   * @param burst The number of messages per key that are permitted within a period.
+   * @param periodMillis The length of the period in milliseconds.
+   * @param maxKeys The maximum number of keys to track individually.
+   */
+  LogRateLimiter(Clock clock, int burst, long periodMillis, int maxKeys) {
+    if (burst < 1) {
+      throw new IllegalArgumentException("Burst has to be positive, but is " + burst);
+    }
+    if (periodMillis < 1) {
+      throw new IllegalArgumentException("Period has to be positive, but is " + periodMillis);
+    }
+    this.clock = clock;
+    this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+    this.emissionIntervalNanos = periodNanos / burst;
+    this.maxKeys = maxKeys;
+    this.buckets = new ConcurrentHashMap<>();
+    this.overflowBucket = new Bucket<>(null);
+  }
+
+  /**
+   * Gets the bucket for a key.
+   *
+   * @param key The key to get the bucket for.
+   * @return The key's bucket, or the overflow bucket if too many keys are tracked already.
+   */
+  private Bucket<K> getBucket(K key) {
+    Bucket<K> ret = buckets.get(key);
+    if (ret == null) {
+      if (buckets.size() < maxKeys) {
+        Bucket<K> bucket = new Bucket<>(key);
+        ret = buckets.putIfAbsent(key, bucket);
+        if (ret == null) {
+          ret = bucket;
+        }
+      } else {
+        ret = overflowBucket;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Tries to take a token for a key.
+   *
+   * @param key The key to take a token for.
+   * @return -1, if no token is available and the message has to be suppressed. Otherwise, the
+   *     number of messages for the key that got suppressed since the last successful call. This
+   *     number gets reset by the call.
+   */
+  long tryAcquire(K key) {
+    Bucket<K> bucket = getBucket(key);
+    long now = clock.getNanosEpoch();
+    long ret = -1;
+    boolean done = false;
+    while (!done) {
+      long theoreticalArrival = bucket.theoreticalArrival.get();
+      long newTheoreticalArrival = Math.max(theoreticalArrival, now) + emissionIntervalNanos;
+      if (newTheoreticalArrival - now > periodNanos) {
+        bucket.suppressed.incrementAndGet();
+        done = true;
+      } else if (bucket.theoreticalArrival.compareAndSet(theoreticalArrival,
+          newTheoreticalArrival)) {
+        ret = (bucket.suppressed.get() == 0) ? 0 : bucket.suppressed.getAndSet(0);
+        done = true;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reports pending suppression counts and drops buckets that are full again.
+   *
+   * <p>Dropping a full bucket does not change the rate limiting, as a newly created bucket
+   * starts out full.
+   *
+   * @param suppressedConsumer Gets fed each key with pending suppressed messages along with the
+   *     number of those messages. For the overflow bucket, the key is null.
+   */
+  void expire(ObjLongConsumer<K> suppressedConsumer) {
+    long now = clock.getNanosEpoch();
+    Iterator<Bucket<K>> iter = buckets.values().iterator();
+    while (iter.hasNext()) {
+      Bucket<K> bucket = iter.next();
+      report(bucket, suppressedConsumer);
+      if (bucket.theoreticalArrival.get() <= now) {
+        iter.remove();
+      }
+    }
+    report(overflowBucket, suppressedConsumer);
+  }
+
+  /**
+   * Feeds a bucket's pending suppression count to a consumer.
+   *
+   * @param bucket The bucket to report.
+   * @param suppressedConsumer The consumer to report to, if there are pending suppressed
+   *     messages.
+   */
+  private void report(Bucket<K> bucket, ObjLongConsumer<K> suppressedConsumer) {
+    long suppressed = bucket.suppressed.getAndSet(0);
+    if (suppressed > 0) {
+      suppressedConsumer.accept(bucket.key, suppressed);
+    }
+  }
+
+  /**
+   * Gets the number of individually tracked keys.
+   *
+   * @return the number of individually tracked keys.
+   */
+  int getTrackedKeyCount() {
+    return buckets.size();
+  }
+
+  /**
+   * State of a single token bucket.
+   *
+   * @param <K> Type of the key.
+   */
+  private static final class Bucket<K> {
+    private final K key;
+
+    /**
+     * Time in nanoseconds since epoch at which the bucket would be full again.
+     */
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Number of suppressed messages that have not yet been reported.
+     */
+    private final AtomicLong suppressed = new AtomicLong();
+
+    Bucket(K key) {
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.seleritycorp.common.base.jmx.MBeanUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the cost of logging.
+ *
+ * <p>Events get counted per level, per logger name prefix, and (for structured events) per
+ * log-tag. Additionally, the characters of formatted messages and the time spent handing events
+ * to the appenders get summed up. All counters are {@link LongAdder}s, so contended logging
+ * threads do not serialize on them.
+ *
+ * <p>Metrics are off by default. To turn them on, set the system property
+ * {@value #ENABLED_PROPERTY} to {@code true}. The number of leading logger name segments that
+ * make up a prefix can be tuned through {@value #PREFIX_DEPTH_PROPERTY}.
+ *
+ * <p>The number of distinct prefixes and log-tags is bounded. Once full, further ones get
+ * counted as {@value #OTHER_KEY}.
+ *
+ * <p>This class is thread-safe.
+ */
+public class LoggingMetrics implements LoggingMetricsMBean {
+  static final String ENABLED_PROPERTY = "com.seleritycorp.common.base.logging.metrics.enabled";
+  static final String PREFIX_DEPTH_PROPERTY =
+      "com.seleritycorp.common.base.logging.metrics.prefixDepth";
+
+  /**
+   * Key to count prefixes and log-tags under, once their maximum number is reached.
+   */
+  static final String OTHER_KEY = "<other>";
+
+  private static final int DEFAULT_PREFIX_DEPTH = 3;
+  private static final int MAX_KEYS = 1024;
+  private static final String MBEAN_NAME =
+      "com.seleritycorp.common.base.logging:type=LoggingMetrics";
+
+  private final int prefixDepth;
+  private final Map<Level, LongAdder> eventsPerLevel = new EnumMap<>(Level.class);
+  private final ConcurrentMap<String, LongAdder> eventsPerPrefix = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongAdder> structuredEventsPerTag =
+      new ConcurrentHashMap<>();
+  private final LongAdder messageChars = new LongAdder();
+  private final LongAdder appendNanos = new LongAdder();
+
+  /**
+   * Creates metrics.
+   *
+   * @param prefixDepth The number of leading logger name segments that make up a prefix.
+   */
+  LoggingMetrics(int prefixDepth) {
+    this.prefixDepth = prefixDepth;
+    for (Level level : Level.values()) {
+      eventsPerLevel.put(level, new LongAdder());
+    }
+  }
+
+  /**
+   * Creates metrics configured through system properties.
+   *
+   * @return The created metrics, or null if metrics are not enabled.
+   */
+  static LoggingMetrics createIfEnabled() {
+    LoggingMetrics ret = null;
+    if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+      int prefixDepth = Integer.getInteger(PREFIX_DEPTH_PROPERTY, DEFAULT_PREFIX_DEPTH);
+      ret = new LoggingMetrics(prefixDepth);
+      MBeanUtils.register(MBEAN_NAME, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the counter for a key, creating it if needed.
+   *
+   * @param counters The counters to get the counter from.
+   * @param key The key to get the counter for.
+   * @return the counter for the key, or the {@value #OTHER_KEY} counter if there are too many
+   *     keys.
+   */
+  private LongAdder getCounter(ConcurrentMap<String, LongAdder> counters, String key) {
+    LongAdder ret = counters.get(key);
+    if (ret == null) {
+      String effectiveKey = (counters.size() < MAX_KEYS) ? key : OTHER_KEY;
+      ret = counters.get(effectiveKey);
+      if (ret == null) {
+        LongAdder created = new LongAdder();
+        ret = counters.putIfAbsent(effectiveKey, created);
+        if (ret == null) {
+          ret = created;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Computes the prefix of a logger name.
+   *
+   * @param loggerName The logger name to compute the prefix for. May be null.
+   * @return the first segments of the logger name.
+   */
+  String getPrefix(String loggerName) {
+    String ret = (loggerName == null) ? "<unknown>" : loggerName;
+    int end = -1;
+    for (int i = 0; i < prefixDepth && end < ret.length(); i++) {
+      end = ret.indexOf('.', end + 1);
+      if (end < 0) {
+        end = ret.length();
+      }
+    }
+    if (end >= 0 && end < ret.length()) {
+      ret = ret.substring(0, end);
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the counter for the events of a logger.
+   *
+   * <p>Logs look this counter up once, and pass it along when recording events. This saves a
+   * map lookup per event.
+   *
+   * @param loggerName The name of the logger. May be null.
+   * @return the counter for the logger's prefix.
+   */
+  LongAdder getLoggerCounter(String loggerName) {
+    return getCounter(eventsPerPrefix, getPrefix(loggerName));
+  }
+
+  /**
+   * Records a logged event.
+   *
+   * @param level The level of the event.
+   * @param loggerCounter The counter of the logger, as obtained by
+   *     {@link #getLoggerCounter(String)}.
+   * @param message The formatted message. May be null.
+   * @param nanos The time spent handing the event to the appenders.
+   */
+  void recordEvent(Level level, LongAdder loggerCounter, String message, long nanos) {
+    eventsPerLevel.get(level).increment();
+    loggerCounter.increment();
+    if (message != null) {
+      messageChars.add(message.length());
+    }
+    appendNanos.add(nanos);
+  }
+
+  /**
+   * Records a logged structured event.
+   *
+   * @param level The level of the event.
+   * @param loggerCounter The counter of the logger, as obtained by
+   *     {@link #getLoggerCounter(String)}.
+   * @param tag The log-tag of the event. May be null.
+   * @param message The formatted message. May be null.
+   * @param nanos The time spent handing the event to the appenders.
+   */
+  void recordStructuredEvent(Level level, LongAdder loggerCounter, String tag, String message,
+      long nanos) {
+    recordEvent(level, loggerCounter, message, nanos);
+    getCounter(structuredEventsPerTag, (tag == null) ? "<null>" : tag).increment();
+  }
+
+  /**
+   * Takes a snapshot of counters.
+   *
+   * @param counters The counters to take a snapshot of.
+   * @return the sorted snapshot.
+   */
+  private Map<String, Long> snapshot(Map<?, LongAdder> counters) {
+    Map<String, Long> ret = new TreeMap<>();
+    for (Map.Entry<?, LongAdder> entry : counters.entrySet()) {
+      ret.put(entry.getKey().toString(), entry.getValue().sum());
+    }
+    return ret;
+  }
+
+  @Override
+  public long getEventCount() {
+    long ret = 0;
+    for (LongAdder counter : eventsPerLevel.values()) {
+      ret += counter.sum();
+    }
+    return ret;
+  }
+
+  @Override
+  public Map<String, Long> getEventsPerLevel() {
+    return snapshot(eventsPerLevel);
+  }
+
+  @Override
+  public Map<String, Long> getEventsPerLoggerPrefix() {
+    return snapshot(eventsPerPrefix);
+  }
+
+  @Override
+  public Map<String, Long> getStructuredEventsPerTag() {
+    return snapshot(structuredEventsPerTag);
+  }
+
+  @Override
+  public long getMessageChars() {
+    return messageChars.sum();
+  }
+
+  @Override
+  public long getAppendNanos() {
+    return appendNanos.sum();
+  }
+
+  @Override
+  public void reset() {
+    for (LongAdder counter : eventsPerLevel.values()) {
+      counter.reset();
+    }
+    // Logs hold on to their prefix counters, so they get reset instead of removed.
+    for (LongAdder counter : eventsPerPrefix.values()) {
+      counter.reset();
+    }
+    structuredEventsPerTag.clear();
+    messageChars.reset();
+    appendNanos.reset();
+  }
+}
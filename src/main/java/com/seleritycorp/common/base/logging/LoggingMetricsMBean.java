@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import java.util.Map;
+
+public interface LoggingMetricsMBean {
+  /**
+   * Gets the total number of logged events.
+   *
+   * @return the total number of logged events.
+   */
+  public long getEventCount();
+
+  /**
+   * Gets the number of logged events per level.
+   *
+   * @return the number of logged events per level.
+   */
+  public Map<String, Long> getEventsPerLevel();
+
+  /**
+   * Gets the number of logged events per logger name prefix.
+   *
+   * @return the number of logged events per logger name prefix.
+   */
+  public Map<String, Long> getEventsPerLoggerPrefix();
+
+  /**
+   * Gets the number of logged structured events per log-tag.
+   *
+   * @return the number of logged structured events per log-tag.
+   */
+  public Map<String, Long> getStructuredEventsPerTag();
+
+  /**
+   * Gets the total number of characters of formatted messages.
+   *
+   * @return the total number of characters of formatted messages.
+   */
+  public long getMessageChars();
+
+  /**
+   * Gets the total time spent handing events to the appenders.
+   *
+   * @return the total time spent handing events to the appenders in nanoseconds.
+   */
+  public long getAppendNanos();
+
+  /**
+   * Resets all counters.
+   */
+  public void reset();
+}
@@ -0,0 +1,681 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.seleritycorp.common.base.inject.InjectorFactory;
+import com.seleritycorp.common.base.time.Clock;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.rolling.RollingPolicy;
+import org.apache.log4j.rolling.RolloverDescription;
+import org.apache.log4j.rolling.TriggeringPolicy;
+import org.apache.log4j.rolling.helper.Action;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.OptionHandler;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.apache.log4j.xml.UnrecognizedElementHandler;
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Appender writing log lines into a memory-mapped region of the active log file.
+ *
+ * <p>Appending a log line is a copy into the mapped region, so the logging thread does not issue
+ * a write system call per line. The mapping grows in chunks (see
+ * {@link #setMappingChunkSize(int)}). Dirty pages get forced to disk by a background thread in
+ * groups, once the flush interval passed (see {@link #setFlushInterval(long)}) or once enough
+ * bytes got appended (see {@link #setFlushSize(int)}).
+ *
+ * <p>Rolling works as for log4j's {@code org.apache.log4j.rolling.RollingFileAppender}, so
+ * together with {@link RoverLikeRollingPolicy} and {@link RoverLikeTriggeringPolicy}, rotated
+ * files are named and triggered exactly as before. Before a file gets rotated or closed, it gets
+ * truncated to the appended data, so rotated files do not carry the unused part of the mapping.
+ *
+ * <p>While a file is active, its size includes the not yet used part of the mapping, which
+ * holds zero bytes. If the process dies without closing the appender, the file keeps those zero
+ * bytes. Upon the next start, the file gets truncated to its appended data before it gets
+ * rotated or appended to, so rotated files never carry those zero bytes.
+ *
+ * <p>Mapped regions are not unmapped explicitly, as Java does not offer a safe way to do so.
+ * They get unmapped once they get garbage collected.
+ */
+public class MappedRollingFileAppender extends AppenderSkeleton
+    implements UnrecognizedElementHandler {
+  /**
+   * The block size used when searching for the end of the data in existing files.
+   */
+  private static final int SCAN_BLOCK_SIZE = 8192;
+
+  /**
+   * Sequence number to tell flusher threads apart.
+   */
+  private static int flusherCount = 0;
+
+  /**
+   * The name of the file to log to. null to let the rolling policy decide.
+   */
+  private String fileName = null;
+
+  /**
+   * Whether to append to existing files, or to truncate them.
+   */
+  private boolean fileAppend = true;
+
+  /**
+   * The encoding for log lines. null for the platform's default.
+   */
+  private String encoding = null;
+
+  /**
+   * Minimum number of bytes to grow the mapping by.
+   */
+  private int mappingChunkSize = 16 * 1024 * 1024;
+
+  /**
+   * Maximum number of milliseconds between forcing appended data to disk.
+   */
+  private long flushIntervalMillis = 1000;
+
+  /**
+   * Number of appended bytes after which to force appended data to disk early.
+   */
+  private int flushSize = 1024 * 1024;
+
+  private RollingPolicy rollingPolicy;
+  private TriggeringPolicy triggeringPolicy;
+
+  private Charset charset;
+  private FileChannel channel;
+
+  /**
+   * The currently mapped region. null if no file is open.
+   */
+  private MappedByteBuffer buffer;
+
+  /**
+   * The offset of {@link #buffer} within the file.
+   */
+  private long bufferOffset;
+
+  /**
+   * Mapped regions that got replaced, but still have to get forced to disk.
+   */
+  private List<MappedByteBuffer> retiredBuffers = new ArrayList<>();
+
+  /**
+   * Number of bytes appended since the last time the flusher picked up the buffers.
+   */
+  private long unflushedBytes;
+
+  /**
+   * The thread forcing appended data to disk. null if not running.
+   */
+  private Thread flusher;
+
+  /**
+   * Creates an appender using a {@link RoverLikeRollingPolicy} and a
+   * {@link RoverLikeTriggeringPolicy}.
+   */
+  public MappedRollingFileAppender() {
+    Clock clock = InjectorFactory.getInjector().getInstance(Clock.class);
+    rollingPolicy = new RoverLikeRollingPolicy(clock);
+    triggeringPolicy = new RoverLikeTriggeringPolicy(clock);
+  }
+
+  @Override
+  public void activateOptions() {
+    if (rollingPolicy == null || triggeringPolicy == null) {
+      LogLog.warn("Please set a rolling policy and a triggering policy for the "
+          + "MappedRollingFileAppender named '" + getName() + "'");
+    } else {
+      rollingPolicy.activateOptions();
+      triggeringPolicy.activateOptions();
+      charset = (encoding == null) ? Charset.defaultCharset() : Charset.forName(encoding);
+      synchronized (this) {
+        RolloverDescription rollover = rollingPolicy.initialize(fileName, fileAppend);
+        if (rollover != null) {
+          applyRollover(rollover);
+        } else {
+          openFile(fileName, fileAppend);
+        }
+        startFlusher();
+      }
+    }
+  }
+
+  /**
+   * Runs the actions of a roll-over and opens the new active file.
+   *
+   * @param rollover The roll-over to apply.
+   */
+  private void applyRollover(RolloverDescription rollover) {
+    boolean ok = true;
+    Action synchronous = rollover.getSynchronous();
+    if (synchronous != null) {
+      // The active file might still carry the mapping of an unclean shutdown.
+      trimFile(rollover.getActiveFileName());
+      try {
+        ok = synchronous.execute();
+      } catch (IOException e) {
+        ok = false;
+        errorHandler.error("Failed to roll over " + fileName, e, ErrorCode.FILE_OPEN_FAILURE);
+      }
+    }
+    fileName = rollover.getActiveFileName();
+    // If the synchronous action failed, the old file is still in place. So we append to it
+    // instead of truncating it.
+    openFile(fileName, rollover.getAppend() || !ok);
+
+    Action asynchronous = rollover.getAsynchronous();
+    if (ok && asynchronous != null) {
+      Thread thread = new Thread(asynchronous, "log-rollover-" + getName());
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Opens a file and maps its first chunk of free space.
+   *
+   * @param file The file to open.
+   * @param append If true, append to the file. Otherwise, truncate it.
+   */
+  private void openFile(String file, boolean append) {
+    try {
+      if (file == null) {
+        throw new IOException("No file to log to");
+      }
+      // Closing the channel closes the RandomAccessFile as well.
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      long end = 0;
+      if (append) {
+        end = findEnd(channel);
+      }
+      channel.truncate(end);
+      map(end, 0);
+      writeHeader();
+    } catch (IOException e) {
+      closeChannel();
+      errorHandler.error("Failed to open " + file, e, ErrorCode.FILE_OPEN_FAILURE);
+    }
+  }
+
+  /**
+   * Truncates a file to its appended data, if it carries left overs of a mapped region.
+   *
+   * <p>The file's modification time is kept, as rolling policies name rotated files after it.
+   *
+   * @param file The file to truncate. null and missing files are ignored.
+   */
+  private void trimFile(String file) {
+    if (file != null) {
+      Path path = Paths.get(file);
+      if (Files.isRegularFile(path)) {
+        try {
+          FileTime modified = Files.getLastModifiedTime(path);
+          boolean trimmed = false;
+          try (FileChannel trimChannel = FileChannel.open(path, StandardOpenOption.READ,
+              StandardOpenOption.WRITE)) {
+            long end = findEnd(trimChannel);
+            if (end < trimChannel.size()) {
+              trimChannel.truncate(end);
+              trimmed = true;
+            }
+          }
+          if (trimmed) {
+            Files.setLastModifiedTime(path, modified);
+          }
+        } catch (IOException e) {
+          errorHandler.error("Failed to truncate " + file, e, ErrorCode.FILE_OPEN_FAILURE);
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the end of the appended data in a file.
+   *
+   * <p>Trailing zero bytes are left overs from mapped regions of unclean shutdowns, and do not
+   * count as appended data.
+   *
+   * @param channel The channel of the file to find the end in.
+   * @return the position after the last non-zero byte.
+   * @throws IOException if reading the file fails.
+   */
+  static long findEnd(FileChannel channel) throws IOException {
+    long ret = -1;
+    long blockEnd = channel.size();
+    ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+    while (ret < 0 && blockEnd > 0) {
+      long blockStart = Math.max(0, blockEnd - SCAN_BLOCK_SIZE);
+      block.clear();
+      block.limit((int) (blockEnd - blockStart));
+      while (block.hasRemaining() && channel.read(block, blockStart + block.position()) >= 0) {
+        // Keep reading until the block is full.
+      }
+      for (int i = block.position() - 1; ret < 0 && i >= 0; i--) {
+        if (block.get(i) != 0) {
+          ret = blockStart + i + 1;
+        }
+      }
+      blockEnd = blockStart;
+    }
+    return Math.max(ret, 0);
+  }
+
+  /**
+   * Maps a new region of the file.
+   *
+   * @param position The file position to start the region at.
+   * @param minSize The minimum number of bytes that the region has to hold.
+   * @throws IOException if mapping fails.
+   */
+  private void map(long position, int minSize) throws IOException {
+    if (buffer != null) {
+      retiredBuffers.add(buffer);
+    }
+    int size = Math.max(mappingChunkSize, minSize);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+    bufferOffset = position;
+  }
+
+  /**
+   * Gets the number of appended bytes in the active file.
+   *
+   * @return the number of appended bytes.
+   */
+  synchronized long getFileLength() {
+    return (buffer == null) ? 0 : (bufferOffset + buffer.position());
+  }
+
+  /**
+   * Writes bytes to the mapped region, growing the mapping if needed.
+   *
+   * @param bytes The bytes to write.
+   * @throws IOException if growing the mapping fails.
+   */
+  private void write(byte[] bytes) throws IOException {
+    if (buffer.remaining() < bytes.length) {
+      map(bufferOffset + buffer.position(), bytes.length);
+    }
+    buffer.put(bytes);
+    unflushedBytes += bytes.length;
+    if (unflushedBytes >= flushSize) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Writes a string to the mapped region.
+   *
+   * @param str The string to write. null is ignored.
+   */
+  private void write(String str) {
+    if (str != null && buffer != null) {
+      try {
+        write(str.getBytes(charset));
+      } catch (IOException e) {
+        errorHandler.error("Failed to write to " + fileName, e, ErrorCode.WRITE_FAILURE);
+      }
+    }
+  }
+
+  private void writeHeader() {
+    if (layout != null && getFileLength() == 0) {
+      write(layout.getHeader());
+    }
+  }
+
+  private void writeFooter() {
+    if (layout != null) {
+      write(layout.getFooter());
+    }
+  }
+
+  @Override
+  protected void append(LoggingEvent event) {
+    if (buffer != null) {
+      if (triggeringPolicy.isTriggeringEvent(this, event, fileName, getFileLength())) {
+        rollover();
+      }
+      StringBuilder sb = new StringBuilder(layout.format(event));
+      if (layout.ignoresThrowable()) {
+        String[] throwableLines = event.getThrowableStrRep();
+        if (throwableLines != null) {
+          for (String line : throwableLines) {
+            sb.append(line).append(Layout.LINE_SEP);
+          }
+        }
+      }
+      write(sb.toString());
+    }
+  }
+
+  /**
+   * Rolls over the active file.
+   *
+   * @return true, if the roll-over succeeded. false otherwise.
+   */
+  public synchronized boolean rollover() {
+    boolean ret = false;
+    if (buffer != null) {
+      writeFooter();
+      closeFile();
+      RolloverDescription rollover = rollingPolicy.rollover(fileName);
+      if (rollover != null) {
+        applyRollover(rollover);
+        ret = true;
+      } else {
+        openFile(fileName, true);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Forces the appended data to disk, and truncates the file to the appended data.
+   */
+  private void closeFile() {
+    if (buffer != null) {
+      long length = getFileLength();
+      forceBuffers(takeBuffers(true));
+      try {
+        channel.truncate(length);
+      } catch (IOException e) {
+        errorHandler.error("Failed to truncate " + fileName, e, ErrorCode.CLOSE_FAILURE);
+      }
+    }
+    closeChannel();
+  }
+
+  private void closeChannel() {
+    buffer = null;
+    bufferOffset = 0;
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        errorHandler.error("Failed to close " + fileName, e, ErrorCode.CLOSE_FAILURE);
+      }
+      channel = null;
+    }
+  }
+
+  /**
+   * Takes the mapped regions that need forcing.
+   *
+   * @param includeCurrent Whether to include the current region, even if no bytes got appended.
+   * @return the regions to force.
+   */
+  private List<MappedByteBuffer> takeBuffers(boolean includeCurrent) {
+    List<MappedByteBuffer> ret = retiredBuffers;
+    retiredBuffers = new ArrayList<>();
+    if (buffer != null && (includeCurrent || unflushedBytes > 0)) {
+      ret.add(buffer);
+    }
+    unflushedBytes = 0;
+    return ret;
+  }
+
+  /**
+   * Forces mapped regions to disk.
+   *
+   * @param buffers The regions to force.
+   */
+  private void forceBuffers(List<MappedByteBuffer> buffers) {
+    for (MappedByteBuffer toForce : buffers) {
+      toForce.force();
+    }
+  }
+
+  /**
+   * Starts the thread that forces appended data to disk in groups.
+   */
+  private void startFlusher() {
+    if (flusher == null) {
+      int flusherNumber;
+      synchronized (MappedRollingFileAppender.class) {
+        flusherNumber = ++flusherCount;
+      }
+      flusher = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          flushLoop();
+        }
+      }, "mapped-log-flusher-" + flusherNumber);
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+  }
+
+  /**
+   * Forces appended data to disk until the appender gets closed.
+   */
+  private void flushLoop() {
+    boolean running = true;
+    while (running) {
+      List<MappedByteBuffer> buffers;
+      synchronized (this) {
+        if (!closed && unflushedBytes < flushSize) {
+          try {
+            wait(flushIntervalMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        running = !closed && !Thread.currentThread().isInterrupted();
+        buffers = takeBuffers(false);
+      }
+      // Forcing happens outside of the lock, so appending can go on meanwhile.
+      forceBuffers(buffers);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      writeFooter();
+      closeFile();
+      notifyAll();
+      flusher = null;
+    }
+  }
+
+  @Override
+  public boolean requiresLayout() {
+    return true;
+  }
+
+  @Override
+  public boolean parseUnrecognizedElement(Element element, Properties props) throws Exception {
+    boolean ret = false;
+    final String nodeName = element.getNodeName();
+    if ("rollingPolicy".equals(nodeName) || "triggeringPolicy".equals(nodeName)) {
+      Object policy = DOMConfigurator.parseElement(element, props, OptionHandler.class);
+      if (policy instanceof RollingPolicy && "rollingPolicy".equals(nodeName)) {
+        setRollingPolicy((RollingPolicy) policy);
+        ret = true;
+      } else if (policy instanceof TriggeringPolicy && "triggeringPolicy".equals(nodeName)) {
+        setTriggeringPolicy((TriggeringPolicy) policy);
+        ret = true;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Gets the file to log to.
+   *
+   * @return the file to log to.
+   */
+  public String getFile() {
+    return fileName;
+  }
+
+  /**
+   * Sets the file to log to.
+   *
+   * @param file the file to log to. null to let the rolling policy decide.
+   */
+  public void setFile(String file) {
+    this.fileName = (file == null) ? null : file.trim();
+  }
+
+  /**
+   * Gets whether to append to existing files.
+   *
+   * @return true, if existing files get appended to. false, if they get truncated.
+   */
+  public boolean getAppend() {
+    return fileAppend;
+  }
+
+  /**
+   * Sets whether to append to existing files.
+   *
+   * @param append true, if existing files get appended to. false, if they get truncated.
+   */
+  public void setAppend(boolean append) {
+    this.fileAppend = append;
+  }
+
+  /**
+   * Gets the encoding for log lines.
+   *
+   * @return the encoding. null for the platform's default.
+   */
+  public String getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Sets the encoding for log lines.
+   *
+   * @param encoding the encoding. null for the platform's default.
+   */
+  public void setEncoding(String encoding) {
+    this.encoding = encoding;
+  }
+
+  /**
+   * Gets the minimum number of bytes to grow the mapping by.
+   *
+   * @return the chunk size in bytes.
+   */
+  public int getMappingChunkSize() {
+    return mappingChunkSize;
+  }
+
+  /**
+   * Sets the minimum number of bytes to grow the mapping by.
+   *
+   * @param mappingChunkSize the chunk size in bytes.
+   */
+  public void setMappingChunkSize(int mappingChunkSize) {
+    this.mappingChunkSize = Math.max(1, mappingChunkSize);
+  }
+
+  /**
+   * Gets the maximum time between forcing appended data to disk.
+   *
+   * @return the flush interval in milliseconds.
+   */
+  public long getFlushInterval() {
+    return flushIntervalMillis;
+  }
+
+  /**
+   * Sets the maximum time between forcing appended data to disk.
+   *
+   * @param flushInterval the flush interval in milliseconds.
+   */
+  public void setFlushInterval(long flushInterval) {
+    this.flushIntervalMillis = Math.max(1, flushInterval);
+  }
+
+  /**
+   * Gets the number of appended bytes after which to force appended data to disk early.
+   *
+   * @return the flush size in bytes.
+   */
+  public int getFlushSize() {
+    return flushSize;
+  }
+
+  /**
+   * Sets the number of appended bytes after which to force appended data to disk early.
+   *
+   * @param flushSize the flush size in bytes.
+   */
+  public void setFlushSize(int flushSize) {
+    this.flushSize = flushSize;
+  }
+
+  /**
+   * Gets the rolling policy.
+   *
+   * @return the rolling policy.
+   */
+  public RollingPolicy getRollingPolicy() {
+    return rollingPolicy;
+  }
+
+  /**
+   * Sets the rolling policy.
+   *
+   * @param rollingPolicy the rolling policy.
+   */
+  public void setRollingPolicy(RollingPolicy rollingPolicy) {
+    this.rollingPolicy = rollingPolicy;
+  }
+
+  /**
+   * Gets the triggering policy.
+   *
+   * @return the triggering policy.
+   */
+  public TriggeringPolicy getTriggeringPolicy() {
+    return triggeringPolicy;
+  }
+
+  /**
+   * Sets the triggering policy.
+   *
+   * @param triggeringPolicy the triggering policy.
+   */
+  public void setTriggeringPolicy(TriggeringPolicy triggeringPolicy) {
+    this.triggeringPolicy = triggeringPolicy;
+  }
+}
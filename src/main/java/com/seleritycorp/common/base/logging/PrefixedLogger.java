@@ -35,6 +35,11 @@ public class PrefixedLogger extends CommonsLog {
    */
   private final String prefix;
 
+  /**
+   * The name/value pair to add in front of structured data.
+   */
+  private final Object[] prefixPair;
+
   /**
    * Constucts a new Logger that prefixes each logged message.
    * 
@@ -47,6 +52,7 @@ public class PrefixedLogger extends CommonsLog {
   PrefixedLogger(@Assisted String prefix, @Assisted Log wrappedLog, Formatter formatter) {
     super(wrappedLog, formatter);
     this.prefix = prefix;
+    this.prefixPair = new Object[] {"prefix", prefix};
   }
 
   @Override
@@ -55,14 +61,7 @@ public class PrefixedLogger extends CommonsLog {
   }
 
   protected String processStructuredData(String tag, int version, Object... objs) {
-    Object[] prefixedObjs;
-    int objsLength = (objs == null) ? 0 : objs.length;
-    
-    prefixedObjs = new Object[objsLength + 2];
-    prefixedObjs[0] = "prefix";
-    prefixedObjs[1] = prefix;
-    System.arraycopy(objs, 0, prefixedObjs, 2, objsLength);
-
-    return super.processStructuredData(tag, version, prefixedObjs); 
+    // Encoding the prefix pair in front of objs avoids copying objs for each line.
+    return getFormatter().formatPrefixedStructuredLine(tag, version, prefixPair, objs);
   }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.seleritycorp.common.base.inject.InjectorFactory;
+import com.seleritycorp.common.base.time.Clock;
+
+import org.apache.log4j.helpers.LogLog;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Log wrapper that limits how often similar messages get logged.
+ *
+ * <p>Messages are considered similar if they are logged at the same level and either are equal,
+ * or got logged through the same template (e.g.:
+ * {@code log.warn("Could not reach %s", host)}). So to rate-limit messages that carry varying
+ * details, log them through a template.
+ *
+ * <p>Each kind of similar messages may get logged {@code burst} times per period. Further
+ * messages get suppressed until the budget refills. Suppressed messages are counted and
+ * reported as a single "Suppressed N similar messages" line, either upon the next permitted
+ * message of that kind, or by a periodic background sweep.
+ *
+ * <p>Structured data is not rate-limited.
+ */
+public class RateLimitedLog extends CommonsLog {
+  static final String BURST_PROPERTY = "com.seleritycorp.common.base.logging.rateLimit.burst";
+  static final String PERIOD_MILLIS_PROPERTY =
+      "com.seleritycorp.common.base.logging.rateLimit.periodMillis";
+  static final String MAX_KEYS_PROPERTY =
+      "com.seleritycorp.common.base.logging.rateLimit.maxKeys";
+
+  private static final int DEFAULT_BURST = 10;
+  private static final long DEFAULT_PERIOD_MILLIS = 60000;
+  private static final int DEFAULT_MAX_KEYS = 1024;
+
+  /**
+   * The rate-limited Logs to sweep periodically.
+   */
+  private static final Set<RateLimitedLog> sweptLogs =
+      Collections.newSetFromMap(new MapMaker().weakKeys().<RateLimitedLog, Boolean>makeMap());
+
+  /**
+   * Executor for the periodic sweeps. It is created along with the first swept Log.
+   */
+  private static ScheduledExecutorService sweeper = null;
+
+  /**
+   * The Log to report suppressed messages to.
+   */
+  private final Log summaryLog;
+
+  /**
+   * The rate limiters for each level.
+   */
+  private final Map<Level, LogRateLimiter<String>> limiters;
+
+  /**
+   * Wraps a Log to limit the rate of similar messages.
+   *
+   * @param wrappedLog The log to log permitted messages to.
+   * @param formatter Instance of Formating helper
+   * @param clock The clock to measure rates with.
+   * @param burst The number of similar messages that are permitted within a period.
+   * @param periodMillis The length of the period in milliseconds.
+   * @param maxKeys The maximum number of kinds of messages to track individually per level.
+   *     Messages beyond that share a common budget.
+   */
+  public RateLimitedLog(Log wrappedLog, Formatter formatter, Clock clock, int burst,
+      long periodMillis, int maxKeys) {
+    super(wrappedLog, formatter);
+    this.summaryLog = wrappedLog;
+    this.limiters = new EnumMap<>(Level.class);
+    for (Level level : Level.values()) {
+      limiters.put(level, new LogRateLimiter<String>(clock, burst, periodMillis, maxKeys));
+    }
+  }
+
+  /**
+   * Wraps a Log using the rate limits configured through system properties.
+   *
+   * <p>The limits can be tuned through the system properties {@value #BURST_PROPERTY},
+   * {@value #PERIOD_MILLIS_PROPERTY}, and {@value #MAX_KEYS_PROPERTY}. The created Log gets swept
+   * once per period.
+   *
+   * @param wrappedLog The log to log permitted messages to.
+   * @param formatter Instance of Formating helper
+   * @return The rate-limiting Log.
+   */
+  static RateLimitedLog create(Log wrappedLog, Formatter formatter) {
+    int burst = Integer.getInteger(BURST_PROPERTY, DEFAULT_BURST);
+    long periodMillis = Long.getLong(PERIOD_MILLIS_PROPERTY, DEFAULT_PERIOD_MILLIS);
+    int maxKeys = Integer.getInteger(MAX_KEYS_PROPERTY, DEFAULT_MAX_KEYS);
+    Clock clock = InjectorFactory.getInjector().getInstance(Clock.class);
+
+    RateLimitedLog ret = new RateLimitedLog(wrappedLog, formatter, clock, burst, periodMillis,
+        maxKeys);
+    startSweeping(ret, periodMillis);
+    return ret;
+  }
+
+  /**
+   * Adds a Log to the periodic sweeps.
+   *
+   * @param log The log to sweep.
+   * @param periodMillis The period to sweep at, if the sweeper has to be started.
+   */
+  private static synchronized void startSweeping(RateLimitedLog log, long periodMillis) {
+    sweptLogs.add(log);
+    if (sweeper == null) {
+      sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("log-rate-limit-sweeper").setDaemon(true).build());
+      sweeper.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (RateLimitedLog sweptLog : sweptLogs) {
+              sweptLog.sweep();
+            }
+          } catch (RuntimeException e) {
+            LogLog.error("Failed to sweep rate-limited logs", e);
+          }
+        }
+      }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Reports all pending suppressed messages and forgets about kinds of messages that are
+   * within their budget again.
+   */
+  void sweep() {
+    for (Map.Entry<Level, LogRateLimiter<String>> entry : limiters.entrySet()) {
+      final Level level = entry.getKey();
+      entry.getValue().expire(new ObjLongConsumer<String>() {
+        @Override
+        public void accept(String key, long suppressed) {
+          reportSuppressed(level, key, suppressed);
+        }
+      });
+    }
+  }
+
+  /**
+   * Logs a summary line for suppressed messages.
+   *
+   * @param level The level the messages got suppressed at.
+   * @param key The kind of the suppressed messages. null, if the messages were not tracked
+   *     individually.
+   * @param suppressed The number of suppressed messages.
+   */
+  private void reportSuppressed(Level level, String key, long suppressed) {
+    String message;
+    if (key != null) {
+      message = "Suppressed " + suppressed + " similar messages: " + key;
+    } else {
+      message = "Suppressed " + suppressed + " messages of too many different kinds";
+    }
+    summaryLog.log(level, message);
+  }
+
+  /**
+   * Checks whether a level is enabled on the wrapped log.
+   *
+   * @param level The level to check.
+   * @return true, if messages of the given level would get logged.
+   */
+  private boolean isEnabled(Level level) {
+    final boolean ret;
+    switch (level) {
+      case FATAL:
+        ret = isFatalEnabled();
+        break;
+      case ERROR:
+        ret = isErrorEnabled();
+        break;
+      case WARN:
+        ret = isWarnEnabled();
+        break;
+      case INFO:
+        ret = isInfoEnabled();
+        break;
+      case DEBUG:
+        ret = isDebugEnabled();
+        break;
+      case TRACE:
+        ret = isTraceEnabled();
+        break;
+      case OFF:
+      default:
+        ret = false;
+        break;
+    }
+    return ret;
+  }
+
+  @Override
+  protected boolean isPermitted(Level level, Object key) {
+    boolean ret = false;
+    // Messages that would not get logged anyways must not eat up the budget.
+    if (isEnabled(level)) {
+      String keyStr = String.valueOf(key);
+      long suppressed = limiters.get(level).tryAcquire(keyStr);
+      if (suppressed >= 0) {
+        if (suppressed > 0) {
+          reportSuppressed(level, keyStr, suppressed);
+        }
+        ret = true;
+      }
+    }
+    return ret;
+  }
+}
@@ -20,6 +20,7 @@ package com.seleritycorp.common.base.logging;
 import com.seleritycorp.common.base.inject.InjectorFactory;
 import com.seleritycorp.common.base.time.Clock;
 
+import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.rolling.RollingPolicy;
 import org.apache.log4j.rolling.RolloverDescription;
 import org.apache.log4j.rolling.RolloverDescriptionImpl;
@@ -31,16 +32,44 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 
 /**
  * Policy for rolling log files by time and size.
+ *
+ * <p>Optionally, rotated files get archived asynchronously after a roll-over. Archiving
+ * compresses rotated files (see {@link #setCompression(String)}) and prunes rotated files by
+ * total size (see {@link #setMaxArchiveTotalSize(long)}) and age (see
+ * {@link #setMaxArchiveAgeDays(int)}). Also, uncompressed rotated files can get a side-car
+ * {@link StructuredLogIndex} (see {@link #setIndexedFields(String)}). Archiving is off by
+ * default.
  */
 public class RoverLikeRollingPolicy implements RollingPolicy {
+  /**
+   * Compression setting for not compressing rotated files.
+   */
+  public static final String COMPRESSION_NONE = "none";
+
+  /**
+   * Compression setting for compressing rotated files with gzip.
+   */
+  public static final String COMPRESSION_GZIP = "gzip";
+
+  /**
+   * Pattern matching format specifiers in rotate formats.
+   */
+  private static final Pattern FORMAT_SPECIFIER_PATTERN =
+      Pattern.compile("%(\\d+\\$)?[-#+ 0,(<]*\\d*(\\.\\d+)?([tT].|[a-zA-Z%])");
+
   /**
    * The clock used for timing.
    */
@@ -51,6 +80,26 @@ public class RoverLikeRollingPolicy implements RollingPolicy {
    */
   private String rotateFormat;
 
+  /**
+   * The compression for rotated files.
+   */
+  private String compression = COMPRESSION_NONE;
+
+  /**
+   * The maximum number of bytes to keep for rotated files. 0 for unbounded.
+   */
+  private long maxArchiveTotalSize = 0;
+
+  /**
+   * The maximum age of rotated files in days. 0 for unbounded.
+   */
+  private int maxArchiveAgeDays = 0;
+
+  /**
+   * Comma separated fields to index structured values of. null for no indexing.
+   */
+  private String indexedFields = null;
+
   public RoverLikeRollingPolicy() {
     this(InjectorFactory.getInjector().getInstance(Clock.class));
   }
@@ -134,11 +183,63 @@ public class RoverLikeRollingPolicy implements RollingPolicy {
       append = true;
     }
 
-    Action archivingAction = null;
+    Action archivingAction = createArchivingAction(path);
 
     return new RolloverDescriptionImpl(file, append, activeFileAction, archivingAction);
   }
 
+  /**
+   * Builds a pattern matching the file names that the rotate format produces.
+   *
+   * @param format The file name part of the rotate format.
+   * @return the pattern for rotated file names.
+   */
+  static Pattern createRotatedFilePattern(String format) {
+    StringBuilder sb = new StringBuilder();
+    Matcher matcher = FORMAT_SPECIFIER_PATTERN.matcher(format);
+    int start = 0;
+    while (matcher.find()) {
+      sb.append(Pattern.quote(format.substring(start, matcher.start())));
+      if ("%".equals(matcher.group(3))) {
+        sb.append('%');
+      } else {
+        sb.append(".*?");
+      }
+      start = matcher.end();
+    }
+    sb.append(Pattern.quote(format.substring(start)));
+    return Pattern.compile(sb.toString());
+  }
+
+  /**
+   * Creates the action to archive rotated files, if archiving is configured.
+   *
+   * @param activeFile The file that is currently getting logged to.
+   * @return the archiving action, or null if archiving is not configured.
+   */
+  private Action createArchivingAction(Path activeFile) {
+    Action ret = null;
+    boolean compress = COMPRESSION_GZIP.equals(compression);
+    List<String> indexedFieldList = null;
+    if (indexedFields != null && !compress) {
+      indexedFieldList = new ArrayList<>();
+      for (String field : indexedFields.split(",")) {
+        if (!field.trim().isEmpty()) {
+          indexedFieldList.add(field.trim());
+        }
+      }
+    }
+    if (compress || maxArchiveTotalSize > 0 || maxArchiveAgeDays > 0
+        || indexedFieldList != null) {
+      Path rotatePath = Paths.get(rotateFormat).toAbsolutePath();
+      Pattern rotatedFilePattern = createRotatedFilePattern(rotatePath.getFileName().toString());
+      long maxAgeMillis = TimeUnit.DAYS.toMillis(maxArchiveAgeDays);
+      ret = new LogArchivingAction(rotatePath.getParent(), rotatedFilePattern, activeFile,
+          compress, indexedFieldList, maxArchiveTotalSize, maxAgeMillis, clock);
+    }
+    return ret;
+  }
+
   /**
    * Sets the format used for rotated files.
    * 
@@ -156,4 +257,100 @@ public class RoverLikeRollingPolicy implements RollingPolicy {
   public void setRotateFormat(String rotateFormat) {
     this.rotateFormat = rotateFormat;
   }
+
+  /**
+   * Gets the compression for rotated files.
+   *
+   * @return the compression. Either {@value #COMPRESSION_NONE}, or {@value #COMPRESSION_GZIP}.
+   */
+  public String getCompression() {
+    return compression;
+  }
+
+  /**
+   * Sets the compression for rotated files.
+   *
+   * <p>Compression happens asynchronously after roll-overs, so it does not stall appending.
+   *
+   * @param compression the compression to use. Either {@value #COMPRESSION_NONE}, or
+   *     {@value #COMPRESSION_GZIP}. Unknown compressions fall back to
+   *     {@value #COMPRESSION_NONE}.
+   */
+  public void setCompression(String compression) {
+    String trimmed = (compression == null) ? COMPRESSION_NONE : compression.trim();
+    if (COMPRESSION_GZIP.equals(trimmed)) {
+      this.compression = COMPRESSION_GZIP;
+    } else {
+      if (!COMPRESSION_NONE.equals(trimmed)) {
+        LogLog.warn("Unknown compression '" + compression + "' for rotated log files. "
+            + "Falling back to " + COMPRESSION_NONE);
+      }
+      this.compression = COMPRESSION_NONE;
+    }
+  }
+
+  /**
+   * Gets the maximum number of bytes to keep for rotated files.
+   *
+   * @return the maximum number of bytes. 0 for unbounded.
+   */
+  public long getMaxArchiveTotalSize() {
+    return maxArchiveTotalSize;
+  }
+
+  /**
+   * Sets the maximum number of bytes to keep for rotated files.
+   *
+   * <p>If the rotated files exceed this size, the oldest ones get deleted asynchronously after
+   * roll-overs.
+   *
+   * @param maxArchiveTotalSize the maximum number of bytes. 0 for unbounded.
+   */
+  public void setMaxArchiveTotalSize(long maxArchiveTotalSize) {
+    this.maxArchiveTotalSize = maxArchiveTotalSize;
+  }
+
+  /**
+   * Gets the maximum age of rotated files.
+   *
+   * @return the maximum age in days. 0 for unbounded.
+   */
+  public int getMaxArchiveAgeDays() {
+    return maxArchiveAgeDays;
+  }
+
+  /**
+   * Sets the maximum age of rotated files.
+   *
+   * <p>Rotated files that got last modified longer ago get deleted asynchronously after
+   * roll-overs.
+   *
+   * @param maxArchiveAgeDays the maximum age in days. 0 for unbounded.
+   */
+  public void setMaxArchiveAgeDays(int maxArchiveAgeDays) {
+    this.maxArchiveAgeDays = maxArchiveAgeDays;
+  }
+
+  /**
+   * Gets the fields to index structured values of in rotated files.
+   *
+   * @return the comma separated fields, or null if rotated files do not get indexed.
+   */
+  public String getIndexedFields() {
+    return indexedFields;
+  }
+
+  /**
+   * Sets the fields to index structured values of in rotated files.
+   *
+   * <p>Once set, uncompressed rotated files get a {@link StructuredLogIndex} asynchronously after
+   * roll-overs. The index covers log-tags and the values of the given fields. Compressed rotated
+   * files do not get indexed, as the index refers to offsets in the uncompressed file.
+   *
+   * @param indexedFields the comma separated fields (e.g.: "incidentId,requestId"). An empty
+   *     string indexes log-tags only. null turns indexing off.
+   */
+  public void setIndexedFields(String indexedFields) {
+    this.indexedFields = indexedFields;
+  }
 }
@@ -16,20 +16,41 @@
 
 package com.seleritycorp.common.base.logging;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import com.seleritycorp.common.base.inject.InjectorFactory;
 import com.seleritycorp.common.base.time.Clock;
 import org.apache.log4j.Appender;
+import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.rolling.TriggeringPolicy;
 import org.apache.log4j.spi.LoggingEvent;
 
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Inject;
 
 /**
  * A trigger policy mimicking Rover characteristics
  *
  * <p>Log rotation is triggered by file size and time buckets.
+ *
+ * <p>To keep the per-event cost low, time buckets are not checked against the clock for each
+ * event. Instead, a background thread refreshes a cached time every time tolerance, and events
+ * only compare that cached time against the precomputed start of the next bucket. So time-based
+ * roll-overs may happen up to the time tolerance late. A time tolerance of 0 checks the clock
+ * for each event.
  */
 public class RoverLikeTriggeringPolicy implements TriggeringPolicy {
+  /**
+   * Executor refreshing the cached times of policies. It is created along with the first
+   * policy that needs it.
+   */
+  private static ScheduledExecutorService ticker = null;
+
   /**
    * Clock used for timing.
    */
@@ -46,16 +67,32 @@ public class RoverLikeTriggeringPolicy implements TriggeringPolicy {
   private long timeLimitSeconds;
 
   /**
-   * Seconds since epoch of when to force next time-based roll over.
+   * Milliseconds since epoch of when to force next time-based roll over.
+   */
+  private long nextBucketStartMillis;
+
+  /**
+   * Maximum number of milliseconds that time-based roll-overs may happen late.
+   */
+  private long timeToleranceMillis;
+
+  /**
+   * Milliseconds since epoch as of the last refresh by the ticker.
+   */
+  private volatile long cachedMillis;
+
+  /**
+   * The scheduled refreshes of {@link #cachedMillis}. null, if not refreshed in the background.
    */
-  private long nextBucketStartSeconds;
+  private ScheduledFuture<?> tick;
 
   public RoverLikeTriggeringPolicy() {
     this(InjectorFactory.getInjector().getInstance(Clock.class));
   }
 
   /**
-   * Constructs a policy triggering for 100MB and every 24 hours.
+   * Constructs a policy triggering for 100MB and every 24 hours with a time tolerance of 1
+   * second.
    *
    * @param clock Clock used for timings
    */
@@ -63,6 +100,7 @@ public class RoverLikeTriggeringPolicy implements TriggeringPolicy {
   public RoverLikeTriggeringPolicy(Clock clock) {
     setSizeLimit(100000000); // 100MB default
     setTimeLimit(24 * 60 * 60); // 1 day
+    setTimeTolerance(1000); // 1 second
     this.clock = clock;
   }
 
@@ -105,23 +143,124 @@ public class RoverLikeTriggeringPolicy implements TriggeringPolicy {
     this.timeLimitSeconds = timeLimit;
   }
 
+  /**
+   * Gets the maximum time that time-based roll-overs may happen late.
+   *
+   * @return the time tolerance in milliseconds
+   */
+  public long getTimeTolerance() {
+    return timeToleranceMillis;
+  }
+
+  /**
+   * Sets the maximum time that time-based roll-overs may happen late.
+   *
+   * <p>Takes effect upon {@link #activateOptions()}.
+   *
+   * @param timeTolerance the time tolerance in milliseconds. 0 checks the clock for each event.
+   */
+  public void setTimeTolerance(long timeTolerance) {
+    this.timeToleranceMillis = timeTolerance;
+  }
+
   /**
    * Updates the marker for the start of the next time-baset bucket.
    */
   private void updateNextBucketStart() {
     long seconds = clock.getSecondsEpoch();
-    nextBucketStartSeconds = ((seconds / timeLimitSeconds) + 1) * timeLimitSeconds;
+    nextBucketStartMillis = ((seconds / timeLimitSeconds) + 1) * timeLimitSeconds * 1000;
+  }
+
+  /**
+   * Refreshes the cached time from the clock.
+   */
+  void tick() {
+    cachedMillis = clock.getMillisEpoch();
+  }
+
+  /**
+   * Schedules the background refreshes of the cached time.
+   *
+   * <p>The scheduled {@link TickTask} does not keep the policy from getting garbage collected.
+   */
+  private synchronized void startTicking() {
+    if (tick != null) {
+      tick.cancel(false);
+      tick = null;
+    }
+    if (timeToleranceMillis > 0) {
+      TickTask task = new TickTask(this);
+      tick = getTicker().scheduleAtFixedRate(task, timeToleranceMillis, timeToleranceMillis,
+          TimeUnit.MILLISECONDS);
+      task.setFuture(tick);
+    }
+  }
+
+  /**
+   * Task that refreshes a policy's cached time.
+   *
+   * <p>The task only weakly references the policy, and cancels its own future once the policy
+   * got garbage collected.
+   */
+  private static class TickTask implements Runnable {
+    private final WeakReference<RoverLikeTriggeringPolicy> policyRef;
+    private volatile ScheduledFuture<?> future;
+
+    TickTask(RoverLikeTriggeringPolicy policy) {
+      this.policyRef = new WeakReference<>(policy);
+    }
+
+    void setFuture(ScheduledFuture<?> future) {
+      this.future = future;
+      if (policyRef.get() == null) {
+        future.cancel(false);
+      }
+    }
+
+    @Override
+    public void run() {
+      RoverLikeTriggeringPolicy policy = policyRef.get();
+      if (policy != null) {
+        policy.tick();
+      } else {
+        ScheduledFuture<?> scheduledFuture = future;
+        if (scheduledFuture != null) {
+          scheduledFuture.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the shared executor for refreshing cached times.
+   *
+   * @return the executor.
+   */
+  private static synchronized ScheduledExecutorService getTicker() {
+    if (ticker == null) {
+      ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("log-rotation-ticker").setDaemon(true).build());
+    }
+    return ticker;
   }
 
   @Override
   public void activateOptions() {
+    if (timeToleranceMillis < 0) {
+      LogLog.warn("Negative time tolerance " + timeToleranceMillis + " for log rotation. "
+          + "Checking the clock for each event instead.");
+      timeToleranceMillis = 0;
+    }
+    tick();
     updateNextBucketStart();
+    startTicking();
   }
 
   @Override
   public boolean isTriggeringEvent(final Appender appender, final LoggingEvent event,
       final String filename, final long fileLength) {
-    boolean timeTriggered = (clock.getSecondsEpoch() >= nextBucketStartSeconds);
+    long nowMillis = (timeToleranceMillis > 0) ? cachedMillis : clock.getMillisEpoch();
+    boolean timeTriggered = (nowMillis >= nextBucketStartMillis);
     if (timeTriggered) {
       updateNextBucketStart();
     }
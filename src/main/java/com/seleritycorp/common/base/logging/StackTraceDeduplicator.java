@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import com.seleritycorp.common.base.jmx.MBeanUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which stack traces have already been logged.
+ *
+ * <p>Throwables are fingerprinted by their class, the shape of their message (i.e.: the message
+ * with each run of digits collapsed), and their stack frames. The same is done for their causes.
+ * This allows {@link FlatLog} to render each distinct stack trace in full only once, and refer
+ * to it by fingerprint afterwards.
+ *
+ * <p>Deduplication is off by default, as it changes the content of permanent logs: the full
+ * stack trace that a fingerprint refers to may live in an already rotated log file, or in the
+ * output of a previous process, since remembered fingerprints do not survive restarts. To turn
+ * deduplication on, set the system property {@value #ENABLED_PROPERTY} to {@code true}.
+ *
+ * <p>The number of remembered fingerprints is bounded. Once full, the least recently used
+ * fingerprints are forgotten. The capacity can be tuned through the system property
+ * {@value #CAPACITY_PROPERTY}. A capacity of 0 turns deduplication off.
+ *
+ * <p>This class is thread-safe.
+ */
+public class StackTraceDeduplicator implements StackTraceDeduplicatorMBean {
+  static final String ENABLED_PROPERTY =
+      "com.seleritycorp.common.base.logging.stackTraceDedup.enabled";
+  static final String CAPACITY_PROPERTY =
+      "com.seleritycorp.common.base.logging.stackTraceDedup.capacity";
+
+  private static final long DEFAULT_CAPACITY = 1024;
+  private static final String MBEAN_NAME =
+      "com.seleritycorp.common.base.logging:type=StackTraceDeduplicator";
+
+  /**
+   * Maximum number of causes to take into account for fingerprints.
+   *
+   * <p>This guards against cyclic cause chains.
+   */
+  private static final int MAX_CAUSE_DEPTH = 32;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final long capacity;
+  private final Cache<Long, AtomicLong> occurrences;
+  private final AtomicLong renderedCount = new AtomicLong();
+  private final AtomicLong deduplicatedCount = new AtomicLong();
+
+  /**
+   * Creates a deduplicator.
+   *
+   * @param capacity The maximum number of fingerprints to remember.
+   */
+  StackTraceDeduplicator(long capacity) {
+    this.capacity = capacity;
+    this.occurrences = CacheBuilder.newBuilder().maximumSize(capacity).build();
+  }
+
+  /**
+   * Creates a deduplicator configured through system properties.
+   *
+   * @return The created deduplicator, or null if deduplication is turned off.
+   */
+  static StackTraceDeduplicator createIfEnabled() {
+    StackTraceDeduplicator ret = null;
+    if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+      long capacity = Long.getLong(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+      if (capacity > 0) {
+        ret = new StackTraceDeduplicator(capacity);
+        MBeanUtils.register(MBEAN_NAME, ret);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Computes the fingerprint of a throwable.
+   *
+   * @param throwable The throwable to compute the fingerprint for.
+   * @return The throwable's fingerprint.
+   */
+  static long fingerprint(Throwable throwable) {
+    long ret = FNV_OFFSET_BASIS;
+    Throwable current = throwable;
+    for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+      ret = hash(ret, current.getClass().getName());
+      ret = hashShape(ret, current.getMessage());
+      for (StackTraceElement frame : current.getStackTrace()) {
+        ret = hash(ret, frame.getClassName());
+        ret = hash(ret, frame.getMethodName());
+        ret = hash(ret, frame.getLineNumber());
+      }
+      ret = hash(ret, '|');
+      current = current.getCause();
+    }
+    return ret;
+  }
+
+  /**
+   * Folds a string into a hash.
+   *
+   * @param hash The hash to fold into.
+   * @param str The string to fold. May be null.
+   * @return The updated hash.
+   */
+  private static long hash(long hash, String str) {
+    long ret = hash;
+    if (str != null) {
+      for (int i = 0; i < str.length(); i++) {
+        ret = hash(ret, str.charAt(i));
+      }
+    }
+    return hash(ret, 0);
+  }
+
+  /**
+   * Folds the shape of a message into a hash.
+   *
+   * <p>Each run of digits counts as a single '#', so messages that only differ in numbers
+   * (e.g.: ids, sizes, or ports) share their shape.
+   *
+   * @param hash The hash to fold into.
+   * @param message The message to fold. May be null.
+   * @return The updated hash.
+   */
+  private static long hashShape(long hash, String message) {
+    long ret = hash;
+    if (message != null) {
+      boolean inDigits = false;
+      for (int i = 0; i < message.length(); i++) {
+        char c = message.charAt(i);
+        if (c >= '0' && c <= '9') {
+          if (!inDigits) {
+            ret = hash(ret, '#');
+            inDigits = true;
+          }
+        } else {
+          ret = hash(ret, c);
+          inDigits = false;
+        }
+      }
+    }
+    return hash(ret, 0);
+  }
+
+  /**
+   * Folds a single value into a hash using FNV-1a.
+   *
+   * @param hash The hash to fold into.
+   * @param value The value to fold.
+   * @return The updated hash.
+   */
+  private static long hash(long hash, int value) {
+    return (hash ^ value) * FNV_PRIME;
+  }
+
+  /**
+   * Counts an occurrence of a fingerprint.
+   *
+   * @param fingerprint The fingerprint to count.
+   * @return The number of occurrences of the fingerprint since it got remembered, including
+   *     the current one. So 1 means that the stack trace has to get rendered in full.
+   */
+  long countOccurrence(long fingerprint) {
+    AtomicLong counter = occurrences.asMap().putIfAbsent(fingerprint, new AtomicLong(1));
+    long ret;
+    if (counter == null) {
+      ret = 1;
+      renderedCount.incrementAndGet();
+    } else {
+      ret = counter.incrementAndGet();
+      deduplicatedCount.incrementAndGet();
+    }
+    return ret;
+  }
+
+  @Override
+  public long getCapacity() {
+    return capacity;
+  }
+
+  @Override
+  public long getSize() {
+    return occurrences.size();
+  }
+
+  @Override
+  public long getRenderedCount() {
+    return renderedCount.get();
+  }
+
+  @Override
+  public long getDeduplicatedCount() {
+    return deduplicatedCount.get();
+  }
+
+  @Override
+  public void reset() {
+    occurrences.invalidateAll();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+public interface StackTraceDeduplicatorMBean {
+  /**
+   * Gets the maximum number of stack trace fingerprints to remember.
+   *
+   * @return the maximum number of stack trace fingerprints to remember.
+   */
+  public long getCapacity();
+
+  /**
+   * Gets the number of currently remembered stack trace fingerprints.
+   *
+   * @return the number of currently remembered stack trace fingerprints.
+   */
+  public long getSize();
+
+  /**
+   * Gets the number of stack traces that got rendered in full.
+   *
+   * @return the number of stack traces that got rendered in full.
+   */
+  public long getRenderedCount();
+
+  /**
+   * Gets the number of stack traces that got replaced by a reference to a fingerprint.
+   *
+   * @return the number of stack traces that got replaced by a reference to a fingerprint.
+   */
+  public long getDeduplicatedCount();
+
+  /**
+   * Forgets all fingerprints, so each stack trace gets rendered in full again once.
+   */
+  public void reset();
+}
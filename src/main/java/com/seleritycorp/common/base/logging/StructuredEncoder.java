@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+/**
+ * Encodes structured log data into a single log line.
+ *
+ * <p>Implementations have to be thread-safe.
+ */
+public interface StructuredEncoder {
+  /**
+   * Appends a single line encoding structured data.
+   *
+   * <p>The appended text must not contain linebreaks.
+   *
+   * @param sb The builder to append the line to
+   * @param tag The tag to store the objects at
+   * @param version The version of the tag
+   * @param objs The name and objects to embed. objs is expected to hold an
+   *        even number of elements, with objs[2*n] holding the name for the
+   *        object at objs[2*n+1].
+   */
+  public void appendStructuredLine(StringBuilder sb, String tag, int version, Object... objs);
+
+  /**
+   * Appends a single line encoding structured data followed by further name/value pairs.
+   *
+   * <p>This is used to add the {@link DiagnosticContext} to lines. The default implementation
+   * concatenates the arrays. Implementations should override it to encode both arrays in place.
+   *
+   * @param sb The builder to append the line to
+   * @param tag The tag to store the objects at
+   * @param version The version of the tag
+   * @param objs The name and objects to embed. objs is expected to hold an
+   *        even number of elements, with objs[2*n] holding the name for the
+   *        object at objs[2*n+1].
+   * @param context Further names and objects to embed after objs. context has to hold an even
+   *        number of elements, with context[2*n] holding the name for the object at
+   *        context[2*n+1].
+   */
+  public default void appendStructuredLineWithContext(StringBuilder sb, String tag, int version,
+      Object[] objs, Object[] context) {
+    int objsLength = (objs == null) ? 0 : objs.length;
+    Object[] concatenated = new Object[objsLength + context.length];
+    if (objs != null) {
+      System.arraycopy(objs, 0, concatenated, 0, objsLength);
+    }
+    System.arraycopy(context, 0, concatenated, objsLength, context.length);
+    appendStructuredLine(sb, tag, version, concatenated);
+  }
+}
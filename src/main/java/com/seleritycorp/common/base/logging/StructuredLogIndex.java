@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Side-car index of the structured lines in a log file.
+ *
+ * <p>The index lives next to the log file (see {@link #getIndexFile(Path)}) and maps each
+ * log-tag, and each (log-tag, field, value) triple for a chosen set of fields, to the offsets of
+ * the lines holding them. So lookups for, say, an {@code incidentId} only need to read the
+ * matching lines instead of scanning the whole log file.
+ *
+ * <p>Keys are stored as 64-bit hashes, so {@link #lookup(String)} and
+ * {@link #lookup(String, String, String)} may return a few extra offsets upon collisions.
+ * {@link #search(String, String, String)} reads the lines back and drops such extras.
+ *
+ * <p>The index records the size and modification time of the log file it got built for, and
+ * {@link #open(Path)} refuses indices that do not match the log file any longer.
+ *
+ * <p>Index files are limited to 2 GB. {@link #build(Path, Collection)} fails for log files with
+ * more postings than that.
+ *
+ * <p>File layout (big-endian):
+ * <ul>
+ * <li>Header: magic (int), format version (int), log file size (long), log file modification
+ *     time in milliseconds (long), and number of keys (int).</li>
+ * <li>Key table: per key, sorted by key, the key (long) and the file position of its postings
+ *     (long).</li>
+ * <li>Postings: per key, the number of offsets (int) followed by the ascending offsets
+ *     (long).</li>
+ * </ul>
+ */
+public class StructuredLogIndex implements Closeable {
+  /**
+   * Suffix of index files.
+   */
+  public static final String INDEX_SUFFIX = ".idx";
+
+  private static final int MAGIC = 0x534c4958; // "SLIX"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+  private static final int KEY_ENTRY_SIZE = 8 + 8;
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final long[] NO_OFFSETS = new long[0];
+
+  /**
+   * The maximum size of an index file in bytes.
+   *
+   * <p>Indices get mapped as a single buffer, so positions within them have to fit in an int.
+   */
+  private static final long MAX_INDEX_SIZE = Integer.MAX_VALUE;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Path logFile;
+  private final MappedByteBuffer buffer;
+  private final int keyCount;
+
+  private StructuredLogIndex(Path logFile, MappedByteBuffer buffer, int keyCount) {
+    this.logFile = logFile;
+    this.buffer = buffer;
+    this.keyCount = keyCount;
+  }
+
+  /**
+   * Gets the index file for a log file.
+   *
+   * @param logFile The log file to get the index file for.
+   * @return the index file.
+   */
+  public static Path getIndexFile(Path logFile) {
+    return logFile.resolveSibling(logFile.getFileName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Builds the index for a log file.
+   *
+   * <p>The index file only shows up once it got fully written.
+   *
+   * @param logFile The log file to index.
+   * @param indexedFields The fields to index values of. log-tags get indexed regardless.
+   * @return the written index file.
+   * @throws IOException if reading the log file, or writing the index fails, or if the index
+   *     would exceed 2 GB.
+   */
+  public static Path build(Path logFile, Collection<String> indexedFields) throws IOException {
+    final long logSize = Files.size(logFile);
+    final long logLastModified = Files.getLastModifiedTime(logFile).toMillis();
+
+    // Signed long order is fine, as long as lookups use the same order.
+    TreeMap<Long, List<Long>> postings = new TreeMap<>();
+    try (StructuredLogReader reader = new StructuredLogReader(logFile)) {
+      StructuredLogRecord record;
+      while ((record = reader.next()) != null) {
+        addPosting(postings, hash(record.getTag()), record.getOffset());
+        for (String field : indexedFields) {
+          String value = record.getField(field);
+          if (value != null) {
+            addPosting(postings, hash(record.getTag(), field, value), record.getOffset());
+          }
+        }
+      }
+    }
+
+    long indexSize = HEADER_SIZE + (long) KEY_ENTRY_SIZE * postings.size();
+    for (List<Long> offsets : postings.values()) {
+      indexSize += 4 + 8L * offsets.size();
+    }
+    if (indexSize > MAX_INDEX_SIZE) {
+      throw new IOException("Structured log index for " + logFile + " would take "
+          + indexSize + " bytes, which exceeds the maximum of " + MAX_INDEX_SIZE + " bytes");
+    }
+
+    Path ret = getIndexFile(logFile);
+    Path temporary = ret.resolveSibling(ret.getFileName() + TEMPORARY_SUFFIX);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(temporary)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(logSize);
+      out.writeLong(logLastModified);
+      out.writeInt(postings.size());
+
+      long postingPosition = HEADER_SIZE + (long) KEY_ENTRY_SIZE * postings.size();
+      for (Map.Entry<Long, List<Long>> entry : postings.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeLong(postingPosition);
+        postingPosition += 4 + 8L * entry.getValue().size();
+      }
+      for (List<Long> offsets : postings.values()) {
+        out.writeInt(offsets.size());
+        for (long offset : offsets) {
+          out.writeLong(offset);
+        }
+      }
+    } catch (IOException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+    try {
+      Files.move(temporary, ret, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary, ret, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return ret;
+  }
+
+  private static void addPosting(Map<Long, List<Long>> postings, long key, long offset) {
+    List<Long> offsets = postings.get(key);
+    if (offsets == null) {
+      offsets = new ArrayList<>();
+      postings.put(key, offsets);
+    }
+    // Lines are read in order, so only the last offset can be a duplicate.
+    if (offsets.isEmpty() || offsets.get(offsets.size() - 1) != offset) {
+      offsets.add(offset);
+    }
+  }
+
+  /**
+   * Opens the index of a log file.
+   *
+   * @param logFile The log file to open the index for.
+   * @return the opened index.
+   * @throws IOException if there is no index, or it is malformed, or it does not match the log
+   *     file any longer.
+   */
+  public static StructuredLogIndex open(Path logFile) throws IOException {
+    Path indexFile = getIndexFile(logFile);
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      if (channel.size() > MAX_INDEX_SIZE) {
+        throw new IOException("Structured log index " + indexFile + " is too large");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Malformed structured log index " + indexFile);
+    }
+    if (buffer.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("Unsupported version " + buffer.getInt(4)
+          + " of structured log index " + indexFile);
+    }
+    if (buffer.getLong(8) != Files.size(logFile)
+        || buffer.getLong(16) != Files.getLastModifiedTime(logFile).toMillis()) {
+      throw new IOException("Structured log index " + indexFile + " is out of date");
+    }
+    int keyCount = buffer.getInt(24);
+    if (keyCount < 0 || HEADER_SIZE + (long) KEY_ENTRY_SIZE * keyCount > buffer.limit()) {
+      throw new IOException("Malformed structured log index " + indexFile);
+    }
+    return new StructuredLogIndex(logFile, buffer, keyCount);
+  }
+
+  /**
+   * Checks whether a log file has an index that matches the log file.
+   *
+   * @param logFile The log file to check.
+   * @return true, if the log file has a matching index. false otherwise.
+   */
+  public static boolean isUpToDate(Path logFile) {
+    boolean ret = false;
+    if (Files.isRegularFile(getIndexFile(logFile))) {
+      try {
+        // Opening validates the index against the log file.
+        open(logFile).close();
+        ret = true;
+      } catch (IOException e) {
+        ret = false;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Looks up the lines of a log-tag.
+   *
+   * @param tag The log-tag to look up.
+   * @return the ascending offsets of lines that may have the log-tag.
+   */
+  public long[] lookup(String tag) {
+    return lookup(hash(tag));
+  }
+
+  /**
+   * Looks up the lines of a log-tag with a given field value.
+   *
+   * @param tag The log-tag to look up.
+   * @param field The field to look up. It has to be one of the indexed fields.
+   * @param value The value to look up.
+   * @return the ascending offsets of lines that may have the log-tag and field value.
+   */
+  public long[] lookup(String tag, String field, String value) {
+    return lookup(hash(tag, field, value));
+  }
+
+  /**
+   * Looks up the offsets for a key.
+   *
+   * @param key The key to look up.
+   * @return the offsets for the key.
+   */
+  private long[] lookup(long key) {
+    long[] ret = NO_OFFSETS;
+    int low = 0;
+    int high = keyCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int entry = HEADER_SIZE + KEY_ENTRY_SIZE * mid;
+      long midKey = buffer.getLong(entry);
+      if (midKey < key) {
+        low = mid + 1;
+      } else if (midKey > key) {
+        high = mid - 1;
+      } else {
+        // Indices larger than MAX_INDEX_SIZE get refused, so positions fit in an int.
+        int position = (int) buffer.getLong(entry + 8);
+        ret = new long[buffer.getInt(position)];
+        for (int i = 0; i < ret.length; i++) {
+          ret[i] = buffer.getLong(position + 4 + 8 * i);
+        }
+        low = high + 1;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the lines of a log-tag.
+   *
+   * @param tag The log-tag to search.
+   * @return the records of the log-tag.
+   * @throws IOException if reading the log file fails.
+   */
+  public List<StructuredLogRecord> search(String tag) throws IOException {
+    return read(lookup(tag), tag, null, null);
+  }
+
+  /**
+   * Reads the lines of a log-tag with a given field value.
+   *
+   * @param tag The log-tag to search.
+   * @param field The field to search. It has to be one of the indexed fields.
+   * @param value The value to search.
+   * @return the records of the log-tag with the field value.
+   * @throws IOException if reading the log file fails.
+   */
+  public List<StructuredLogRecord> search(String tag, String field, String value)
+      throws IOException {
+    return read(lookup(tag, field, value), tag, field, value);
+  }
+
+  /**
+   * Reads lines and drops the ones that do not match.
+   *
+   * @param offsets The offsets of the lines to read.
+   * @param tag The log-tag the lines have to have.
+   * @param field The field to match, or null to match on the log-tag only.
+   * @param value The value the field has to have.
+   * @return the matching records.
+   * @throws IOException if reading the log file fails.
+   */
+  private List<StructuredLogRecord> read(long[] offsets, String tag, String field, String value)
+      throws IOException {
+    List<StructuredLogRecord> ret = new ArrayList<>(offsets.length);
+    if (offsets.length > 0) {
+      try (StructuredLogReader reader = new StructuredLogReader(logFile)) {
+        for (long offset : offsets) {
+          StructuredLogRecord record = reader.readAt(offset);
+          if (record != null && record.getTag().equals(tag)
+              && (field == null || value.equals(record.getField(field)))) {
+            ret.add(record);
+          }
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Hashes a log-tag.
+   *
+   * @param tag The log-tag to hash.
+   * @return the hash of the log-tag.
+   */
+  private static long hash(String tag) {
+    return hash(hash(FNV_OFFSET_BASIS, tag), 1);
+  }
+
+  /**
+   * Hashes a (log-tag, field, value) triple.
+   *
+   * @param tag The log-tag to hash.
+   * @param field The field to hash.
+   * @param value The value to hash.
+   * @return the hash of the triple.
+   */
+  private static long hash(String tag, String field, String value) {
+    return hash(hash(hash(hash(FNV_OFFSET_BASIS, tag), field), value), 2);
+  }
+
+  /**
+   * Folds a string into a hash.
+   *
+   * @param hash The hash to fold into.
+   * @param str The string to fold.
+   * @return The updated hash.
+   */
+  private static long hash(long hash, String str) {
+    long ret = hash;
+    for (int i = 0; i < str.length(); i++) {
+      ret = hash(ret, str.charAt(i));
+    }
+    return hash(ret, 0);
+  }
+
+  /**
+   * Folds a single value into a hash using FNV-1a.
+   *
+   * @param hash The hash to fold into.
+   * @param value The value to fold.
+   * @return The updated hash.
+   */
+  private static long hash(long hash, int value) {
+    return (hash ^ value) * FNV_PRIME;
+  }
+
+  @Override
+  public void close() {
+    // The mapping gets released once the buffer is garbage collected.
+  }
+}
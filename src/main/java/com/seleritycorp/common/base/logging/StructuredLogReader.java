@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streaming reader for structured lines in log files.
+ *
+ * <p>The log file gets memory-mapped window by window, and lines are scanned for the
+ * structured data written by {@link SlashStructuredEncoder} directly in the mapping. Only lines
+ * that carry structured data get decoded, so skipping over plain log lines is cheap. Text in
+ * front of the structured data (e.g.: timestamps and levels added by the layout) is ignored.
+ *
+ * <p>{@link SlashStructuredEncoder} does not escape colons, so columns get split into name and
+ * value at their first colon. Field names that contain colons do not round-trip.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class StructuredLogReader implements Closeable {
+  private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * The bytes that start structured data in a line.
+   */
+  private static final byte[] MARKER = "/log-tag:".getBytes(UTF_8);
+
+  private static final String VERSION_PREFIX = "log-tag-version:";
+
+  private final FileChannel channel;
+  private final long size;
+  private final int windowSize;
+
+  /**
+   * The currently mapped window of the file. null if nothing got mapped yet.
+   */
+  private MappedByteBuffer window;
+
+  /**
+   * The offset of {@link #window} within the file.
+   */
+  private long windowOffset;
+
+  /**
+   * The offset of the next line to read.
+   */
+  private long position;
+
+  /**
+   * Re-used buffer for decoding lines.
+   */
+  private byte[] lineBytes = new byte[256];
+
+  /**
+   * Opens a log file for reading.
+   *
+   * @param file The log file to read.
+   * @throws IOException if opening the file fails.
+   */
+  public StructuredLogReader(Path file) throws IOException {
+    this(file, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Opens a log file for reading.
+   *
+   * @param file The log file to read.
+   * @param windowSize The maximum number of bytes to map at once. Longer lines get truncated.
+   * @throws IOException if opening the file fails.
+   */
+  StructuredLogReader(Path file, int windowSize) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.windowSize = windowSize;
+    this.position = 0;
+  }
+
+  /**
+   * Reads the next structured line.
+   *
+   * @return the next structured line, or null if the end of the file got reached.
+   * @throws IOException if reading fails.
+   */
+  public StructuredLogRecord next() throws IOException {
+    StructuredLogRecord ret = null;
+    while (ret == null && position < size) {
+      ret = readLine(position);
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the structured line at an offset.
+   *
+   * <p>Afterwards, {@link #next()} continues after this line.
+   *
+   * @param offset The offset of the line's first byte.
+   * @return the structured line at the offset, or null if there is none.
+   * @throws IOException if reading fails.
+   */
+  public StructuredLogRecord readAt(long offset) throws IOException {
+    StructuredLogRecord ret = null;
+    if (offset >= 0 && offset < size) {
+      ret = readLine(offset);
+    } else {
+      position = size;
+    }
+    return ret;
+  }
+
+  /**
+   * Maps the window starting at an offset.
+   *
+   * @param offset The file offset to start the window at.
+   * @throws IOException if mapping fails.
+   */
+  private void map(long offset) throws IOException {
+    long length = Math.min(windowSize, size - offset);
+    window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    windowOffset = offset;
+  }
+
+  /**
+   * Finds the end of the line starting at an offset.
+   *
+   * @param start The offset of the line's first byte.
+   * @return the offset of the line's terminating newline, or the end of the window if the line
+   *     does not end within the window.
+   * @throws IOException if mapping fails.
+   */
+  private long findLineEnd(long start) throws IOException {
+    if (window == null || start < windowOffset || start >= windowOffset + window.limit()) {
+      map(start);
+    }
+    int end = findNewline((int) (start - windowOffset));
+    if (end < 0 && windowOffset + window.limit() < size && start > windowOffset) {
+      // The line crosses the window's end, so we start a new window at the line.
+      map(start);
+      end = findNewline(0);
+    }
+    return windowOffset + ((end < 0) ? window.limit() : end);
+  }
+
+  /**
+   * Finds the next newline in the window.
+   *
+   * @param from The window index to start searching at.
+   * @return the window index of the next newline, or -1 if there is none.
+   */
+  private int findNewline(int from) {
+    int ret = -1;
+    final int limit = window.limit();
+    for (int i = from; ret < 0 && i < limit; i++) {
+      if (window.get(i) == '\n') {
+        ret = i;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Finds the start of structured data in the window.
+   *
+   * @param from The window index to start searching at.
+   * @param to The window index to stop searching at.
+   * @return the window index of the structured data's start, or -1 if there is none.
+   */
+  private int findMarker(int from, int to) {
+    int ret = -1;
+    final int last = to - MARKER.length;
+    for (int i = from; ret < 0 && i <= last; i++) {
+      if (window.get(i) == MARKER[0]) {
+        int j = 1;
+        while (j < MARKER.length && window.get(i + j) == MARKER[j]) {
+          j++;
+        }
+        if (j == MARKER.length) {
+          ret = i;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the line at an offset and moves past it.
+   *
+   * @param start The offset of the line's first byte.
+   * @return the line's structured data, or null if the line does not carry structured data.
+   * @throws IOException if reading fails.
+   */
+  private StructuredLogRecord readLine(long start) throws IOException {
+    StructuredLogRecord ret = null;
+    long end = findLineEnd(start);
+    position = Math.min(end + 1, size);
+
+    int windowEnd = (int) (end - windowOffset);
+    int markerStart = findMarker((int) (start - windowOffset), windowEnd);
+    if (markerStart >= 0) {
+      int length = windowEnd - markerStart;
+      if (lineBytes.length < length) {
+        lineBytes = new byte[Math.max(length, 2 * lineBytes.length)];
+      }
+      window.position(markerStart);
+      window.get(lineBytes, 0, length);
+      ret = parse(start, new String(lineBytes, 0, length, UTF_8));
+    }
+    return ret;
+  }
+
+  /**
+   * Parses structured data.
+   *
+   * @param offset The offset of the line holding the structured data.
+   * @param data The structured data, starting at the separator in front of log-tag.
+   * @return the parsed record, or null if the data is malformed.
+   */
+  static StructuredLogRecord parse(long offset, String data) {
+    StructuredLogRecord ret = null;
+    String tag = null;
+    int version = 0;
+    boolean valid = true;
+    Map<String, String> fields = new LinkedHashMap<>();
+    int columnStart = 1;
+    int columnEnd = data.indexOf('/', columnStart);
+    for (int column = 0; valid && columnEnd >= 0; column++) {
+      String columnStr = data.substring(columnStart, columnEnd);
+      int colon = columnStr.indexOf(':');
+      if (colon < 0) {
+        valid = false;
+      } else if (column == 0) {
+        tag = unescape(columnStr.substring(colon + 1));
+      } else if (column == 1) {
+        try {
+          valid = columnStr.startsWith(VERSION_PREFIX);
+          version = Integer.parseInt(columnStr.substring(VERSION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+          valid = false;
+        }
+      } else {
+        fields.put(unescape(columnStr.substring(0, colon)),
+            unescape(columnStr.substring(colon + 1)));
+      }
+      columnStart = columnEnd + 1;
+      columnEnd = data.indexOf('/', columnStart);
+      if (column == 0 && columnEnd < 0) {
+        // No version column
+        valid = false;
+      }
+    }
+    if (valid && tag != null) {
+      ret = new StructuredLogRecord(offset, tag, version, fields);
+    }
+    return ret;
+  }
+
+  /**
+   * Reverts the escaping of {@link SlashStructuredEncoder}.
+   *
+   * @param str The escaped string.
+   * @return the unescaped string.
+   */
+  static String unescape(String str) {
+    String ret = str;
+    int backslash = str.indexOf('\\');
+    if (backslash >= 0) {
+      StringBuilder sb = new StringBuilder(str.length());
+      sb.append(str, 0, backslash);
+      for (int i = backslash; i < str.length(); i++) {
+        char c = str.charAt(i);
+        if (c == '\\' && i + 1 < str.length()) {
+          i++;
+          switch (str.charAt(i)) {
+            case '<':
+              sb.append('\\');
+              break;
+            case 'r':
+              sb.append('\r');
+              break;
+            case 'n':
+              sb.append('\n');
+              break;
+            case '|':
+              sb.append('/');
+              break;
+            default:
+              sb.append(c).append(str.charAt(i));
+          }
+        } else {
+          sb.append(c);
+        }
+      }
+      ret = sb.toString();
+    }
+    return ret;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+}
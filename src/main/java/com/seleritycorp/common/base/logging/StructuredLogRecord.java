@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A structured log line, as read back from a log file.
+ *
+ * <p>Names and values are unescaped, so they match what got passed to
+ * {@link Log#structuredInfo(String, int, Object...)}, after conversion to String.
+ */
+public class StructuredLogRecord {
+  private final long offset;
+  private final String tag;
+  private final int version;
+  private final Map<String, String> fields;
+
+  /**
+   * Creates a record.
+   *
+   * @param offset The offset of the line's first byte within the log file.
+   * @param tag The log-tag of the line.
+   * @param version The log-tag-version of the line.
+   * @param fields The remaining name/value pairs of the line in order.
+   */
+  StructuredLogRecord(long offset, String tag, int version, Map<String, String> fields) {
+    this.offset = offset;
+    this.tag = tag;
+    this.version = version;
+    this.fields = Collections.unmodifiableMap(fields);
+  }
+
+  /**
+   * Gets the offset of the line's first byte within the log file.
+   *
+   * @return the offset of the line.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Gets the log-tag of the line.
+   *
+   * @return the log-tag.
+   */
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * Gets the log-tag-version of the line.
+   *
+   * @return the log-tag-version.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the value of a field.
+   *
+   * @param name The name of the field.
+   * @return the field's value, or null if the line does not have the field.
+   */
+  public String getField(String name) {
+    return fields.get(name);
+  }
+
+  /**
+   * Gets all fields apart from log-tag and log-tag-version.
+   *
+   * @return the fields in the order of the line.
+   */
+  public Map<String, String> getFields() {
+    return fields;
+  }
+
+  @Override
+  public String toString() {
+    return "StructuredLogRecord(offset=" + offset + ", tag=" + tag + ", version=" + version
+        + ", fields=" + fields + ")";
+  }
+}
@@ -43,6 +43,11 @@ import javax.inject.Singleton;
 public class AppStateManager implements AppStateManagerAccessor {
   private static final Log log = LogFactory.getLog(AppStateManager.class);
 
+  /**
+   * Log for issues that show up on each periodic persisting of the state.
+   */
+  private static final Log persistLog = LogFactory.getRateLimitedLog(AppStateManager.class);
+
   /**
    * The application state file.
    * <p>
@@ -311,10 +316,10 @@ public class AppStateManager implements AppStateManagerAccessor {
       try {
         Files.move(stateTmpPath, statePath, StandardCopyOption.REPLACE_EXISTING);
       } catch (Exception e) {
-        log.warn("Could not move " + stateTmpPath + " onto " + statePath, e);
+        persistLog.warn("Could not move " + stateTmpPath + " onto " + statePath, e);
       }
     } catch (Exception e) {
-      log.warn("Could not materialize state " + stateTmpPath, e);
+      persistLog.warn("Could not materialize state " + stateTmpPath, e);
     }
   }
 
@@ -332,10 +337,10 @@ public class AppStateManager implements AppStateManagerAccessor {
         try {
           Files.setLastModifiedTime(stateUsablePath, time);
         } catch (Exception e2) {
-          log.warn("Could not update mtime on " + stateUsablePath, e2);
+          persistLog.warn("Could not update mtime on " + stateUsablePath, e2);
         }
       } catch (Exception e) {
-        log.warn("Could not delete " + stateUsablePath, e);
+        persistLog.warn("Could not delete " + stateUsablePath, e);
       }
     } else {
       try {
@@ -18,6 +18,7 @@ package com.seleritycorp.common.base.state;
 
 import com.seleritycorp.common.base.config.ApplicationConfig;
 import com.seleritycorp.common.base.config.Config;
+import com.seleritycorp.common.base.config.ConfigHandle;
 import com.seleritycorp.common.base.time.TimeUtils;
 
 import javax.inject.Inject;
@@ -53,9 +54,9 @@ public class StateManagerPeriodicTasksRunner implements Runnable {
 
   /**
    * How long to pause in milliseconds between two runs of periodic
-   * tasks.
+   * tasks. Follows config changes.
    */
-  private final long pauseMillis;
+  private final ConfigHandle<Long> pauseMillis;
 
   /**
    * Creates a stopped instance.
@@ -71,7 +72,8 @@ public class StateManagerPeriodicTasksRunner implements Runnable {
     this.appStateManager = appStateManager;
     this.haStateManager = haStateManager;
     this.timeUtils = timeUtils;
-    this.pauseMillis = config.getDurationMillis("StateManagerPeriodicTasksRunner.pause", 2000);
+    this.pauseMillis = config.durationMillisHandle("StateManagerPeriodicTasksRunner.pause",
+        2000);
     stop();
   }
 
@@ -109,7 +111,7 @@ public class StateManagerPeriodicTasksRunner implements Runnable {
       appStateManager.persistState();
       haStateManager.readState();
 
-      exception = timeUtils.sleepForMillis(pauseMillis);
+      exception = timeUtils.sleepForMillis(pauseMillis.get());
     }
   }
 }
@@ -19,10 +19,15 @@ package com.seleritycorp.common.base.thread;
 import com.google.inject.Inject;
 
 import com.seleritycorp.common.base.jmx.MBeanUtils;
+import com.seleritycorp.common.base.logging.DiagnosticContext;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +36,9 @@ import javax.inject.Singleton;
 
 /**
  * Factory for Thread Factories with named threads.
+ *
+ * <p>Tasks submitted to created ExecutorServices run with the {@link DiagnosticContext} of the
+ * submitting thread.
  */
 @Singleton
 public class ExecutorServiceFactory {
@@ -62,7 +70,29 @@ public class ExecutorServiceFactory {
     ThreadFactory threadFactory = threadFactoryFactory.createDaemonThreadFactory(prefix);
     BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
     ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
-        0L, TimeUnit.MILLISECONDS, queue, threadFactory);
+        0L, TimeUnit.MILLISECONDS, queue, threadFactory) {
+      @Override
+      protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new ContextFutureTask<>(Executors.callable(DiagnosticContext.wrap(runnable),
+            value));
+      }
+
+      @Override
+      protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new ContextFutureTask<>(DiagnosticContext.wrap(callable));
+      }
+
+      @Override
+      public void execute(Runnable command) {
+        // Tasks from submit() and invokeAll() already carry the context. Wrapping them again
+        // would hide them from getQueue(), remove(), and shutdownNow().
+        if (command instanceof ContextFutureTask) {
+          super.execute(command);
+        } else {
+          super.execute(DiagnosticContext.wrap(command));
+        }
+      }
+    };
     
     ExecutorServiceMetrics metrics = executorServiceMetricsFactory.create(executor);
     String name = "com.seleritycorp.common.base.thread:type=ThreadPool,name=" + prefix;
@@ -70,4 +100,16 @@ public class ExecutorServiceFactory {
     
     return executor;
   }
+
+  /**
+   * Task created by ExecutorServices of this factory, whose callable already runs with the
+   * submitting thread's {@link DiagnosticContext}.
+   *
+   * @param <V> The result type of the task.
+   */
+  private static class ContextFutureTask<V> extends FutureTask<V> {
+    ContextFutureTask(Callable<V> callable) {
+      super(callable);
+    }
+  }
 }
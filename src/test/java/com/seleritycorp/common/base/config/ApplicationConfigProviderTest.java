@@ -17,13 +17,18 @@
 package com.seleritycorp.common.base.config;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.Test;
 
+import com.google.gson.stream.MalformedJsonException;
 import com.seleritycorp.common.base.test.FileTestCase;
 
 public class ApplicationConfigProviderTest extends FileTestCase {
@@ -71,4 +76,148 @@ public class ApplicationConfigProviderTest extends FileTestCase {
     assertThat(config.get("confProperties")).isEqualTo("confProperties");
     assertThat(config.get("confAnsiblizedProperties")).isEqualTo("confAnsiblizedProperties");
   }
+
+  @Test
+  public void testGetFlattensDefaults() throws IOException {
+    Path dir = createTempDirectory();
+
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.properties"),
+        "paths.conf = foo\n" + "paths.data = bar\n");
+
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir);
+
+    Config config = provider.get();
+
+    assertThat(config).isInstanceOf(SnapshotConfig.class);
+
+    // Enforced defaults win over user supplied files
+    assertThat(config.get("paths.conf")).isEqualTo("conf");
+
+    // User supplied files win over defaults
+    assertThat(config.get("paths.data")).isEqualTo("bar");
+
+    // Defaults are used for keys not set elsewhere
+    assertThat(config.get("paths.dataState")).isEqualTo("state");
+  }
+
+  @Test
+  public void testLoadSnapshotUsesCache() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    Path properties = confPath.resolve("application.properties");
+    writeFile(properties, "foo = bar\n");
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir);
+
+    ConfigSnapshot snapshot1 = provider.loadSnapshot();
+    boolean cached = Files.exists(confPath.resolve(ConfigCache.FILE_NAME));
+    ConfigSnapshot snapshot2 = provider.loadSnapshot();
+    writeFile(properties, "foo = baz\n");
+    ConfigSnapshot snapshot3 = provider.loadSnapshot();
+
+    assertThat(cached).isTrue();
+    assertThat(snapshot1.get("foo")).isEqualTo("bar");
+    assertThat(snapshot2.toMap()).isEqualTo(snapshot1.toMap());
+    assertThat(snapshot3.get("foo")).isEqualTo("baz");
+  }
+
+  @Test
+  public void testLoadBaseStrictJsonInvalid() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.json"), "{\"foo\":");
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir);
+
+    ConfigSnapshot lenient = provider.loadBase(false);
+    try {
+      provider.loadBase(true);
+      fail("No exception thrown");
+    } catch (IllegalStateException e) {
+      assertThat(e.getCause()).isInstanceOf(MalformedJsonException.class);
+    }
+
+    assertThat(lenient.get("foo")).isNull();
+  }
+
+  @Test
+  public void testLoadSnapshotCacheDisabled() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.properties"), "foo = bar\n");
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir);
+
+    System.setProperty(ConfigCache.ENABLED_PROPERTY, "false");
+    try {
+      provider.loadSnapshot();
+    } finally {
+      System.clearProperty(ConfigCache.ENABLED_PROPERTY);
+    }
+
+    assertThat(Files.exists(confPath.resolve(ConfigCache.FILE_NAME))).isFalse();
+  }
+
+  @Test
+  public void testLoadSnapshotEnvironment() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.properties"),
+        "config.environment.enabled = true\n" + "CoreServices.url = foo\n"
+        + "CoreServices.user = bar\n");
+    Map<String, String> variables = new HashMap<>();
+    variables.put("CORESERVICES_URL", "baz");
+    variables.put("PATHS_CONF", "quux");
+    EnvironmentConfigBase environment = new EnvironmentConfigBase(variables);
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir, environment);
+
+    ConfigSnapshot snapshot = provider.loadSnapshot();
+
+    assertThat(snapshot.get("CoreServices.url")).isEqualTo("baz");
+    assertThat(snapshot.get("CoreServices.user")).isEqualTo("bar");
+    // Enforced defaults win over the environment
+    assertThat(snapshot.get("paths.conf")).isEqualTo("conf");
+  }
+
+  @Test
+  public void testLoadSnapshotEnvironmentDisabled() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.properties"), "CoreServices.url = foo\n");
+    EnvironmentConfigBase environment = new EnvironmentConfigBase(
+        Collections.singletonMap("CORESERVICES_URL", "baz"));
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir, environment);
+
+    ConfigSnapshot snapshot = provider.loadSnapshot();
+
+    assertThat(snapshot.get("CoreServices.url")).isEqualTo("foo");
+  }
+
+  @Test
+  public void testOverrides() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.properties"), "CoreServices.url = foo\n");
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir);
+    Config config = provider.get();
+
+    provider.getOverrides().setOverride("CoreServices.url", "bar");
+
+    assertThat(config.get("CoreServices.url")).isEqualTo("bar");
+    assertThat(provider.loadSnapshot().get("CoreServices.url")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testOverridesAboveEnvironment() throws IOException {
+    Path dir = createTempDirectory();
+    Path confPath = Files.createDirectory(dir.resolve("conf"));
+    writeFile(confPath.resolve("application.properties"),
+        "config.environment.enabled = true\n" + "CoreServices.url = foo\n");
+    EnvironmentConfigBase environment = new EnvironmentConfigBase(
+        Collections.singletonMap("CORESERVICES_URL", "baz"));
+    ApplicationConfigProvider provider = new ApplicationConfigProvider(dir, environment);
+    provider.loadSnapshot();
+
+    provider.getOverrides().setOverride("CoreServices.url", "quux");
+
+    assertThat(provider.loadSnapshot().get("CoreServices.url")).isEqualTo("quux");
+  }
 }
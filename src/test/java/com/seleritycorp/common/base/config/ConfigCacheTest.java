@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConfigCacheTest extends FileTestCase {
+  private Path dir;
+  private Path cacheFile;
+  private Path source1;
+  private Path source2;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = createTempDirectory();
+    cacheFile = dir.resolve(ConfigCache.FILE_NAME);
+    source1 = dir.resolve("application.json");
+    source2 = dir.resolve("application.properties");
+    writeFile(source1, "{\"foo\":\"bar\"}");
+  }
+
+  private List<Map<String, String>> createDefaults(String value) {
+    return Collections.singletonList(Collections.singletonMap("paths.data", value));
+  }
+
+  private ConfigCache createCache() {
+    return createCache(createDefaults("data"));
+  }
+
+  private ConfigCache createCache(List<Map<String, String>> defaults) {
+    return new ConfigCache(cacheFile, Arrays.asList(source1, source2), defaults);
+  }
+
+  private ConfigSnapshot createSnapshot() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("foo", "bar");
+    entries.put("b\u00e4z", "qu\u00fcx");
+    entries.put("empty", "");
+    return ConfigSnapshot.of(entries);
+  }
+
+  @Test
+  public void testReadMissing() {
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testRoundTrip() {
+    createCache().write(createSnapshot());
+
+    ConfigSnapshot snapshot = createCache().read();
+
+    assertThat(snapshot).isNotNull();
+    assertThat(snapshot.toMap()).isEqualTo(createSnapshot().toMap());
+    assertThat(Files.exists(dir.resolve(ConfigCache.FILE_NAME + ".tmp"))).isFalse();
+  }
+
+  @Test
+  public void testSourceChanged() throws IOException {
+    ConfigCache cache = createCache();
+    writeFile(source1, "{\"foo\":\"baz\"}");
+    cache.write(createSnapshot());
+
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testSourceSameSizeAndTime() throws IOException {
+    ConfigCache cache = createCache();
+    cache.write(createSnapshot());
+    long lastModified = Files.getLastModifiedTime(source1).toMillis();
+    writeFile(source1, "{\"foo\":\"baz\"}");
+    Files.setLastModifiedTime(source1, FileTime.fromMillis(lastModified));
+
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testSourceAdded() throws IOException {
+    createCache().write(createSnapshot());
+    writeFile(source2, "foo=baz");
+
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testSourceRemoved() throws IOException {
+    createCache().write(createSnapshot());
+    Files.delete(source1);
+
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testDefaultsChanged() {
+    createCache(createDefaults("data")).write(createSnapshot());
+
+    assertThat(createCache(createDefaults("other")).read()).isNull();
+  }
+
+  @Test
+  public void testMalformed() throws IOException {
+    writeFile(cacheFile, "foo");
+
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    createCache().write(createSnapshot());
+    byte[] bytes = Files.readAllBytes(cacheFile);
+    Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length - 3));
+
+    assertThat(createCache().read()).isNull();
+  }
+
+  @Test
+  public void testWriteFailure() throws IOException {
+    cacheFile = dir.resolve("missing").resolve(ConfigCache.FILE_NAME);
+
+    createCache().write(createSnapshot());
+
+    assertThat(Files.exists(cacheFile)).isFalse();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ConfigHandleTest {
+  private <T> ConfigHandle<T> createHandle(Config config, String key, Class<T> type,
+      T defaultValue) {
+    return new ConfigHandle<>(config, ConfigHandle.typedReader(key, type, defaultValue));
+  }
+
+  @Test
+  public void testString() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "bar");
+
+    assertThat(createHandle(config, "foo", String.class, "baz").get()).isEqualTo("bar");
+    assertThat(createHandle(config, "quux", String.class, "baz").get()).isEqualTo("baz");
+    assertThat(createHandle(config, "quux", String.class, null).get()).isNull();
+  }
+
+  @Test
+  public void testNumbers() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "42");
+    config.set("bar", "4.5");
+
+    assertThat(createHandle(config, "foo", Integer.class, 1).get()).isEqualTo(42);
+    assertThat(createHandle(config, "foo", Long.class, 1L).get()).isEqualTo(42L);
+    assertThat(createHandle(config, "bar", Float.class, 1f).get()).isEqualTo(4.5f);
+    assertThat(createHandle(config, "bar", Double.class, 1d).get()).isEqualTo(4.5d);
+    assertThat(createHandle(config, "quux", Integer.class, 1).get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testBoolean() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "true");
+
+    assertThat(createHandle(config, "foo", Boolean.class, false).get()).isTrue();
+    assertThat(createHandle(config, "quux", Boolean.class, false).get()).isFalse();
+  }
+
+  @Test
+  public void testEnum() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "SECONDS");
+
+    assertThat(createHandle(config, "foo", TimeUnit.class, TimeUnit.DAYS).get())
+        .isEqualTo(TimeUnit.SECONDS);
+    assertThat(createHandle(config, "quux", TimeUnit.class, TimeUnit.DAYS).get())
+        .isEqualTo(TimeUnit.DAYS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDefaultForNumber() {
+    createHandle(new ConfigImpl(), "foo", Integer.class, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedType() {
+    createHandle(new ConfigImpl(), "foo", Object.class, new Object());
+  }
+
+  @Test
+  public void testDurations() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "2");
+    config.set("fooUnit", "MINUTES");
+
+    ConfigHandle<Long> millis = new ConfigHandle<>(config,
+        ConfigHandle.durationMillisReader("foo", 1));
+    ConfigHandle<Long> seconds = new ConfigHandle<>(config,
+        ConfigHandle.durationSecondsReader("foo", 1));
+
+    assertThat(millis.get()).isEqualTo(120000L);
+    assertThat(seconds.get()).isEqualTo(120L);
+  }
+
+  @Test
+  public void testRefresh() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "42");
+    ConfigHandle<Integer> handle = createHandle(config, "foo", Integer.class, 1);
+
+    config.values.put("foo", "43");
+    int before = handle.get();
+    handle.refresh();
+    int after = handle.get();
+
+    assertThat(before).isEqualTo(42);
+    assertThat(after).isEqualTo(43);
+  }
+}
@@ -20,6 +20,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import org.junit.Test;
 
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class ConfigImplTest {
@@ -1000,4 +1003,173 @@ public class ConfigImplTest {
 
     assertThat(actual).isEqualTo(0);
   }
+
+  @Test
+  public void testGetIntRepeatedAfterSet() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "42");
+
+    int actual1 = config.getInt("foo");
+    config.set("foo", "43");
+    int actual2 = config.getInt("foo");
+    config.set("foo", null);
+    int actual3 = config.getInt("foo", 44);
+
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+    assertThat(actual3).isEqualTo(44);
+  }
+
+  @Test
+  public void testGetIntRepeatedUnparsableUsesDefault() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "bar");
+
+    int actual1 = config.getInt("foo", 42);
+    int actual2 = config.getInt("foo", 43);
+
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+  }
+
+  @Test
+  public void testGetLongRepeatedAfterParentSet() {
+    ConfigImpl parent = new ConfigImpl();
+    parent.set("foo", "42");
+    ConfigImpl config = new ConfigImpl();
+    config.setParent(parent);
+
+    long actual1 = config.getLong("foo");
+    parent.set("foo", "43");
+    long actual2 = config.getLong("foo");
+
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+  }
+
+  @Test
+  public void testGetTypedSameKeyDifferentTypes() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "1");
+
+    assertThat(config.getInt("foo")).isEqualTo(1);
+    assertThat(config.getLong("foo")).isEqualTo(1);
+    assertThat(config.getDouble("foo")).isEqualTo(1.0);
+    assertThat(config.getFloat("foo")).isEqualTo(1.0f);
+    assertThat(config.getBoolean("foo")).isTrue();
+    assertThat(config.getInt("foo")).isEqualTo(1);
+  }
+
+  @Test
+  public void testGetEnumRepeatedDifferentClasses() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "SECONDS");
+
+    assertThat(config.getEnum(TimeUnit.class, "foo")).isEqualTo(TimeUnit.SECONDS);
+    assertThat(config.getEnum(ChronoUnit.class, "foo")).isEqualTo(ChronoUnit.SECONDS);
+    assertThat(config.getEnum(TimeUnit.class, "foo")).isEqualTo(TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testGetDurationMillisRepeatedAfterUnitSet() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "2");
+    config.set("fooUnit", "SECONDS");
+
+    long actual1 = config.getDurationMillis("foo");
+    config.set("fooUnit", "MINUTES");
+    long actual2 = config.getDurationMillis("foo");
+
+    assertThat(actual1).isEqualTo(2000);
+    assertThat(actual2).isEqualTo(120000);
+  }
+
+  @Test
+  public void testHandleFollowsSet() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "42");
+
+    ConfigHandle<Integer> handle = config.handle("foo", Integer.class, 1);
+    int actual1 = handle.get();
+    config.set("foo", "43");
+    int actual2 = handle.get();
+    config.set("foo", null);
+    int actual3 = handle.get();
+
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+    assertThat(actual3).isEqualTo(1);
+  }
+
+  @Test
+  public void testHandleFollowsSetParent() {
+    ConfigImpl parent = new ConfigImpl();
+    parent.set("foo", "bar");
+    ConfigImpl config = new ConfigImpl();
+
+    ConfigHandle<String> handle = config.handle("foo", String.class, "default");
+    String actual1 = handle.get();
+    config.setParent(parent);
+    String actual2 = handle.get();
+
+    assertThat(actual1).isEqualTo("default");
+    assertThat(actual2).isEqualTo("bar");
+  }
+
+  @Test
+  public void testHandleShared() {
+    ConfigImpl config = new ConfigImpl();
+
+    ConfigHandle<Integer> handle1 = config.handle("foo", Integer.class, 1);
+    ConfigHandle<Integer> handle2 = config.handle("foo", Integer.class, 1);
+    ConfigHandle<Integer> handle3 = config.handle("foo", Integer.class, 2);
+
+    assertThat(handle1).isSameAs(handle2);
+    assertThat(handle1).isNotSameAs(handle3);
+  }
+
+  @Test
+  public void testDurationHandles() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo", "2");
+
+    ConfigHandle<Long> millis = config.durationMillisHandle("foo", 1);
+    ConfigHandle<Long> seconds = config.durationSecondsHandle("foo", 1);
+    long actualMillis1 = millis.get();
+    long actualSeconds1 = seconds.get();
+    config.set("fooUnit", "MINUTES");
+    long actualMillis2 = millis.get();
+    long actualSeconds2 = seconds.get();
+
+    assertThat(actualMillis1).isEqualTo(2);
+    assertThat(actualSeconds1).isEqualTo(2);
+    assertThat(actualMillis2).isEqualTo(120000);
+    assertThat(actualSeconds2).isEqualTo(120);
+  }
+
+  @Test
+  public void testSetOnlyRefreshesHandlesOfKey() {
+    final List<String> reads = new ArrayList<>();
+    ConfigImpl config = new ConfigImpl() {
+      @Override
+      public String get(String key) {
+        reads.add(key);
+        return super.get(key);
+      }
+    };
+
+    ConfigHandle<Integer> fooHandle = config.handle("foo", Integer.class, 1);
+    ConfigHandle<Long> barHandle = config.durationMillisHandle("bar", 2);
+    reads.clear();
+    config.set("baz", "3");
+    List<String> readsBaz = new ArrayList<>(reads);
+    reads.clear();
+    config.set("barUnit", "SECONDS");
+    List<String> readsBarUnit = new ArrayList<>(reads);
+
+    assertThat(readsBaz).isEmpty();
+    assertThat(readsBarUnit).doesNotContain("foo");
+    assertThat(fooHandle.get()).isEqualTo(1);
+    assertThat(barHandle.get()).isEqualTo(2000);
+  }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConfigOverridesTest extends FileTestCase {
+  private static final Collection<String> ENFORCED_KEYS = Collections.singleton("paths.conf");
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = createTempDirectory();
+  }
+
+  private ConfigSnapshot createBase(String... keysAndValues) {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("paths.conf", "conf");
+    entries.put("paths.data", "data");
+    entries.put("paths.dataState", "state");
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      entries.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return ConfigSnapshot.of(entries);
+  }
+
+  @Test
+  public void testApplyEmpty() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    ConfigSnapshot base = createBase("foo", "bar");
+
+    assertThat(overrides.apply(base)).isSameAs(base);
+    assertThat(overrides.getOverrides()).isEmpty();
+  }
+
+  @Test
+  public void testSetOverridePublishes() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(config, createBase("foo", "bar"));
+
+    overrides.setOverride("foo", "baz");
+    overrides.setOverride("quux", "42");
+
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(config.getInt("quux")).isEqualTo(42);
+    assertThat(overrides.getOverrides()).containsExactly("foo=baz", "quux=42");
+  }
+
+  @Test
+  public void testSetOverridesAtomically() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(config, createBase("foo", "bar"));
+    final AtomicInteger notifications = new AtomicInteger();
+    config.addChangeListener(new ConfigChangeListener() {
+      @Override
+      public void onConfigChange(Set<String> changedKeys) {
+        notifications.incrementAndGet();
+        assertThat(changedKeys).containsOnly("foo", "quux");
+      }
+    });
+
+    overrides.setOverrides("foo = baz\nquux = 42\n");
+
+    assertThat(notifications.get()).isEqualTo(1);
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(config.get("quux")).isEqualTo("42");
+  }
+
+  @Test
+  public void testSetOverrideEnforced() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    overrides.apply(createBase());
+
+    try {
+      overrides.setOverride("paths.conf", "foo");
+      fail("No exception thrown");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("paths.conf");
+    }
+
+    assertThat(overrides.getOverrides()).isEmpty();
+  }
+
+  @Test
+  public void testSetOverridesEnforcedAppliesNothing() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    overrides.apply(createBase());
+
+    try {
+      overrides.setOverrides("foo = bar\npaths.conf = baz\n");
+      fail("No exception thrown");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("paths.conf");
+    }
+
+    assertThat(overrides.getOverrides()).isEmpty();
+  }
+
+  @Test
+  public void testRemoveOverride() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(config, createBase("foo", "bar"));
+    overrides.setOverrides("foo = baz\nquux = 42\n");
+
+    overrides.removeOverride("foo");
+
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(config.get("quux")).isEqualTo("42");
+
+    overrides.clearOverrides();
+
+    assertThat(config.get("quux")).isNull();
+    assertThat(overrides.getOverrides()).isEmpty();
+  }
+
+  @Test
+  public void testOverridesSurviveReload() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    overrides.apply(createBase("foo", "bar"));
+    overrides.setOverride("foo", "baz");
+
+    ConfigSnapshot actual = overrides.apply(createBase("foo", "quux", "x", "y"));
+
+    assertThat(actual.get("foo")).isEqualTo("baz");
+    assertThat(actual.get("x")).isEqualTo("y");
+  }
+
+  @Test
+  public void testPublishedReloadKeepsOverrides() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(config, createBase("foo", "bar"));
+    overrides.setOverride("foo", "baz");
+
+    overrides.publish(config, createBase("foo", "quux", "x", "y"));
+
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(config.get("x")).isEqualTo("y");
+  }
+
+  @Test
+  public void testApplyDoesNotChangePublishedBase() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(config, createBase("foo", "bar"));
+
+    overrides.apply(createBase("foo", "quux"));
+    overrides.setOverride("x", "y");
+
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(config.get("x")).isEqualTo("y");
+  }
+
+  @Test
+  public void testEditKeepsValuesSetAtRuntime() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+    overrides.publish(config, createBase("foo", "bar"));
+    config.set("quux", "42");
+
+    overrides.setOverride("foo", "baz");
+
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(config.get("quux")).isEqualTo("42");
+  }
+
+  @Test
+  public void testNotPersistedByDefault() {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    overrides.publish(new SnapshotConfig(ConfigSnapshot.EMPTY), createBase());
+
+    overrides.setOverride("foo", "bar");
+
+    assertThat(dir.resolve("data").resolve("state").resolve(ConfigOverrides.FILE_NAME))
+        .doesNotExist();
+  }
+
+  @Test
+  public void testPersist() throws IOException {
+    ConfigOverrides overrides = new ConfigOverrides(dir, ENFORCED_KEYS);
+    ConfigSnapshot base = createBase("config.overrides.persist", "true", "foo", "bar");
+    overrides.publish(new SnapshotConfig(ConfigSnapshot.EMPTY), base);
+
+    overrides.setOverride("foo", "baz");
+
+    Path file = dir.resolve("data").resolve("state").resolve(ConfigOverrides.FILE_NAME);
+    assertThat(file).exists();
+
+    ConfigOverrides restarted = new ConfigOverrides(dir, ENFORCED_KEYS);
+    ConfigSnapshot actual = restarted.apply(base);
+
+    assertThat(actual.get("foo")).isEqualTo("baz");
+    assertThat(restarted.getOverrides()).containsExactly("foo=baz");
+  }
+
+  @Test
+  public void testPersistedEnforcedKeysIgnored() throws IOException {
+    Path stateDir = Files.createDirectories(dir.resolve("data").resolve("state"));
+    writeFile(stateDir.resolve(ConfigOverrides.FILE_NAME), "paths.conf = foo\nbar = baz\n");
+    ConfigOverrides overrides = new ConfigOverrides(dir, Arrays.asList("paths.conf"));
+
+    ConfigSnapshot actual = overrides.apply(createBase("config.overrides.persist", "true"));
+
+    assertThat(actual.get("paths.conf")).isEqualTo("conf");
+    assertThat(actual.get("bar")).isEqualTo("baz");
+  }
+}
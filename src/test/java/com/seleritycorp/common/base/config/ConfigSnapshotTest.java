@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConfigSnapshotTest {
+  @Test
+  public void testEmpty() {
+    assertThat(ConfigSnapshot.EMPTY.size()).isEqualTo(0);
+    assertThat(ConfigSnapshot.EMPTY.get("foo")).isNull();
+  }
+
+  @Test
+  public void testOf() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("foo", "bar");
+    entries.put("baz", "quux");
+    entries.put("quuux", null);
+
+    ConfigSnapshot snapshot = ConfigSnapshot.of(entries);
+
+    assertThat(snapshot.size()).isEqualTo(2);
+    assertThat(snapshot.get("foo")).isEqualTo("bar");
+    assertThat(snapshot.get("baz")).isEqualTo("quux");
+    assertThat(snapshot.get("quuux")).isNull();
+    assertThat(snapshot.get("missing")).isNull();
+  }
+
+  @Test
+  public void testOfIsImmutable() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("foo", "bar");
+
+    ConfigSnapshot snapshot = ConfigSnapshot.of(entries);
+    entries.put("foo", "baz");
+    snapshot.toMap().put("foo", "quux");
+
+    assertThat(snapshot.get("foo")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testManyKeys() {
+    Map<String, String> entries = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      entries.put("key" + i, "value" + i);
+    }
+
+    ConfigSnapshot snapshot = ConfigSnapshot.of(entries);
+
+    assertThat(snapshot.size()).isEqualTo(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(snapshot.get("key" + i)).isEqualTo("value" + i);
+    }
+    assertThat(snapshot.get("key1000")).isNull();
+    assertThat(snapshot.toMap()).isEqualTo(entries);
+  }
+
+  @Test
+  public void testCollidingKeys() {
+    // "Aa" and "BB" share their hash code.
+    Map<String, String> entries = new HashMap<>();
+    entries.put("Aa", "foo");
+    entries.put("BB", "bar");
+
+    ConfigSnapshot snapshot = ConfigSnapshot.of(entries);
+
+    assertThat(snapshot.get("Aa")).isEqualTo("foo");
+    assertThat(snapshot.get("BB")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testFlatten() {
+    ConfigImpl grandParent = new ConfigImpl();
+    grandParent.set("foo", "grandParent");
+    grandParent.set("bar", "grandParent");
+    grandParent.set("baz", "grandParent");
+    ConfigImpl parent = new ConfigImpl();
+    parent.setParent(grandParent);
+    parent.set("bar", "parent");
+    parent.set("baz", "parent");
+    ConfigImpl config = new ConfigImpl();
+    config.setParent(parent);
+    config.set("baz", "config");
+    config.set("quux", "config");
+
+    ConfigSnapshot snapshot = ConfigSnapshot.flatten(config);
+
+    assertThat(snapshot.size()).isEqualTo(4);
+    assertThat(snapshot.get("foo")).isEqualTo("grandParent");
+    assertThat(snapshot.get("bar")).isEqualTo("parent");
+    assertThat(snapshot.get("baz")).isEqualTo("config");
+    assertThat(snapshot.get("quux")).isEqualTo("config");
+  }
+
+  @Test
+  public void testFlattenSnapshotParent() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("foo", "snapshot");
+    entries.put("bar", "snapshot");
+    ConfigImpl config = new ConfigImpl();
+    config.setParent(ConfigSnapshot.of(entries));
+    config.set("bar", "config");
+
+    ConfigSnapshot snapshot = ConfigSnapshot.flatten(config);
+
+    assertThat(snapshot.get("foo")).isEqualTo("snapshot");
+    assertThat(snapshot.get("bar")).isEqualTo("config");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFlattenForeignParent() {
+    ConfigImpl config = new ConfigImpl();
+    config.setParent(new ConfigBase() {
+      @Override
+      public String get(String key) {
+        return null;
+      }
+    });
+
+    ConfigSnapshot.flatten(config);
+  }
+
+  @Test
+  public void testWith() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("foo", "bar");
+    ConfigSnapshot snapshot = ConfigSnapshot.of(entries);
+
+    ConfigSnapshot updated = snapshot.with("baz", "quux");
+    ConfigSnapshot removed = updated.with("foo", null);
+
+    assertThat(snapshot.get("baz")).isNull();
+    assertThat(updated.get("foo")).isEqualTo("bar");
+    assertThat(updated.get("baz")).isEqualTo("quux");
+    assertThat(removed.get("foo")).isNull();
+    assertThat(removed.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testChangedKeys() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put("foo", "bar");
+    entries.put("baz", "quux");
+    entries.put("same", "value");
+    ConfigSnapshot snapshot1 = ConfigSnapshot.of(entries);
+    entries.remove("foo");
+    entries.put("baz", "quuux");
+    entries.put("new", "value");
+    ConfigSnapshot snapshot2 = ConfigSnapshot.of(entries);
+
+    assertThat(snapshot1.changedKeys(snapshot2)).containsOnly("foo", "baz", "new");
+    assertThat(snapshot2.changedKeys(snapshot1)).containsOnly("foo", "baz", "new");
+    assertThat(snapshot1.changedKeys(snapshot1)).isEmpty();
+  }
+}
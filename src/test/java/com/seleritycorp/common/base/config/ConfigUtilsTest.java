@@ -19,8 +19,13 @@ package com.seleritycorp.common.base.config;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -122,6 +127,164 @@ public class ConfigUtilsTest extends FileTestCase {
     assertThat(config.get("bar.2")).isEqualTo("quux");
   }
 
+  @Test
+  public void testLoadJsonPadded() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "\uFEFF \n\t{\"foo\":\"bar\"}\n");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config.get("foo")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testLoadJsonPrimitives() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "{\"foo\":true, \"bar\":false, \"baz\":null, \"quux\":42}");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config.get("foo")).isEqualTo("true");
+    assertThat(config.get("bar")).isEqualTo("false");
+    assertThat(config.get("baz")).isNull();
+    assertThat(config.get("quux")).isEqualTo("42.0");
+  }
+
+  @Test
+  public void testLoadJsonNested() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "{\"foo\":{\"bar\":{\"baz\":[[\"quux\"], {}, []]}}}");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config.get("foo.bar.baz.0.0")).isEqualTo("quux");
+    assertThat(config.get("foo.bar.baz.1")).isNull();
+  }
+
+  @Test
+  public void testLoadJsonInvalid() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "{\"foo\":\"bar\", \"baz\"}");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config).isNotNull();
+    assertThat(config.get("foo")).isNull();
+  }
+
+  @Test
+  public void testLoadJsonTruncated() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "{\"foo\":");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config).isNotNull();
+    assertThat(config.get("foo")).isNull();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testLoadStrictJsonInvalid() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "{\"foo\":\"bar\", \"baz\"}");
+
+    ConfigUtils.load(path, true);
+  }
+
+  @Test
+  public void testLoadStrictMissing() throws IOException {
+    Path path = createTempDirectory().resolve("missing.properties");
+
+    Config config = ConfigUtils.load(path, true);
+    assertThat(config.get("foo")).isNull();
+  }
+
+  @Test
+  public void testLoadJsonTrailingContent() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "{\"foo\":\"bar\"} {\"baz\":\"quux\"}");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config).isNotNull();
+    assertThat(config.get("foo")).isNull();
+  }
+
+  @Test
+  public void testLoadPropertyWithBraceValue() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "#{\"foo\":\"bar\"}\nfoo={bar}");
+
+    Config config = ConfigUtils.load(path);
+    assertThat(config.get("foo")).isEqualTo("{bar}");
+  }
+
+  @Test
+  public void testIsJson() throws IOException {
+    assertThat(ConfigUtils.isJson(new StringReader("{}"))).isTrue();
+    assertThat(ConfigUtils.isJson(new StringReader("  \n[1]"))).isTrue();
+    assertThat(ConfigUtils.isJson(new StringReader("foo={}"))).isFalse();
+    assertThat(ConfigUtils.isJson(new StringReader(""))).isFalse();
+  }
+
+  @Test
+  public void testIsJsonKeepsPosition() throws IOException {
+    Reader reader = new StringReader(" {}");
+
+    ConfigUtils.isJson(reader);
+
+    assertThat((char) reader.read()).isEqualTo(' ');
+  }
+
+  @Test
+  public void testLoadAll() throws IOException {
+    Path dir = createTempDirectory();
+    Path json = dir.resolve("application.json");
+    writeFile(json, "{\"foo\":\"bar\"}");
+    Path properties = dir.resolve("application.properties");
+    writeFile(properties, "foo=baz");
+    Path missing = dir.resolve("missing.properties");
+
+    List<ConfigImpl> configs = ConfigUtils.loadAll(Arrays.asList(json, missing, properties));
+
+    assertThat(configs).hasSize(3);
+    assertThat(configs.get(0).get("foo")).isEqualTo("bar");
+    assertThat(configs.get(1).get("foo")).isNull();
+    assertThat(configs.get(2).get("foo")).isEqualTo("baz");
+  }
+
+  @Test
+  public void testLoadAllSingle() throws IOException {
+    Path path = createTempFile();
+    writeFile(path, "foo=bar");
+
+    List<ConfigImpl> configs = ConfigUtils.loadAll(Collections.singletonList(path));
+
+    assertThat(configs).hasSize(1);
+    assertThat(configs.get(0).get("foo")).isEqualTo("bar");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testLoadAllStrictJsonInvalid() throws IOException {
+    Path dir = createTempDirectory();
+    Path json = dir.resolve("application.json");
+    writeFile(json, "{\"foo\":");
+    Path properties = dir.resolve("application.properties");
+    writeFile(properties, "foo=baz");
+
+    ConfigUtils.loadAll(Arrays.asList(json, properties), true);
+  }
+
+  @Test
+  public void testLoadAllInterrupted() throws IOException {
+    Path path1 = createTempFile();
+    writeFile(path1, "foo=bar");
+    Path path2 = createTempFile();
+    writeFile(path2, "foo=baz");
+
+    Thread.currentThread().interrupt();
+    List<ConfigImpl> configs = ConfigUtils.loadAll(Arrays.asList(path1, path2));
+    boolean interrupted = Thread.interrupted();
+
+    assertThat(interrupted).isTrue();
+    assertThat(configs.get(0).get("foo")).isEqualTo("bar");
+    assertThat(configs.get(1).get("foo")).isEqualTo("baz");
+  }
+
   @Test
   public void testSubconfigSimple() {
     ConfigImpl config = new ConfigImpl();
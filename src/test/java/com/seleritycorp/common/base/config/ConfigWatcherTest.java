@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class ConfigWatcherTest extends FileTestCase {
+  private final BlockingQueue<Set<String>> notifications = new LinkedBlockingQueue<>();
+  private final AtomicInteger loadCount = new AtomicInteger();
+  private ConfigWatcher watcher;
+
+  @After
+  public void tearDown() throws IOException {
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+
+  private Path createConfigFile() throws IOException {
+    return createTempDirectory().resolve("application.properties");
+  }
+
+  private SnapshotConfig createConfig(ConfigSnapshot snapshot) {
+    SnapshotConfig config = new SnapshotConfig(snapshot);
+    config.addChangeListener(new ConfigChangeListener() {
+      @Override
+      public void onConfigChange(Set<String> changedKeys) {
+        notifications.add(changedKeys);
+      }
+    });
+    return config;
+  }
+
+  private Supplier<ConfigSnapshot> createLoader(final Path file) {
+    return new Supplier<ConfigSnapshot>() {
+      @Override
+      public ConfigSnapshot get() {
+        loadCount.incrementAndGet();
+        return ConfigSnapshot.flatten(ConfigUtils.load(file));
+      }
+    };
+  }
+
+  private SnapshotConfig createEnabledConfig() {
+    Map<String, String> entries = new HashMap<>();
+    entries.put(ConfigWatcher.ENABLED_KEY, "true");
+    entries.put(ConfigWatcher.DEBOUNCE_KEY, "50");
+    return createConfig(ConfigSnapshot.of(entries));
+  }
+
+  @Test
+  public void testReloadUponFileChange() throws Exception {
+    Path file = createConfigFile();
+    writeFile(file, "foo=bar");
+    SnapshotConfig config = createConfig(ConfigSnapshot.flatten(ConfigUtils.load(file)));
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(file), 200);
+    writeFile(file, "foo=baz\nquux=42");
+
+    Set<String> changedKeys = notifications.poll(10, TimeUnit.SECONDS);
+    assertThat(changedKeys).containsOnly("foo", "quux");
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(config.getInt("quux")).isEqualTo(42);
+  }
+
+  @Test
+  public void testReloadUponDirectoryChange() throws Exception {
+    Path dir = createTempDirectory();
+    Path file = dir.resolve("application.properties");
+    SnapshotConfig config = createConfig(ConfigSnapshot.EMPTY);
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(dir), 200);
+    writeFile(file, "foo=bar");
+
+    Set<String> changedKeys = notifications.poll(10, TimeUnit.SECONDS);
+    assertThat(changedKeys).containsOnly("foo");
+    assertThat(config.get("foo")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testReloadUponFileCreation() throws Exception {
+    Path file = createConfigFile();
+    SnapshotConfig config = createConfig(ConfigSnapshot.EMPTY);
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(file), 200);
+    writeFile(file, "foo=bar");
+
+    Set<String> changedKeys = notifications.poll(10, TimeUnit.SECONDS);
+    assertThat(changedKeys).containsOnly("foo");
+    assertThat(config.get("foo")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testIgnoresOtherFilesInDirectory() throws Exception {
+    Path file = createConfigFile();
+    writeFile(file, "foo=bar");
+    Path otherFile = file.resolveSibling("other.properties");
+    SnapshotConfig config = createConfig(ConfigSnapshot.flatten(ConfigUtils.load(file)));
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(file), 50);
+    writeFile(otherFile, "foo=baz");
+
+    assertThat(notifications.poll(1, TimeUnit.SECONDS)).isNull();
+    assertThat(loadCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDebounce() throws Exception {
+    Path file = createConfigFile();
+    writeFile(file, "foo=bar");
+    SnapshotConfig config = createConfig(ConfigSnapshot.flatten(ConfigUtils.load(file)));
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(file), 1000);
+    for (int i = 0; i < 5; i++) {
+      writeFile(file, "foo=baz" + i);
+    }
+
+    Set<String> changedKeys = notifications.poll(10, TimeUnit.SECONDS);
+    assertThat(changedKeys).containsOnly("foo");
+    assertThat(config.get("foo")).isEqualTo("baz4");
+    assertThat(loadCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFailingReloadKeepsConfig() throws Exception {
+    SnapshotConfig config = createConfig(ConfigSnapshot.of(
+        Collections.singletonMap("foo", "bar")));
+
+    watcher = new ConfigWatcher(config, new Supplier<ConfigSnapshot>() {
+      @Override
+      public ConfigSnapshot get() {
+        throw new IllegalStateException("catch me");
+      }
+    }, Collections.<Path>emptySet(), 50);
+    watcher.reload();
+
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(notifications).isEmpty();
+  }
+
+  @Test
+  public void testReloadKeepsConfigUponInvalidJson() throws Exception {
+    final Path file = createTempDirectory().resolve("application.json");
+    writeFile(file, "{\"foo\":\"bar\"}");
+    SnapshotConfig config = createConfig(ConfigSnapshot.flatten(ConfigUtils.load(file)));
+
+    watcher = new ConfigWatcher(config, new Supplier<ConfigSnapshot>() {
+      @Override
+      public ConfigSnapshot get() {
+        return ConfigSnapshot.flatten(ConfigUtils.load(file, true));
+      }
+    }, Collections.<Path>emptySet(), 50);
+    writeFile(file, "{\"foo\":");
+    watcher.reload();
+
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(notifications).isEmpty();
+  }
+
+  @Test
+  public void testReloadAfterClose() throws Exception {
+    Path file = createConfigFile();
+    writeFile(file, "foo=bar");
+    SnapshotConfig config = createConfig(ConfigSnapshot.EMPTY);
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(file), 50);
+    watcher.close();
+    watcher.reload();
+
+    assertThat(config.get("foo")).isNull();
+    assertThat(loadCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testStartIfEnabledDisabled() throws Exception {
+    Path file = createConfigFile();
+    SnapshotConfig config = createConfig(ConfigSnapshot.EMPTY);
+
+    watcher = ConfigWatcher.startIfEnabled(config, createLoader(file),
+        Collections.singleton(file));
+
+    assertThat(watcher).isNull();
+  }
+
+  @Test
+  public void testStartIfEnabledEnabled() throws Exception {
+    Path file = createConfigFile();
+    SnapshotConfig config = createEnabledConfig();
+
+    watcher = ConfigWatcher.startIfEnabled(config, createLoader(file),
+        Collections.singleton(file));
+
+    assertThat(watcher).isNotNull();
+  }
+
+  @Test
+  public void testReloadKeepsValuesSetAtRuntime() throws Exception {
+    Path file = createConfigFile();
+    writeFile(file, "foo=bar\nbaz=quux");
+    SnapshotConfig config = createConfig(ConfigSnapshot.flatten(ConfigUtils.load(file)));
+    config.set("foo", "quuux");
+    config.set("baz", null);
+    notifications.clear();
+
+    watcher = new ConfigWatcher(config, createLoader(file), Collections.singleton(file), 200);
+    writeFile(file, "foo=bar\nbaz=quux\nnew=value");
+
+    Set<String> changedKeys = notifications.poll(10, TimeUnit.SECONDS);
+    assertThat(changedKeys).containsOnly("new");
+    assertThat(config.get("foo")).isEqualTo("quuux");
+    assertThat(config.get("baz")).isNull();
+    assertThat(config.get("new")).isEqualTo("value");
+  }
+
+  @Test
+  public void testStartIfEnabledClosedWithConfig() throws Exception {
+    Path file = createConfigFile();
+    writeFile(file, "foo=bar");
+    SnapshotConfig config = createEnabledConfig();
+
+    watcher = ConfigWatcher.startIfEnabled(config, createLoader(file),
+        Collections.singleton(file));
+    config.close();
+    watcher.reload();
+
+    assertThat(config.get("foo")).isNull();
+    assertThat(loadCount.get()).isEqualTo(0);
+  }
+}
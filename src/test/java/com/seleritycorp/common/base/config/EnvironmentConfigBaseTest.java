@@ -20,6 +20,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 public class EnvironmentConfigBaseTest {
   @Test
   public void testGetExisting() {
@@ -39,6 +43,92 @@ public class EnvironmentConfigBaseTest {
     assertThat(actual).isNull();
   }
 
+  @Test
+  public void testGetCaptured() {
+    Map<String, String> environment = new HashMap<>();
+    environment.put("FOO", "bar");
+    EnvironmentConfigBase config = new EnvironmentConfigBase(environment);
+    environment.put("FOO", "baz");
+
+    assertThat(config.get("FOO")).isEqualTo("bar");
+    assertThat(config.getSnapshot().get("FOO")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testNormalize() {
+    assertThat(EnvironmentConfigBase.normalize("CoreServices.url")).isEqualTo("CORESERVICES_URL");
+    assertThat(EnvironmentConfigBase.normalize("foo-bar.baz2")).isEqualTo("FOO_BAR_BAZ2");
+    assertThat(EnvironmentConfigBase.normalize("FOO_BAR")).isEqualTo("FOO_BAR");
+  }
+
+  @Test
+  public void testGetMapped() {
+    EnvironmentConfigBase config = createEnvironmentConfigBase("CORESERVICES_URL", "foo");
+
+    assertThat(config.getMapped("CoreServices.url")).isEqualTo("foo");
+    assertThat(config.getMapped("CoreServices.user")).isNull();
+    assertThat(config.get("CoreServices.url")).isNull();
+  }
+
+  @Test
+  public void testGetMappedPrefersNormalizedNames() {
+    EnvironmentConfigBase config = createEnvironmentConfigBase("foo.bar", "baz",
+        "FOO_BAR", "quux");
+
+    assertThat(config.getMapped("foo.bar")).isEqualTo("quux");
+  }
+
+  @Test
+  public void testOverlay() {
+    EnvironmentConfigBase config = createEnvironmentConfigBase("CORESERVICES_URL", "foo",
+        "PATHS_CONF", "bar", "UNRELATED", "baz");
+    ConfigSnapshot snapshot = createSnapshot("CoreServices.url", "quux",
+        "CoreServices.user", "quuux", "paths.conf", "conf");
+
+    ConfigSnapshot actual = config.overlay(snapshot, "",
+        Collections.singleton("paths.conf"));
+
+    assertThat(actual.get("CoreServices.url")).isEqualTo("foo");
+    assertThat(actual.get("CoreServices.user")).isEqualTo("quuux");
+    assertThat(actual.get("paths.conf")).isEqualTo("conf");
+    assertThat(actual.get("UNRELATED")).isNull();
+    assertThat(actual.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testOverlayPrefix() {
+    EnvironmentConfigBase config = createEnvironmentConfigBase("CORESERVICES_URL", "foo",
+        "MYAPP_CORESERVICES_URL", "bar");
+    ConfigSnapshot snapshot = createSnapshot("CoreServices.url", "quux");
+
+    ConfigSnapshot actual = config.overlay(snapshot, "MyApp.",
+        Collections.<String>emptySet());
+
+    assertThat(actual.get("CoreServices.url")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testOverlayUnchanged() {
+    EnvironmentConfigBase config = createEnvironmentConfigBase("CORESERVICES_URL", "foo");
+    ConfigSnapshot snapshot = createSnapshot("CoreServices.url", "foo");
+
+    ConfigSnapshot actual = config.overlay(snapshot, "", Collections.<String>emptySet());
+
+    assertThat(actual).isSameAs(snapshot);
+  }
+
+  private EnvironmentConfigBase createEnvironmentConfigBase(String... namesAndValues) {
+    return new EnvironmentConfigBase(createSnapshot(namesAndValues).toMap());
+  }
+
+  private ConfigSnapshot createSnapshot(String... keysAndValues) {
+    Map<String, String> entries = new HashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      entries.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return ConfigSnapshot.of(entries);
+  }
+
   private EnvironmentConfigBase createEnvironmentConfigBase() {
     return new EnvironmentConfigBase();
   }
@@ -36,4 +36,13 @@ public class EnvironmentConfigProviderTest {
 
     assertThat(config.get("LUDICROUS_AND_NON_EXISTING_NAME")).isNull();
   }
+
+  @Test
+  public void testGetIsSnapshot() {
+    EnvironmentConfigProvider provider = new EnvironmentConfigProvider();
+    Config config = provider.get();
+
+    assertThat(config).isInstanceOf(SnapshotConfig.class);
+    assertThat(config.get("PATH")).isEqualTo(System.getenv("PATH"));
+  }
 }
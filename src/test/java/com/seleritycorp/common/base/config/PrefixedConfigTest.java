@@ -17,8 +17,11 @@
 package com.seleritycorp.common.base.config;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.newCapture;
 
+import org.easymock.Capture;
 import org.easymock.EasyMockSupport;
 import org.junit.Test;
 
@@ -41,6 +44,22 @@ public class PrefixedConfigTest extends EasyMockSupport {
     assertThat(actual).isEqualTo("baz");
   }
 
+  @Test
+  public void testGetNullKey() {
+    Config config = createMock(Config.class);
+    Config subconfig = new PrefixedConfig(config, "foo");
+
+    expect(config.get("foo.null")).andReturn("baz").once();
+
+    replayAll();
+
+    String actual = subconfig.get(null);
+
+    verifyAll();
+
+    assertThat(actual).isEqualTo("baz");
+  }
+
   @Test
   public void testGetDefault() {
     Config config = createMock(Config.class);
@@ -344,4 +363,85 @@ public class PrefixedConfigTest extends EasyMockSupport {
 
     assertThat(actual).isEqualTo(42L);
   }
+
+  @Test
+  public void testGetRepeatedReusesKey() {
+    Config config = createMock(Config.class);
+    Config subconfig = new PrefixedConfig(config, "foo");
+    Capture<String> key1 = newCapture();
+    Capture<String> key2 = newCapture();
+
+    expect(config.get(capture(key1))).andReturn("baz").once();
+    expect(config.get(capture(key2))).andReturn("baz").once();
+
+    replayAll();
+
+    subconfig.get("bar");
+    subconfig.get("bar");
+
+    verifyAll();
+
+    assertThat(key1.getValue()).isEqualTo("foo.bar");
+    assertThat(key2.getValue()).isSameAs(key1.getValue());
+  }
+
+  @Test
+  public void testGetNested() {
+    Config config = createMock(Config.class);
+    Config subconfig = new PrefixedConfig(new PrefixedConfig(config, "foo"), "bar");
+
+    expect(config.get("foo.bar.baz")).andReturn("quux").once();
+    expect(config.getInt("foo.bar.quuux", 42)).andReturn(43).once();
+
+    replayAll();
+
+    String actual = subconfig.get("baz");
+    int actualInt = subconfig.getInt("quuux", 42);
+
+    verifyAll();
+
+    assertThat(actual).isEqualTo("quux");
+    assertThat(actualInt).isEqualTo(43);
+  }
+
+  @Test
+  public void testGetNestedThroughConfigUtils() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo.bar.baz", "quux");
+
+    Config subconfig = ConfigUtils.subconfig(ConfigUtils.subconfig(config, "foo"), "bar");
+
+    assertThat(subconfig.get("baz")).isEqualTo("quux");
+    assertThat(ConfigUtils.subconfig(subconfig, "baz").get("quux")).isNull();
+  }
+
+  @Test
+  public void testHandle() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo.bar", "42");
+    Config subconfig = new PrefixedConfig(config, "foo");
+
+    ConfigHandle<Integer> handle = subconfig.handle("bar", Integer.class, 1);
+    int actual1 = handle.get();
+    config.set("foo.bar", "43");
+    int actual2 = handle.get();
+
+    assertThat(handle).isSameAs(config.handle("foo.bar", Integer.class, 1));
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+  }
+
+  @Test
+  public void testDurationHandles() {
+    ConfigImpl config = new ConfigImpl();
+    config.set("foo.bar", "2");
+    config.set("foo.barUnit", "MINUTES");
+    Config subconfig = new PrefixedConfig(config, "foo");
+
+    long actualMillis = subconfig.durationMillisHandle("bar", 1).get();
+    long actualSeconds = subconfig.durationSecondsHandle("bar", 1).get();
+
+    assertThat(actualMillis).isEqualTo(120000);
+    assertThat(actualSeconds).isEqualTo(120);
+  }
 }
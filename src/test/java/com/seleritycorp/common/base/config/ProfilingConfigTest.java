@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class ProfilingConfigTest {
+  private ProfilingConfig createProfilingConfig(String... keysAndValues) {
+    Map<String, String> entries = new HashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      entries.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    final SnapshotConfig config = new SnapshotConfig(ConfigSnapshot.of(entries));
+    return new ProfilingConfig(config, new Supplier<ConfigSnapshot>() {
+      @Override
+      public ConfigSnapshot get() {
+        return config.getSnapshot();
+      }
+    });
+  }
+
+  @Test
+  public void testGetDelegates() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar", "baz", "42");
+
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(config.get("quux", "default")).isEqualTo("default");
+    assertThat(config.getInt("baz")).isEqualTo(42);
+    assertThat(config.getLong("baz", 1)).isEqualTo(42);
+  }
+
+  @Test
+  public void testReadCounts() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar", "baz", "42");
+
+    for (int i = 0; i < 3; i++) {
+      config.get("foo");
+    }
+    config.getInt("baz");
+    config.getDurationMillis("baz", 1);
+
+    assertThat(config.getReadCount("foo")).isEqualTo(3);
+    assertThat(config.getReadCount("baz")).isEqualTo(2);
+    assertThat(config.getReadCount("bazUnit")).isEqualTo(1);
+    assertThat(config.getReadCount("quux")).isEqualTo(0);
+    assertThat(config.getReadCount()).isEqualTo(6);
+    assertThat(config.getReadKeyCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testHotKeys() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar", "baz", "42");
+
+    config.get("baz");
+    config.get("foo");
+    config.get("foo");
+
+    assertThat(config.getHotKeys()).containsExactly("foo=2", "baz=1");
+  }
+
+  @Test
+  public void testSite() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar");
+    Config prefixedConfig = new PrefixedConfig(config, "quux");
+
+    config.get("foo");
+    prefixedConfig.get("bar");
+
+    assertThat(config.getSite("foo")).contains(ProfilingConfigTest.class.getName())
+        .contains("testSite");
+    assertThat(config.getSite("quux.bar")).contains(ProfilingConfigTest.class.getName())
+        .contains("testSite");
+    assertThat(config.getSite("baz")).isNull();
+  }
+
+  @Test
+  public void testAbsentAndUnusedKeys() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar", "baz", "42", "quux", "1");
+
+    config.get("foo");
+    config.get("absent1", "default");
+    config.getBoolean("absent2", true);
+
+    assertThat(config.getAbsentKeys()).containsExactly("absent1", "absent2");
+    assertThat(config.getUnusedKeys()).containsExactly("baz", "quux");
+  }
+
+  @Test
+  public void testDurationUnitKeysUsed() {
+    ProfilingConfig config = createProfilingConfig("foo", "42", "fooUnit", "SECONDS", "bar", "1",
+        "barUnit", "MINUTES", "baz", "2", "bazUnit", "HOURS");
+
+    assertThat(config.getDurationMillis("foo")).isEqualTo(42000);
+    assertThat(config.getDurationSeconds("bar", 0)).isEqualTo(60);
+    config.durationMillisHandle("baz", 0);
+
+    assertThat(config.getUnusedKeys()).isEmpty();
+  }
+
+  @Test
+  public void testHandleCountsOnce() {
+    ProfilingConfig config = createProfilingConfig("foo", "42");
+
+    ConfigHandle<Integer> handle = config.handle("foo", Integer.class, 0);
+    handle.get();
+    handle.get();
+
+    assertThat(handle.get()).isEqualTo(42);
+    assertThat(config.getReadCount("foo")).isEqualTo(1);
+  }
+
+  @Test
+  public void testReport() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar", "baz", "42");
+
+    config.get("foo");
+    config.get("foo");
+    config.get("absent");
+
+    String report = config.dumpReport();
+
+    assertThat(report).contains("3 reads of 2 keys");
+    assertThat(report).contains("  2 foo (first read at ");
+    assertThat(report).contains("Absent keys (read, but not set):\n  absent (first read at ");
+    assertThat(report).contains("Unused keys (set, but never read):\n  baz\n");
+  }
+
+  @Test
+  public void testReset() {
+    ProfilingConfig config = createProfilingConfig("foo", "bar");
+    config.get("foo");
+
+    config.reset();
+
+    assertThat(config.getReadCount()).isEqualTo(0);
+    assertThat(config.getUnusedKeys()).containsExactly("foo");
+  }
+
+  @Test
+  public void testWrapIfEnabledDefault() {
+    Config config = new SnapshotConfig(ConfigSnapshot.EMPTY);
+
+    assertThat(ProfilingConfig.wrapIfEnabled(config)).isSameAs(config);
+  }
+}
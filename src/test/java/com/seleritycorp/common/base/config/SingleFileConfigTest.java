@@ -23,6 +23,10 @@ import org.junit.Test;
 
 import com.seleritycorp.common.base.test.FileTestCase;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class SingleFileConfigTest extends FileTestCase {
   @Test
@@ -65,4 +69,24 @@ public class SingleFileConfigTest extends FileTestCase {
     assertThat(config.get("foo")).isEqualTo("bar");
     assertThat(config.get("pippo")).isEqualTo("pluto");
   }
+
+  @Test
+  public void testReloadUponChange() throws Exception {
+    Path path = createTempDirectory().resolve("application.properties");
+    writeFile(path, "foo=bar\nconfig.watch.enabled=true\nconfig.watch.debounceMillis=200");
+    final BlockingQueue<Set<String>> notifications = new LinkedBlockingQueue<>();
+
+    SingleFileConfig config = new SingleFileConfig(path, Config.newEmptyConfig());
+    config.addChangeListener(new ConfigChangeListener() {
+      @Override
+      public void onConfigChange(Set<String> changedKeys) {
+        notifications.add(changedKeys);
+      }
+    });
+    writeFile(path, "foo=baz\nconfig.watch.enabled=true\nconfig.watch.debounceMillis=200");
+
+    assertThat(notifications.poll(10, TimeUnit.SECONDS)).containsOnly("foo");
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(config.get("paths.conf")).isEqualTo(path.getParent().toString());
+  }
 }
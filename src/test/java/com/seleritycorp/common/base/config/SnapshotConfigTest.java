@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SnapshotConfigTest {
+  private final List<Set<String>> notifications = new ArrayList<>();
+
+  private ConfigChangeListener createListener() {
+    return new ConfigChangeListener() {
+      @Override
+      public void onConfigChange(Set<String> changedKeys) {
+        notifications.add(changedKeys);
+      }
+    };
+  }
+
+  private ConfigSnapshot createSnapshot(String... keysAndValues) {
+    Map<String, String> entries = new HashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      entries.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return ConfigSnapshot.of(entries);
+  }
+
+  @Test
+  public void testGet() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "bar", "baz", "42"));
+
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(config.get("quux")).isNull();
+    assertThat(config.get("quux", "default")).isEqualTo("default");
+    assertThat(config.getInt("baz")).isEqualTo(42);
+  }
+
+  @Test
+  public void testSetSnapshot() {
+    ConfigSnapshot snapshot = createSnapshot("foo", "bar");
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "baz", "quux", "quuux"));
+
+    config.setSnapshot(snapshot);
+
+    assertThat(config.getSnapshot()).isSameAs(snapshot);
+    assertThat(config.get("foo")).isEqualTo("bar");
+    assertThat(config.get("quux")).isNull();
+  }
+
+  @Test
+  public void testSet() {
+    ConfigSnapshot snapshot = createSnapshot("foo", "bar");
+    SnapshotConfig config = new SnapshotConfig(snapshot);
+
+    config.set("baz", "quux");
+    config.set("foo", null);
+
+    assertThat(config.get("baz")).isEqualTo("quux");
+    assertThat(config.get("foo")).isNull();
+    assertThat(snapshot.get("foo")).isEqualTo("bar");
+  }
+
+  @Test
+  public void testTypedGettersFollowSnapshots() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "42"));
+
+    int actual1 = config.getInt("foo");
+    config.setSnapshot(createSnapshot("foo", "43"));
+    int actual2 = config.getInt("foo");
+    config.set("foo", "44");
+    int actual3 = config.getInt("foo");
+
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+    assertThat(actual3).isEqualTo(44);
+  }
+
+  @Test
+  public void testSetParent() {
+    ConfigImpl parent = new ConfigImpl();
+    parent.set("foo", "bar");
+    parent.set("baz", "quux");
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "quuux"));
+
+    config.setParent(parent);
+
+    assertThat(config.get("foo")).isEqualTo("quuux");
+    assertThat(config.get("baz")).isEqualTo("quux");
+    assertThat(config.get("quuux")).isNull();
+  }
+
+  @Test
+  public void testSetParentFlatten() {
+    ConfigImpl parent = new ConfigImpl();
+    parent.set("foo", "bar");
+    parent.set("baz", "quux");
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "quuux"));
+    config.setParent(parent);
+
+    ConfigSnapshot snapshot = ConfigSnapshot.flatten(config);
+
+    assertThat(snapshot.get("foo")).isEqualTo("quuux");
+    assertThat(snapshot.get("baz")).isEqualTo("quux");
+  }
+
+  @Test
+  public void testFlattenAsParent() {
+    ConfigImpl config = new ConfigImpl();
+    config.setParent(new SnapshotConfig(createSnapshot("foo", "bar", "baz", "quux")));
+    config.set("baz", "quuux");
+
+    ConfigSnapshot snapshot = ConfigSnapshot.flatten(config);
+
+    assertThat(snapshot.get("foo")).isEqualTo("bar");
+    assertThat(snapshot.get("baz")).isEqualTo("quuux");
+  }
+
+  @Test
+  public void testListenerSetSnapshot() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "bar", "baz", "quux"));
+    config.addChangeListener(createListener());
+
+    config.setSnapshot(createSnapshot("foo", "bar", "baz", "quuux", "new", "value"));
+
+    assertThat(notifications).hasSize(1);
+    assertThat(notifications.get(0)).containsOnly("baz", "new");
+  }
+
+  @Test
+  public void testListenerSetSnapshotUnchanged() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "bar"));
+    config.addChangeListener(createListener());
+
+    config.setSnapshot(createSnapshot("foo", "bar"));
+
+    assertThat(notifications).isEmpty();
+  }
+
+  @Test
+  public void testListenerSet() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "bar"));
+    config.addChangeListener(createListener());
+
+    config.set("foo", "bar");
+    config.set("foo", "baz");
+    config.set("foo", null);
+
+    assertThat(notifications).hasSize(2);
+    assertThat(notifications.get(0)).containsOnly("foo");
+    assertThat(notifications.get(1)).containsOnly("foo");
+  }
+
+  @Test
+  public void testListenerRemoved() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "bar"));
+    ConfigChangeListener listener = createListener();
+    config.addChangeListener(listener);
+    config.removeChangeListener(listener);
+
+    config.set("foo", "baz");
+
+    assertThat(notifications).isEmpty();
+  }
+
+  @Test
+  public void testFailingListenerDoesNotStopOthers() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "bar"));
+    config.addChangeListener(new ConfigChangeListener() {
+      @Override
+      public void onConfigChange(Set<String> changedKeys) {
+        throw new IllegalStateException("catch me");
+      }
+    });
+    config.addChangeListener(createListener());
+
+    config.set("foo", "baz");
+
+    assertThat(config.get("foo")).isEqualTo("baz");
+    assertThat(notifications).hasSize(1);
+  }
+
+  @Test
+  public void testHandleFollowsSnapshots() {
+    SnapshotConfig config = new SnapshotConfig(createSnapshot("foo", "42"));
+    ConfigHandle<Integer> handle = config.handle("foo", Integer.class, 1);
+
+    int actual1 = handle.get();
+    config.setSnapshot(createSnapshot("foo", "43"));
+    int actual2 = handle.get();
+    config.set("foo", "44");
+    int actual3 = handle.get();
+
+    assertThat(actual1).isEqualTo(42);
+    assertThat(actual2).isEqualTo(43);
+    assertThat(actual3).isEqualTo(44);
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockSupport;
+import org.junit.Test;
+
+public class AsyncLogDispatcherTest extends EasyMockSupport {
+  private static final String FQCN = AsyncLogDispatcherTest.class.getName();
+
+  @Test
+  public void testDispatchBuffersUntilFlush() {
+    Appender appender = createMock(Appender.class);
+    Logger logger = createLogger("BuffersUntilFlush", appender);
+
+    Capture<LoggingEvent> capture = EasyMock.newCapture(CaptureType.ALL);
+    appender.doAppend(EasyMock.capture(capture));
+    EasyMock.expectLastCall().times(2);
+
+    replayAll();
+
+    AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(4, AsyncOverflowPolicy.BLOCK, false);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "foo", null);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.WARN, "bar", null);
+
+    assertThat(dispatcher.getQueueDepth()).isEqualTo(2);
+
+    dispatcher.flush();
+
+    verifyAll();
+
+    assertThat(capture.getValues()).hasSize(2);
+    assertThat(capture.getValues().get(0).getMessage()).isEqualTo("foo");
+    assertThat(capture.getValues().get(0).getThreadName())
+        .isEqualTo(Thread.currentThread().getName());
+    assertThat(capture.getValues().get(1).getMessage()).isEqualTo("bar");
+    assertThat(dispatcher.getQueueDepth()).isEqualTo(0);
+    assertThat(dispatcher.getDispatchedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testDispatchBelowLevel() {
+    Appender appender = createMock(Appender.class);
+    Logger logger = createLogger("BelowLevel", appender);
+    logger.setLevel(org.apache.log4j.Level.WARN);
+
+    replayAll();
+
+    AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(4, AsyncOverflowPolicy.BLOCK, false);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "foo", null);
+
+    verifyAll();
+
+    assertThat(dispatcher.getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOverflowDropBelowWarn() {
+    Appender appender = createMock(Appender.class);
+    Logger logger = createLogger("DropBelowWarn", appender);
+
+    Capture<LoggingEvent> capture = EasyMock.newCapture(CaptureType.ALL);
+    appender.doAppend(EasyMock.capture(capture));
+    EasyMock.expectLastCall().times(2);
+
+    replayAll();
+
+    AsyncLogDispatcher dispatcher =
+        new AsyncLogDispatcher(2, AsyncOverflowPolicy.DROP_BELOW_WARN, false);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "foo", null);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "bar", null);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "baz", null);
+    dispatcher.flush();
+
+    verifyAll();
+
+    assertThat(capture.getValues()).hasSize(2);
+    assertThat(capture.getValues().get(0).getMessage()).isEqualTo("foo");
+    assertThat(capture.getValues().get(1).getMessage()).isEqualTo("bar");
+    assertThat(dispatcher.getDroppedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testOverflowDropOldest() {
+    Appender appender = createMock(Appender.class);
+    Logger logger = createLogger("DropOldest", appender);
+
+    Capture<LoggingEvent> capture = EasyMock.newCapture(CaptureType.ALL);
+    appender.doAppend(EasyMock.capture(capture));
+    EasyMock.expectLastCall().times(2);
+
+    replayAll();
+
+    AsyncLogDispatcher dispatcher =
+        new AsyncLogDispatcher(2, AsyncOverflowPolicy.DROP_OLDEST, false);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.ERROR, "foo", null);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "bar", null);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "baz", null);
+    dispatcher.flush();
+
+    verifyAll();
+
+    assertThat(capture.getValues()).hasSize(2);
+    assertThat(capture.getValues().get(0).getMessage()).isEqualTo("bar");
+    assertThat(capture.getValues().get(1).getMessage()).isEqualTo("baz");
+    assertThat(dispatcher.getDroppedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testShutdownFlushes() {
+    Appender appender = createMock(Appender.class);
+    Logger logger = createLogger("ShutdownFlushes", appender);
+
+    Capture<LoggingEvent> capture = EasyMock.newCapture(CaptureType.ALL);
+    appender.doAppend(EasyMock.capture(capture));
+    EasyMock.expectLastCall().times(3);
+
+    replayAll();
+
+    AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(8, AsyncOverflowPolicy.BLOCK, true);
+    dispatcher.start();
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "foo", null);
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "bar", null);
+    dispatcher.shutdown();
+
+    // After shutdown, events get appended synchronously
+    dispatcher.dispatch(logger, FQCN, org.apache.log4j.Level.INFO, "baz", null);
+
+    verifyAll();
+
+    assertThat(capture.getValues()).hasSize(3);
+    assertThat(capture.getValues().get(2).getMessage()).isEqualTo("baz");
+    assertThat(dispatcher.getQueueDepth()).isEqualTo(0);
+    assertThat(dispatcher.getDispatchedCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testMetrics() {
+    replayAll();
+
+    AsyncLogDispatcher dispatcher =
+        new AsyncLogDispatcher(5, AsyncOverflowPolicy.DROP_OLDEST, false);
+
+    verifyAll();
+
+    assertThat(dispatcher.getCapacity()).isEqualTo(8);
+    assertThat(dispatcher.getOverflowPolicy()).isEqualTo("DROP_OLDEST");
+    assertThat(dispatcher.getQueueDepth()).isEqualTo(0);
+    assertThat(dispatcher.getDroppedCount()).isEqualTo(0);
+    assertThat(dispatcher.getDispatchedCount()).isEqualTo(0);
+  }
+
+  private Logger createLogger(String testName, Appender appender) {
+    Logger logger = Logger.getLogger(FQCN + ":" + testName);
+    logger.removeAllAppenders();
+    logger.setAdditivity(false);
+    logger.addAppender(appender);
+    logger.setLevel(org.apache.log4j.Level.TRACE);
+    return logger;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class AsyncLogRingBufferTest {
+  @Test
+  public void testCapacityRoundedUp() {
+    AsyncLogRingBuffer<String> buffer = new AsyncLogRingBuffer<>(5);
+
+    assertThat(buffer.getCapacity()).isEqualTo(8);
+  }
+
+  @Test
+  public void testCapacityPowerOfTwo() {
+    AsyncLogRingBuffer<String> buffer = new AsyncLogRingBuffer<>(4);
+
+    assertThat(buffer.getCapacity()).isEqualTo(4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacityZero() {
+    new AsyncLogRingBuffer<String>(0);
+  }
+
+  @Test
+  public void testPollEmpty() {
+    AsyncLogRingBuffer<String> buffer = new AsyncLogRingBuffer<>(4);
+
+    assertThat(buffer.poll()).isNull();
+    assertThat(buffer.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOfferPollOrder() {
+    AsyncLogRingBuffer<String> buffer = new AsyncLogRingBuffer<>(4);
+
+    assertThat(buffer.offer("foo")).isTrue();
+    assertThat(buffer.offer("bar")).isTrue();
+    assertThat(buffer.size()).isEqualTo(2);
+
+    assertThat(buffer.poll()).isEqualTo("foo");
+    assertThat(buffer.poll()).isEqualTo("bar");
+    assertThat(buffer.poll()).isNull();
+  }
+
+  @Test
+  public void testOfferFull() {
+    AsyncLogRingBuffer<String> buffer = new AsyncLogRingBuffer<>(2);
+
+    assertThat(buffer.offer("foo")).isTrue();
+    assertThat(buffer.offer("bar")).isTrue();
+    assertThat(buffer.offer("baz")).isFalse();
+    assertThat(buffer.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testWrapAround() {
+    AsyncLogRingBuffer<Integer> buffer = new AsyncLogRingBuffer<>(2);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(buffer.offer(i)).isTrue();
+      assertThat(buffer.poll()).isEqualTo(i);
+    }
+    assertThat(buffer.size()).isEqualTo(0);
+  }
+}
@@ -17,9 +17,12 @@
 package com.seleritycorp.common.base.logging;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.newCapture;
 
 import org.apache.log4j.Logger;
+import org.easymock.Capture;
 import org.easymock.EasyMockSupport;
 import org.junit.Before;
 import org.junit.Test;
@@ -588,7 +591,7 @@ public class CommonsLogTest extends EasyMockSupport {
 
   @Test
   public void testTraceNull() {
-    wrappedLog.trace(null);
+    wrappedLog.trace((Object) null);
 
     replayAll();
 
@@ -873,6 +876,7 @@ public class CommonsLogTest extends EasyMockSupport {
 
   @Test
   public void testStructuredDebug() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
     wrappedLog.debug("baz");
     expect(formatter.formatStructuredLine("foo", 42, "bar")).andReturn("baz");
 
@@ -886,6 +890,7 @@ public class CommonsLogTest extends EasyMockSupport {
 
   @Test
   public void testStructuredDebugChanger() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
     wrappedLog.debug("baz");
 
     replayAll();
@@ -896,6 +901,210 @@ public class CommonsLogTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void testStructuredDebugDisabled() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.structuredDebug("foo", 42, "bar");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStructuredDebug1Pair() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
+    wrappedLog.debug("baz");
+    expect(formatter.formatStructuredLine("foo", 42, "bar", "quux")).andReturn("baz");
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.structuredDebug("foo", 42, "bar", "quux");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStructuredDebug2Pairs() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
+    wrappedLog.debug("baz");
+    expect(formatter.formatStructuredLine("foo", 42, "bar", 1, "quux", 2)).andReturn("baz");
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.structuredDebug("foo", 42, "bar", 1, "quux", 2);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStructuredDebug3Pairs() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
+    wrappedLog.debug("baz");
+    expect(formatter.formatStructuredLine("foo", 42, "bar", 1, "quux", 2, "quuux", 3))
+        .andReturn("baz");
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.structuredDebug("foo", 42, "bar", 1, "quux", 2, "quuux", 3);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStructuredDebug3PairsDisabled() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.structuredDebug("foo", 42, "bar", 1, "quux", 2, "quuux", 3);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDebugSupplierEnabled() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
+    wrappedLog.debug("foo");
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.debug(() -> "foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDebugSupplierDisabled() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.debug(() -> {
+      throw new AssertionError("Supplier should not get evaluated");
+    });
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDebugNullSupplier() {
+    wrappedLog.debug((Object) null);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.debug(null);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testErrorNullSupplierThrowable() {
+    Throwable t = createMock(Throwable.class);
+    wrappedLog.error((Object) null, t);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.error(null, t);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testWarnSupplierThrowable() {
+    Throwable t = createMock(Throwable.class);
+    expect(wrappedLog.isWarnEnabled()).andReturn(true);
+    wrappedLog.warn("foo", t);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.warn(() -> "foo", t);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testTraceSupplierDisabled() {
+    expect(wrappedLog.isTraceEnabled()).andReturn(false);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.trace(() -> {
+      throw new AssertionError("Supplier should not get evaluated");
+    });
+
+    verifyAll();
+  }
+
+  @Test
+  public void testInfoTemplateEnabled() {
+    expect(wrappedLog.isInfoEnabled()).andReturn(true);
+    wrappedLog.info("foo bar 42");
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.info("foo %s %d", "bar", 42);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDebugTemplateDisabled() {
+    Object arg = new Object() {
+      @Override
+      public String toString() {
+        throw new AssertionError("Argument should not get formatted");
+      }
+    };
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.debug("foo %s %s", arg, arg);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testErrorTemplateBroken() {
+    expect(wrappedLog.isErrorEnabled()).andReturn(true);
+    wrappedLog.error("foo %d [bar]");
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.error("foo %d", "bar");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testFatalTemplateThrowableIsNotFormatted() {
+    Throwable t = createMock(Throwable.class);
+    wrappedLog.fatal("foo %s", t);
+
+    replayAll();
+
+    Log log = new CommonsLog(wrappedLog, formatter);
+    log.fatal("foo %s", t);
+
+    verifyAll();
+  }
+
   @Test
   public void testGetLog4jLoggerWrappedNull() {
     replayAll();
@@ -972,4 +1181,168 @@ public class CommonsLogTest extends EasyMockSupport {
       return "baz"; 
     }
   }
+
+  @Test
+  public void testFlightRecorderDebugEnabled() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(true);
+    wrappedLog.debug("foo");
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    Log log = new CommonsLog(wrappedLog, formatter, null, recorder, null);
+    log.debug("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testFlightRecorderDumpOnError() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(false).times(2);
+    expect(wrappedLog.isTraceEnabled()).andReturn(false);
+    Capture<Object> dump = newCapture();
+    wrappedLog.error(capture(dump));
+    wrappedLog.error("bar");
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    Log log = new CommonsLog(wrappedLog, formatter, null, recorder, null);
+    log.debug("foo1");
+    log.debug("foo%d", 2);
+    log.trace("foo3");
+    log.error("bar");
+
+    verifyAll();
+
+    String[] lines = dump.getValue().toString().split("\n");
+    assertThat(lines).hasSize(4);
+    assertThat(lines[0]).endsWith("(3 events):");
+    assertThat(lines[1]).endsWith(" DEBUG - - foo1");
+    assertThat(lines[2]).endsWith(" DEBUG - - foo2");
+    assertThat(lines[3]).endsWith(" TRACE - - foo3");
+  }
+
+  @Test
+  public void testFlightRecorderNoDumpOnWarn() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+    wrappedLog.warn("bar");
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    Log log = new CommonsLog(wrappedLog, formatter, null, recorder, null);
+    log.debug("foo");
+    log.warn("bar");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testFlightRecorderInheritedFromWrappedLog() {
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+    Capture<Object> dump = newCapture();
+    wrappedLog.fatal(capture(dump));
+    wrappedLog.fatal("bar");
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    Log log = new FlatLog(new CommonsLog(wrappedLog, formatter, null, recorder, null), formatter);
+    log.debug("foo");
+    log.fatal("bar");
+
+    verifyAll();
+
+    assertThat(dump.getValue().toString()).endsWith(" DEBUG - - foo");
+  }
+
+  @Test
+  public void testMetricsEvents() {
+    expect(wrappedLog.isInfoEnabled()).andReturn(true);
+    wrappedLog.info("foo");
+    expect(wrappedLog.isWarnEnabled()).andReturn(true);
+    wrappedLog.warn("bar", addedThrowable);
+    expect(wrappedLog.isDebugEnabled()).andReturn(false);
+    wrappedLog.debug("baz");
+
+    replayAll();
+
+    LoggingMetrics metrics = new LoggingMetrics(3);
+    Log log = new CommonsLog(wrappedLog, formatter, null, null, metrics);
+    log.info("foo");
+    log.warn("bar", addedThrowable);
+    log.debug("baz");
+
+    verifyAll();
+
+    assertThat(metrics.getEventCount()).isEqualTo(2);
+    assertThat(metrics.getEventsPerLevel()).containsEntry("INFO", 1L).containsEntry("WARN", 1L)
+        .containsEntry("DEBUG", 0L);
+    assertThat(metrics.getEventsPerLoggerPrefix()).containsEntry("<unknown>", 2L);
+    assertThat(metrics.getMessageChars()).isEqualTo(6);
+    assertThat(metrics.getAppendNanos()).isGreaterThanOrEqualTo(0);
+    assertThat(metrics.getStructuredEventsPerTag()).isEmpty();
+  }
+
+  @Test
+  public void testMetricsStructuredEvents() {
+    expect(formatter.formatStructuredLine("foo", 42, "bar", "baz")).andReturn("quux");
+    wrappedLog.info("quux");
+    expect(wrappedLog.isInfoEnabled()).andReturn(true);
+    expect(wrappedLog.isDebugEnabled()).andReturn(true).times(2);
+    expect(formatter.formatStructuredLine("foo", 43)).andReturn("quuux");
+    wrappedLog.debug("quuux");
+
+    replayAll();
+
+    LoggingMetrics metrics = new LoggingMetrics(3);
+    Log log = new CommonsLog(wrappedLog, formatter, null, null, metrics);
+    log.structuredInfo("foo", 42, "bar", "baz");
+    log.structuredDebug("foo", 43);
+
+    verifyAll();
+
+    assertThat(metrics.getEventCount()).isEqualTo(2);
+    assertThat(metrics.getEventsPerLevel()).containsEntry("INFO", 1L).containsEntry("DEBUG", 1L);
+    assertThat(metrics.getStructuredEventsPerTag()).containsEntry("foo", 2L);
+    assertThat(metrics.getMessageChars()).isEqualTo(9);
+  }
+
+  @Test
+  public void testMetricsInheritedFromWrappedLog() {
+    expect(wrappedLog.isInfoEnabled()).andReturn(true);
+    wrappedLog.info("(foo) bar");
+
+    replayAll();
+
+    LoggingMetrics metrics = new LoggingMetrics(3);
+    Log log = new PrefixedLogger("foo",
+        new CommonsLog(wrappedLog, formatter, null, null, metrics), formatter);
+    log.info("bar");
+
+    verifyAll();
+
+    // Counted once, although the event passed through two CommonsLogs.
+    assertThat(metrics.getEventsPerLevel()).containsEntry("INFO", 1L);
+  }
+
+  @Test
+  public void testMetricsSkipDisabledStructuredInfo() {
+    expect(formatter.formatStructuredLine("foo", 42)).andReturn("quux");
+    wrappedLog.info("quux");
+    expect(wrappedLog.isInfoEnabled()).andReturn(false);
+
+    replayAll();
+
+    LoggingMetrics metrics = new LoggingMetrics(3);
+    Log log = new CommonsLog(wrappedLog, formatter, null, null, metrics);
+    log.structuredInfo("foo", 42);
+
+    verifyAll();
+
+    assertThat(metrics.getEventCount()).isEqualTo(0);
+    assertThat(metrics.getStructuredEventsPerTag()).isEmpty();
+    assertThat(metrics.getMessageChars()).isEqualTo(0);
+  }
 }
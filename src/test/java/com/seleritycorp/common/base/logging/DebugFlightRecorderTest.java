@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.newCapture;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+public class DebugFlightRecorderTest extends FileTestCase {
+  private Log recordedLog;
+  private Log dumpLog;
+
+  @Before
+  public void setUp() {
+    recordedLog = createMock(Log.class);
+    expect(recordedLog.getLog4jLogger()).andReturn(null).anyTimes();
+
+    dumpLog = createMock(Log.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNonPositiveCapacity() {
+    new DebugFlightRecorder(0, false);
+  }
+
+  @Test
+  public void testDumpWithoutRecording() {
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDumpToLog() {
+    Capture<Object> dump = newCapture();
+    dumpLog.log(eq(Level.ERROR), capture(dump));
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    recorder.record(recordedLog, Level.DEBUG, "foo", null, null);
+    recorder.record(recordedLog, Level.TRACE, "bar", null, new Exception("baz"));
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+
+    verifyAll();
+
+    String[] lines = dump.getValue().toString().split("\n");
+    assertThat(lines).hasSize(3);
+    assertThat(lines[0]).isEqualTo("Debug flight recording of thread '"
+        + Thread.currentThread().getName() + "' (2 events):");
+    assertThat(lines[1]).endsWith(" DEBUG - - foo");
+    assertThat(lines[2]).endsWith(" TRACE - - bar (java.lang.Exception: baz)");
+  }
+
+  @Test
+  public void testDumpKeepsOnlyLatest() {
+    Capture<Object> dump = newCapture();
+    dumpLog.log(eq(Level.FATAL), capture(dump));
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(2, false);
+    recorder.record(recordedLog, Level.DEBUG, "foo1", null, null);
+    recorder.record(recordedLog, Level.DEBUG, "foo2", null, null);
+    recorder.record(recordedLog, Level.DEBUG, "foo3", null, null);
+    recorder.dumpCurrentThread(dumpLog, Level.FATAL);
+
+    verifyAll();
+
+    String[] lines = dump.getValue().toString().split("\n");
+    assertThat(lines).hasSize(3);
+    assertThat(lines[0]).endsWith("(2 events):");
+    assertThat(lines[1]).endsWith(" - foo2");
+    assertThat(lines[2]).endsWith(" - foo3");
+  }
+
+  @Test
+  public void testDumpClearsRecording() {
+    Capture<Object> dump = newCapture();
+    dumpLog.log(eq(Level.ERROR), capture(dump));
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    recorder.record(recordedLog, Level.DEBUG, "foo", null, null);
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testTemplatesAndSuppliersRenderedUponDump() {
+    Capture<Object> dump = newCapture();
+    dumpLog.log(eq(Level.ERROR), capture(dump));
+    final List<String> calls = new ArrayList<>();
+    Supplier<String> supplier = new Supplier<String>() {
+      @Override
+      public String get() {
+        calls.add("get");
+        return "quux";
+      }
+    };
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    recorder.record(recordedLog, Level.DEBUG, "foo %d", new Object[] {42}, null);
+    recorder.record(recordedLog, Level.DEBUG, supplier, null, null);
+    assertThat(calls).isEmpty();
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+
+    verifyAll();
+
+    String[] lines = dump.getValue().toString().split("\n");
+    assertThat(lines[1]).endsWith(" - foo 42");
+    assertThat(lines[2]).endsWith(" - quux");
+    assertThat(calls).containsExactly("get");
+  }
+
+  @Test
+  public void testDumpFailingRendering() {
+    Capture<Object> dump = newCapture();
+    dumpLog.log(eq(Level.ERROR), capture(dump));
+    Object message = new Object() {
+      @Override
+      public String toString() {
+        throw new IllegalStateException("catch me");
+      }
+    };
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    recorder.record(recordedLog, Level.DEBUG, message, null, null);
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+
+    verifyAll();
+
+    assertThat(dump.getValue().toString()).contains("<rendering failed: ")
+        .contains("catch me");
+  }
+
+  @Test
+  public void testRecordingsArePerThread() throws Exception {
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    Thread thread = startRecordingThread(recorder, "foo");
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+    int threadCount = recorder.getThreadCount();
+    stopRecordingThread(thread);
+
+    verifyAll();
+
+    assertThat(threadCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testDumpAll() throws Exception {
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, false);
+    Thread thread = startRecordingThread(recorder, "foo", "bar");
+    recorder.record(recordedLog, Level.DEBUG, "baz", null, null);
+
+    int dumped = recorder.dumpAll();
+    int dumpedAgain = recorder.dumpAll();
+    stopRecordingThread(thread);
+
+    verifyAll();
+
+    assertThat(dumped).isEqualTo(3);
+    assertThat(dumpedAgain).isEqualTo(0);
+  }
+
+  @Test
+  public void testDumpToFile() throws Exception {
+    final Path dir = createTempDirectory().resolve("dumps");
+    Capture<Object> notice = newCapture();
+    dumpLog.log(eq(Level.ERROR), capture(notice));
+
+    replayAll();
+
+    DebugFlightRecorder recorder = new DebugFlightRecorder(10, true) {
+      @Override
+      Path getDumpDirectory() {
+        return dir;
+      }
+    };
+    recorder.record(recordedLog, Level.DEBUG, "foo", null, null);
+    recorder.dumpCurrentThread(dumpLog, Level.ERROR);
+
+    verifyAll();
+
+    assertThat(recorder.isDumpingToFile()).isTrue();
+    List<Path> files = new ArrayList<>();
+    for (Path file : Files.newDirectoryStream(dir)) {
+      files.add(file);
+    }
+    assertThat(files).hasSize(1);
+    assertThat(notice.getValue().toString()).endsWith(" dumped to " + files.get(0));
+    String content = new String(Files.readAllBytes(files.get(0)), UTF_8);
+    assertThat(content).startsWith("Debug flight recording of thread ").endsWith(" - foo");
+  }
+
+  /**
+   * Starts a thread that records messages and stays alive until stopped.
+   *
+   * @param recorder The recorder to record to.
+   * @param messages The messages to record.
+   * @return The started thread, after it recorded the messages.
+   * @throws InterruptedException if waiting for the thread fails.
+   */
+  private Thread startRecordingThread(final DebugFlightRecorder recorder,
+      final String... messages) throws InterruptedException {
+    final CountDownLatch recorded = new CountDownLatch(1);
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (String message : messages) {
+          recorder.record(recordedLog, Level.DEBUG, message, null, null);
+        }
+        recorded.countDown();
+        try {
+          Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+          // We're getting stopped.
+        }
+      }
+    });
+    thread.start();
+    recorded.await();
+    return thread;
+  }
+
+  private void stopRecordingThread(Thread thread) throws InterruptedException {
+    thread.interrupt();
+    thread.join();
+  }
+}
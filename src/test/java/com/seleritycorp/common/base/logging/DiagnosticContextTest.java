@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class DiagnosticContextTest {
+  @After
+  public void tearDown() {
+    DiagnosticContext.clear();
+  }
+
+  @Test
+  public void testEmpty() {
+    assertThat(DiagnosticContext.isEmpty()).isTrue();
+    assertThat(DiagnosticContext.get("foo")).isNull();
+    assertThat(DiagnosticContext.getEntries()).isEmpty();
+  }
+
+  @Test
+  public void testPut() {
+    DiagnosticContext.put("foo", "bar");
+    DiagnosticContext.put("baz", 42);
+
+    assertThat(DiagnosticContext.isEmpty()).isFalse();
+    assertThat(DiagnosticContext.get("foo")).isEqualTo("bar");
+    assertThat(DiagnosticContext.get("baz")).isEqualTo(42);
+    assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "bar", "baz", 42);
+  }
+
+  @Test
+  public void testPutUpdateKeepsOrder() {
+    DiagnosticContext.put("foo", "bar");
+    DiagnosticContext.put("baz", 42);
+    DiagnosticContext.put("foo", "quux");
+
+    assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "quux", "baz", 42);
+  }
+
+  @Test
+  public void testPutDoesNotModifyCapturedEntries() {
+    DiagnosticContext.put("foo", "bar");
+    Object[] entries = DiagnosticContext.getEntries();
+
+    DiagnosticContext.put("foo", "baz");
+
+    assertThat(entries).containsExactly("foo", "bar");
+  }
+
+  @Test
+  public void testPutNullRemoves() {
+    DiagnosticContext.put("foo", "bar");
+    DiagnosticContext.put("foo", null);
+
+    assertThat(DiagnosticContext.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testRemove() {
+    DiagnosticContext.put("foo", "bar");
+    DiagnosticContext.put("baz", 42);
+    DiagnosticContext.put("quux", true);
+
+    DiagnosticContext.remove("baz");
+    DiagnosticContext.remove("quuux");
+
+    assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "bar", "quux", true);
+  }
+
+  @Test
+  public void testClear() {
+    DiagnosticContext.put("foo", "bar");
+
+    DiagnosticContext.clear();
+
+    assertThat(DiagnosticContext.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testWithRestores() {
+    DiagnosticContext.put("foo", "bar");
+
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("foo", "baz")) {
+      assertThat(DiagnosticContext.get("foo")).isEqualTo("baz");
+      try (DiagnosticContext.Scope inner = DiagnosticContext.with("quux", 42)) {
+        assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "baz", "quux", 42);
+      }
+      assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "baz");
+    }
+
+    assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "bar");
+  }
+
+  @Test
+  public void testCaptureAttach() {
+    DiagnosticContext.put("foo", "bar");
+    DiagnosticContext.Snapshot snapshot = DiagnosticContext.capture();
+    DiagnosticContext.clear();
+
+    try (DiagnosticContext.Scope scope = DiagnosticContext.attach(snapshot)) {
+      assertThat(DiagnosticContext.get("foo")).isEqualTo("bar");
+    }
+
+    assertThat(DiagnosticContext.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testWrapRunnable() throws Exception {
+    final AtomicReference<Object> seen = new AtomicReference<>();
+    Runnable task;
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("foo", "bar")) {
+      task = DiagnosticContext.wrap(new Runnable() {
+        @Override
+        public void run() {
+          seen.set(DiagnosticContext.get("foo"));
+        }
+      });
+    }
+
+    Thread thread = new Thread(task);
+    thread.start();
+    thread.join();
+
+    assertThat(seen.get()).isEqualTo("bar");
+  }
+
+  @Test
+  public void testWrapRunnableRestoresRunningThread() {
+    DiagnosticContext.put("foo", "bar");
+    Runnable task = DiagnosticContext.wrap(new Runnable() {
+      @Override
+      public void run() {
+        DiagnosticContext.put("foo", "quux");
+      }
+    });
+    DiagnosticContext.put("foo", "baz");
+
+    task.run();
+
+    assertThat(DiagnosticContext.getEntries()).containsExactly("foo", "baz");
+  }
+
+  @Test
+  public void testWrapCallable() throws Exception {
+    DiagnosticContext.put("foo", "bar");
+    Callable<Object> task = DiagnosticContext.wrap(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return DiagnosticContext.get("foo");
+      }
+    });
+    DiagnosticContext.clear();
+
+    assertThat(task.call()).isEqualTo("bar");
+    assertThat(DiagnosticContext.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testWrapNull() {
+    assertThat(DiagnosticContext.wrap((Runnable) null)).isNull();
+    assertThat(DiagnosticContext.wrap((Callable<Object>) null)).isNull();
+  }
+}
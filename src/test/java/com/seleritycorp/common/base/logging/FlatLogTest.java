@@ -19,9 +19,11 @@ package com.seleritycorp.common.base.logging;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.newCapture;
 
 import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMockSupport;
 import org.junit.Before;
 import org.junit.Test;
@@ -726,6 +728,55 @@ public class FlatLogTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void testErrorDeduplicatedStackTrace() {
+    Capture<String> msgCap = newCapture(CaptureType.ALL);
+    backendLog.error(capture(msgCap));
+    expectLastCall().times(3);
+
+    replayAll();
+
+    StackTraceDeduplicator deduplicator = new StackTraceDeduplicator(10);
+    Log log = new FlatLog(backendLog, formatter, deduplicator);
+    for (int i = 0; i < 3; i++) {
+      log.error("foo", new RuntimeException("bar " + i));
+    }
+
+    verifyAll();
+
+    String first = msgCap.getValues().get(0);
+    assertThat(first).startsWith("foo\\njava.lang.RuntimeException: bar 0 [stack-trace-id: ");
+    assertThat(first).contains("DeduplicatedStackTrace");
+    assertThat(first).doesNotContain("\n");
+
+    String second = msgCap.getValues().get(1);
+    assertThat(second).startsWith("foo\\njava.lang.RuntimeException: bar 1 [stack-trace-id: ");
+    assertThat(second).endsWith(", occurrence 2]");
+    assertThat(second).doesNotContain("DeduplicatedStackTrace");
+
+    String third = msgCap.getValues().get(2);
+    assertThat(third).endsWith(", occurrence 3]");
+  }
+
+  @Test
+  public void testErrorDifferentStackTracesNotDeduplicated() {
+    Capture<String> msgCap = newCapture(CaptureType.ALL);
+    backendLog.error(capture(msgCap));
+    expectLastCall().times(2);
+
+    replayAll();
+
+    StackTraceDeduplicator deduplicator = new StackTraceDeduplicator(10);
+    Log log = new FlatLog(backendLog, formatter, deduplicator);
+    log.error("foo", new RuntimeException("bar"));
+    log.error("foo", new IllegalStateException("bar"));
+
+    verifyAll();
+
+    assertThat(msgCap.getValues().get(0)).contains("DifferentStackTracesNotDeduplicated");
+    assertThat(msgCap.getValues().get(1)).contains("DifferentStackTracesNotDeduplicated");
+  }
+
   private FlatLog createFlatLogger() {
     return new FlatLog(backendLog, formatter);
   }
@@ -122,4 +122,178 @@ public class FormatterTest {
     assertThat(actual).isEqualTo(
         "/log-tag:foo/log-tag-version:42/foo\\nbar:bar\\|baz\\<quux\\|\\rquuux\\nfoo/");
   }
+
+  @Test
+  public void testFormatStructuredCsvLineTypedValues() {
+    String actual = formatter.formatStructuredLine("foo", 42, "int", -7, "long", 8L, "bool", true,
+        "double", 1.5);
+    assertThat(actual).isEqualTo(
+        "/log-tag:foo/log-tag-version:42/int:-7/long:8/bool:true/double:1.5/");
+  }
+
+  @Test
+  public void testFormatStructuredCsvLineNullObjs() {
+    String actual = formatter.formatStructuredLine("foo", 42, (Object[]) null);
+    assertThat(actual).isEqualTo("/log-tag:foo/log-tag-version:42/");
+  }
+
+  @Test
+  public void testFormatStructuredCsvLineReused() {
+    String first = formatter.formatStructuredLine("foo", 42, "bar", "baz/quux");
+    String second = formatter.formatStructuredLine("foo", 43, "bar", "quux");
+    assertThat(first).isEqualTo("/log-tag:foo/log-tag-version:42/bar:baz\\|quux/");
+    assertThat(second).isEqualTo("/log-tag:foo/log-tag-version:43/bar:quux/");
+  }
+
+  @Test
+  public void testFormatStructuredCsvLineNested() {
+    Object nested = new Object() {
+      @Override
+      public String toString() {
+        return formatter.formatStructuredLine("inner", 1, "a", "b");
+      }
+    };
+    String actual = formatter.formatStructuredLine("foo", 42, "bar", nested, "baz", "quux");
+    assertThat(actual).isEqualTo("/log-tag:foo/log-tag-version:42/bar:\\|log-tag:inner\\|"
+        + "log-tag-version:1\\|a:b\\|/baz:quux/");
+  }
+
+  @Test
+  public void testAppendStructuredLine() {
+    StringBuilder sb = new StringBuilder("prefix ");
+    formatter.appendStructuredLine(sb, "foo", 42, "bar", "baz\nquux");
+    assertThat(sb.toString()).isEqualTo("prefix /log-tag:foo/log-tag-version:42/bar:baz\\nquux/");
+  }
+
+  @Test
+  public void testFormatStructuredLineCustomEncoder() {
+    formatter = new Formatter(new JsonLinesStructuredEncoder());
+    String actual = formatter.formatStructuredLine("foo", 42, "bar", 7);
+    assertThat(actual).isEqualTo("{\"log-tag\":\"foo\",\"log-tag-version\":42,\"bar\":7}");
+  }
+
+  @Test
+  public void testConfiguredEncoderDefault() {
+    assertThat(createConfiguredEncoder(null)).isInstanceOf(SlashStructuredEncoder.class);
+  }
+
+  @Test
+  public void testConfiguredEncoderSlash() {
+    assertThat(createConfiguredEncoder("slash")).isInstanceOf(SlashStructuredEncoder.class);
+  }
+
+  @Test
+  public void testConfiguredEncoderJsonLines() {
+    assertThat(createConfiguredEncoder(" json-lines "))
+        .isInstanceOf(JsonLinesStructuredEncoder.class);
+  }
+
+  @Test
+  public void testConfiguredEncoderClassName() {
+    String className = JsonLinesStructuredEncoder.class.getName();
+    assertThat(createConfiguredEncoder(className))
+        .isInstanceOf(JsonLinesStructuredEncoder.class);
+  }
+
+  @Test
+  public void testConfiguredEncoderUnknown() {
+    assertThat(createConfiguredEncoder("foo")).isInstanceOf(SlashStructuredEncoder.class);
+  }
+
+  @Test
+  public void testConfiguredEncoderNoEncoderClass() {
+    assertThat(createConfiguredEncoder(String.class.getName()))
+        .isInstanceOf(SlashStructuredEncoder.class);
+  }
+
+  @Test
+  public void testConfiguredEncoderFailingConstructor() {
+    assertThat(createConfiguredEncoder(FailingEncoder.class.getName()))
+        .isInstanceOf(SlashStructuredEncoder.class);
+  }
+
+  @Test
+  public void testFormatStructuredLineWithContext() {
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("quux", 4711)) {
+      String actual = formatter.formatStructuredLine("foo", 42, "bar", "baz");
+      assertThat(actual).isEqualTo("/log-tag:foo/log-tag-version:42/bar:baz/quux:4711/");
+    }
+  }
+
+  @Test
+  public void testFormatStructuredLineWithContextNoObjs() {
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("quux", "a/b")) {
+      String actual = formatter.formatStructuredLine("foo", 42);
+      assertThat(actual).isEqualTo("/log-tag:foo/log-tag-version:42/quux:a\\|b/");
+    }
+  }
+
+  @Test
+  public void testFormatStructuredLineWithContextDefaultEncoder() {
+    formatter = new Formatter(new StructuredEncoder() {
+      @Override
+      public void appendStructuredLine(StringBuilder sb, String tag, int version,
+          Object... objs) {
+        sb.append(tag).append(version);
+        for (Object obj : objs) {
+          sb.append(',').append(obj);
+        }
+      }
+    });
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("quux", 4711)) {
+      String actual = formatter.formatStructuredLine("foo", 42, "bar", "baz");
+      assertThat(actual).isEqualTo("foo42,bar,baz,quux,4711");
+    }
+  }
+
+  @Test
+  public void testFormatPrefixedStructuredLine() {
+    String actual = formatter.formatPrefixedStructuredLine("foo", 42,
+        new Object[] {"prefix", "p"}, new Object[] {"bar", "baz"});
+    assertThat(actual).isEqualTo("/log-tag:foo/log-tag-version:42/prefix:p/bar:baz/");
+  }
+
+  @Test
+  public void testFormatPrefixedStructuredLineObjsNull() {
+    String actual = formatter.formatPrefixedStructuredLine("foo", 42,
+        new Object[] {"prefix", "p"}, null);
+    assertThat(actual).isEqualTo("/log-tag:foo/log-tag-version:42/prefix:p/");
+  }
+
+  @Test
+  public void testFormatPrefixedStructuredLineWithContext() {
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("quux", 4711)) {
+      String actual = formatter.formatPrefixedStructuredLine("foo", 42,
+          new Object[] {"prefix", "p"}, new Object[] {"bar", "baz"});
+      assertThat(actual)
+          .isEqualTo("/log-tag:foo/log-tag-version:42/prefix:p/bar:baz/quux:4711/");
+    }
+  }
+
+  private StructuredEncoder createConfiguredEncoder(String property) {
+    String oldProperty = System.getProperty(Formatter.ENCODER_PROPERTY);
+    try {
+      if (property == null) {
+        System.clearProperty(Formatter.ENCODER_PROPERTY);
+      } else {
+        System.setProperty(Formatter.ENCODER_PROPERTY, property);
+      }
+      return Formatter.createConfiguredEncoder();
+    } finally {
+      if (oldProperty == null) {
+        System.clearProperty(Formatter.ENCODER_PROPERTY);
+      } else {
+        System.setProperty(Formatter.ENCODER_PROPERTY, oldProperty);
+      }
+    }
+  }
+
+  /**
+   * Encoder whose construction fails.
+   */
+  public static class FailingEncoder extends SlashStructuredEncoder {
+    public FailingEncoder() {
+      throw new IllegalStateException("catch me");
+    }
+  }
 }
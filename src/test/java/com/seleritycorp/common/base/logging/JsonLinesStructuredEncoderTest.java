@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public class JsonLinesStructuredEncoderTest {
+  private JsonLinesStructuredEncoder encoder;
+
+  @Before
+  public void setUp() {
+    encoder = new JsonLinesStructuredEncoder();
+  }
+
+  private String encode(String tag, int version, Object... objs) {
+    StringBuilder sb = new StringBuilder();
+    encoder.appendStructuredLine(sb, tag, version, objs);
+    return sb.toString();
+  }
+
+  @Test
+  public void testPlain() {
+    String actual = encode("foo", 42, "bar", "baz");
+    assertThat(actual).isEqualTo("{\"log-tag\":\"foo\",\"log-tag-version\":42,\"bar\":\"baz\"}");
+  }
+
+  @Test
+  public void testWithContext() {
+    StringBuilder sb = new StringBuilder();
+    encoder.appendStructuredLineWithContext(sb, "foo", 42, new Object[] {"bar", "baz"},
+        new Object[] {"quux", 4711});
+    assertThat(sb.toString()).isEqualTo(
+        "{\"log-tag\":\"foo\",\"log-tag-version\":42,\"bar\":\"baz\",\"quux\":4711}");
+  }
+
+  @Test
+  public void testWithContextNullObjs() {
+    StringBuilder sb = new StringBuilder();
+    encoder.appendStructuredLineWithContext(sb, "foo", 42, null, new Object[] {"quux", 4711});
+    assertThat(sb.toString()).isEqualTo(
+        "{\"log-tag\":\"foo\",\"log-tag-version\":42,\"quux\":4711}");
+  }
+
+  @Test
+  public void testNoObjs() {
+    String actual = encode("foo", 42);
+    assertThat(actual).isEqualTo("{\"log-tag\":\"foo\",\"log-tag-version\":42}");
+  }
+
+  @Test
+  public void testNullObjs() {
+    String actual = encode("foo", 42, (Object[]) null);
+    assertThat(actual).isEqualTo("{\"log-tag\":\"foo\",\"log-tag-version\":42}");
+  }
+
+  @Test
+  public void testTagNull() {
+    String actual = encode(null, 42, "bar", "baz");
+    assertThat(actual).isEqualTo("{\"log-tag\":null,\"log-tag-version\":42,\"bar\":\"baz\"}");
+  }
+
+  @Test
+  public void testOddObjs() {
+    String actual = encode("foo", 42, "bar", "baz", "quux");
+    assertThat(actual).endsWith(",\"bar\":\"baz\",\"<null>\":\"quux\"}");
+  }
+
+  @Test
+  public void testNameNull() {
+    String actual = encode("foo", 42, null, "bar");
+    assertThat(actual).endsWith(",\"<null>\":\"bar\"}");
+  }
+
+  @Test
+  public void testNameNonString() {
+    String actual = encode("foo", 42, 7, "bar");
+    assertThat(actual).endsWith(",\"7\":\"bar\"}");
+  }
+
+  @Test
+  public void testValueNull() {
+    String actual = encode("foo", 42, "bar", null);
+    assertThat(actual).endsWith(",\"bar\":null}");
+  }
+
+  @Test
+  public void testValueIntegral() {
+    String actual = encode("foo", 42, "int", 1, "long", -2L, "short", (short) 3,
+        "byte", (byte) 4);
+    assertThat(actual).endsWith(",\"int\":1,\"long\":-2,\"short\":3,\"byte\":4}");
+  }
+
+  @Test
+  public void testValueFloatingPoint() {
+    String actual = encode("foo", 42, "double", 1.5, "float", 2.5f, "big", new BigDecimal("3.25"));
+    assertThat(actual).endsWith(",\"double\":1.5,\"float\":2.5,\"big\":3.25}");
+  }
+
+  @Test
+  public void testValueNonFinite() {
+    String actual = encode("foo", 42, "nan", Double.NaN, "inf", Float.NEGATIVE_INFINITY);
+    assertThat(actual).endsWith(",\"nan\":\"NaN\",\"inf\":\"-Infinity\"}");
+  }
+
+  @Test
+  public void testValueBoolean() {
+    String actual = encode("foo", 42, "bar", true, "baz", false);
+    assertThat(actual).endsWith(",\"bar\":true,\"baz\":false}");
+  }
+
+  @Test
+  public void testValueUuid() {
+    UUID uuid = UUID.fromString("0123abcd-4567-89ef-0a1b-c2d3e4f56789");
+    String actual = encode("foo", 42, "bar", uuid);
+    assertThat(actual).endsWith(",\"bar\":\"" + uuid + "\"}");
+  }
+
+  @Test
+  public void testValueUuidRandom() {
+    UUID uuid = UUID.randomUUID();
+    String actual = encode("foo", 42, "bar", uuid);
+    assertThat(actual).endsWith(",\"bar\":\"" + uuid + "\"}");
+  }
+
+  @Test
+  public void testValueEnum() {
+    String actual = encode("foo", 42, "bar", Level.WARN);
+    assertThat(actual).endsWith(",\"bar\":\"WARN\"}");
+  }
+
+  @Test
+  public void testValueObject() {
+    Object value = new Object() {
+      @Override
+      public String toString() {
+        return "quux";
+      }
+    };
+    String actual = encode("foo", 42, "bar", value);
+    assertThat(actual).endsWith(",\"bar\":\"quux\"}");
+  }
+
+  @Test
+  public void testValueObjectToStringNull() {
+    Object value = new Object() {
+      @Override
+      public String toString() {
+        return null;
+      }
+    };
+    String actual = encode("foo", 42, "bar", value);
+    assertThat(actual).endsWith(",\"bar\":null}");
+  }
+
+  @Test
+  public void testEscaping() {
+    String actual = encode("foo", 42, "b\"ar", "a\\b/c\nd\re\tf\u0001g");
+    assertThat(actual).endsWith(",\"b\\\"ar\":\"a\\\\b/c\\nd\\re\\tf\\u0001g\"}");
+  }
+}
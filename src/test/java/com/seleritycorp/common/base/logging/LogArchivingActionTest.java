@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+import com.seleritycorp.common.base.test.SettableStaticClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+public class LogArchivingActionTest extends FileTestCase {
+  private static final Pattern ROTATED_PATTERN = Pattern.compile("rotated\\..*\\.log");
+
+  private SettableStaticClock clock;
+  private Path dir;
+  private Path activeFile;
+
+  @Before
+  public void setUp() throws IOException {
+    clock = new SettableStaticClock();
+    dir = createTempDirectory();
+    activeFile = dir.resolve("rotated.active.log");
+  }
+
+  @Test
+  public void testCompress() throws IOException {
+    Path rotated = writeRotatedFile("rotated.1.log", "foo", 1000);
+
+    LogArchivingAction action = createAction(true, 0, 0);
+    assertThat(action.execute()).isTrue();
+
+    Path compressed = dir.resolve("rotated.1.log.gz");
+    assertThat(rotated).doesNotExist();
+    assertThat(readGzip(compressed)).isEqualTo("foo");
+    assertThat(Files.getLastModifiedTime(compressed).toMillis())
+        .isEqualTo(clock.getMillisEpoch() - 1000);
+    assertThat(dir.resolve("rotated.1.log.gz.tmp")).doesNotExist();
+  }
+
+  @Test
+  public void testCompressSkipsActiveAndForeignFiles() throws IOException {
+    writeFile(activeFile, "foo");
+    Path foreign = writeRotatedFile("bar.log", "baz", 1000);
+
+    LogArchivingAction action = createAction(true, 0, 0);
+    assertThat(action.execute()).isTrue();
+
+    assertThat(activeFile).hasContent("foo");
+    assertThat(foreign).hasContent("baz");
+    assertThat(dir.resolve("rotated.active.log.gz")).doesNotExist();
+    assertThat(dir.resolve("bar.log.gz")).doesNotExist();
+  }
+
+  @Test
+  public void testCompressKeepsCompressed() throws IOException {
+    Path compressed = writeRotatedFile("rotated.1.log.gz", "foo", 1000);
+
+    LogArchivingAction action = createAction(true, 0, 0);
+    assertThat(action.execute()).isTrue();
+
+    assertThat(compressed).hasContent("foo");
+    assertThat(dir.resolve("rotated.1.log.gz.gz")).doesNotExist();
+  }
+
+  @Test
+  public void testNoCompress() throws IOException {
+    Path rotated = writeRotatedFile("rotated.1.log", "foo", 1000);
+
+    LogArchivingAction action = createAction(false, 0, 0);
+    assertThat(action.execute()).isTrue();
+
+    assertThat(rotated).hasContent("foo");
+    assertThat(dir.resolve("rotated.1.log.gz")).doesNotExist();
+  }
+
+  @Test
+  public void testPruneByAge() throws IOException {
+    Path old = writeRotatedFile("rotated.1.log", "foo", TimeUnit.DAYS.toMillis(3));
+    Path oldCompressed = writeRotatedFile("rotated.2.log.gz", "bar", TimeUnit.DAYS.toMillis(2));
+    Path young = writeRotatedFile("rotated.3.log", "baz", TimeUnit.DAYS.toMillis(1));
+    writeFile(activeFile, "quux");
+    Files.setLastModifiedTime(activeFile, FileTime.fromMillis(0));
+
+    LogArchivingAction action = createAction(false, 0, TimeUnit.HOURS.toMillis(36));
+    assertThat(action.execute()).isTrue();
+
+    assertThat(old).doesNotExist();
+    assertThat(oldCompressed).doesNotExist();
+    assertThat(young).hasContent("baz");
+    assertThat(activeFile).hasContent("quux");
+  }
+
+  @Test
+  public void testPruneByTotalSize() throws IOException {
+    Path oldest = writeRotatedFile("rotated.1.log", "foo", 3000);
+    Path older = writeRotatedFile("rotated.2.log.gz", "bar", 2000);
+    Path newest = writeRotatedFile("rotated.3.log", "baz", 1000);
+    writeFile(activeFile, "quuuuuuuuuuuuuuux");
+
+    LogArchivingAction action = createAction(false, 5, 0);
+    assertThat(action.execute()).isTrue();
+
+    assertThat(oldest).doesNotExist();
+    assertThat(older).doesNotExist();
+    assertThat(newest).hasContent("baz");
+    assertThat(activeFile).exists();
+  }
+
+  @Test
+  public void testCompressAndPruneByTotalSize() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("foo");
+    }
+    writeRotatedFile("rotated.1.log", sb.toString(), 2000);
+    writeRotatedFile("rotated.2.log", sb.toString(), 1000);
+
+    LogArchivingAction action = createAction(true, 2000, 0);
+    assertThat(action.execute()).isTrue();
+
+    // Compressed, both files fit into the total size.
+    assertThat(readGzip(dir.resolve("rotated.1.log.gz"))).isEqualTo(sb.toString());
+    assertThat(readGzip(dir.resolve("rotated.2.log.gz"))).isEqualTo(sb.toString());
+  }
+
+  @Test
+  public void testIndex() throws IOException {
+    Path rotated = writeRotatedFile("rotated.1.log",
+        "foo\n/log-tag:bar/log-tag-version:1/baz:quux/\n", 1000);
+    writeFile(activeFile, "/log-tag:bar/log-tag-version:1/baz:quux/\n");
+
+    LogArchivingAction action = createAction(false, Arrays.asList("baz"), 0, 0);
+    assertThat(action.execute()).isTrue();
+
+    assertThat(StructuredLogIndex.isUpToDate(rotated)).isTrue();
+    assertThat(StructuredLogIndex.getIndexFile(activeFile)).doesNotExist();
+    try (StructuredLogIndex index = StructuredLogIndex.open(rotated)) {
+      assertThat(index.lookup("bar", "baz", "quux")).containsExactly(4);
+    }
+  }
+
+  @Test
+  public void testIndexSkipsIndexFiles() throws IOException {
+    writeRotatedFile("rotated.1.log", "/log-tag:bar/log-tag-version:1/\n", 1000);
+
+    LogArchivingAction action = createAction(false, Arrays.asList("baz"), 0, 0);
+    assertThat(action.execute()).isTrue();
+    assertThat(action.execute()).isTrue();
+
+    assertThat(dir.resolve("rotated.1.log.idx")).exists();
+    assertThat(dir.resolve("rotated.1.log.idx.idx")).doesNotExist();
+  }
+
+  @Test
+  public void testPruneDeletesIndex() throws IOException {
+    Path old = writeRotatedFile("rotated.1.log", "/log-tag:bar/log-tag-version:1/\n",
+        TimeUnit.DAYS.toMillis(3));
+    StructuredLogIndex.build(old, Arrays.asList("baz"));
+
+    LogArchivingAction action = createAction(false, 0, TimeUnit.HOURS.toMillis(36));
+    assertThat(action.execute()).isTrue();
+
+    assertThat(old).doesNotExist();
+    assertThat(StructuredLogIndex.getIndexFile(old)).doesNotExist();
+  }
+
+  private LogArchivingAction createAction(boolean compress, long maxTotalSize,
+      long maxAgeMillis) {
+    return createAction(compress, null, maxTotalSize, maxAgeMillis);
+  }
+
+  private LogArchivingAction createAction(boolean compress, List<String> indexedFields,
+      long maxTotalSize, long maxAgeMillis) {
+    return new LogArchivingAction(dir, ROTATED_PATTERN, activeFile, compress, indexedFields,
+        maxTotalSize, maxAgeMillis, clock);
+  }
+
+  private Path writeRotatedFile(String name, String contents, long ageMillis)
+      throws IOException {
+    Path ret = dir.resolve(name);
+    writeFile(ret, contents);
+    Files.setLastModifiedTime(ret, FileTime.fromMillis(clock.getMillisEpoch() - ageMillis));
+    return ret;
+  }
+
+  private String readGzip(Path path) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), UTF_8);
+  }
+}
@@ -47,4 +47,78 @@ public class LogFactoryTest {
     Log log = LogFactory.getPermanentLog("foo");
     assertThat(log).isNotNull();
   }
+
+  @Test
+  public void testGetLogNameCached() {
+    Log log1 = LogFactory.getLog("foo");
+    Log log2 = LogFactory.getLog("foo");
+    assertThat(log1).isSameAs(log2);
+  }
+
+  @Test
+  public void testGetLogClassAndNameCached() {
+    Log log1 = LogFactory.getLog(LogFactoryTest.class);
+    Log log2 = LogFactory.getLog(LogFactoryTest.class.getName());
+    assertThat(log1).isSameAs(log2);
+  }
+
+  @Test
+  public void testGetLogDifferentNames() {
+    Log log1 = LogFactory.getLog("foo");
+    Log log2 = LogFactory.getLog("bar");
+    assertThat(log1).isNotSameAs(log2);
+  }
+
+  @Test
+  public void testGetPermanentLogNameCached() {
+    Log log1 = LogFactory.getPermanentLog("foo");
+    Log log2 = LogFactory.getPermanentLog("foo");
+    assertThat(log1).isSameAs(log2);
+  }
+
+  @Test
+  public void testGetPermanentLogDiffersFromPlain() {
+    Log log1 = LogFactory.getLog("foo");
+    Log log2 = LogFactory.getPermanentLog("foo");
+    assertThat(log1).isNotSameAs(log2);
+    assertThat(log2).isInstanceOf(FlatLog.class);
+  }
+
+  @Test
+  public void testGetPrefixedLogCached() {
+    Log log1 = LogFactory.getPrefixedLog("foo", "bar");
+    Log log2 = LogFactory.getPrefixedLog("foo", "bar");
+    assertThat(log1).isSameAs(log2);
+    assertThat(log1).isInstanceOf(PrefixedLogger.class);
+  }
+
+  @Test
+  public void testGetPrefixedLogDifferentPrefixes() {
+    Log log1 = LogFactory.getPrefixedLog("foo", "bar");
+    Log log2 = LogFactory.getPrefixedLog("foo", "baz");
+    assertThat(log1).isNotSameAs(log2);
+  }
+
+  @Test
+  public void testGetRateLimitedLogClassAndNameCached() {
+    Log log1 = LogFactory.getRateLimitedLog(LogFactoryTest.class);
+    Log log2 = LogFactory.getRateLimitedLog(LogFactoryTest.class.getName());
+    assertThat(log1).isSameAs(log2);
+    assertThat(log1).isInstanceOf(RateLimitedLog.class);
+  }
+
+  @Test
+  public void testGetRateLimitedLogDiffersFromPlain() {
+    Log log1 = LogFactory.getLog("foo");
+    Log log2 = LogFactory.getRateLimitedLog("foo");
+    assertThat(log1).isNotSameAs(log2);
+  }
+
+  @Test
+  public void testReleaseAll() {
+    Log log1 = LogFactory.getLog("foo");
+    LogFactory.releaseAll();
+    Log log2 = LogFactory.getLog("foo");
+    assertThat(log1).isNotSameAs(log2);
+  }
 }
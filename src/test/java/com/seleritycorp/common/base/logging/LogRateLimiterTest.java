@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.SettableStaticClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+public class LogRateLimiterTest {
+  private SettableStaticClock clock;
+  private Map<String, Long> reported;
+  private ObjLongConsumer<String> consumer;
+
+  @Before
+  public void setUp() {
+    clock = new SettableStaticClock();
+    reported = new HashMap<>();
+    consumer = new ObjLongConsumer<String>() {
+      @Override
+      public void accept(String key, long suppressed) {
+        reported.put(key, suppressed);
+      }
+    };
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNonPositiveBurst() {
+    new LogRateLimiter<String>(clock, 0, 1000, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNonPositivePeriod() {
+    new LogRateLimiter<String>(clock, 1, 0, 10);
+  }
+
+  @Test
+  public void testBurstPermitted() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 3, 1000, 10);
+
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testKeysIndependent() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 1, 1000, 10);
+
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(-1);
+    assertThat(limiter.tryAcquire("bar")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("bar")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testRefill() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 2, 1000, 10);
+
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(-1);
+
+    clock.advanceMillis(499);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(-1);
+
+    clock.advanceMillis(1);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(2);
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testNoBurstAfterSteadyUse() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 2, 1000, 10);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+      clock.advanceMillis(500);
+    }
+  }
+
+  @Test
+  public void testOverflowBucket() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 1, 1000, 2);
+
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("bar")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("baz")).isEqualTo(0);
+    assertThat(limiter.tryAcquire("quux")).isEqualTo(-1);
+    assertThat(limiter.getTrackedKeyCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testExpireReportsSuppressed() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 1, 1000, 10);
+    limiter.tryAcquire("foo");
+    limiter.tryAcquire("foo");
+    limiter.tryAcquire("foo");
+    limiter.tryAcquire("bar");
+
+    limiter.expire(consumer);
+
+    assertThat(reported).hasSize(1);
+    assertThat(reported).containsEntry("foo", 2L);
+  }
+
+  @Test
+  public void testExpireResetsSuppressed() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 1, 1000, 10);
+    limiter.tryAcquire("foo");
+    limiter.tryAcquire("foo");
+    limiter.expire(consumer);
+    reported.clear();
+
+    clock.advanceMillis(1000);
+
+    assertThat(limiter.tryAcquire("foo")).isEqualTo(0);
+    limiter.expire(consumer);
+    assertThat(reported).isEmpty();
+  }
+
+  @Test
+  public void testExpireDropsFullBuckets() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 2, 1000, 10);
+    limiter.tryAcquire("foo");
+    clock.advanceMillis(300);
+    limiter.tryAcquire("bar");
+    clock.advanceMillis(300);
+
+    limiter.expire(consumer);
+
+    assertThat(limiter.getTrackedKeyCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testExpireReportsOverflowBucketWithNullKey() {
+    LogRateLimiter<String> limiter = new LogRateLimiter<>(clock, 1, 1000, 1);
+    limiter.tryAcquire("foo");
+    limiter.tryAcquire("bar");
+    limiter.tryAcquire("baz");
+
+    limiter.expire(consumer);
+
+    assertThat(reported).hasSize(1);
+    assertThat(reported).containsEntry(null, 1L);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoggingMetricsTest {
+  @Test
+  public void testGetPrefix() {
+    LoggingMetrics metrics = new LoggingMetrics(3);
+
+    assertThat(metrics.getPrefix("com.seleritycorp.common.base.Foo"))
+        .isEqualTo("com.seleritycorp.common");
+    assertThat(metrics.getPrefix("com.seleritycorp.common")).isEqualTo("com.seleritycorp.common");
+    assertThat(metrics.getPrefix("com.seleritycorp")).isEqualTo("com.seleritycorp");
+    assertThat(metrics.getPrefix("foo")).isEqualTo("foo");
+    assertThat(metrics.getPrefix("")).isEqualTo("");
+    assertThat(metrics.getPrefix(null)).isEqualTo("<unknown>");
+  }
+
+  @Test
+  public void testGetPrefixDepthOne() {
+    LoggingMetrics metrics = new LoggingMetrics(1);
+
+    assertThat(metrics.getPrefix("com.seleritycorp.Foo")).isEqualTo("com");
+  }
+
+  @Test
+  public void testRecordEvent() {
+    LoggingMetrics metrics = new LoggingMetrics(2);
+    LongAdder counter = metrics.getLoggerCounter("foo.bar.baz");
+
+    metrics.recordEvent(Level.ERROR, counter, "quux", 7);
+    metrics.recordEvent(Level.ERROR, counter, null, 8);
+    metrics.recordEvent(Level.INFO, metrics.getLoggerCounter("foo.bar.quux"), "q", 9);
+
+    assertThat(metrics.getEventCount()).isEqualTo(3);
+    assertThat(metrics.getEventsPerLevel()).containsEntry("ERROR", 2L)
+        .containsEntry("INFO", 1L).containsEntry("WARN", 0L);
+    assertThat(metrics.getEventsPerLoggerPrefix()).containsOnlyKeys("foo.bar")
+        .containsEntry("foo.bar", 3L);
+    assertThat(metrics.getMessageChars()).isEqualTo(5);
+    assertThat(metrics.getAppendNanos()).isEqualTo(24);
+  }
+
+  @Test
+  public void testRecordStructuredEvent() {
+    LoggingMetrics metrics = new LoggingMetrics(2);
+    LongAdder counter = metrics.getLoggerCounter("foo");
+
+    metrics.recordStructuredEvent(Level.INFO, counter, "bar", "baz", 1);
+    metrics.recordStructuredEvent(Level.DEBUG, counter, "bar", "baz", 1);
+    metrics.recordStructuredEvent(Level.DEBUG, counter, null, "baz", 1);
+
+    assertThat(metrics.getEventCount()).isEqualTo(3);
+    assertThat(metrics.getStructuredEventsPerTag()).containsEntry("bar", 2L)
+        .containsEntry("<null>", 1L);
+  }
+
+  @Test
+  public void testTooManyTags() {
+    LoggingMetrics metrics = new LoggingMetrics(2);
+    LongAdder counter = metrics.getLoggerCounter("foo");
+
+    for (int i = 0; i < 2000; i++) {
+      metrics.recordStructuredEvent(Level.INFO, counter, "tag" + i, "baz", 1);
+    }
+
+    assertThat(metrics.getStructuredEventsPerTag()).hasSize(1025)
+        .containsEntry("tag0", 1L).containsEntry(LoggingMetrics.OTHER_KEY, 976L);
+  }
+
+  @Test
+  public void testReset() {
+    LoggingMetrics metrics = new LoggingMetrics(2);
+    LongAdder counter = metrics.getLoggerCounter("foo");
+    metrics.recordStructuredEvent(Level.INFO, counter, "bar", "baz", 1);
+
+    metrics.reset();
+
+    assertThat(metrics.getEventCount()).isEqualTo(0);
+    assertThat(metrics.getEventsPerLoggerPrefix()).containsEntry("foo", 0L);
+    assertThat(metrics.getStructuredEventsPerTag()).isEmpty();
+    assertThat(metrics.getMessageChars()).isEqualTo(0);
+    assertThat(metrics.getAppendNanos()).isEqualTo(0);
+
+    metrics.recordEvent(Level.INFO, counter, "baz", 1);
+    assertThat(metrics.getEventsPerLoggerPrefix()).containsEntry("foo", 1L);
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.InjectingTestCase;
+
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappedRollingFileAppenderTest extends InjectingTestCase {
+  private Path tempDir;
+  private Path activeFile;
+  private MappedRollingFileAppender appender;
+  private RoverLikeTriggeringPolicy triggeringPolicy;
+
+  @Before
+  public void setUp() throws IOException {
+    tempDir = createTempDirectory();
+    activeFile = tempDir.resolve("active.log");
+
+    RoverLikeRollingPolicy rollingPolicy = new RoverLikeRollingPolicy(getClock());
+    rollingPolicy.setRotateFormat(
+        tempDir.resolve("rotated.%1$tFT%1$tH.%1$tM.%1$tS%2$s.log").toString());
+
+    triggeringPolicy = new RoverLikeTriggeringPolicy(getClock());
+    triggeringPolicy.setTimeTolerance(0);
+
+    appender = new MappedRollingFileAppender();
+    appender.setName("test");
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setEncoding("UTF-8");
+    appender.setFile(activeFile.toString());
+    appender.setMappingChunkSize(16);
+    appender.setRollingPolicy(rollingPolicy);
+    appender.setTriggeringPolicy(triggeringPolicy);
+  }
+
+  @After
+  public void tearDown() {
+    appender.close();
+  }
+
+  private void append(String message) {
+    appender.doAppend(new LoggingEvent(getClass().getName(), Logger.getLogger("foo"),
+        org.apache.log4j.Level.INFO, message, null));
+  }
+
+  @Test
+  public void testAppendAndClose() throws IOException {
+    appender.activateOptions();
+
+    append("foo");
+    append("bar");
+    appender.close();
+
+    assertThat(activeFile).hasContent("foo\nbar");
+    assertThat(Files.size(activeFile)).isEqualTo(8);
+  }
+
+  @Test
+  public void testAppendGrowsMapping() throws IOException {
+    appender.activateOptions();
+
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      append("line " + i + " with some padding to exceed the chunk size");
+      expected.append("line " + i + " with some padding to exceed the chunk size\n");
+    }
+    appender.close();
+
+    assertThat(new String(Files.readAllBytes(activeFile), UTF_8))
+        .isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void testFileLengthDuringAppend() {
+    appender.activateOptions();
+
+    append("foo");
+
+    assertThat(appender.getFileLength()).isEqualTo(4);
+  }
+
+  @Test
+  public void testAppendToExistingFile() throws IOException {
+    writeFile(activeFile, "foo\n");
+    appender.setAppend(true);
+    appender.activateOptions();
+
+    append("bar");
+    appender.close();
+
+    assertThat(activeFile).hasContent("foo\nbar");
+  }
+
+  @Test
+  public void testAppendToUncleanlyClosedFile() throws IOException {
+    Files.write(activeFile, "foo\n\0\0\0\0\0\0".getBytes(UTF_8));
+    appender.setAppend(true);
+    appender.activateOptions();
+
+    append("bar");
+    appender.close();
+
+    assertThat(activeFile).hasContent("foo\nbar");
+  }
+
+  @Test
+  public void testRotateExistingFileOnStart() throws IOException {
+    writeFile(activeFile, "foo\n");
+    appender.setAppend(false);
+    appender.activateOptions();
+
+    append("bar");
+    appender.close();
+
+    assertThat(activeFile).hasContent("bar");
+    assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20.log")).hasContent("foo");
+  }
+
+  @Test
+  public void testRotateUncleanlyClosedFileOnStart() throws IOException {
+    writeFile(activeFile, "foo\n\0\0\0\0\0\0");
+    appender.setAppend(false);
+    appender.activateOptions();
+
+    append("bar");
+    appender.close();
+
+    Path rotated = tempDir.resolve("rotated.2004-11-09T11.33.20.log");
+    assertThat(activeFile).hasContent("bar");
+    assertThat(rotated).hasContent("foo");
+    assertThat(Files.size(rotated)).isEqualTo(4);
+  }
+
+  @Test
+  public void testRolloverBySize() throws IOException {
+    triggeringPolicy.setSizeLimit(6);
+    appender.activateOptions();
+
+    append("foo");
+    append("bar");
+    append("baz");
+    appender.close();
+
+    assertThat(getRotatedFile()).hasContent("foo\nbar");
+    assertThat(activeFile).hasContent("baz");
+  }
+
+  @Test
+  public void testRolloverExplicit() throws IOException {
+    appender.activateOptions();
+
+    append("foo");
+    assertThat(appender.rollover()).isTrue();
+    append("bar");
+    appender.close();
+
+    Path rotated = getRotatedFile();
+    assertThat(rotated).hasContent("foo");
+    assertThat(Files.size(rotated)).isEqualTo(4);
+    assertThat(activeFile).hasContent("bar");
+  }
+
+  @Test
+  public void testConfigureByDomConfigurator() throws IOException {
+    writeFile(activeFile, "foo\n");
+    String xml = "<!DOCTYPE log4j:configuration SYSTEM 'log4j.dtd'>"
+        + "<log4j:configuration xmlns:log4j='http://jakarta.apache.org/log4j/'>"
+        + "<appender name='mapped' "
+        + "class='com.seleritycorp.common.base.logging.MappedRollingFileAppender'>"
+        + "<param name='File' value='" + activeFile + "'/>"
+        + "<param name='Append' value='false'/>"
+        + "<param name='MappingChunkSize' value='16'/>"
+        + "<rollingPolicy class='com.seleritycorp.common.base.logging.RoverLikeRollingPolicy'>"
+        + "<param name='RotateFormat' value='"
+        + tempDir.resolve("dom.%1$tFT%1$tH.%1$tM.%1$tS%2$s.log") + "'/>"
+        + "</rollingPolicy>"
+        + "<triggeringPolicy "
+        + "class='com.seleritycorp.common.base.logging.RoverLikeTriggeringPolicy'>"
+        + "<param name='SizeLimit' value='4242'/>"
+        + "</triggeringPolicy>"
+        + "<layout class='org.apache.log4j.PatternLayout'>"
+        + "<param name='ConversionPattern' value='%m%n'/>"
+        + "</layout>"
+        + "</appender>"
+        + "<root><level value='info'/><appender-ref ref='mapped'/></root>"
+        + "</log4j:configuration>";
+    Hierarchy hierarchy = new Hierarchy(new RootLogger(org.apache.log4j.Level.INFO));
+
+    new DOMConfigurator().doConfigure(new ByteArrayInputStream(xml.getBytes(UTF_8)),
+        hierarchy);
+    MappedRollingFileAppender configured =
+        (MappedRollingFileAppender) hierarchy.getRootLogger().getAppender("mapped");
+    hierarchy.getLogger("foo").info("bar");
+    hierarchy.shutdown();
+
+    assertThat(configured.getRollingPolicy()).isInstanceOf(RoverLikeRollingPolicy.class);
+    assertThat(configured.getTriggeringPolicy()).isInstanceOf(RoverLikeTriggeringPolicy.class);
+    assertThat(((RoverLikeTriggeringPolicy) configured.getTriggeringPolicy()).getSizeLimit())
+        .isEqualTo(4242);
+    assertThat(activeFile).hasContent("bar");
+    assertThat(tempDir.resolve("dom.2004-11-09T11.33.20.log")).hasContent("foo");
+  }
+
+  @Test
+  public void testFindEndEmpty() throws IOException {
+    assertThat(findEnd("")).isEqualTo(0);
+  }
+
+  @Test
+  public void testFindEndOnlyZeros() throws IOException {
+    assertThat(findEnd("\0\0\0")).isEqualTo(0);
+  }
+
+  @Test
+  public void testFindEndNoZeros() throws IOException {
+    assertThat(findEnd("foo")).isEqualTo(3);
+  }
+
+  @Test
+  public void testFindEndTrailingZerosAcrossBlocks() throws IOException {
+    StringBuilder sb = new StringBuilder("foo");
+    for (int i = 0; i < 20000; i++) {
+      sb.append('\0');
+    }
+    assertThat(findEnd(sb.toString())).isEqualTo(3);
+  }
+
+  /**
+   * Gets the single rotated file.
+   *
+   * <p>Rotated files are named after their modification time. As the appender writes through
+   * a mapping, the modification time is the wall clock time instead of the test clock.
+   */
+  private Path getRotatedFile() throws IOException {
+    List<Path> rotatedFiles = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDir, "rotated.*.log")) {
+      for (Path file : stream) {
+        rotatedFiles.add(file);
+      }
+    }
+    assertThat(rotatedFiles).hasSize(1);
+    return rotatedFiles.get(0);
+  }
+
+  private long findEnd(String content) throws IOException {
+    Path file = tempDir.resolve("find-end");
+    Files.write(file, content.getBytes(UTF_8));
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r");
+        FileChannel channel = raf.getChannel()) {
+      return MappedRollingFileAppender.findEnd(channel);
+    }
+  }
+}
@@ -17,6 +17,8 @@
 package com.seleritycorp.common.base.logging;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 
 import org.apache.commons.logging.Log;
@@ -358,7 +360,8 @@ public class PrefixedLoggerTest extends EasyMockSupport {
   @Test
   public void testStructuredInfo() {
     parentLog.info("quux");
-    expect(formatter.formatStructuredLine("bar", 42, "prefix", "foo", "baz")).andReturn("quux");
+    expect(formatter.formatPrefixedStructuredLine(eq("bar"), eq(42),
+        aryEq(new Object[] {"prefix", "foo"}), aryEq(new Object[] {"baz"}))).andReturn("quux");
 
     replayAll();
 
@@ -371,7 +374,8 @@ public class PrefixedLoggerTest extends EasyMockSupport {
   @Test
   public void testStructuredInfoNull() {
     parentLog.info("baz");
-    expect(formatter.formatStructuredLine("bar", 42, "prefix", "foo")).andReturn("baz");
+    expect(formatter.formatPrefixedStructuredLine(eq("bar"), eq(42),
+        aryEq(new Object[] {"prefix", "foo"}), aryEq(new Object[0]))).andReturn("baz");
 
     replayAll();
 
@@ -381,6 +385,36 @@ public class PrefixedLoggerTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void testStructuredInfoJsonLines() {
+    parentLog.info("{\"log-tag\":\"bar\",\"log-tag-version\":42,\"prefix\":\"foo\","
+        + "\"baz\":true}");
+
+    replayAll();
+
+    formatter = new Formatter(new JsonLinesStructuredEncoder());
+    PrefixedLogger log = createPrefixedLogger();
+    log.structuredInfo("bar", 42, "baz", true);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStructuredInfoJsonLinesWithContext() {
+    parentLog.info("{\"log-tag\":\"bar\",\"log-tag-version\":42,\"prefix\":\"foo\","
+        + "\"baz\":true,\"request\":\"quux\"}");
+
+    replayAll();
+
+    formatter = new Formatter(new JsonLinesStructuredEncoder());
+    PrefixedLogger log = createPrefixedLogger();
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("request", "quux")) {
+      log.structuredInfo("bar", 42, "baz", true);
+    }
+
+    verifyAll();
+  }
+
   private PrefixedLogger createPrefixedLogger() {
     return new PrefixedLogger("foo", parentLog, formatter);
   }
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.easymock.EasyMock.expect;
+
+import com.seleritycorp.common.base.test.SettableStaticClock;
+
+import org.easymock.EasyMockSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimitedLogTest extends EasyMockSupport {
+  private Log backendLog;
+  private Formatter formatter;
+  private SettableStaticClock clock;
+
+  @Before
+  public void setUp() {
+    backendLog = createMock(Log.class);
+    expect(backendLog.getLog4jLogger()).andReturn(null);
+
+    formatter = createMock(Formatter.class);
+    clock = new SettableStaticClock();
+  }
+
+  @Test
+  public void testWarnWithinBurst() {
+    expect(backendLog.isWarnEnabled()).andReturn(true).times(2);
+    backendLog.warn("foo");
+    backendLog.warn("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.warn("foo");
+    log.warn("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testWarnSuppressed() {
+    expect(backendLog.isWarnEnabled()).andReturn(true).times(4);
+    backendLog.warn("foo");
+    backendLog.warn("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.warn("foo");
+    log.warn("foo");
+    log.warn("foo");
+    log.warn("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDifferentMessagesIndependent() {
+    expect(backendLog.isWarnEnabled()).andReturn(true).times(3);
+    backendLog.warn("foo");
+    backendLog.warn("bar");
+    backendLog.warn("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.warn("foo");
+    log.warn("bar");
+    log.warn("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDifferentLevelsIndependent() {
+    expect(backendLog.isWarnEnabled()).andReturn(true).times(3);
+    expect(backendLog.isErrorEnabled()).andReturn(true);
+    backendLog.warn("foo");
+    backendLog.warn("foo");
+    backendLog.error("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.warn("foo");
+    log.warn("foo");
+    log.warn("foo");
+    log.error("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testSummaryOnNextPermittedMessage() {
+    expect(backendLog.isWarnEnabled()).andReturn(true).times(5);
+    backendLog.warn("foo");
+    backendLog.warn("foo");
+    backendLog.log(Level.WARN, "Suppressed 2 similar messages: foo");
+    backendLog.warn("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.warn("foo");
+    log.warn("foo");
+    log.warn("foo");
+    log.warn("foo");
+    clock.advanceMillis(500);
+    log.warn("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testSummaryOnSweep() {
+    expect(backendLog.isInfoEnabled()).andReturn(true).times(3);
+    backendLog.info("foo");
+    backendLog.info("foo");
+    backendLog.log(Level.INFO, "Suppressed 1 similar messages: foo");
+
+    replayAll();
+
+    RateLimitedLog log = createRateLimitedLog();
+    log.info("foo");
+    log.info("foo");
+    log.info("foo");
+    log.sweep();
+    log.sweep();
+
+    verifyAll();
+  }
+
+  @Test
+  public void testTemplatesLimitedByTemplate() {
+    expect(backendLog.isWarnEnabled()).andReturn(true).times(6);
+    backendLog.warn("foo 1");
+    backendLog.warn("foo 2");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.warn("foo %d", 1);
+    log.warn("foo %d", 2);
+    log.warn("foo %d", 3);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testThrowable() {
+    Exception e1 = new Exception("e1");
+    Exception e2 = new Exception("e2");
+    Exception e3 = new Exception("e3");
+    expect(backendLog.isErrorEnabled()).andReturn(true).times(3);
+    backendLog.error("foo", e1);
+    backendLog.error("foo", e2);
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.error("foo", e1);
+    log.error("foo", e2);
+    log.error("foo", e3);
+
+    verifyAll();
+  }
+
+  @Test
+  public void testDisabledLevelDoesNotUseBudget() {
+    expect(backendLog.isDebugEnabled()).andReturn(false).times(3);
+    expect(backendLog.isDebugEnabled()).andReturn(true);
+    backendLog.debug("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.debug("foo");
+    log.debug("foo");
+    log.debug("foo");
+    log.debug("foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testLogLevel() {
+    expect(backendLog.isFatalEnabled()).andReturn(true).times(3);
+    backendLog.fatal("foo");
+    backendLog.fatal("foo");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.log(Level.FATAL, "foo");
+    log.log(Level.FATAL, "foo");
+    log.log(Level.FATAL, "foo");
+
+    verifyAll();
+  }
+
+  @Test
+  public void testStructuredInfoNotLimited() {
+    expect(formatter.formatStructuredLine("foo", 1, "bar", "baz")).andReturn("quux").times(3);
+    backendLog.info("quux");
+    backendLog.info("quux");
+    backendLog.info("quux");
+
+    replayAll();
+
+    Log log = createRateLimitedLog();
+    log.structuredInfo("foo", 1, "bar", "baz");
+    log.structuredInfo("foo", 1, "bar", "baz");
+    log.structuredInfo("foo", 1, "bar", "baz");
+
+    verifyAll();
+  }
+
+  private RateLimitedLog createRateLimitedLog() {
+    return new RateLimitedLog(backendLog, formatter, clock, 2, 1000, 10);
+  }
+}
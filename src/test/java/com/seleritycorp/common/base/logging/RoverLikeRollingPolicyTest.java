@@ -19,7 +19,11 @@ package com.seleritycorp.common.base.logging;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.rolling.RolloverDescription;
 import org.apache.log4j.rolling.helper.Action;
@@ -154,6 +158,110 @@ public class RoverLikeRollingPolicyTest extends InjectingTestCase {
     assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20-2.log")).hasContent("baz");
   }
 
+  @Test
+  public void testInititializeProperNoAppendExistingNonEmptyCompressed() throws IOException {
+    policy = createRoverLikeRollingPolicy();
+    policy.setCompression("gzip");
+    Path path = tempDir.resolve(tempDir).resolve("foo");
+    writeFile(path, "bar");
+
+    RolloverDescription desc = policy.initialize(path.toString(), false);
+
+    Action action = desc.getSynchronous();
+    assertThat(action).isNotNull();
+    Action archivingAction = desc.getAsynchronous();
+    assertThat(archivingAction).isNotNull();
+
+    assertThat(action.execute()).isTrue();
+    assertThat(archivingAction.execute()).isTrue();
+
+    assertThat(path).doesNotExist();
+    assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20.log")).doesNotExist();
+    assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20.log.gz")).exists();
+  }
+
+  @Test
+  public void testRolloverPruneByAge() throws IOException {
+    policy = createRoverLikeRollingPolicy();
+    policy.setMaxArchiveAgeDays(1);
+    Path old = tempDir.resolve("rotated.2004-11-07T11.33.20.log.gz");
+    writeFile(old, "foo");
+    Files.setLastModifiedTime(old, FileTime.fromMillis(getClock().getMillisEpoch()
+        - TimeUnit.DAYS.toMillis(2)));
+    Path young = tempDir.resolve("rotated.2004-11-09T10.33.20.log");
+    writeFile(young, "bar");
+    Path path = tempDir.resolve(tempDir).resolve("foo");
+
+    RolloverDescription desc = policy.rollover(path.toString());
+
+    assertThat(desc.getSynchronous()).isNull();
+    Action archivingAction = desc.getAsynchronous();
+    assertThat(archivingAction).isNotNull();
+
+    assertThat(archivingAction.execute()).isTrue();
+
+    assertThat(old).doesNotExist();
+    assertThat(young).hasContent("bar");
+  }
+
+  @Test
+  public void testRolloverIndex() throws IOException {
+    policy = createRoverLikeRollingPolicy();
+    policy.setIndexedFields("baz, quux");
+    Path path = tempDir.resolve(tempDir).resolve("foo");
+    writeFile(path, "/log-tag:bar/log-tag-version:1/baz:42/\n");
+    Files.setLastModifiedTime(path, FileTime.fromMillis(getClock().getMillisEpoch()));
+
+    RolloverDescription desc = policy.rollover(path.toString());
+
+    assertThat(desc.getSynchronous().execute()).isTrue();
+    assertThat(desc.getAsynchronous().execute()).isTrue();
+
+    Path rotated = tempDir.resolve("rotated.2004-11-09T11.33.20.log");
+    try (StructuredLogIndex index = StructuredLogIndex.open(rotated)) {
+      assertThat(index.search("bar", "baz", "42")).hasSize(1);
+    }
+  }
+
+  @Test
+  public void testRolloverCompressedNoIndex() throws IOException {
+    policy = createRoverLikeRollingPolicy();
+    policy.setCompression("gzip");
+    policy.setIndexedFields("baz");
+    Path path = tempDir.resolve(tempDir).resolve("foo");
+    writeFile(path, "/log-tag:bar/log-tag-version:1/baz:42/\n");
+    Files.setLastModifiedTime(path, FileTime.fromMillis(getClock().getMillisEpoch()));
+
+    RolloverDescription desc = policy.rollover(path.toString());
+
+    assertThat(desc.getSynchronous().execute()).isTrue();
+    assertThat(desc.getAsynchronous().execute()).isTrue();
+
+    assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20.log.gz")).exists();
+    assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20.log.idx")).doesNotExist();
+    assertThat(tempDir.resolve("rotated.2004-11-09T11.33.20.log.gz.idx")).doesNotExist();
+  }
+
+  @Test
+  public void testSetCompressionUnknown() {
+    policy = createRoverLikeRollingPolicy();
+    policy.setCompression("gzip");
+    policy.setCompression("zstd");
+
+    assertThat(policy.getCompression()).isEqualTo("none");
+  }
+
+  @Test
+  public void testCreateRotatedFilePattern() {
+    Pattern pattern = RoverLikeRollingPolicy.createRotatedFilePattern(
+        "application.%1$tFT%1$tT%2$s.log");
+
+    assertThat(pattern.matcher("application.2004-11-09T11:33:20.log").matches()).isTrue();
+    assertThat(pattern.matcher("application.2004-11-09T11:33:20-2.log").matches()).isTrue();
+    assertThat(pattern.matcher("application.log").matches()).isFalse();
+    assertThat(pattern.matcher("application.2004-11-09T11:33:20.txt").matches()).isFalse();
+  }
+
   private RoverLikeRollingPolicy createRoverLikeRollingPolicy() {
     policy = new RoverLikeRollingPolicy();
     policy.setRotateFormat(tempDir.resolve("rotated.%1$tFT%1$tH.%1$tM.%1$tS%2$s.log").toString());
@@ -56,6 +56,14 @@ public class RoverLikeTriggeringPolicyTest extends InjectingTestCase {
     assertThat(policy.getTimeLimit()).isEqualTo(42);
   }
 
+  @Test
+  public void testTimeToleranceAccessors() {
+    policy = new RoverLikeTriggeringPolicy();
+
+    policy.setTimeTolerance(42);
+    assertThat(policy.getTimeTolerance()).isEqualTo(42);
+  }
+
   @Test
   public void testIsTriggeringEventSizeLow() {
     policy = new RoverLikeTriggeringPolicy();
@@ -88,12 +96,69 @@ public class RoverLikeTriggeringPolicyTest extends InjectingTestCase {
   public void testIsTriggeringEventTimeTriggerAfterBucketChange() {
     policy = createPolicy();
 
+    clock.advanceMillis(2000);
+    policy.tick();
+
+    boolean actual = policy.isTriggeringEvent(appender, event, "foo", 0);
+    assertThat(actual).isTrue();
+  }
+
+  @Test
+  public void testIsTriggeringEventTimeNotTriggeredBeforeTick() {
+    policy = new RoverLikeTriggeringPolicy();
+    policy.setTimeLimit(2);
+    policy.setTimeTolerance(60 * 60 * 1000);
+    policy.activateOptions();
+
+    clock.advanceMillis(2000);
+
+    boolean actual = policy.isTriggeringEvent(appender, event, "foo", 0);
+    assertThat(actual).isFalse();
+  }
+
+  @Test
+  public void testIsTriggeringEventTimeTriggeredOnlyOncePerBucket() {
+    policy = createPolicy();
+
+    clock.advanceMillis(2000);
+    policy.tick();
+
+    boolean actual1 = policy.isTriggeringEvent(appender, event, "foo", 0);
+    boolean actual2 = policy.isTriggeringEvent(appender, event, "foo", 0);
+    assertThat(actual1).isTrue();
+    assertThat(actual2).isFalse();
+  }
+
+  @Test
+  public void testIsTriggeringEventTimeNoTolerance() {
+    policy = new RoverLikeTriggeringPolicy();
+    policy.setTimeLimit(2);
+    policy.setTimeTolerance(0);
+    policy.activateOptions();
+
     clock.advanceMillis(2000);
 
     boolean actual = policy.isTriggeringEvent(appender, event, "foo", 0);
     assertThat(actual).isTrue();
   }
 
+  @Test
+  public void testIsTriggeringEventTimeTickedInBackground() throws Exception {
+    policy = new RoverLikeTriggeringPolicy();
+    policy.setTimeLimit(2);
+    policy.setTimeTolerance(10);
+    policy.activateOptions();
+
+    clock.advanceMillis(2000);
+
+    boolean actual = false;
+    for (int i = 0; i < 500 && !actual; i++) {
+      Thread.sleep(10);
+      actual = policy.isTriggeringEvent(appender, event, "foo", 0);
+    }
+    assertThat(actual).isTrue();
+  }
+
   private RoverLikeTriggeringPolicy createPolicy() {
     policy = new RoverLikeTriggeringPolicy();
     policy.setTimeLimit(2);
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class StackTraceDeduplicatorTest {
+  private Exception createException(String message) {
+    return new RuntimeException(message);
+  }
+
+  private Exception createOtherException(String message) {
+    return new RuntimeException(message);
+  }
+
+  /**
+   * Fingerprints exceptions that got created at the very same site.
+   *
+   * @param messages The messages of the exceptions to fingerprint.
+   * @return The exceptions' fingerprints.
+   */
+  private long[] fingerprintSameSite(String... messages) {
+    long[] ret = new long[messages.length];
+    for (int i = 0; i < messages.length; i++) {
+      ret[i] = StackTraceDeduplicator.fingerprint(createException(messages[i]));
+    }
+    return ret;
+  }
+
+  /**
+   * Fingerprints exceptions that only differ in the messages of their causes.
+   *
+   * @param causeMessages The messages of the exceptions' causes.
+   * @return The exceptions' fingerprints.
+   */
+  private long[] fingerprintSameSiteWithCause(String... causeMessages) {
+    long[] ret = new long[causeMessages.length];
+    for (int i = 0; i < causeMessages.length; i++) {
+      Exception exception = createException("foo");
+      exception.initCause(createOtherException(causeMessages[i]));
+      ret[i] = StackTraceDeduplicator.fingerprint(exception);
+    }
+    return ret;
+  }
+
+  @Test
+  public void testFingerprintSameSite() {
+    long[] fingerprints = fingerprintSameSite("foo", "foo");
+
+    assertThat(fingerprints[0]).isEqualTo(fingerprints[1]);
+  }
+
+  @Test
+  public void testFingerprintDifferentSite() {
+    long fingerprint1 = StackTraceDeduplicator.fingerprint(createException("foo"));
+    long fingerprint2 = StackTraceDeduplicator.fingerprint(createOtherException("foo"));
+
+    assertThat(fingerprint1).isNotEqualTo(fingerprint2);
+  }
+
+  @Test
+  public void testFingerprintDifferentClass() {
+    Exception exception1 = new IllegalStateException("foo");
+    Exception exception2 = new IllegalArgumentException("foo");
+    exception2.setStackTrace(exception1.getStackTrace());
+
+    long fingerprint1 = StackTraceDeduplicator.fingerprint(exception1);
+    long fingerprint2 = StackTraceDeduplicator.fingerprint(exception2);
+
+    assertThat(fingerprint1).isNotEqualTo(fingerprint2);
+  }
+
+  @Test
+  public void testFingerprintSameShape() {
+    long[] fingerprints = fingerprintSameSite("id 4711 at 8", "id 42 at 123");
+
+    assertThat(fingerprints[0]).isEqualTo(fingerprints[1]);
+  }
+
+  @Test
+  public void testFingerprintDifferentShape() {
+    long[] fingerprints = fingerprintSameSite("id 4711", "name foo");
+
+    assertThat(fingerprints[0]).isNotEqualTo(fingerprints[1]);
+  }
+
+  @Test
+  public void testFingerprintNullMessage() {
+    long[] fingerprints = fingerprintSameSite(null, "foo", null);
+
+    assertThat(fingerprints[0]).isNotEqualTo(fingerprints[1]);
+    assertThat(fingerprints[0]).isEqualTo(fingerprints[2]);
+  }
+
+  @Test
+  public void testFingerprintDifferentCause() {
+    long[] fingerprints = fingerprintSameSiteWithCause("bar", "baz", "bar");
+
+    assertThat(fingerprints[0]).isNotEqualTo(fingerprints[1]);
+    assertThat(fingerprints[0]).isEqualTo(fingerprints[2]);
+  }
+
+  @Test
+  public void testCountOccurrence() {
+    StackTraceDeduplicator deduplicator = new StackTraceDeduplicator(10);
+
+    assertThat(deduplicator.countOccurrence(42)).isEqualTo(1);
+    assertThat(deduplicator.countOccurrence(42)).isEqualTo(2);
+    assertThat(deduplicator.countOccurrence(43)).isEqualTo(1);
+    assertThat(deduplicator.countOccurrence(42)).isEqualTo(3);
+
+    assertThat(deduplicator.getSize()).isEqualTo(2);
+    assertThat(deduplicator.getRenderedCount()).isEqualTo(2);
+    assertThat(deduplicator.getDeduplicatedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testCapacityBounded() {
+    StackTraceDeduplicator deduplicator = new StackTraceDeduplicator(2);
+
+    for (int i = 0; i < 10; i++) {
+      deduplicator.countOccurrence(i);
+    }
+
+    assertThat(deduplicator.getCapacity()).isEqualTo(2);
+    assertThat(deduplicator.getSize()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void testReset() {
+    StackTraceDeduplicator deduplicator = new StackTraceDeduplicator(10);
+    deduplicator.countOccurrence(42);
+    deduplicator.countOccurrence(42);
+
+    deduplicator.reset();
+
+    assertThat(deduplicator.getSize()).isEqualTo(0);
+    assertThat(deduplicator.countOccurrence(42)).isEqualTo(1);
+  }
+
+  @Test
+  public void testCreateIfEnabledDefault() {
+    assertThat(createIfEnabled(null, null)).isNull();
+  }
+
+  @Test
+  public void testCreateIfEnabledEnabled() {
+    StackTraceDeduplicator deduplicator = createIfEnabled("true", null);
+
+    assertThat(deduplicator).isNotNull();
+    assertThat(deduplicator.getCapacity()).isEqualTo(1024);
+  }
+
+  @Test
+  public void testCreateIfEnabledZeroCapacity() {
+    assertThat(createIfEnabled("true", "0")).isNull();
+  }
+
+  private StackTraceDeduplicator createIfEnabled(String enabled, String capacity) {
+    String oldEnabled = System.getProperty(StackTraceDeduplicator.ENABLED_PROPERTY);
+    String oldCapacity = System.getProperty(StackTraceDeduplicator.CAPACITY_PROPERTY);
+    try {
+      setProperty(StackTraceDeduplicator.ENABLED_PROPERTY, enabled);
+      setProperty(StackTraceDeduplicator.CAPACITY_PROPERTY, capacity);
+      return StackTraceDeduplicator.createIfEnabled();
+    } finally {
+      setProperty(StackTraceDeduplicator.ENABLED_PROPERTY, oldEnabled);
+      setProperty(StackTraceDeduplicator.CAPACITY_PROPERTY, oldCapacity);
+    }
+  }
+
+  private void setProperty(String name, String value) {
+    if (value == null) {
+      System.clearProperty(name);
+    } else {
+      System.setProperty(name, value);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StructuredLogIndexTest extends FileTestCase {
+  private static final String LINES = "foo\n"
+      + "/log-tag:bar/log-tag-version:1/baz:1/quux:2/\n"
+      + "/log-tag:bar/log-tag-version:1/baz:2/quux:2/\n"
+      + "/log-tag:quuux/log-tag-version:1/baz:1/\n";
+
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = createTempDirectory().resolve("foo.log");
+    writeFile(file, LINES);
+  }
+
+  @Test
+  public void testGetIndexFile() {
+    assertThat(StructuredLogIndex.getIndexFile(file))
+        .isEqualTo(file.resolveSibling("foo.log.idx"));
+  }
+
+  @Test
+  public void testBuild() throws IOException {
+    Path indexFile = StructuredLogIndex.build(file, Arrays.asList("baz"));
+
+    assertThat(indexFile).isEqualTo(StructuredLogIndex.getIndexFile(file));
+    assertThat(indexFile).exists();
+    assertThat(indexFile.resolveSibling("foo.log.idx.tmp")).doesNotExist();
+    assertThat(StructuredLogIndex.isUpToDate(file)).isTrue();
+  }
+
+  @Test
+  public void testLookupTag() throws IOException {
+    StructuredLogIndex.build(file, Arrays.asList("baz"));
+
+    try (StructuredLogIndex index = StructuredLogIndex.open(file)) {
+      assertThat(index.lookup("bar")).containsExactly(4, 49);
+      assertThat(index.lookup("quuux")).containsExactly(94);
+      assertThat(index.lookup("foo")).isEmpty();
+    }
+  }
+
+  @Test
+  public void testLookupField() throws IOException {
+    StructuredLogIndex.build(file, Arrays.asList("baz"));
+
+    try (StructuredLogIndex index = StructuredLogIndex.open(file)) {
+      assertThat(index.lookup("bar", "baz", "1")).containsExactly(4);
+      assertThat(index.lookup("bar", "baz", "2")).containsExactly(49);
+      assertThat(index.lookup("quuux", "baz", "1")).containsExactly(94);
+      assertThat(index.lookup("bar", "baz", "3")).isEmpty();
+      // quux is not indexed
+      assertThat(index.lookup("bar", "quux", "2")).isEmpty();
+    }
+  }
+
+  @Test
+  public void testLookupTagsOnly() throws IOException {
+    StructuredLogIndex.build(file, Collections.<String>emptyList());
+
+    try (StructuredLogIndex index = StructuredLogIndex.open(file)) {
+      assertThat(index.lookup("bar")).containsExactly(4, 49);
+      assertThat(index.lookup("bar", "baz", "1")).isEmpty();
+    }
+  }
+
+  @Test
+  public void testSearch() throws IOException {
+    StructuredLogIndex.build(file, Arrays.asList("baz", "quux"));
+
+    try (StructuredLogIndex index = StructuredLogIndex.open(file)) {
+      List<StructuredLogRecord> records = index.search("bar", "quux", "2");
+      assertThat(records).hasSize(2);
+      assertThat(records.get(0).getField("baz")).isEqualTo("1");
+      assertThat(records.get(1).getField("baz")).isEqualTo("2");
+
+      records = index.search("quuux");
+      assertThat(records).hasSize(1);
+      assertThat(records.get(0).getOffset()).isEqualTo(94);
+    }
+  }
+
+  @Test
+  public void testIsUpToDateWithoutIndex() {
+    assertThat(StructuredLogIndex.isUpToDate(file)).isFalse();
+  }
+
+  @Test
+  public void testIsUpToDateModifiedLog() throws IOException {
+    StructuredLogIndex.build(file, Arrays.asList("baz"));
+    writeFile(file, LINES + "/log-tag:bar/log-tag-version:1/baz:3/\n");
+
+    assertThat(StructuredLogIndex.isUpToDate(file)).isFalse();
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpenStale() throws IOException {
+    StructuredLogIndex.build(file, Arrays.asList("baz"));
+    Files.setLastModifiedTime(file,
+        FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 1000));
+
+    StructuredLogIndex.open(file);
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpenMalformed() throws IOException {
+    writeFile(StructuredLogIndex.getIndexFile(file), "foo");
+
+    StructuredLogIndex.open(file);
+  }
+}
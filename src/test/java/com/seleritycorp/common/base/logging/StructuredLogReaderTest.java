@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016-2018 Selerity, Inc. (support@seleritycorp.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seleritycorp.common.base.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.seleritycorp.common.base.test.FileTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class StructuredLogReaderTest extends FileTestCase {
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = createTempFile();
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    writeFile(file, "");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  public void testPlainLinesOnly() throws IOException {
+    writeFile(file, "foo\nbar/baz\n");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  public void testSingleLine() throws IOException {
+    writeFile(file, "2004-11-09 INFO /log-tag:foo/log-tag-version:42/bar:baz/quux:4711/\n");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      StructuredLogRecord record = reader.next();
+      assertThat(record.getOffset()).isEqualTo(0);
+      assertThat(record.getTag()).isEqualTo("foo");
+      assertThat(record.getVersion()).isEqualTo(42);
+      assertThat(record.getFields().keySet()).containsExactly("bar", "quux");
+      assertThat(record.getField("bar")).isEqualTo("baz");
+      assertThat(record.getField("quux")).isEqualTo("4711");
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  public void testMixedLines() throws IOException {
+    writeFile(file, "foo\n/log-tag:bar/log-tag-version:1/\nbaz\n"
+        + "/log-tag:quux/log-tag-version:2/quuux:3/");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      StructuredLogRecord record = reader.next();
+      assertThat(record.getOffset()).isEqualTo(4);
+      assertThat(record.getTag()).isEqualTo("bar");
+      assertThat(record.getFields()).isEmpty();
+
+      record = reader.next();
+      assertThat(record.getOffset()).isEqualTo(40);
+      assertThat(record.getTag()).isEqualTo("quux");
+      assertThat(record.getField("quuux")).isEqualTo("3");
+
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  public void testUnescape() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    new SlashStructuredEncoder().appendStructuredLine(sb, "f/o\\o", 1, "b/a\\r", "b:a/r\nz\r\\");
+    writeFile(file, sb.toString() + "\n");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      StructuredLogRecord record = reader.next();
+      assertThat(record.getTag()).isEqualTo("f/o\\o");
+      assertThat(record.getFields().keySet()).containsExactly("b/a\\r");
+      assertThat(record.getField("b/a\\r")).isEqualTo("b:a/r\nz\r\\");
+    }
+  }
+
+  @Test
+  public void testMalformedVersion() throws IOException {
+    writeFile(file, "/log-tag:foo/log-tag-version:bar/\n/log-tag:foo/\n");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  public void testReadAt() throws IOException {
+    writeFile(file, "/log-tag:foo/log-tag-version:1/\n/log-tag:bar/log-tag-version:1/\n"
+        + "/log-tag:baz/log-tag-version:1/\n");
+
+    try (StructuredLogReader reader = new StructuredLogReader(file)) {
+      assertThat(reader.readAt(32).getTag()).isEqualTo("bar");
+      assertThat(reader.next().getTag()).isEqualTo("baz");
+      assertThat(reader.readAt(0).getTag()).isEqualTo("foo");
+      assertThat(reader.readAt(1)).isNull();
+      assertThat(reader.readAt(4711)).isNull();
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  public void testLinesCrossingWindows() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("/log-tag:foo/log-tag-version:1/bar:").append(i).append("/\n");
+    }
+    writeFile(file, sb.toString());
+
+    try (StructuredLogReader reader = new StructuredLogReader(file, 64)) {
+      for (int i = 0; i < 100; i++) {
+        assertThat(reader.next().getField("bar")).isEqualTo(Integer.toString(i));
+      }
+      assertThat(reader.next()).isNull();
+    }
+  }
+}
@@ -22,6 +22,9 @@ import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.newCapture;
 
+import com.seleritycorp.common.base.logging.DiagnosticContext;
+
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -126,6 +129,63 @@ public class ExecutorServiceFactoryTest extends EasyMockSupport {
     assertThat(expectedExecutor).isSameAs(executor);
   }
   
+  @Test
+  public void testCreateFixedDaemonExecutorServiceDiagnosticContext() throws Exception {
+    replayAll();
+
+    ExecutorServiceFactory executorServiceFactory = createExecutorServiceFactory();
+
+    ExecutorService executor = executorServiceFactory
+        .createFixedUnboundedDaemonExecutorService("foo", 1);
+
+    Callable<Object> callable = new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return DiagnosticContext.get("bar");
+      }
+    };
+
+    Future<Object> future1;
+    try (DiagnosticContext.Scope scope = DiagnosticContext.with("bar", "baz")) {
+      future1 = executor.submit(callable);
+    }
+    Future<Object> future2 = executor.submit(callable);
+
+    assertThat(future1.get()).isEqualTo("baz");
+    assertThat(future2.get()).isNull();
+
+    verifyAll();
+  }
+
+  @Test
+  public void testCreateFixedDaemonExecutorServiceQueuedTasksAreSubmittedFutures()
+      throws Exception {
+    replayAll();
+
+    ExecutorServiceFactory executorServiceFactory = createExecutorServiceFactory();
+
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) executorServiceFactory
+        .createFixedUnboundedDaemonExecutorService("foo", 1);
+
+    CallableShim callable1 = new CallableShim();
+    CallableShim callable2 = new CallableShim();
+    CallableShim callable3 = new CallableShim();
+
+    executor.submit(callable1);
+    Future<Boolean> future2 = executor.submit(callable2);
+    Future<Boolean> future3 = executor.submit(callable3);
+
+    assertThat(executor.getQueue()).contains((Runnable) future2, (Runnable) future3);
+    assertThat(executor.remove((Runnable) future2)).isTrue();
+
+    List<Runnable> drained = executor.shutdownNow();
+    callable1.allowExit();
+
+    assertThat(drained).contains((Runnable) future3).doesNotContain((Runnable) future2);
+
+    verifyAll();
+  }
+
   private ExecutorServiceFactory createExecutorServiceFactory() {
     return new ExecutorServiceFactory(threadFactoryFactory, executorServiceMetricsFactory);
   }